@@ -0,0 +1,97 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.services.PilotToRaceTrackConnector;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Round trip from a SensorEvent arriving at the JavaPilotActor to the PowerControl leaving it,
+ * through the PowerUpUntilPenalty strategy. The relay connection is a local one, so power controls
+ * are handed over synchronously on the pilot actor's thread, like with the in-memory simulator.
+ *
+ * The strategy's console output is discarded, it would otherwise dominate the measurement.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaPilotActorBenchmark {
+
+    private static final int BATCH = 1000;
+
+    private ActorSystem system;
+    private ActorRef pilot;
+    private final AtomicLong powerControls = new AtomicLong();
+    private long sent;
+
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void startPilot() {
+        console = System.out;
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        PilotProperties properties = new PilotProperties();
+        properties.setName("benchmark");
+        properties.setAccessCode("secret");
+
+        system = ActorSystem.create("benchmark");
+        pilot = system.actorOf(JavaPilotActor.props(properties), "pilot");
+        pilot.tell(new PilotToRaceTrackConnector(null) {
+            @Override
+            public void send(PowerControl powerControl) {
+                powerControls.incrementAndGet();
+            }
+        }, ActorRef.noSender());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPilot() {
+        system.shutdown();
+        system.awaitTermination();
+        System.setOut(console);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void latency() {
+        sendAndAwait(1);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void throughput() {
+        sendAndAwait(BATCH);
+    }
+
+    private void sendAndAwait(int count) {
+        for (int i = 0; i < count; i++) {
+            sent++;
+            pilot.tell(new SensorEvent("sim01", new int[]{-120, 45, 9810}, new int[]{12, -7, (int) (sent % 6000)},
+                    new int[]{301, -12, 88}, sent), ActorRef.noSender());
+        }
+        while (powerControls.get() < sent) {
+            Thread.yield();
+        }
+    }
+}
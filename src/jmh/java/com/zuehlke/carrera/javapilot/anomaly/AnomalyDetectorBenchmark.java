@@ -0,0 +1,64 @@
+package com.zuehlke.carrera.javapilot.anomaly;
+
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per sensor event of the anomaly detectors, the overhead they add to the JavaPilotActor. 'detector' runs the
+ * complete SensorAnomalyDetector on sensor events, the others run a single detector on gyro-z. Run with -prof gc to
+ * see that they don't allocate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AnomalyDetectorBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    @Param({"zScore", "cusum", "detector"})
+    private String detector;
+
+    private final SensorEvent[] events = new SensorEvent[EVENTS];
+    private ZScoreDetector zScore;
+    private CusumDetector cusum;
+    private SensorAnomalyDetector sensorDetector;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(1);
+        for (int i = 0; i < EVENTS; i++) {
+            int gyroZ = (int) (3000 * Math.sin(2 * Math.PI * i / 400) + 150 * random.nextGaussian());
+            events[i] = new SensorEvent("bench", new int[]{-120, 45, 9810 + (int) (40 * random.nextGaussian())},
+                    new int[]{12, -7, gyroZ}, new int[]{301, -12, 88}, i * 12L);
+        }
+        zScore = new ZScoreDetector(50, 6, 1200);
+        cusum = new CusumDetector(0.02, 1, 15, 50);
+        sensorDetector = new SensorAnomalyDetector();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public int detect() {
+        int found = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            SensorEvent event = events[i];
+            switch (detector) {
+                case "zScore":
+                    found += zScore.add(event.getTimeStamp(), event.getG()[2]) ? 1 : 0;
+                    break;
+                case "cusum":
+                    found += cusum.add(event.getG()[2]) ? 1 : 0;
+                    break;
+                default:
+                    found += sensorDetector.add(event) == null ? 0 : 1;
+            }
+        }
+        return found;
+    }
+}
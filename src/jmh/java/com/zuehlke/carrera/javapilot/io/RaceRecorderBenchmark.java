@@ -0,0 +1,72 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of RaceRecorderPlayer.record for each of the recorded message types.
+ * All messages of a trial are appended to one race in a fresh temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RaceRecorderBenchmark {
+
+    private File dataDirectory;
+    private RaceRecorderPlayer recorder;
+
+    private SensorEvent sensorEvent;
+    private PowerControl powerControl;
+    private VelocityMessage velocityMessage;
+    private PenaltyMessage penaltyMessage;
+
+    @Setup(Level.Trial)
+    public void startRace() throws IOException {
+        dataDirectory = Files.createTempDirectory("recorder-benchmark").toFile();
+        recorder = new RaceRecorderPlayer(dataDirectory.getPath());
+        recorder.record(new RaceStartMessage("sim01", "training", "benchmark", System.currentTimeMillis(),
+                "recorder benchmark", true));
+
+        long now = System.currentTimeMillis();
+        sensorEvent = new SensorEvent("sim01", new int[]{-120, 45, 9810}, new int[]{12, -7, 2345},
+                new int[]{301, -12, 88}, now);
+        powerControl = new PowerControl(140, "benchmark", "secret", now);
+        velocityMessage = new VelocityMessage("sim01", now, 231.5, "1FDB");
+        penaltyMessage = new PenaltyMessage("sim01", "1FDB", 290, 250, 2000);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopRace() throws IOException {
+        recorder.close();
+        FileUtils.forceDelete(dataDirectory);
+    }
+
+    @Benchmark
+    public void recordSensorEvent() {
+        recorder.record(sensorEvent);
+    }
+
+    @Benchmark
+    public void recordPowerControl() {
+        recorder.record(powerControl);
+    }
+
+    @Benchmark
+    public void recordVelocityMessage() {
+        recorder.record(velocityMessage);
+    }
+
+    @Benchmark
+    public void recordPenaltyMessage() {
+        recorder.record(penaltyMessage, sensorEvent.getTimeStamp());
+    }
+}
@@ -0,0 +1,100 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Replay throughput: the merging supplier reading a recorded race back from disk, and findNextObject
+ * picking the earliest of the head records alone. Scores are per replayed message. The race is replayed as
+ * recorded, in json, and after the RecordingConverter turned it into the binary format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplayBenchmark {
+
+    /** about one minute of sensor data, with power, velocity and penalty messages in between */
+    private static final int EVENTS = 5000;
+    private static final int MESSAGES = 1 + EVENTS + EVENTS + EVENTS / 50 + EVENTS / 500;
+
+    @Param({"json", "binary"})
+    private String format;
+
+    private File dataDirectory;
+    private RaceRecorderPlayer player;
+    private String tag;
+
+    private Map<Class<?>, Object> nextObjects;
+
+    @Setup(Level.Trial)
+    public void recordRace() throws IOException, InterruptedException {
+        dataDirectory = Files.createTempDirectory("replay-benchmark").toFile();
+        RaceRecorderPlayer recorder = new RaceRecorderPlayer(dataDirectory.getPath());
+        long t = 1000000L;
+        tag = recorder.record(new RaceStartMessage("sim01", "training", "benchmark", t, "replay benchmark", true));
+        for (int i = 0; i < EVENTS; i++) {
+            t += 12;
+            recorder.record(new SensorEvent("sim01", new int[]{-120, 45, 9810}, new int[]{12, -7, i % 6000 - 3000},
+                    new int[]{301, -12, 88}, t));
+            recorder.record(new PowerControl(120 + i % 40, "", "", t + 1));
+            if (i % 50 == 0) {
+                recorder.record(new VelocityMessage("sim01", t + 2, 200 + i % 80, "1FDB"));
+            }
+            if (i % 500 == 0) {
+                recorder.record(new PenaltyMessage("sim01", "1FDB", 290, 250, 2000), t + 3);
+            }
+        }
+        recorder.close();
+        if ("binary".equals(format)) {
+            new RecordingConverter(dataDirectory.getPath(), 1, false, 0).convertAll();
+        }
+        player = new RaceRecorderPlayer(dataDirectory.getPath());
+
+        nextObjects = new HashMap<>();
+        nextObjects.put(RaceStartMessage.class, null);
+        nextObjects.put(SensorEvent.class, new SensorEvent("sim01", new int[3], new int[3], new int[3], 1012));
+        nextObjects.put(PowerControl.class, new PowerControl(120, "", "", 1013));
+        nextObjects.put(VelocityMessage.class, new VelocityMessage("sim01", 1014, 200, "1FDB"));
+        nextObjects.put(TimedPenaltyMessage.class,
+                new TimedPenaltyMessage(new PenaltyMessage("sim01", "1FDB", 290, 250, 2000), 1015L));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteRace() throws IOException {
+        FileUtils.forceDelete(dataDirectory);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public int replayRace(Blackhole blackhole) throws IOException {
+        Supplier<Object> supplier = player.getSupplier(tag);
+        int count = 0;
+        try {
+            while (true) {
+                blackhole.consume(supplier.get());
+                count++;
+            }
+        } catch (EndOfStreamException e) {
+            // the end of the recorded race
+        }
+        return count;
+    }
+
+    @Benchmark
+    public Object findNextObject() {
+        return RaceRecorderPlayer.findNextObject(nextObjects);
+    }
+}
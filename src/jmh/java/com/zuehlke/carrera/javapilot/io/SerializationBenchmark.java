@@ -0,0 +1,120 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.rabbitmq.tools.json.JSONWriter;
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the relayapi messages: JacksonSerializer as used by the client library and for replays,
+ * JSONWriter as used by the recorder, and the binary wire format.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private final JacksonSerializer serializer = new JacksonSerializer();
+    private final BinaryMessageCodec binaryCodec = new BinaryMessageCodec();
+
+    private SensorEvent sensorEvent;
+    private PowerControl powerControl;
+    private VelocityMessage velocityMessage;
+    private PenaltyMessage penaltyMessage;
+
+    private String sensorEventJson;
+    private String powerControlJson;
+    private String velocityMessageJson;
+    private String penaltyMessageJson;
+
+    private byte[] sensorEventBinary;
+    private byte[] powerControlBinary;
+
+    @Setup
+    public void createMessages() {
+        long now = System.currentTimeMillis();
+        sensorEvent = new SensorEvent("sim01", new int[]{-120, 45, 9810}, new int[]{12, -7, 2345},
+                new int[]{301, -12, 88}, now);
+        powerControl = new PowerControl(140, "benchmark", "secret", now);
+        velocityMessage = new VelocityMessage("sim01", now, 231.5, "1FDB");
+        penaltyMessage = new PenaltyMessage("sim01", "1FDB", 290, 250, 2000);
+
+        sensorEventJson = serializer.serialize(sensorEvent);
+        powerControlJson = serializer.serialize(powerControl);
+        velocityMessageJson = serializer.serialize(velocityMessage);
+        penaltyMessageJson = serializer.serialize(penaltyMessage);
+
+        sensorEventBinary = binaryCodec.encode(sensorEvent);
+        powerControlBinary = binaryCodec.encode(powerControl);
+    }
+
+    @Benchmark
+    public String serializeSensorEvent() {
+        return serializer.serialize(sensorEvent);
+    }
+
+    @Benchmark
+    public String serializePowerControl() {
+        return serializer.serialize(powerControl);
+    }
+
+    @Benchmark
+    public String serializeVelocityMessage() {
+        return serializer.serialize(velocityMessage);
+    }
+
+    @Benchmark
+    public String serializePenaltyMessage() {
+        return serializer.serialize(penaltyMessage);
+    }
+
+    @Benchmark
+    public Object deserializeSensorEvent() {
+        return serializer.deserialize(sensorEventJson, SensorEvent.class);
+    }
+
+    @Benchmark
+    public Object deserializePowerControl() {
+        return serializer.deserialize(powerControlJson, PowerControl.class);
+    }
+
+    @Benchmark
+    public Object deserializeVelocityMessage() {
+        return serializer.deserialize(velocityMessageJson, VelocityMessage.class);
+    }
+
+    @Benchmark
+    public Object deserializePenaltyMessage() {
+        return serializer.deserialize(penaltyMessageJson, PenaltyMessage.class);
+    }
+
+    @Benchmark
+    public String recorderWriteSensorEvent() {
+        return new JSONWriter().write(sensorEvent);
+    }
+
+    @Benchmark
+    public byte[] binaryEncodeSensorEvent() {
+        return binaryCodec.encode(sensorEvent);
+    }
+
+    @Benchmark
+    public Object binaryDecodeSensorEvent() {
+        return binaryCodec.decode(sensorEventBinary);
+    }
+
+    @Benchmark
+    public byte[] binaryEncodePowerControl() {
+        return binaryCodec.encode(powerControl);
+    }
+
+    @Benchmark
+    public Object binaryDecodePowerControl() {
+        return binaryCodec.decode(powerControlBinary);
+    }
+}
@@ -0,0 +1,66 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time per sample of each signal processing stage, on a noisy gyro-z like signal. Run with -prof gc to see that
+ * none of them allocates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+
+    private static final int SAMPLES = 1024;
+
+    @Param({"movingAverage", "exponential", "fir", "derivative", "kalman", "windowedStatistics", "pipeline"})
+    private String stage;
+
+    private Stage processor;
+    private final double[] signal = new double[SAMPLES];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < SAMPLES; i++) {
+            signal[i] = 3000 * Math.sin(2 * Math.PI * i / 400) + 300 * Math.sin(i * 7.3);
+        }
+        processor = create(stage);
+    }
+
+    private static Stage create(String stage) {
+        switch (stage) {
+            case "movingAverage":
+                return new MovingAverage(8);
+            case "exponential":
+                return new ExponentialMovingAverage(0.2);
+            case "fir":
+                return FirFilter.lowPass(15, 0.1);
+            case "derivative":
+                return new Derivative();
+            case "kalman":
+                return new KalmanFilter(100, 10000);
+            case "windowedStatistics":
+                return new WindowedStatistics(50);
+            case "pipeline":
+                return new Pipeline(new KalmanFilter(100, 10000), new MovingAverage(8), new Derivative(),
+                        new WindowedStatistics(50));
+            default:
+                throw new IllegalArgumentException("Unknown stage " + stage);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public double apply() {
+        double result = 0;
+        for (int i = 0; i < SAMPLES; i++) {
+            result += processor.apply(i * 12L, signal[i]);
+        }
+        return result;
+    }
+}
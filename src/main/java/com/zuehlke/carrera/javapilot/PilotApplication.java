@@ -11,16 +11,27 @@ import com.zuehlke.carrera.api.client.rabbit.RabbitClient;
 import com.zuehlke.carrera.api.seralize.JacksonSerializer;
 import com.zuehlke.carrera.api.seralize.Serializer;
 import com.zuehlke.carrera.connection.*;
+import com.zuehlke.carrera.javapilot.bus.LoopbackBroker;
+import com.zuehlke.carrera.javapilot.bus.LoopbackBrokerServer;
+import com.zuehlke.carrera.javapilot.bus.MessageBuses;
+import com.zuehlke.carrera.javapilot.config.PilotConfig;
 import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.metrics.StartupReport;
+import com.zuehlke.carrera.javapilot.services.FastRabbitPilotConnection;
+import com.zuehlke.carrera.javapilot.services.FastRabbitSimulatorConnection;
 import com.zuehlke.carrera.javapilot.services.PilotService;
+import com.zuehlke.carrera.javapilot.services.PilotWebSocketHandler;
 import com.zuehlke.carrera.javapilot.services.PilotToRelayConnection;
 import com.zuehlke.carrera.javapilot.services.SimulatorService;
+import com.zuehlke.carrera.javapilot.services.WebSocketPilotConnection;
 import com.zuehlke.carrera.simulator.config.SimulatorProperties;
 import com.zuehlke.carrera.simulator.model.RaceTrackSimulatorSystem;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.PosixParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
@@ -29,8 +40,10 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BiConsumer;
 
 @Configuration
 @ComponentScan
@@ -38,7 +51,9 @@ import java.util.List;
 @EnableConfigurationProperties({SimulatorProperties.class})  // loaded from classpath:/application.yml
 public class PilotApplication implements CommandLineRunner{
 
-    @Autowired
+    private static final Logger LOGGER = LoggerFactory.getLogger(PilotApplication.class);
+
+    @Autowired(required = false) // not in pilot-only mode
     private SimulatorService simulatorService;
 
     @Autowired
@@ -47,28 +62,55 @@ public class PilotApplication implements CommandLineRunner{
     @Autowired
     private PilotProperties pilotProperties;
 
+    @Autowired(required = false) // not in pilot-only mode
+    private PilotWebSocketHandler pilotWebSocketHandler;
+
     private enum Function {
         simulator,
         pilot,
         both
     }
 
+    private enum Protocol {
+        memory,
+        rabbit,
+        rabbit_fast,
+        ws;
+
+        static Protocol fromOption(String option) {
+            return valueOf(option.replace('-', '_'));
+        }
+    }
+
     /**
      * Primary entry point of Carrera Simulator
      * @param args runtime arguments
      */
     public static void main(String[] args) {
 
-        SpringApplication.run(PilotApplication.class, args);
+        SpringApplication application = new SpringApplication(PilotApplication.class);
+        if (isPilotOnly(args)) {
+            application.setAdditionalProfiles(PilotConfig.PILOT_ONLY);
+        }
+        application.run(args);
+
+    }
 
+    private static boolean isPilotOnly(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if ("-f".equals(args[i]) && Function.pilot.name().equals(args[i + 1])) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public void run(String... args) throws Exception {
 
         Options options = new Options();
-        options.addOption("p", true, "Protocol: any of 'memory' (default), 'rabbit', or 'ws'");
-        options.addOption("f", true, "either of 'simulator', 'pilot'. Defaults to 'both'. Requires rabbit");
+        options.addOption("p", true, "Protocol: any of 'memory' (default), 'rabbit', 'rabbit-fast' or 'ws'");
+        options.addOption("f", true, "either of 'simulator', 'pilot'. Defaults to 'both'. Requires rabbit or ws");
 
         List<String> arglist = new ArrayList<>();
         for (String arg : args) {
@@ -81,7 +123,7 @@ public class PilotApplication implements CommandLineRunner{
 
         Protocol protocol = Protocol.memory;
         if ( cmd.hasOption("p")) {
-            protocol = Protocol.valueOf(cmd.getOptionValue("p"));
+            protocol = Protocol.fromOption(cmd.getOptionValue("p"));
         }
         Function function = Function.both;
         if ( cmd.hasOption("f")) {
@@ -90,34 +132,77 @@ public class PilotApplication implements CommandLineRunner{
 
         connectWithProtocol ( protocol, function );
 
+        StartupReport.started();
+
     }
 
-    private void connectWithProtocol(Protocol protocol, Function function ) {
+    private void connectWithProtocol(Protocol protocol, Function function ) throws IOException {
+
+        if (protocol != Protocol.rabbit && !pilotProperties.getPilots().isEmpty()) {
+            // the simulators of these protocols know of one pilot only, the one named in javapilot.name
+            LOGGER.warn("The simulator of -p {} drives the first pilot only, the others stay unconnected.", protocol);
+        }
 
         switch ( protocol ) {
             case rabbit: // only supporting rabbit for the time being
                 // if not "only simulator", then connect the pilot
                 if (!function.equals(Function.simulator)) {
-                    connectPilotWithRabbit(pilotService.getPilotActor());
+                    forEachPilot(this::connectPilotWithRabbit);
                 }
                 // if not "only pilot", then connect the simulator
                 if (!function.equals(Function.pilot)) {
                     connectSimulatorWithRabbit(simulatorService.getSystem());
                 }
+                break;
+            case rabbit_fast: // low-level transport, may use the binary wire format
+                // the simulator hosts the stand-in broker, if there is no real one
+                if (MessageBuses.isLoopback(pilotProperties.getRabbitUrl()) && !function.equals(Function.pilot)) {
+                    startLoopbackBroker();
+                }
+                if (!function.equals(Function.simulator)) {
+                    connectPilotWithFastRabbit(pilotService.getPilotActor(), pilotProperties);
+                }
+                if (!function.equals(Function.pilot)) {
+                    connectSimulatorWithFastRabbit(simulatorService.getSystem());
+                }
+                break;
+            case ws: // direct websocket connection, no broker needed
+                if (function.equals(Function.both)) {
+                    // a websocket from this process to itself would only be a slower 'memory'
+                    throw new IllegalArgumentException(
+                            "-p ws connects separate processes, run one with -f simulator and one with -f pilot");
+                }
+                if (function.equals(Function.pilot)) {
+                    connectPilotWithWebSocket(pilotService.getPilotActor(), pilotProperties);
+                }
+                if (function.equals(Function.simulator)) {
+                    simulatorService.registerRemotePilot(pilotWebSocketHandler);
+                }
+                break;
         }
     }
 
 
-    private void connectPilotWithRabbit(ActorRef pilot) {
+    /**
+     * connects every pilot, each with its own name and access code, to the same relay, which only rabbit supports
+     */
+    private void forEachPilot(BiConsumer<ActorRef, PilotProperties> connect) {
+        connect.accept(pilotService.getPilotActor(), pilotProperties);
+        for (PilotProperties additional : pilotProperties.getPilots()) {
+            connect.accept(pilotService.getPilotActor(additional.getName()), additional);
+        }
+    }
+
+    private void connectPilotWithRabbit(ActorRef pilot, PilotProperties pilotSettings) {
 
         Client client = new RabbitClient();
         client.connect(pilotProperties.getRabbitUrl());
         Serializer serializer = new JacksonSerializer();
-        PilotApi pilotApi = new DirectExchangePilotApiImpl(client, new PilotToRelayChannelNames(pilotProperties.getName()),
-                new RoutingKeyNames(pilotProperties.getName()), serializer);
+        PilotApi pilotApi = new DirectExchangePilotApiImpl(client, new PilotToRelayChannelNames(pilotSettings.getName()),
+                new RoutingKeyNames(pilotSettings.getName()), serializer);
 
         ConnectionFactoryFromPilots factory = new RabbitConnectionFactoryFromPilots(pilotApi,
-                pilotProperties.getName(), pilotProperties.getAccessCode(), pilotProperties.getRabbitUrl());
+                pilotSettings.getName(), pilotSettings.getAccessCode(), pilotProperties.getRabbitUrl());
 
         PilotToRelayConnection pilotConnection = factory.create(
                 (start)->pilot.tell(start, ActorRef.noSender()),
@@ -132,6 +217,48 @@ public class PilotApplication implements CommandLineRunner{
         pilot.tell(pilotConnection, ActorRef.noSender());
     }
 
+    private void startLoopbackBroker() throws IOException {
+
+        String url = pilotProperties.getRabbitUrl();
+        if (MessageBuses.EMBEDDED.equals(url)) {
+            LoopbackBroker.embedded().setLatency(pilotProperties.getLoopbackLatency(), pilotProperties.getLoopbackJitter());
+        } else {
+            LoopbackBroker broker = new LoopbackBroker();
+            broker.setLatency(pilotProperties.getLoopbackLatency(), pilotProperties.getLoopbackJitter());
+            new LoopbackBrokerServer(broker, MessageBuses.loopbackPort(url)).start();
+        }
+    }
+
+    private void connectPilotWithFastRabbit(ActorRef pilot, PilotProperties pilotSettings) {
+
+        FastRabbitPilotConnection pilotConnection = new FastRabbitPilotConnection(pilotProperties.getRabbitUrl(),
+                pilotSettings.getName(), pilotSettings.getAccessCode(),
+                (message)->pilot.tell(message, ActorRef.noSender()), pilotProperties.getWireFormat());
+
+        pilotConnection.ensureConnection();
+        pilot.tell(pilotConnection, ActorRef.noSender());
+    }
+
+    private void connectPilotWithWebSocket(ActorRef pilot, PilotProperties pilotSettings) {
+
+        WebSocketPilotConnection pilotConnection = new WebSocketPilotConnection(pilotProperties.getSimulatorUrl(),
+                pilotSettings.getName(), pilotSettings.getAccessCode(),
+                (message)->pilot.tell(message, ActorRef.noSender()));
+
+        pilotConnection.ensureConnection();
+        pilot.tell(pilotConnection, ActorRef.noSender());
+    }
+
+    private void connectSimulatorWithFastRabbit (RaceTrackSimulatorSystem system ) {
+
+        FastRabbitSimulatorConnection pilotConnection = new FastRabbitSimulatorConnection(
+                pilotProperties.getRabbitUrl(), pilotProperties.getName(), system::setPower,
+                pilotProperties.getWireFormat());
+
+        pilotConnection.ensureConnection(pilotProperties.getRabbitUrl());
+        simulatorService.registerRemotePilot(pilotConnection);
+    }
+
     private void connectSimulatorWithRabbit (RaceTrackSimulatorSystem system ) {
 
         Client client = new RabbitClient();
@@ -0,0 +1,34 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import com.zuehlke.carrera.javapilot.track.TrackModel;
+
+/**
+ * asks the PowerProfileActor for a new power profile
+ */
+public class ComputePowerProfileCommand {
+
+    private final TrackModel model;
+    private final int basePower;
+    private final int[] penalties;
+
+    /**
+     * @param penalties per segment of the model, copied
+     */
+    public ComputePowerProfileCommand(TrackModel model, int basePower, int[] penalties) {
+        this.model = model;
+        this.basePower = basePower;
+        this.penalties = penalties.clone();
+    }
+
+    public TrackModel getModel() {
+        return model;
+    }
+
+    public int getBasePower() {
+        return basePower;
+    }
+
+    public int[] getPenalties() {
+        return penalties;
+    }
+}
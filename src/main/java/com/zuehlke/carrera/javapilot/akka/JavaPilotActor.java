@@ -4,11 +4,20 @@ import org.joda.time.LocalDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.zuehlke.carrera.javapilot.anomaly.AnomalyEvent;
+import com.zuehlke.carrera.javapilot.anomaly.SensorAnomalyDetector;
 import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.io.BlackBox;
+import com.zuehlke.carrera.javapilot.io.DumpBlackBoxCommand;
 import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
 import com.zuehlke.carrera.javapilot.io.StopReplayCommand;
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
+import com.zuehlke.carrera.javapilot.metrics.StartupReport;
+import com.zuehlke.carrera.javapilot.services.AsyncRelayConnection;
 import com.zuehlke.carrera.javapilot.services.EndpointAnnouncement;
+import com.zuehlke.carrera.javapilot.services.PilotToRaceTrackConnector;
 import com.zuehlke.carrera.javapilot.services.PilotToRelayConnection;
+import com.zuehlke.carrera.javapilot.track.TrackModel;
 import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
 import com.zuehlke.carrera.relayapi.messages.PowerControl;
 import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
@@ -17,46 +26,123 @@ import com.zuehlke.carrera.relayapi.messages.RoundTimeMessage;
 import com.zuehlke.carrera.relayapi.messages.SensorEvent;
 import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
 
+import akka.actor.ActorInitializationException;
+import akka.actor.ActorKilledException;
 import akka.actor.ActorRef;
+import akka.actor.OneForOneStrategy;
 import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
 import akka.actor.UntypedActor;
 import akka.japi.Creator;
+import scala.concurrent.duration.Duration;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Central actor responsible for driving the car. All data gets here and all
- * decisions are finally made here.
+ * decisions are finally made here. Replays don't come through here, they
+ * run apart from the live race, each in a session of the ReplayManagerActor.
  */
 public class JavaPilotActor extends UntypedActor {
 
+	private static final int MAX_RESTARTS = 10;
+
+	private static final SupervisorStrategy supervisorStrategy = new OneForOneStrategy(MAX_RESTARTS,
+			Duration.create(1, TimeUnit.MINUTES), (throwable) -> {
+		if (throwable instanceof ActorInitializationException || throwable instanceof ActorKilledException) {
+			return SupervisorStrategy.stop();
+		}
+		if (throwable instanceof Exception) {
+			return SupervisorStrategy.restart();
+		}
+		return SupervisorStrategy.escalate();
+	});
+
 	private final Logger LOGGER = LoggerFactory.getLogger(JavaPilotActor.class);
 	private final PilotProperties properties;
+	private final Class<?> strategyClass;
 
 	private ActorRef strategy;
 	private ActorRef recorder;
-	private boolean replaying;
+	private final ActorRef trackModelBuilder;
+	private final AtomicReference<TrackModel> trackModel = new AtomicReference<>(TrackModel.UNKNOWN);
+	private final StrategySnapshots snapshots;
+	private final ActorRef replays;
+	private final BlackBox blackBox;
+	private final PilotMetrics.Pilot metrics; // null, if the pilot is not reporting
+	private final SensorAnomalyDetector anomalies = new SensorAnomalyDetector();
 
 	private PilotToRelayConnection relayConnection;
 
-	public JavaPilotActor(PilotProperties properties) {
+	/**
+	 * @param replaySessions where the replays of this pilot are listed
+	 */
+	public JavaPilotActor(PilotProperties properties, ReplaySessions replaySessions) {
 
 		this.properties = properties;
-		strategy = getContext().actorOf(PowerUpUntilPenalty.props(getSelf()));
-		recorder = getContext().actorOf(RaceRecorderActor.props(getSelf()));
+		this.strategyClass = strategyClass(properties.getStrategy());
+		blackBox = new BlackBox(new File(properties.getDataDirectory(), BlackBox.DIRECTORY), properties.getName(),
+				properties.getBlackBoxSeconds());
+		metrics = properties.isReporting() ? PilotMetrics.get().pilot(properties.getName()) : null;
+		snapshots = properties.isReporting()
+				? new StrategySnapshots(properties.getDataDirectory(), properties.getName())
+				: StrategySnapshots.inMemory();
+		trackModelBuilder = getContext().actorOf(TrackModelActor.props(trackModel));
+		strategy = getContext().actorOf(strategyProps());
+		recorder = getContext().actorOf(RaceRecorderActor.props(getSelf(), properties.getDataDirectory(), metrics));
+		replays = getContext().actorOf(ReplayManagerActor.props(properties.getDataDirectory(), strategyClass,
+				replaySessions, metrics));
+	}
+
+	/**
+	 * @param strategy the strategy actor's class name, in this package if not fully qualified
+	 * @return the class, which must have a constructor taking the pilot actor, the track model reference and the
+	 * strategy snapshots
+	 */
+	public static Class<?> strategyClass(String strategy) {
+		String className = strategy.contains(".") ? strategy : JavaPilotActor.class.getPackage().getName() + "." + strategy;
+		try {
+			Class<?> type = Class.forName(className);
+			type.getConstructor(ActorRef.class, AtomicReference.class, StrategySnapshots.class);
+			return type;
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			throw new IllegalArgumentException("No strategy " + strategy + ": " + e.getMessage(), e);
+		}
+	}
+
+	private Props strategyProps() {
+		return Props.create(strategyClass, getSelf(), trackModel, snapshots).withMailbox("strategy-mailbox");
+	}
+
+	/**
+	 * A child that fails on a message is restarted right away, in place: the strategy restores its state from the
+	 * snapshots and drives on with the next sensor event. Failing more than MAX_RESTARTS times a minute, or failing
+	 * to start at all, stops the child instead.
+	 */
+	@Override
+	public SupervisorStrategy supervisorStrategy() {
+		return supervisorStrategy;
 	}
 
 	public static Props props(PilotProperties properties) {
+		return props(properties, new ReplaySessions());
+	}
+
+	public static Props props(PilotProperties properties, ReplaySessions replaySessions) {
 		return Props.create(new Creator<JavaPilotActor>() {
 			private static final long serialVersionUID = 1L;
 
 			@Override
 			public JavaPilotActor create() throws Exception {
-				return new JavaPilotActor(properties);
+				return new JavaPilotActor(properties, replaySessions);
 			}
-		});
+		}).withMailbox("pilot-mailbox");
 	}
 
 	private void record(Object message) {
-		if (recorder != null) {
+		if (recorder != null && properties.isRecording()) {
 			recorder.forward(message, getContext());
 		}
 	}
@@ -64,18 +150,15 @@ public class JavaPilotActor extends UntypedActor {
 	@Override
 	public void onReceive(Object message) throws Exception {
 
+		if (metrics != null) {
+			metrics.messageReceived(message);
+		}
+
 		try {
 
-			if (message instanceof StartReplayCommand) {
-				if (!replaying) {
-					recorder = getContext().actorOf(RaceRecorderActor.props(getSelf()));
-					recorder.forward(message, getContext());
-					replaying = true;
-				}
-			} else if (message instanceof StopReplayCommand) {
-				recorder = getContext().actorOf(RaceRecorderActor.props(getSelf()));
-				recorder.forward(message, getContext());
-				replaying = false;
+			if (message instanceof StartReplayCommand || message instanceof StopReplayCommand) {
+				replays.forward(message, getContext());
+
 			} else if (message instanceof RaceStartMessage) {
 				record(message);
 				handleRaceStart((RaceStartMessage)message);
@@ -86,14 +169,16 @@ public class JavaPilotActor extends UntypedActor {
 
 			} else if (message instanceof SensorEvent) {
 				record(message);
+				blackBox.record((SensorEvent) message);
 				handleSensorEvent((SensorEvent) message);
 
 			} else if (message instanceof VelocityMessage) {
 				record(message);
+				blackBox.record((VelocityMessage) message);
 				handleVelocityMessage((VelocityMessage) message);
 
 			} else if (message instanceof PilotToRelayConnection) {
-				this.relayConnection = (PilotToRelayConnection) message;
+				handleRelayConnection((PilotToRelayConnection) message);
 
 			} else if (message instanceof EndpointAnnouncement) {
 				handleEndpointAnnouncement((EndpointAnnouncement) message);
@@ -103,9 +188,15 @@ public class JavaPilotActor extends UntypedActor {
 
 			} else if (message instanceof PenaltyMessage) {
 				record(message);
+				blackBox.record((PenaltyMessage) message);
 				handlePenaltyMessage((PenaltyMessage) message);
 
+			} else if (message instanceof DumpBlackBoxCommand) {
+				blackBox.dump(((DumpBlackBoxCommand) message).getReason());
+
 			} else if (message instanceof RoundTimeMessage) {
+				record(message);
+				trackModelBuilder.tell(message, getSelf());
 				handleRoundTime((RoundTimeMessage) message);
 
 			} else if (message instanceof String) {
@@ -126,12 +217,44 @@ public class JavaPilotActor extends UntypedActor {
 
 	}
 
+	/**
+	 * Remote connections get their own sender thread, so that this actor never blocks on network I/O.
+	 * The local simulator is called directly.
+	 *
+	 * @param connection
+	 *            the new connection to the relay or the simulator
+	 */
+	private void handleRelayConnection(PilotToRelayConnection connection) {
+		shutdownRelayConnection();
+		if (connection instanceof PilotToRaceTrackConnector) {
+			relayConnection = connection;
+		} else {
+			relayConnection = new AsyncRelayConnection(connection, metrics);
+		}
+	}
+
+	private void shutdownRelayConnection() {
+		if (relayConnection instanceof AsyncRelayConnection) {
+			((AsyncRelayConnection) relayConnection).shutdown();
+		}
+	}
+
+	@Override
+	public void postStop() {
+		shutdownRelayConnection();
+	}
+
 	private void handleRoundTime(RoundTimeMessage message) {
 		LOGGER.info("Round Time in ms: " + message.getRoundDuration());
 	}
 
+	/**
+	 * Also dumps what happened in the seconds before the penalty from the
+	 * black box, in the background.
+	 */
 	private void handlePenaltyMessage(PenaltyMessage message) {
 		strategy.forward(message, getContext());
+		blackBox.dump("penalty");
 	}
 
 	/**
@@ -144,11 +267,26 @@ public class JavaPilotActor extends UntypedActor {
 
 		long now = System.currentTimeMillis();
 
-		record(new PowerControl(powerValue, "", "", now));
+		PowerControl powerControl = new PowerControl(powerValue, "", "", now);
+		record(powerControl);
+		blackBox.record(powerControl);
 
-		if (!replaying) {
-			relayConnection.send(new PowerControl(powerValue, properties.getName(), properties.getAccessCode(), now));
+		sendToRelay(new PowerControl(powerValue, properties.getName(), properties.getAccessCode(), now));
+	}
+
+	private void sendToRelay(PowerControl powerControl) {
+		if (metrics == null) {
+			relayConnection.send(powerControl);
+			return;
+		}
+		if (relayConnection instanceof AsyncRelayConnection) {
+			relayConnection.send(powerControl); // counts what it publishes
+		} else {
+			long start = System.nanoTime();
+			relayConnection.send(powerControl);
+			metrics.relaySent(System.nanoTime() - start);
 		}
+		StartupReport.firstPowerControl();
 	}
 
 	private void handleEndpointAnnouncement(EndpointAnnouncement message) {
@@ -169,10 +307,23 @@ public class JavaPilotActor extends UntypedActor {
 		if (isSample(message)) {
 			handleSample(message);
 		} else {
+			detectAnomalies(message);
+			trackModelBuilder.tell(message, getSelf());
 			strategy.forward(message, getContext());
 		}
 	}
 
+	/**
+	 * Anomalies go to the strategy before the sensor event they were found in,
+	 * so that it can react to them with its answer to that event already.
+	 */
+	private void detectAnomalies(SensorEvent message) {
+		for (AnomalyEvent anomaly = anomalies.add(message); anomaly != null; anomaly = anomalies.next()) {
+			record(anomaly);
+			strategy.tell(anomaly, getSelf());
+		}
+	}
+
 	private boolean isSample(SensorEvent message) {
 		return ((message.getM()[0] == 111.0f) && (message.getM()[1] == 112.0f) && (message.getM()[2] == 113.0f));
 	}
@@ -186,7 +337,7 @@ public class JavaPilotActor extends UntypedActor {
 	private void handleSample(SensorEvent message) {
 		LOGGER.info("received sample SensorEvent: " + message.toString());
 		long now = System.currentTimeMillis();
-		relayConnection.send(new PowerControl(0, properties.getName(), properties.getAccessCode(), now));
+		sendToRelay(new PowerControl(0, properties.getName(), properties.getAccessCode(), now));
 	}
 
 	/**
@@ -198,16 +349,19 @@ public class JavaPilotActor extends UntypedActor {
 	private void handleSample(VelocityMessage message) {
 		LOGGER.info("received sample velocity message: " + message.toString());
 		long now = System.currentTimeMillis();
-		relayConnection.send(new PowerControl(0, properties.getName(), properties.getAccessCode(), now));
+		sendToRelay(new PowerControl(0, properties.getName(), properties.getAccessCode(), now));
 	}
 
 	private void handleRaceStop() {
 		LOGGER.info("received race stop");
 		getContext().stop(strategy);
+		snapshots.flush();
 	}
 
 	private void handleRaceStart(RaceStartMessage message) {
-		strategy = getContext().actorOf(PowerUpUntilPenalty.props(getSelf()));
+		strategy = getContext().actorOf(strategyProps());
+		trackModelBuilder.tell(message, getSelf());
+		anomalies.reset();
 		long now = System.currentTimeMillis();
 		LOGGER.info("received race start at " + new LocalDateTime(now).toString());
 		strategy.tell(message, getSelf());
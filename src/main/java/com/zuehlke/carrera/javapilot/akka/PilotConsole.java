@@ -0,0 +1,102 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * System.out of the pilot: what the strategies of replay sessions and the actors of the warm-up print, on the
+ * threads of the replay dispatcher and of the warm-up's actor system, is dropped before it is formatted or takes the
+ * lock of the stream. So they neither flood the console nor make the live strategy wait for it. Everything else
+ * passes through. Installed once, when the pilots start.
+ */
+public class PilotConsole extends PrintStream {
+
+    private static final String REPLAY_THREAD = "-" + ReplaySessionActor.DISPATCHER + "-";
+    private static final String WARM_UP_THREAD = PilotWarmUp.SYSTEM_NAME + "-";
+
+    private final PrintStream console;
+
+    private PilotConsole(PrintStream console) {
+        super(new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (!isDropped()) {
+                    console.write(b);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if (!isDropped()) {
+                    console.write(b, off, len);
+                }
+            }
+        }, true);
+        this.console = console;
+    }
+
+    /**
+     * puts the pilot console in front of System.out, unless it is there already
+     */
+    public static synchronized void install() {
+        if (!(System.out instanceof PilotConsole)) {
+            System.setOut(new PilotConsole(System.out));
+        }
+    }
+
+    private static boolean isDropped() {
+        String thread = Thread.currentThread().getName();
+        return thread.contains(REPLAY_THREAD) || thread.startsWith(WARM_UP_THREAD);
+    }
+
+    @Override
+    public void print(String s) {
+        if (!isDropped()) {
+            super.print(s);
+        }
+    }
+
+    @Override
+    public void print(Object obj) {
+        if (!isDropped()) {
+            super.print(obj);
+        }
+    }
+
+    @Override
+    public void println() {
+        if (!isDropped()) {
+            super.println();
+        }
+    }
+
+    @Override
+    public void println(String x) {
+        if (!isDropped()) {
+            super.println(x);
+        }
+    }
+
+    @Override
+    public void println(Object x) {
+        if (!isDropped()) {
+            super.println(x);
+        }
+    }
+
+    @Override
+    public PrintStream format(String format, Object... args) {
+        return isDropped() ? this : super.format(format, args);
+    }
+
+    @Override
+    public PrintStream format(Locale l, String format, Object... args) {
+        return isDropped() ? this : super.format(l, format, args);
+    }
+
+    @Override
+    public void flush() {
+        console.flush();
+    }
+}
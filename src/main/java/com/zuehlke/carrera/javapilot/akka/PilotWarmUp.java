@@ -0,0 +1,205 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.io.EndOfStreamException;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
+import com.zuehlke.carrera.javapilot.services.PilotToRaceTrackConnector;
+import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.RaceStopMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Gets the message path and the strategy compiled before the first real race.
+ *
+ * Feeds the most recently recorded races through a throw-away JavaPilotActor with its own instance of the strategy,
+ * in a separate actor system, event by event, until a pass over the races hardly triggers any more JIT compilation.
+ * The copy neither records nor keeps a black box, its strategy's snapshots stay in memory, it doesn't count into the
+ * metrics or the startup report, and the PilotConsole drops its console output.
+ *
+ * Logs the warm-up time and compares the latencies of the first pass, which is what a cold pilot sees in its first
+ * laps, with those of the last one.
+ */
+public class PilotWarmUp {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PilotWarmUp.class);
+
+    static final String SYSTEM_NAME = "warmup";
+    private static final int MAX_PASSES = 20;
+    private static final long MAX_DURATION_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    private static final long SETTLED_COMPILATION_MILLIS = 20; // less compilation than that per pass: done
+    private static final long ANSWER_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String dataDirectory;
+    private final String strategy;
+    private final int numberOfRaces;
+
+    private final AtomicLong answers = new AtomicLong();
+
+    /**
+     * @param dataDirectory where the recorded races are
+     * @param strategy class name of the strategy to warm up, as in javapilot.strategy
+     * @param numberOfRaces how many of the most recent races to use
+     */
+    public PilotWarmUp(String dataDirectory, String strategy, int numberOfRaces) {
+        this.dataDirectory = dataDirectory;
+        this.strategy = strategy;
+        this.numberOfRaces = numberOfRaces;
+    }
+
+    public void run() {
+        List<List<Object>> races = loadRaces();
+        if (races.isEmpty()) {
+            LOGGER.info("No recorded races in {}, skipping the warm-up.", dataDirectory);
+            return;
+        }
+
+        ActorSystem system = ActorSystem.create(SYSTEM_NAME);
+        try {
+            ActorRef pilot = startPilot(system);
+            CompilationMXBean compiler = ManagementFactory.getCompilationMXBean();
+            boolean compilationMonitored = compiler != null && compiler.isCompilationTimeMonitoringSupported();
+
+            long start = System.currentTimeMillis();
+            long[] firstPass = null;
+            long[] lastPass = null;
+            int passes = 0;
+            while (passes < MAX_PASSES && System.currentTimeMillis() - start < MAX_DURATION_MILLIS) {
+                long compiledBefore = compilationMonitored ? compiler.getTotalCompilationTime() : 0;
+                lastPass = pass(pilot, races);
+                if (lastPass == null) {
+                    LOGGER.warn("The warm-up pilot stopped answering, giving up.");
+                    return;
+                }
+                if (firstPass == null) {
+                    firstPass = lastPass;
+                }
+                passes++;
+                if (compilationMonitored
+                        && compiler.getTotalCompilationTime() - compiledBefore < SETTLED_COMPILATION_MILLIS) {
+                    break;
+                }
+            }
+            LOGGER.info("Warm-up with {} races took {} ms in {} passes.", races.size(),
+                    System.currentTimeMillis() - start, passes);
+            LOGGER.info("Latency from sensor event to power control, first pass: {}", describe(firstPass));
+            LOGGER.info("Latency from sensor event to power control, last pass:  {}", describe(lastPass));
+        } finally {
+            system.shutdown();
+            system.awaitTermination();
+            PilotMetrics.get().unregisterMailboxes(SYSTEM_NAME);
+        }
+    }
+
+    private ActorRef startPilot(ActorSystem system) {
+        PilotProperties properties = new PilotProperties();
+        properties.setName(SYSTEM_NAME);
+        properties.setAccessCode("");
+        properties.setRecording(false);
+        properties.setBlackBoxSeconds(0);
+        properties.setReporting(false);
+        properties.setDataDirectory(dataDirectory);
+        properties.setStrategy(strategy);
+
+        ActorRef pilot = system.actorOf(JavaPilotActor.props(properties));
+        pilot.tell(new PilotToRaceTrackConnector(null) {
+            @Override
+            public void send(PowerControl powerControl) {
+                answers.incrementAndGet();
+            }
+        }, ActorRef.noSender());
+        return pilot;
+    }
+
+    /**
+     * feeds all races once, waiting for the answer to every sensor event and penalty
+     * @return the latencies of the sensor events in ns, null if the pilot failed to answer
+     */
+    private long[] pass(ActorRef pilot, List<List<Object>> races) {
+        List<Long> latencies = new ArrayList<>();
+        for (List<Object> race : races) {
+            for (Object message : race) {
+                long expected = answers.get();
+                if (message instanceof SensorEvent || message instanceof PenaltyMessage) {
+                    expected++;
+                }
+                long sent = System.nanoTime();
+                pilot.tell(message, ActorRef.noSender());
+                while (answers.get() < expected) {
+                    if (System.nanoTime() - sent > ANSWER_TIMEOUT_NANOS) {
+                        return null;
+                    }
+                    Thread.yield();
+                }
+                if (message instanceof SensorEvent) {
+                    latencies.add(System.nanoTime() - sent);
+                }
+            }
+            pilot.tell(new RaceStopMessage(), ActorRef.noSender());
+        }
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private String describe(long[] latencies) {
+        long[] sorted = Arrays.copyOf(latencies, latencies.length);
+        Arrays.sort(sorted);
+        if (sorted.length == 0) {
+            return "no sensor events";
+        }
+        return String.format("mean=%dus p50=%dus p99=%dus max=%dus",
+                Arrays.stream(sorted).sum() / sorted.length / 1000, sorted[sorted.length / 2] / 1000,
+                sorted[(int) Math.min(sorted.length - 1, Math.floor(0.99 * sorted.length))] / 1000,
+                sorted[sorted.length - 1] / 1000);
+    }
+
+    /**
+     * @return all messages but the power controls of the most recent races
+     */
+    private List<List<Object>> loadRaces() {
+        List<List<Object>> races = new ArrayList<>();
+        File[] raceDirectories = new File(dataDirectory).listFiles(RaceRecorderPlayer::isRaceDirectory);
+        if (raceDirectories == null) {
+            return races;
+        }
+        Arrays.sort(raceDirectories, Comparator.comparingLong(File::lastModified).reversed());
+
+        RaceRecorderPlayer player = new RaceRecorderPlayer(dataDirectory);
+        for (File raceDirectory : raceDirectories) {
+            if (races.size() == numberOfRaces) {
+                break;
+            }
+            List<Object> race = new ArrayList<>();
+            try {
+                Supplier<Object> supplier = player.getSupplier(raceDirectory.getName());
+                while (true) {
+                    Object message = supplier.get();
+                    if (!(message instanceof PowerControl)) {
+                        race.add(message);
+                    }
+                }
+            } catch (EndOfStreamException e) {
+                races.add(race);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Skipping race {} for the warm-up: {}", raceDirectory.getName(), e.getMessage());
+            }
+        }
+        return races;
+    }
+}
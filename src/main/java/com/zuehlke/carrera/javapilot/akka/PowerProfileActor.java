@@ -0,0 +1,47 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.japi.Creator;
+import com.zuehlke.carrera.javapilot.track.PowerProfile;
+import com.zuehlke.carrera.javapilot.track.PowerProfiler;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Computes power profiles in the background and swaps them into the reference the strategy looks them up in.
+ * Each request replaces the profile computed for the one before.
+ */
+public class PowerProfileActor extends UntypedActor {
+
+    private final AtomicReference<PowerProfile> profile;
+    private final PowerProfiler profiler = new PowerProfiler();
+
+    public PowerProfileActor(AtomicReference<PowerProfile> profile) {
+        this.profile = profile;
+    }
+
+    public static Props props(AtomicReference<PowerProfile> profile) {
+        return Props.create(new Creator<PowerProfileActor>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public PowerProfileActor create() throws Exception {
+                return new PowerProfileActor(profile);
+            }
+        });
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+
+        if (message instanceof ComputePowerProfileCommand) {
+            ComputePowerProfileCommand command = (ComputePowerProfileCommand) message;
+            if (command.getModel().isKnown()) {
+                profile.set(profiler.compute(command.getModel(), command.getBasePower(), command.getPenalties()));
+            }
+        } else {
+            unhandled(message);
+        }
+    }
+}
@@ -3,49 +3,94 @@ package com.zuehlke.carrera.javapilot.akka;
 import akka.actor.ActorRef;
 import akka.actor.Props;
 import akka.actor.UntypedActor;
+import com.zuehlke.carrera.javapilot.anomaly.AnomalyEvent;
+import com.zuehlke.carrera.javapilot.anomaly.GripLossEvent;
+import com.zuehlke.carrera.javapilot.signal.VelocityEstimator;
+import com.zuehlke.carrera.javapilot.track.PowerProfile;
+import com.zuehlke.carrera.javapilot.track.TrackKnowledge;
+import com.zuehlke.carrera.javapilot.track.TrackModel;
 import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
 import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
 import com.zuehlke.carrera.relayapi.messages.SensorEvent;
 import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
-import com.zuehlke.carrera.timeseries.FloatingHistory;
 import org.apache.commons.lang.StringUtils;
 
+import scala.Option;
+
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  *  this logic node increases the power level by 10 units per 0.5 second until it receives a penalty
  *  then reduces by ten units.
+ *  Once the track model is known, it drives by the power profile a background actor computes from the model after
+ *  every lap: the power then depends on where the car is, and penalties only reduce it where they happened.
+ *  What it learned goes to the snapshots whenever it changes, so that a restart after a failure goes on where the
+ *  failed instance stopped. What it learned about the track is kept by track id after every lap: a race on a known
+ *  track skips the probing, and takes over the penalties per segment as soon as the track model is found again.
+ *  Penalties are numbered like the segments of the track model, and so are the speed limits they told of: close to
+ *  the limit, the car holds back only in the segment the limit came from. When the model finds the lap anew, with
+ *  segment 0 somewhere else, both are moved to the new numbering, or dropped if the lap is a different one.
  */
 public class PowerUpUntilPenalty extends UntypedActor {
 
     private static final int SAFE_POWER = 100;
     private static final int MAX_POWER = 180; // Max for this phase;
     private static final int DURATION_BETWEEN_INCREASES=5000;
+    private static final double SPEED_LIMIT_MARGIN = 0.95; // of the speed limit, from which on to hold back
 
     private final ActorRef kobayashi;
+    private final AtomicReference<TrackModel> trackModel;
+    private final StrategySnapshots snapshots;
+    private int trackModelLaps = 0;
+    private String trackId;
+    private TrackKnowledge knowledge; // of an earlier race on this track, until the track model is aligned to it
+
+    private final AtomicReference<PowerProfile> powerProfile = new AtomicReference<>(PowerProfile.EMPTY);
+    private final ActorRef profiler;
+    private int[] penalties = new int[0]; // per segment of the track model
+    private double[] speedLimits = new double[0]; // the lowest a penalty told of, per segment like the penalties
+    private int generation; // of the track model the penalties are numbered by
+    private TrackModel penaltiesModel = TrackModel.UNKNOWN; // the latest one of that generation
 
     private double currentPower = 0;
     private long lastIncrease = 0;
 
     private boolean probing = true;
 
-    private FloatingHistory gyrozHistory = new FloatingHistory(8);
+    // the speed between the light barriers
+    private final VelocityEstimator velocity = new VelocityEstimator();
 
     /**
      * @param pilotActor The central pilot actor
+     * @param trackModel where the latest model of the track is published, read it as often as you like
+     * @param snapshots where to keep what the strategy learned, outliving the actor
      * @return the actor props
      */
-    public static Props props( ActorRef pilotActor) {
+    public static Props props( ActorRef pilotActor, AtomicReference<TrackModel> trackModel, StrategySnapshots snapshots) {
         return Props.create(
-                PowerUpUntilPenalty.class, () -> new PowerUpUntilPenalty(pilotActor ));
+                PowerUpUntilPenalty.class, () -> new PowerUpUntilPenalty(pilotActor, trackModel, snapshots )).withMailbox("strategy-mailbox");
     }
 
-    public PowerUpUntilPenalty(ActorRef pilotActor) {
+    public PowerUpUntilPenalty(ActorRef pilotActor, AtomicReference<TrackModel> trackModel, StrategySnapshots snapshots) {
         lastIncrease = System.currentTimeMillis();
         this.kobayashi = pilotActor;
+        this.trackModel = trackModel;
+        this.snapshots = snapshots;
+        this.profiler = getContext().actorOf(PowerProfileActor.props(powerProfile));
     }
 
 
     @Override
     public void onReceive(Object message) throws Exception {
+        try {
+            dispatch(message);
+        } catch (Exception e) {
+            snapshots.failed();
+            throw e;
+        }
+    }
+
+    private void dispatch(Object message) {
 
         if ( message instanceof SensorEvent ) {
             handleSensorEvent((SensorEvent) message);
@@ -56,8 +101,11 @@ public class PowerUpUntilPenalty extends UntypedActor {
         } else if ( message instanceof PenaltyMessage) {
             handlePenaltyMessage ((PenaltyMessage) message);
 
+        } else if ( message instanceof AnomalyEvent) {
+            handleAnomaly((AnomalyEvent) message);
+
         } else if ( message instanceof RaceStartMessage) {
-            handleRaceStart();
+            handleRaceStart((RaceStartMessage) message);
 
         } else {
             unhandled(message);
@@ -65,22 +113,165 @@ public class PowerUpUntilPenalty extends UntypedActor {
     }
 
     private void handleVelocityMessage(VelocityMessage message ) {
-        System.out.printf("Received velocity message: %.2f m/s\n", message.getVelocity());
+        System.out.printf("Received velocity message: %.2f m/s, estimated %.2f m/s\n", message.getVelocity(), velocity.getVelocity());
+        velocity.addMeasurement(message.getTimeStamp(), message.getVelocity());
     }
 
-    private void handleRaceStart() {
+    /**
+     * Starts over, but on a known track from the power a previous race on it ended with, without probing.
+     */
+    private void handleRaceStart(RaceStartMessage message) {
         currentPower = SAFE_POWER;
         lastIncrease = 0;
         probing = true;
-        gyrozHistory = new FloatingHistory(8);
+        trackModelLaps = 0;
+        penalties = new int[0];
+        speedLimits = new double[0];
+        generation = 0;
+        penaltiesModel = TrackModel.UNKNOWN;
+        powerProfile.set(PowerProfile.EMPTY);
+        velocity.reset();
+        trackId = message.getTrackId();
+
+        long start = System.nanoTime();
+        knowledge = trackId == null ? null : snapshots.getTracks().load(trackId);
+        if (knowledge != null) {
+            currentPower = knowledge.getBasePower();
+            probing = false;
+            System.out.printf("Known track %s, loaded in %d us\n", knowledge, (System.nanoTime() - start) / 1000);
+        }
+        snapshot();
     }
 
     private void handlePenaltyMessage(PenaltyMessage message) {
         System.out.printf("Received penalty message: %.2f m/s, allowed %.2f\n", message.getActualSpeed(), message.getSpeedLimit());
+        TrackModel track = currentTrack();
+        limitSpeed(track, message.getSpeedLimit());
+        if (!probing && powerProfile.get().fits(track)) {
+            System.out.printf("Reducing power in segment %d\n", track.getCurrentSegment());
+            penalize(track);
+            return;
+        }
         currentPower = Math.max( 0, currentPower - 10 );
         System.out.printf("Reducing power to %.2f\n", currentPower);
         kobayashi.tell(new PowerAction((int)currentPower), getSelf());
         probing = false;
+        if (track.isKnown()) {
+            requestProfile(track);
+        }
+        snapshot();
+    }
+
+    /**
+     * Losing grip is the last warning before a penalty: where the profile is in use,
+     * it takes power from the segment like a penalty does.
+     */
+    private void handleAnomaly(AnomalyEvent anomaly) {
+        System.out.println("Detected " + anomaly);
+        TrackModel track = currentTrack();
+        if (anomaly instanceof GripLossEvent && !probing && powerProfile.get().fits(track)) {
+            penalize(track);
+        }
+    }
+
+    /**
+     * takes power from the segment the car is in, by a new profile
+     */
+    private void penalize(TrackModel track) {
+        numberBy(track);
+        penalties[track.getCurrentSegment()]++;
+        requestProfile(track);
+        snapshot();
+    }
+
+    /**
+     * keeps the speed limit for the segment the car is in. Without a track model there is no segment to keep it
+     * for, and it is not kept.
+     */
+    private void limitSpeed(TrackModel track, double speedLimit) {
+        if (!track.isKnown()) {
+            return;
+        }
+        numberBy(track);
+        int segment = track.getCurrentSegment();
+        speedLimits[segment] = speedLimits[segment] == 0 ? speedLimit : Math.min(speedLimits[segment], speedLimit);
+    }
+
+    /**
+     * starts the penalties and speed limits over, if they are not numbered like the segments of the track model
+     */
+    private void numberBy(TrackModel track) {
+        if (penalties.length != track.getSegmentCount() || speedLimits.length != track.getSegmentCount()) {
+            penalties = new int[track.getSegmentCount()];
+            speedLimits = new double[track.getSegmentCount()];
+        }
+    }
+
+    /**
+     * @return the latest track model, with the penalties and speed limits numbered like its segments
+     */
+    private TrackModel currentTrack() {
+        TrackModel track = trackModel.get();
+        if (!track.isKnown()) {
+            return track;
+        }
+        if (track.getGeneration() != generation) {
+            if (penalties.length > 0 || speedLimits.length > 0) {
+                TrackKnowledge taken = penaltiesModel.isKnown()
+                        ? new TrackKnowledge(trackId, currentPower, penaltiesModel, penalties, speedLimits) : null;
+                int offset = taken == null ? -1 : taken.align(track);
+                if (offset >= 0) {
+                    penalties = taken.penaltiesFor(offset);
+                    speedLimits = taken.speedLimitsFor(offset);
+                    System.out.printf("Track model found anew, segment 0 was %d\n", offset);
+                } else {
+                    penalties = new int[0];
+                    speedLimits = new double[0];
+                    System.out.println("Track model found anew, a different lap, starting without penalties");
+                }
+            }
+            generation = track.getGeneration();
+            if (!probing) {
+                requestProfile(track);
+            }
+        }
+        penaltiesModel = track;
+        return track;
+    }
+
+    /**
+     * takes over the penalties and speed limits of the earlier race on this track, if its lap is the one of the model
+     */
+    private void alignKnowledge(TrackModel track) {
+        if (knowledge == null) {
+            return;
+        }
+        int offset = knowledge.align(track);
+        if (offset >= 0) {
+            penalties = knowledge.penaltiesFor(offset);
+            speedLimits = knowledge.speedLimitsFor(offset);
+            System.out.printf("Track model matches the known track, segment 0 was %d\n", offset);
+        } else {
+            System.out.println("Track model does not match the known track, starting without penalties");
+        }
+        knowledge = null;
+    }
+
+    /**
+     * keeps what is known about the track for the next race on it
+     */
+    private void remember(TrackModel track) {
+        if (trackId != null && track.isKnown()) {
+            snapshots.getTracks().save(new TrackKnowledge(trackId, currentPower, track, penalties, speedLimits));
+        }
+    }
+
+    /**
+     * the new profile shows up in powerProfile a little later
+     */
+    private void requestProfile(TrackModel track) {
+        numberBy(track);
+        profiler.tell(new ComputePowerProfileCommand(track, (int) currentPower, penalties), getSelf());
     }
 
     /**
@@ -91,16 +282,50 @@ public class PowerUpUntilPenalty extends UntypedActor {
     private void handleSensorEvent(SensorEvent message) {
 
         show (message.getG()[2]);
+        velocity.addAcceleration(message.getTimeStamp(), message.getA());
+
+        TrackModel track = currentTrack();
+        if (track.getLaps() != trackModelLaps) {
+            trackModelLaps = track.getLaps();
+            System.out.println("Track model: " + track);
+            if (!probing && track.isKnown()) {
+                alignKnowledge(track);
+                requestProfile(track);
+                remember(track);
+            }
+            snapshot();
+        }
 
         if (probing) {
             if (message.getTimeStamp() > lastIncrease + DURATION_BETWEEN_INCREASES) {
                 increase(2);
                 System.out.printf("After %d ms, increasing power to %.02f\n", lastIncrease, currentPower);
                 lastIncrease = message.getTimeStamp();
+                snapshot();
             }
         }
 
-        kobayashi.tell(new PowerAction((int)currentPower), getSelf());
+        kobayashi.tell(new PowerAction(power(track, message.getTimeStamp())), getSelf());
+    }
+
+    /**
+     * a lookup in the power profile, if there is one for the track model. Close to the speed limit of the segment
+     * the car is in, no more than the safe power, whatever the profile says.
+     */
+    private int power(TrackModel track, long timestamp) {
+        PowerProfile profile = powerProfile.get();
+        int power;
+        if (probing || !profile.fits(track)) {
+            power = (int) currentPower;
+        } else {
+            power = profile.power(track.getCurrentSegment(), timestamp - track.getCurrentSegmentStart());
+        }
+        double speedLimit = track.isKnown() && speedLimits.length == track.getSegmentCount()
+                ? speedLimits[track.getCurrentSegment()] : 0;
+        if (speedLimit > 0 && velocity.isCalibrated() && velocity.getVelocity() > SPEED_LIMIT_MARGIN * speedLimit) {
+            power = Math.min(power, SAFE_POWER);
+        }
+        return power;
     }
 
     private int increase ( double val ) {
@@ -113,8 +338,57 @@ public class PowerUpUntilPenalty extends UntypedActor {
         System.out.println(StringUtils.repeat(" ", scale) + gyr2);
     }
 
+    private void snapshot() {
+        snapshots.save(new StrategyState(trackId, currentPower, probing, penalties, speedLimits, generation));
+    }
+
+    /**
+     * takes what the failed instance learned, so that the car keeps going at the same power
+     */
+    private void restore(StrategyState state) {
+        trackId = state.getTrackId();
+        currentPower = state.getPower();
+        probing = state.isProbing();
+        lastIncrease = 0;
+        if (state.getPenalties() != null) {
+            penalties = state.getPenalties().clone();
+        }
+        if (state.getSpeedLimits() != null) {
+            speedLimits = state.getSpeedLimits().clone();
+        }
+        generation = state.getGeneration();
+        if (penalties.length == 0 && trackId != null) {
+            knowledge = snapshots.getTracks().load(trackId);
+        }
+        TrackModel track = currentTrack();
+        trackModelLaps = track.getLaps();
+        if (!probing && track.isKnown()) {
+            requestProfile(track);
+        }
+    }
+
+    @Override
+    public void preRestart(Throwable reason, Option<Object> message) throws Exception {
+        snapshot();
+        super.preRestart(reason, message);
+    }
+
+    @Override
+    public void postRestart(Throwable reason) throws Exception {
+        super.postRestart(reason);
+        StrategyState state = snapshots.latest();
+        if (state != null) {
+            restore(state);
+        }
+        long nanos = snapshots.recovered();
+        System.out.printf("Strategy restarted after %s, recovered in %d us\n", reason, nanos / 1000);
+    }
+
     @Override
     public void postStop () {
+        if (!probing && knowledge == null) {
+            remember(currentTrack());
+        }
         System.out.println("Strategy actor stopped.");
     }
 
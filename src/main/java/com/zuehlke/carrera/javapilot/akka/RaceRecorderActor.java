@@ -2,10 +2,13 @@ package com.zuehlke.carrera.javapilot.akka;
 
 import akka.actor.*;
 import akka.japi.Creator;
+import com.zuehlke.carrera.javapilot.anomaly.AnomalyEvent;
 import com.zuehlke.carrera.javapilot.io.*;
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
 import com.zuehlke.carrera.relayapi.messages.*;
 import scala.concurrent.duration.Duration;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
@@ -13,26 +16,47 @@ import java.util.function.Supplier;
 public class RaceRecorderActor extends UntypedActor {
 
     public static final String DATA_DIRECTORY = "data";
-    public static final int FREQUENCY = 1; // ms between two reads
+    public static final int FREQUENCY = 1; // ms between two reads, at least one tick of the scheduler in fact
 
-    private final RaceRecorderPlayer recorder = new RaceRecorderPlayer(DATA_DIRECTORY);
+    private final RaceRecorderPlayer recorder;
+    private final PilotMetrics.Pilot metrics;
     private ActorRef pilot;
     private boolean replaying = false;
     private Supplier<Object> supplier;
     private Cancellable schedule;
+    private long replayStart; // wall-clock time of the first replayed sensor event
+    private long firstEventTime; // its recorded time stamp, -1 before it
+    private long replayLag;
 
-    public RaceRecorderActor(ActorRef pilot) {
+    public RaceRecorderActor(ActorRef pilot, String dataDirectory, PilotMetrics.Pilot metrics) {
         this.pilot = pilot;
+        this.metrics = metrics;
+        this.recorder = new RaceRecorderPlayer(dataDirectory, metrics);
     }
 
 
     public static Props props ( ActorRef pilot ) {
+        return props ( pilot, DATA_DIRECTORY );
+    }
+
+    /**
+     * @param dataDirectory where to record to and replay from
+     */
+    public static Props props ( ActorRef pilot, String dataDirectory ) {
+        return props ( pilot, dataDirectory, null );
+    }
+
+    /**
+     * @param dataDirectory where to record to and replay from
+     * @param metrics of the pilot, to count what is recorded and replayed, null to count nothing
+     */
+    public static Props props ( ActorRef pilot, String dataDirectory, PilotMetrics.Pilot metrics ) {
         return Props.create(new Creator<RaceRecorderActor>() {
             private static final long serialVersionUID = 1L;
 
             @Override
             public RaceRecorderActor create() throws Exception {
-                return new RaceRecorderActor( pilot );
+                return new RaceRecorderActor( pilot, dataDirectory, metrics );
             }
         });
     }
@@ -61,6 +85,10 @@ public class RaceRecorderActor extends UntypedActor {
             recorder.record((PenaltyMessage) message, System.currentTimeMillis() );
         } else if ( message instanceof PowerControl) {
             recorder.record((PowerControl) message);
+        } else if ( message instanceof RoundTimeMessage) {
+            recorder.record((RoundTimeMessage) message);
+        } else if ( message instanceof AnomalyEvent) {
+            recorder.record((AnomalyEvent) message);
         } else if ( message instanceof StartReplayCommand) {
             handleReplay(((StartReplayCommand)message).getTag());
         } else {
@@ -72,12 +100,18 @@ public class RaceRecorderActor extends UntypedActor {
         recorder.close();
         replaying = false;
         schedule.cancel();
-        getSelf().tell (PoisonPill.getInstance(), getSelf());
+        getContext().stop(getSelf());
     }
 
     private void handleNextMessage() {
         try {
             Object nextMessage = supplier.get();
+            if (nextMessage instanceof SensorEvent) {
+                replayLag = lagOf((SensorEvent) nextMessage);
+            }
+            if (metrics != null) {
+                metrics.replayed(replayLag);
+            }
             if ( nextMessage instanceof PowerControl) {
                 return;
             }
@@ -95,9 +129,37 @@ public class RaceRecorderActor extends UntypedActor {
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        firstEventTime = -1;
+        replayLag = 0;
         schedulePlay(FREQUENCY);
     }
 
+    /**
+     * @return how far the replay is behind the race as it was recorded, in ms: the wall-clock time since the first
+     * sensor event was replayed minus the recorded time between the two events. Negative, if it runs ahead.
+     */
+    private long lagOf(SensorEvent event) {
+        long now = System.currentTimeMillis();
+        if (firstEventTime < 0) {
+            firstEventTime = event.getTimeStamp();
+            replayStart = now;
+        }
+        return (now - replayStart) - (event.getTimeStamp() - firstEventTime);
+    }
+
+    /**
+     * a replay stopped from outside, by stopping the actor, releases its files, too
+     */
+    @Override
+    public void postStop() throws IOException {
+        if (schedule != null) {
+            schedule.cancel();
+        }
+        if (supplier instanceof Closeable) {
+            ((Closeable) supplier).close();
+        }
+    }
+
     protected void schedulePlay(int millies) {
         schedule =
         getContext().system().scheduler().schedule(
@@ -0,0 +1,119 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.OneForOneStrategy;
+import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
+import akka.actor.Terminated;
+import akka.actor.UntypedActor;
+import akka.japi.Creator;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
+import com.zuehlke.carrera.javapilot.io.StopReplayCommand;
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.duration.Duration;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs the replays of a pilot, each in a ReplaySessionActor of its own, up to MAX_RUNNING at a time. Sessions are
+ * listed in the pilot's ReplaySessions. A session that fails is stopped and marked as failed, the others and the
+ * live pilot go on. What the strategies of the sessions print is dropped by the PilotConsole.
+ */
+public class ReplayManagerActor extends UntypedActor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayManagerActor.class);
+
+    public static final int MAX_RUNNING = 8;
+
+    private static final SupervisorStrategy supervisorStrategy = new OneForOneStrategy(-1,
+            Duration.Inf(), (throwable) -> SupervisorStrategy.stop());
+
+    private final String dataDirectory;
+    private final Class<?> strategyClass;
+    private final ReplaySessions sessions;
+    private final PilotMetrics.Pilot metrics; // null, if the pilot is not reporting
+    private final Map<ActorRef, ReplaySession> running = new HashMap<>();
+
+    /**
+     * @param dataDirectory where the recorded races are
+     * @param strategyClass of the strategy to replay the races with
+     * @param metrics of the pilot, counting the replayed events of all sessions, null for none
+     */
+    public ReplayManagerActor(String dataDirectory, Class<?> strategyClass, ReplaySessions sessions,
+                              PilotMetrics.Pilot metrics) {
+        this.dataDirectory = dataDirectory;
+        this.strategyClass = strategyClass;
+        this.sessions = sessions;
+        this.metrics = metrics;
+    }
+
+    public static Props props(String dataDirectory, Class<?> strategyClass, ReplaySessions sessions) {
+        return props(dataDirectory, strategyClass, sessions, null);
+    }
+
+    public static Props props(String dataDirectory, Class<?> strategyClass, ReplaySessions sessions,
+                              PilotMetrics.Pilot metrics) {
+        return Props.create(new Creator<ReplayManagerActor>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public ReplayManagerActor create() throws Exception {
+                return new ReplayManagerActor(dataDirectory, strategyClass, sessions, metrics);
+            }
+        });
+    }
+
+    @Override
+    public SupervisorStrategy supervisorStrategy() {
+        return supervisorStrategy;
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+
+        if (message instanceof StartReplayCommand) {
+            handleStart((StartReplayCommand) message);
+
+        } else if (message instanceof StopReplayCommand) {
+            StopReplayCommand command = (StopReplayCommand) message;
+            running.forEach((actor, session) -> {
+                if (command.matches(session.getId(), session.getTag())) {
+                    actor.tell(command, getSelf());
+                }
+            });
+
+        } else if (message instanceof Terminated) {
+            ReplaySession session = running.remove(((Terminated) message).getActor());
+            if (session != null && session.isRunning()) {
+                session.finish(ReplaySession.State.FAILED, "");
+            }
+
+        } else {
+            unhandled(message);
+        }
+    }
+
+    private void handleStart(StartReplayCommand command) {
+        ReplaySession session = new ReplaySession(command.getSessionId(), command.getTag());
+        sessions.add(session);
+        if (!RaceRecorderPlayer.isRaceDirectory(new File(dataDirectory, command.getTag()))) {
+            LOGGER.warn("No race {} in {} to replay", command.getTag(), dataDirectory);
+            session.finish(ReplaySession.State.FAILED, "");
+            return;
+        }
+        if (running.size() >= MAX_RUNNING) {
+            LOGGER.warn("Already {} replays running, not starting {}", running.size(), session.getId());
+            session.finish(ReplaySession.State.FAILED, "");
+            return;
+        }
+        ActorRef actor = getContext().actorOf(ReplaySessionActor.props(session, dataDirectory, strategyClass, metrics));
+        getContext().watch(actor);
+        running.put(actor, session);
+        LOGGER.info("Replay session {} started, {} running", session.getId(), running.size());
+    }
+}
@@ -0,0 +1,124 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+/**
+ * State and results of one replay session, as the ReplaySessionActor counts them. Written by the session actor
+ * only, read by anyone, like the rest api.
+ */
+public class ReplaySession {
+
+    public enum State { RUNNING, FINISHED, STOPPED, FAILED }
+
+    private final String id;
+    private final String tag;
+    private final long startedAt = System.currentTimeMillis();
+
+    private volatile State state = State.RUNNING;
+    private volatile long finishedAt;
+    private volatile long sensorEvents;
+    private volatile long penalties;
+    private volatile long anomalies;
+    private volatile long rounds;
+    private volatile long powerControls;
+    private volatile long powerSum;
+    private volatile int maxPower;
+    private volatile String trackModel = "";
+
+    public ReplaySession(String id, String tag) {
+        this.id = id;
+        this.tag = tag;
+    }
+
+    void sensorEvent() {
+        sensorEvents++;
+    }
+
+    void penalty() {
+        penalties++;
+    }
+
+    void anomaly() {
+        anomalies++;
+    }
+
+    void round() {
+        rounds++;
+    }
+
+    void power(int value) {
+        powerControls++;
+        powerSum += value;
+        maxPower = Math.max(maxPower, value);
+    }
+
+    void finish(State state, String trackModel) {
+        this.trackModel = trackModel;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = state;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return 0 while running
+     */
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getSensorEvents() {
+        return sensorEvents;
+    }
+
+    public long getPenalties() {
+        return penalties;
+    }
+
+    public long getAnomalies() {
+        return anomalies;
+    }
+
+    public long getRounds() {
+        return rounds;
+    }
+
+    /**
+     * @return the power controls the session's strategy decided on
+     */
+    public long getPowerControls() {
+        return powerControls;
+    }
+
+    public double getMeanPower() {
+        long count = powerControls;
+        return count == 0 ? 0 : (double) powerSum / count;
+    }
+
+    public int getMaxPower() {
+        return maxPower;
+    }
+
+    /**
+     * @return the track model the session's strategy ended with, empty while running
+     */
+    public String getTrackModel() {
+        return trackModel;
+    }
+}
@@ -0,0 +1,162 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.OneForOneStrategy;
+import akka.actor.PoisonPill;
+import akka.actor.Props;
+import akka.actor.SupervisorStrategy;
+import akka.actor.Terminated;
+import akka.actor.UntypedActor;
+import akka.japi.Creator;
+import com.zuehlke.carrera.javapilot.anomaly.AnomalyEvent;
+import com.zuehlke.carrera.javapilot.anomaly.SensorAnomalyDetector;
+import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
+import com.zuehlke.carrera.javapilot.io.StopReplayCommand;
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
+import com.zuehlke.carrera.javapilot.track.TrackModel;
+import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.RoundTimeMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import scala.concurrent.duration.Duration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Replays one recorded race into a strategy of its own, next to the live pilot and other sessions.
+ *
+ * The session takes the place of the pilot actor for its children: a RaceRecorderActor playing the race, a
+ * TrackModelActor, its own anomaly detector and a new instance of the pilot's strategy class, with snapshots in
+ * memory only. The strategy's power actions end up in the ReplaySession's results instead of going to the relay.
+ * The children have plain mailboxes, so they don't take over the mailbox gauges of the live pilot. The strategy runs
+ * on the threads of the replay dispatcher, where the PilotConsole drops what it prints, and its recoveries stay out
+ * of the pilot's metrics like everything else of in-memory snapshots. The player counts the replayed events and the
+ * lag into the pilot's metrics.
+ *
+ * At the end of the race, the session lets the strategy answer what it has got and then stops itself, and with it
+ * all of its children, which releases the files of the race. A StopReplayCommand or a failure of the player stops
+ * it right away.
+ */
+public class ReplaySessionActor extends UntypedActor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplaySessionActor.class);
+
+    static final String MAILBOX = "akka.actor.default-mailbox";
+    /** configured in application.conf */
+    static final String DISPATCHER = "replay-dispatcher";
+
+    private final ReplaySession session;
+    private final AtomicReference<TrackModel> trackModel = new AtomicReference<>(TrackModel.UNKNOWN);
+    private final SensorAnomalyDetector anomalies = new SensorAnomalyDetector();
+    private final ActorRef trackModelBuilder;
+    private final ActorRef strategy;
+    private final ActorRef player;
+    private final SupervisorStrategy supervisorStrategy;
+    private boolean ended; // the race, that is, waiting for the strategy to stop
+
+    /**
+     * @param metrics of the pilot, where the player counts the replayed events, null for none
+     */
+    public ReplaySessionActor(ReplaySession session, String dataDirectory, Class<?> strategyClass,
+                              PilotMetrics.Pilot metrics) {
+        this.session = session;
+        trackModelBuilder = getContext().actorOf(TrackModelActor.props(trackModel).withMailbox(MAILBOX));
+        strategy = getContext().actorOf(Props.create(strategyClass, getSelf(), trackModel,
+                StrategySnapshots.inMemory()).withMailbox(MAILBOX).withDispatcher(DISPATCHER));
+        player = getContext().actorOf(RaceRecorderActor.props(getSelf(), dataDirectory, metrics));
+        getContext().watch(player);
+        getContext().watch(strategy);
+
+        // the player stops on its first failure, the strategy and the track model are restarted like the pilot's
+        supervisorStrategy = new OneForOneStrategy(10, Duration.create(1, TimeUnit.MINUTES),
+                (throwable) -> getSender().equals(player) ? SupervisorStrategy.stop() : SupervisorStrategy.restart());
+        player.tell(new StartReplayCommand(session.getTag()), getSelf());
+    }
+
+    public static Props props(ReplaySession session, String dataDirectory, Class<?> strategyClass,
+                              PilotMetrics.Pilot metrics) {
+        return Props.create(new Creator<ReplaySessionActor>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public ReplaySessionActor create() throws Exception {
+                return new ReplaySessionActor(session, dataDirectory, strategyClass, metrics);
+            }
+        });
+    }
+
+    @Override
+    public SupervisorStrategy supervisorStrategy() {
+        return supervisorStrategy;
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+
+        if (message instanceof SensorEvent) {
+            session.sensorEvent();
+            SensorEvent event = (SensorEvent) message;
+            for (AnomalyEvent anomaly = anomalies.add(event); anomaly != null; anomaly = anomalies.next()) {
+                session.anomaly();
+                strategy.tell(anomaly, getSelf());
+            }
+            trackModelBuilder.tell(message, getSelf());
+            strategy.tell(message, getSelf());
+
+        } else if (message instanceof VelocityMessage) {
+            strategy.tell(message, getSelf());
+
+        } else if (message instanceof PenaltyMessage) {
+            session.penalty();
+            strategy.tell(message, getSelf());
+
+        } else if (message instanceof RoundTimeMessage) {
+            session.round();
+            trackModelBuilder.tell(message, getSelf());
+
+        } else if (message instanceof RaceStartMessage) {
+            anomalies.reset();
+            trackModelBuilder.tell(message, getSelf());
+            strategy.tell(message, getSelf());
+
+        } else if (message instanceof PowerAction) {
+            session.power(((PowerAction) message).getPowerValue());
+
+        } else if (message instanceof StopReplayCommand) {
+            if (getSender().equals(player)) {
+                // the strategy's power actions are all here once it has stopped
+                ended = true;
+                strategy.tell(PoisonPill.getInstance(), getSelf());
+            } else {
+                finish(ReplaySession.State.STOPPED);
+            }
+
+        } else if (message instanceof Terminated) {
+            if (ended && ((Terminated) message).getActor().equals(strategy)) {
+                finish(ReplaySession.State.FINISHED);
+            } else if (!ended) {
+                LOGGER.warn("Replay session {} failed", session.getId());
+                finish(ReplaySession.State.FAILED);
+            }
+
+        } else {
+            unhandled(message);
+        }
+    }
+
+    private void finish(ReplaySession.State state) {
+        if (!session.isRunning()) {
+            return;
+        }
+        session.finish(state, trackModel.get().toString());
+        LOGGER.info("Replay session {} {}: {} sensor events, mean power {}", session.getId(),
+                state.name().toLowerCase(), session.getSensorEvents(), Math.round(session.getMeanPower()));
+        getContext().unwatch(player);
+        getContext().unwatch(strategy);
+        getContext().stop(getSelf());
+    }
+}
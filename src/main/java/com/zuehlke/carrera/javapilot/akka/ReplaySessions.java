@@ -0,0 +1,45 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The replay sessions of a pilot, running and finished, in the order they were started. Shared between the
+ * ReplayManagerActor, which adds them, and whoever wants to know about them. Of the finished sessions, the
+ * MAX_FINISHED most recent ones are kept.
+ */
+public class ReplaySessions {
+
+    public static final int MAX_FINISHED = 20;
+
+    private final Map<String, ReplaySession> sessions = new LinkedHashMap<>();
+
+    public synchronized void add(ReplaySession session) {
+        sessions.put(session.getId(), session);
+        long finished = sessions.values().stream().filter((s) -> !s.isRunning()).count();
+        for (Iterator<ReplaySession> i = sessions.values().iterator(); finished > MAX_FINISHED && i.hasNext(); ) {
+            if (!i.next().isRunning()) {
+                i.remove();
+                finished--;
+            }
+        }
+    }
+
+    /**
+     * @return the session, null if there is none of this id
+     */
+    public synchronized ReplaySession get(String id) {
+        return sessions.get(id);
+    }
+
+    public synchronized List<ReplaySession> list() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    public synchronized long running() {
+        return sessions.values().stream().filter(ReplaySession::isRunning).count();
+    }
+}
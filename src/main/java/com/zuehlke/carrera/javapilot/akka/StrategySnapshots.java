@@ -0,0 +1,160 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
+import com.zuehlke.carrera.javapilot.track.TrackKnowledgeStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the latest StrategyState of a pilot's strategy, so that it survives the strategy actor: in memory for a
+ * restart after a failure or a new race, and on disk for the next start of the pilot.
+ *
+ * Every saved state replaces the one in memory. At most every DISK_INTERVAL_MILLIS, a state is also written to
+ * the data directory, on a background thread. Also measures the time from a failure of the strategy until its
+ * restarted instance has restored the state.
+ *
+ * What the strategy learned about each track it raced on is kept apart, in the pilot's TrackKnowledgeStore. Snapshots
+ * made inMemory() keep both in memory only, for strategies that must leave no trace, like the ones of replays. Their
+ * recoveries are logged, but kept out of the pilot's metrics.
+ */
+public class StrategySnapshots {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StrategySnapshots.class);
+
+    public static final String FILE_SUFFIX = "-strategy.json";
+    public static final String TRACKS_SUFFIX = "-tracks.bin";
+    public static final long DISK_INTERVAL_MILLIS = 10000;
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "strategy-snapshot-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File file;
+    private final TrackKnowledgeStore tracks;
+    private final PilotMetrics.Pilot metrics;
+    private final AtomicReference<StrategyState> latest = new AtomicReference<>();
+    private volatile long lastWritten;
+    private volatile long failedAt = -1;
+
+    /**
+     * @param directory where to keep the state on disk. A state found there is the latest one to begin with
+     * @param pilot the name of the pilot, pilots sharing a directory keep their own state
+     */
+    public StrategySnapshots(String directory, String pilot) {
+        this.file = new File(directory, pilot + FILE_SUFFIX);
+        this.tracks = new TrackKnowledgeStore(new File(directory, pilot + TRACKS_SUFFIX));
+        this.metrics = PilotMetrics.get().pilot(pilot);
+        latest.set(read());
+    }
+
+    private StrategySnapshots() {
+        this.file = null;
+        this.tracks = new TrackKnowledgeStore();
+        this.metrics = null;
+    }
+
+    /**
+     * @return snapshots that start empty and never go to disk
+     */
+    public static StrategySnapshots inMemory() {
+        return new StrategySnapshots();
+    }
+
+    public void save(StrategyState state) {
+        latest.set(state);
+        long now = System.currentTimeMillis();
+        if (file != null && now - lastWritten >= DISK_INTERVAL_MILLIS) {
+            lastWritten = now;
+            writer.execute(() -> write(state));
+        }
+    }
+
+    /**
+     * @return the most recently saved state, null if there is none
+     */
+    public StrategyState latest() {
+        return latest.get();
+    }
+
+    /**
+     * @return the knowledge by track, opened on first use
+     */
+    public TrackKnowledgeStore getTracks() {
+        return tracks;
+    }
+
+    /**
+     * writes the latest state to disk, in the background
+     */
+    public void flush() {
+        StrategyState state = latest.get();
+        if (file != null && state != null) {
+            lastWritten = System.currentTimeMillis();
+            writer.execute(() -> write(state));
+        }
+    }
+
+    /**
+     * the strategy failed just now
+     */
+    public void failed() {
+        failedAt = System.nanoTime();
+    }
+
+    /**
+     * the restarted strategy has restored its state
+     * @return the time since the failure in ns, -1 if there was none
+     */
+    public long recovered() {
+        long failure = failedAt;
+        if (failure < 0) {
+            return -1;
+        }
+        failedAt = -1;
+        long nanos = System.nanoTime() - failure;
+        if (metrics != null) {
+            metrics.strategyRecovered(nanos);
+        }
+        LOGGER.info("Strategy recovered {} us after its failure", nanos / 1000);
+        return nanos;
+    }
+
+    private StrategyState read() {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            return new ObjectMapper().readValue(file, StrategyState.class);
+        } catch (IOException e) {
+            LOGGER.warn("Ignoring the strategy state in {}: {}", file.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void write(StrategyState state) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOGGER.error("Could not create {}", directory.getPath());
+            return;
+        }
+        File temporary = new File(directory, file.getName() + ".tmp");
+        try {
+            new ObjectMapper().writeValue(temporary, state);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Could not write the strategy state to {}: {}", file.getPath(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+/**
+ * What the strategy has learned, to carry over to a restarted strategy or the next race on the same track.
+ * Saved as json by the StrategySnapshots.
+ */
+public class StrategyState {
+
+    private String trackId;
+    private double power;
+    private boolean probing;
+    private int[] penalties;
+    private double[] speedLimits;
+    private int generation;
+    private long savedAt;
+
+    public StrategyState() {
+    }
+
+    /**
+     * @param power the base power the strategy found
+     * @param probing true, if it is still looking for the base power
+     * @param penalties per segment of the track model of this race
+     * @param speedLimits the lowest speed limit penalties told of, per segment like the penalties, 0 where none
+     * @param generation of the track model the penalties are numbered by
+     */
+    public StrategyState(String trackId, double power, boolean probing, int[] penalties, double[] speedLimits,
+                         int generation) {
+        this.trackId = trackId;
+        this.power = power;
+        this.probing = probing;
+        this.penalties = penalties.clone();
+        this.speedLimits = speedLimits.clone();
+        this.generation = generation;
+        this.savedAt = System.currentTimeMillis();
+    }
+
+    public String getTrackId() {
+        return trackId;
+    }
+
+    public void setTrackId(String trackId) {
+        this.trackId = trackId;
+    }
+
+    public double getPower() {
+        return power;
+    }
+
+    public void setPower(double power) {
+        this.power = power;
+    }
+
+    public boolean isProbing() {
+        return probing;
+    }
+
+    public void setProbing(boolean probing) {
+        this.probing = probing;
+    }
+
+    public int[] getPenalties() {
+        return penalties;
+    }
+
+    public void setPenalties(int[] penalties) {
+        this.penalties = penalties;
+    }
+
+    public double[] getSpeedLimits() {
+        return speedLimits;
+    }
+
+    public void setSpeedLimits(double[] speedLimits) {
+        this.speedLimits = speedLimits;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(int generation) {
+        this.generation = generation;
+    }
+
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    public void setSavedAt(long savedAt) {
+        this.savedAt = savedAt;
+    }
+}
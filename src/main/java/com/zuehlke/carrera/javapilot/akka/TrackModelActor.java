@@ -0,0 +1,53 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.japi.Creator;
+import com.zuehlke.carrera.javapilot.track.TrackModel;
+import com.zuehlke.carrera.javapilot.track.TrackModelBuilder;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.RoundTimeMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds the track model next to the strategy, from the sensor events and round times the pilot passes on.
+ * The strategy reads the latest model from the shared reference, without waiting for this actor.
+ */
+public class TrackModelActor extends UntypedActor {
+
+    private final TrackModelBuilder builder;
+
+    public TrackModelActor(AtomicReference<TrackModel> trackModel) {
+        this.builder = new TrackModelBuilder(trackModel);
+    }
+
+    public static Props props(AtomicReference<TrackModel> trackModel) {
+        return Props.create(new Creator<TrackModelActor>() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public TrackModelActor create() throws Exception {
+                return new TrackModelActor(trackModel);
+            }
+        }).withMailbox("track-mailbox");
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+
+        if (message instanceof SensorEvent) {
+            builder.add((SensorEvent) message);
+
+        } else if (message instanceof RoundTimeMessage) {
+            builder.add((RoundTimeMessage) message);
+
+        } else if (message instanceof RaceStartMessage) {
+            builder.reset();
+
+        } else {
+            unhandled(message);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+/**
+ * Up to SIZE consecutive rows of one series of one race, with the time range and the minimum, maximum and sum of
+ * every column. Queries skip blocks whose statistics rule out any match, and aggregate blocks that match as a whole
+ * from the statistics alone.
+ */
+class Block {
+
+    static final int SIZE = 4096;
+
+    final int size;
+    final long[] time;
+    final Column[] columns;
+
+    final long firstTime;
+    final long lastTime;
+    final ColumnStats[] stats;
+
+    Block(int size, long[] time, Column[] columns) {
+        this.size = size;
+        this.time = time;
+        this.columns = columns;
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        for (int row = 0; row < size; row++) {
+            first = Math.min(first, time[row]);
+            last = Math.max(last, time[row]);
+        }
+        this.firstTime = first;
+        this.lastTime = last;
+        this.stats = new ColumnStats[columns.length];
+        for (int column = 0; column < columns.length; column++) {
+            ColumnStats columnStats = new ColumnStats();
+            for (int row = 0; row < size; row++) {
+                columnStats.add(columns[column].get(row));
+            }
+            stats[column] = columnStats;
+        }
+    }
+
+    /**
+     * @return false, if no row of this block can match the filter
+     */
+    boolean mayMatch(Filter filter) {
+        if (lastTime < filter.from || firstTime > filter.to) {
+            return false;
+        }
+        for (int i = 0; i < filter.columns.length; i++) {
+            ColumnStats columnStats = stats[filter.columns[i]];
+            if (columnStats.max < filter.min[i] || columnStats.min > filter.max[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true, if all rows of this block match the filter
+     */
+    boolean allMatch(Filter filter) {
+        if (firstTime < filter.from || lastTime > filter.to) {
+            return false;
+        }
+        for (int i = 0; i < filter.columns.length; i++) {
+            ColumnStats columnStats = stats[filter.columns[i]];
+            if (columnStats.min < filter.min[i] || columnStats.max > filter.max[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean matches(Filter filter, int row) {
+        if (time[row] < filter.from || time[row] > filter.to) {
+            return false;
+        }
+        for (int i = 0; i < filter.columns.length; i++) {
+            double value = columns[filter.columns[i]].get(row);
+            if (value < filter.min[i] || value > filter.max[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the conditions of a query on one series, resolved to column indices
+     */
+    static class Filter {
+        final long from;
+        final long to;
+        final int[] columns;
+        final double[] min;
+        final double[] max;
+
+        Filter(RaceQuery query) {
+            Series series = query.getSeries();
+            this.from = query.getFrom() == null ? Long.MIN_VALUE : query.getFrom();
+            this.to = query.getTo() == null ? Long.MAX_VALUE : query.getTo();
+            int n = query.getFilters().size();
+            this.columns = new int[n];
+            this.min = new double[n];
+            this.max = new double[n];
+            for (int i = 0; i < n; i++) {
+                RaceQuery.Range range = query.getFilters().get(i);
+                columns[i] = series.columnIndex(range.getColumn());
+                min[i] = range.getMin() == null ? Double.NEGATIVE_INFINITY : range.getMin();
+                max[i] = range.getMax() == null ? Double.POSITIVE_INFINITY : range.getMax();
+            }
+        }
+    }
+}
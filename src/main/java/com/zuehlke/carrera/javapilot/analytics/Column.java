@@ -0,0 +1,43 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+/**
+ * The values of one column within one block, stored as primitives.
+ */
+abstract class Column {
+
+    abstract double get(int row);
+
+    static Column of(int[] values) {
+        return new IntColumn(values);
+    }
+
+    static Column of(double[] values) {
+        return new DoubleColumn(values);
+    }
+
+    private static final class IntColumn extends Column {
+        private final int[] values;
+
+        IntColumn(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        double get(int row) {
+            return values[row];
+        }
+    }
+
+    private static final class DoubleColumn extends Column {
+        private final double[] values;
+
+        DoubleColumn(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        double get(int row) {
+            return values[row];
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+/**
+ * Count, minimum, maximum, sum and mean of the values of a column. Minimum, maximum and mean are null without values.
+ */
+public class ColumnStats {
+
+    long count;
+    double min = Double.POSITIVE_INFINITY;
+    double max = Double.NEGATIVE_INFINITY;
+    double sum;
+
+    void add(double value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+    }
+
+    /**
+     * @return a new instance that combines both
+     */
+    ColumnStats merge(ColumnStats other) {
+        ColumnStats merged = new ColumnStats();
+        merged.count = count + other.count;
+        merged.min = Math.min(min, other.min);
+        merged.max = Math.max(max, other.max);
+        merged.sum = sum + other.sum;
+        return merged;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public Double getMin() {
+        return count == 0 ? null : min;
+    }
+
+    public Double getMax() {
+        return count == 0 ? null : max;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public Double getMean() {
+        return count == 0 ? null : sum / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d min=%s max=%s mean=%s", count, getMin(), getMax(), getMean());
+    }
+}
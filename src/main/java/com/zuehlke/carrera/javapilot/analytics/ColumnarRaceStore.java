@@ -0,0 +1,180 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Holds the recorded races of a data directory in memory, column by column, for queries across many races.
+ *
+ * Each series of a race is cut into blocks that carry the statistics of their columns. Queries run in parallel over
+ * races and blocks: blocks the statistics rule out are skipped, blocks that match as a whole are aggregated from their
+ * statistics, and only the remaining ones are scanned row by row.
+ */
+public class ColumnarRaceStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ColumnarRaceStore.class);
+
+    private final String dataDirectory;
+    private final Map<String, StoredRace> races = new ConcurrentHashMap<>();
+
+    public ColumnarRaceStore(String dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * loads all races of the data directory not loaded yet, in parallel
+     * @return the number of races loaded
+     */
+    public int load() {
+        File[] raceDirectories = new File(dataDirectory).listFiles(RaceRecorderPlayer::isRaceDirectory);
+        if (raceDirectories == null) {
+            return 0;
+        }
+        RaceRecorderPlayer player = new RaceRecorderPlayer(dataDirectory);
+        long start = System.currentTimeMillis();
+        List<StoredRace> loaded = Arrays.stream(raceDirectories).parallel()
+                .map(File::getName)
+                .filter((tag) -> !races.containsKey(tag))
+                .map((tag) -> {
+                    try {
+                        return StoredRace.load(player, tag);
+                    } catch (IOException | RuntimeException e) {
+                        LOGGER.warn("Skipping race {}: {}", tag, e.getMessage());
+                        return null;
+                    }
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        loaded.forEach((race) -> races.put(race.getTag(), race));
+        LOGGER.info("Loaded {} races from {} in {} ms.", loaded.size(), dataDirectory,
+                System.currentTimeMillis() - start);
+        return loaded.size();
+    }
+
+    /**
+     * @return all loaded races, oldest first
+     */
+    public List<StoredRace> getRaces() {
+        List<StoredRace> sorted = new ArrayList<>(races.values());
+        sorted.sort(Comparator.comparingLong(StoredRace::getStartTime).thenComparing(StoredRace::getTag));
+        return Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * @param query which rows to aggregate
+     * @param column the column of the query's series to aggregate
+     * @return the statistics of the column over the matching rows, per race, oldest race first
+     */
+    public Map<String, ColumnStats> aggregate(RaceQuery query, String column) {
+        Block.Filter filter = new Block.Filter(query);
+        int index = query.getSeries().columnIndex(column);
+        List<StoredRace> selected = select(query);
+        List<ColumnStats> stats = selected.parallelStream()
+                .map((race) -> race.getBlocks(query.getSeries()).parallelStream()
+                        .filter((block) -> block.mayMatch(filter))
+                        .map((block) -> aggregate(block, filter, index))
+                        .reduce(new ColumnStats(), ColumnStats::merge))
+                .collect(Collectors.toList());
+        Map<String, ColumnStats> result = new LinkedHashMap<>();
+        for (int i = 0; i < selected.size(); i++) {
+            result.put(selected.get(i).getTag(), stats.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @param query which rows to select
+     * @param columns the columns of the query's series to return, all of them if none are given
+     * @return the matching rows of every race that has any, oldest race first
+     */
+    public List<RaceSelection> select(RaceQuery query, String... columns) {
+        Block.Filter filter = new Block.Filter(query);
+        List<String> names = columns.length == 0 ? query.getSeries().getColumns() : Arrays.asList(columns);
+        int[] indices = names.stream().mapToInt(query.getSeries()::columnIndex).toArray();
+        return select(query).parallelStream()
+                .map((race) -> select(race, query.getSeries(), filter, names, indices))
+                .filter((selection) -> selection.getRows() > 0)
+                .collect(Collectors.toList());
+    }
+
+    private List<StoredRace> select(RaceQuery query) {
+        return getRaces().stream().filter(query::includes).collect(Collectors.toList());
+    }
+
+    private ColumnStats aggregate(Block block, Block.Filter filter, int column) {
+        if (block.allMatch(filter)) {
+            return block.stats[column];
+        }
+        ColumnStats stats = new ColumnStats();
+        for (int row = 0; row < block.size; row++) {
+            if (block.matches(filter, row)) {
+                stats.add(block.columns[column].get(row));
+            }
+        }
+        return stats;
+    }
+
+    private RaceSelection select(StoredRace race, Series series, Block.Filter filter, List<String> names,
+                                 int[] indices) {
+        // blocks are scanned in parallel, the ordered stream keeps their rows in time order
+        List<Rows> parts = race.getBlocks(series).parallelStream()
+                .filter((block) -> block.mayMatch(filter))
+                .map((block) -> new Rows(block, filter, indices))
+                .collect(Collectors.toList());
+
+        int total = parts.stream().mapToInt((part) -> part.count).sum();
+        long[] time = new long[total];
+        double[][] values = new double[indices.length][total];
+        int at = 0;
+        for (Rows part : parts) {
+            System.arraycopy(part.time, 0, time, at, part.count);
+            for (int column = 0; column < indices.length; column++) {
+                System.arraycopy(part.values[column], 0, values[column], at, part.count);
+            }
+            at += part.count;
+        }
+        RaceSelection selection = new RaceSelection(race, time);
+        for (int column = 0; column < indices.length; column++) {
+            selection.put(names.get(column), values[column]);
+        }
+        return selection;
+    }
+
+    /**
+     * the matching rows of one block
+     */
+    private static class Rows {
+        final long[] time;
+        final double[][] values;
+        int count;
+
+        Rows(Block block, Block.Filter filter, int[] indices) {
+            time = new long[block.size];
+            values = new double[indices.length][block.size];
+            boolean all = block.allMatch(filter);
+            for (int row = 0; row < block.size; row++) {
+                if (all || block.matches(filter, row)) {
+                    time[count] = block.time[row];
+                    for (int column = 0; column < indices.length; column++) {
+                        values[column][count] = block.columns[indices[column]].get(row);
+                    }
+                    count++;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Aligns two sequences with dynamic time warping, restricted to a band around the diagonal (Sakoe-Chiba window).
+ *
+ * Only the cells within the band are computed. Costs are kept for two rows of the band only, the path is kept as
+ * one step byte per cell of the band, so memory grows with length times window instead of length squared.
+ */
+public class DynamicTimeWarping {
+
+    private static final byte START = 0;
+    private static final byte DIAGONAL = 1;
+    private static final byte FROM_A = 2; // a advances, b stays
+    private static final byte FROM_B = 3; // b advances, a stays
+
+    private final double window;
+
+    /**
+     * @param window half width of the band as a fraction of the longer sequence, like 0.1
+     */
+    public DynamicTimeWarping(double window) {
+        this.window = window;
+    }
+
+    /**
+     * @return the alignment of the whole of a with the whole of b
+     */
+    public Alignment align(double[] a, double[] b) {
+        int n = a.length;
+        int m = b.length;
+        int w = Math.max(Math.abs(n - m) / 2 + 2, (int) Math.ceil(window * Math.max(n, m)));
+        int width = 2 * w + 1;
+
+        double[] previous = new double[width];
+        double[] current = new double[width];
+        byte[] steps = new byte[n * width];
+
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(current, Double.POSITIVE_INFINITY);
+            int offset = bandStart(i, n, m, w);
+            int previousOffset = i == 0 ? 0 : bandStart(i - 1, n, m, w);
+            for (int j = Math.max(0, offset); j <= Math.min(m - 1, offset + width - 1); j++) {
+                int k = j - offset;
+                double cost = Math.abs(a[i] - b[j]);
+                if (i == 0 && j == 0) {
+                    current[k] = cost;
+                    steps[i * width + k] = START;
+                    continue;
+                }
+                double best = Double.POSITIVE_INFINITY;
+                byte step = START;
+                if (i > 0) {
+                    double diagonal = cell(previous, j - 1 - previousOffset);
+                    if (diagonal < best) {
+                        best = diagonal;
+                        step = DIAGONAL;
+                    }
+                    double fromA = cell(previous, j - previousOffset);
+                    if (fromA < best) {
+                        best = fromA;
+                        step = FROM_A;
+                    }
+                }
+                double fromB = cell(current, k - 1);
+                if (fromB < best) {
+                    best = fromB;
+                    step = FROM_B;
+                }
+                current[k] = best + cost;
+                steps[i * width + k] = step;
+            }
+            double[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        double distance = cell(previous, m - 1 - bandStart(n - 1, n, m, w));
+
+        // walk back, remembering the last point of b each point of a is matched with
+        int[] toB = new int[n];
+        Arrays.fill(toB, -1);
+        int i = n - 1;
+        int j = m - 1;
+        int length = 0;
+        while (true) {
+            length++;
+            if (toB[i] < 0) {
+                toB[i] = j;
+            }
+            byte step = steps[i * width + j - bandStart(i, n, m, w)];
+            if (step == START) {
+                break;
+            } else if (step == DIAGONAL) {
+                i--;
+                j--;
+            } else if (step == FROM_A) {
+                i--;
+            } else {
+                j--;
+            }
+        }
+        return new Alignment(toB, distance / length);
+    }
+
+    /**
+     * @return the index of b at the left edge of row i's band, may be negative
+     */
+    private static int bandStart(int i, int n, int m, int w) {
+        int center = n == 1 ? 0 : (int) ((long) i * (m - 1) / (n - 1));
+        return center - w;
+    }
+
+    private static double cell(double[] row, int k) {
+        return k < 0 || k >= row.length ? Double.POSITIVE_INFINITY : row[k];
+    }
+
+    public static class Alignment {
+        private final int[] toB;
+        private final double distance;
+
+        Alignment(int[] toB, double distance) {
+            this.toB = toB;
+            this.distance = distance;
+        }
+
+        /**
+         * @return for each point of a, the matching point of b
+         */
+        public int[] getToB() {
+            return toB;
+        }
+
+        /**
+         * @return mean distance of the matched points along the path
+         */
+        public double getDistance() {
+            return distance;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+/**
+ * One lap of a race: the gyro-z signal on an even time grid, from crossing the start line to crossing it again.
+ */
+public class Lap {
+
+    private final String tag;
+    private final int number;
+    private final boolean timed;
+    final long[] time;
+    final double[] gyroZ;
+
+    /**
+     * @param timed true, if the lap was cut at recorded round times, false if it was found in the gyro-z signal
+     */
+    Lap(String tag, int number, boolean timed, long[] time, double[] gyroZ) {
+        this.tag = tag;
+        this.number = number;
+        this.timed = timed;
+        this.time = time;
+        this.gyroZ = gyroZ;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public long getStartTime() {
+        return time[0];
+    }
+
+    public long getDuration() {
+        return time[time.length - 1] - time[0];
+    }
+
+    public int getPoints() {
+        return time.length;
+    }
+}
@@ -0,0 +1,84 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aligns laps by track position and compares them segment by segment.
+ *
+ * The gyro-z signal tells where on the track the car is, the curves in the same order every lap. As its amplitude
+ * grows with the speed, both signals are scaled to their largest value before they are aligned. Batches of comparisons are split up
+ * on a fork-join pool of their own.
+ */
+public class LapComparator {
+
+    private static final double WINDOW = 0.2;
+
+    private final ForkJoinPool pool;
+    private final DynamicTimeWarping warping = new DynamicTimeWarping(WINDOW);
+
+    /**
+     * @param parallelism the number of threads for batches
+     */
+    public LapComparator(int parallelism) {
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    public LapComparison compare(Lap a, Lap b) {
+        DynamicTimeWarping.Alignment alignment = warping.align(normalize(a.gyroZ), normalize(b.gyroZ));
+        return new LapComparison(a, b, alignment);
+    }
+
+    /**
+     * @param pairs the laps to compare, a with b each
+     * @return the comparisons, in the order of the pairs
+     */
+    public List<LapComparison> compareAll(List<Lap[]> pairs) {
+        return pool.invoke(new ComparisonTask(pairs));
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * scales to the largest value, which unlike mean and deviation does not depend on where the car spends its time
+     */
+    static double[] normalize(double[] values) {
+        double largest = 0;
+        for (double value : values) {
+            largest = Math.max(largest, Math.abs(value));
+        }
+        double[] normalized = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            normalized[i] = largest == 0 ? 0 : values[i] / largest;
+        }
+        return normalized;
+    }
+
+    private class ComparisonTask extends RecursiveTask<List<LapComparison>> {
+
+        private final List<Lap[]> pairs;
+
+        ComparisonTask(List<Lap[]> pairs) {
+            this.pairs = pairs;
+        }
+
+        @Override
+        protected List<LapComparison> compute() {
+            List<LapComparison> comparisons = new ArrayList<>(pairs.size());
+            if (pairs.size() == 1) {
+                comparisons.add(compare(pairs.get(0)[0], pairs.get(0)[1]));
+            } else if (pairs.size() > 1) {
+                int half = pairs.size() / 2;
+                ComparisonTask second = new ComparisonTask(pairs.subList(half, pairs.size()));
+                second.fork();
+                comparisons.addAll(new ComparisonTask(pairs.subList(0, half)).compute());
+                comparisons.addAll(second.join());
+            }
+            return comparisons;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Where lap b gains or loses time on lap a: both laps aligned by track position and cut into the curves and
+ * straights of lap a, with the time each lap took for each segment. Positive deltas mean b was slower.
+ *
+ * Segments end where the gyro-z signal changes, as only there the position on the track is known for sure.
+ */
+public class LapComparison {
+
+    private final String tagA;
+    private final int lapA;
+    private final String tagB;
+    private final int lapB;
+    private final long durationA;
+    private final long durationB;
+    private final double distance;
+    private final List<Segment> segments;
+
+    private static final double STRAIGHT_THRESHOLD = 0.15; // fraction of the largest gyro-z value still taken as straight
+    private static final double MIN_SEGMENT = 0.02; // fraction of the lap shorter segments are merged into others
+
+    LapComparison(Lap a, Lap b, DynamicTimeWarping.Alignment alignment) {
+        this.tagA = a.getTag();
+        this.lapA = a.getNumber();
+        this.tagB = b.getTag();
+        this.lapB = b.getNumber();
+        this.durationA = a.getDuration();
+        this.durationB = b.getDuration();
+        this.distance = alignment.getDistance();
+
+        int[] toB = alignment.getToB();
+        int last = a.time.length - 1;
+        List<Segment> segments = new ArrayList<>();
+        long cumulative = 0;
+        double largest = largest(a.gyroZ);
+        int from = 0;
+        for (int to : boundaries(a.gyroZ, largest)) {
+            long timeA = a.time[to] - a.time[from];
+            long timeB = b.time[toB[to]] - b.time[toB[from]];
+            cumulative += timeB - timeA;
+            segments.add(new Segment(segments.size(), kind(a.gyroZ, from, to, largest), (double) from / last,
+                    timeA, timeB, cumulative));
+            from = to;
+        }
+        this.segments = Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * @return the end of every segment, the last one being the end of the lap
+     */
+    private static List<Integer> boundaries(double[] gyroZ, double largest) {
+        int minLength = Math.max(1, (int) (MIN_SEGMENT * gyroZ.length));
+        List<Integer> boundaries = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i < gyroZ.length; i++) {
+            if (direction(gyroZ[i], largest) != direction(gyroZ[i - 1], largest)) {
+                if (i - start >= minLength) {
+                    boundaries.add(i);
+                    start = i;
+                } else if (!boundaries.isEmpty()) {
+                    // too short: belongs to the segment before
+                    boundaries.set(boundaries.size() - 1, i);
+                    start = i;
+                }
+            }
+        }
+        if (boundaries.isEmpty() || gyroZ.length - 1 - start >= minLength) {
+            boundaries.add(gyroZ.length - 1);
+        } else {
+            boundaries.set(boundaries.size() - 1, gyroZ.length - 1);
+        }
+        return boundaries;
+    }
+
+    private static int direction(double gyroZ, double largest) {
+        return Math.abs(gyroZ) <= STRAIGHT_THRESHOLD * largest ? 0 : (int) Math.signum(gyroZ);
+    }
+
+    private static double largest(double[] gyroZ) {
+        double largest = 0;
+        for (double value : gyroZ) {
+            largest = Math.max(largest, Math.abs(value));
+        }
+        return largest;
+    }
+
+    private static String kind(double[] gyroZ, int from, int to, double largest) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += gyroZ[i];
+        }
+        switch (direction(sum / Math.max(1, to - from), largest)) {
+            case 1:
+                return LEFT;
+            case -1:
+                return RIGHT;
+            default:
+                return STRAIGHT;
+        }
+    }
+
+    public String getTagA() {
+        return tagA;
+    }
+
+    public int getLapA() {
+        return lapA;
+    }
+
+    public String getTagB() {
+        return tagB;
+    }
+
+    public int getLapB() {
+        return lapB;
+    }
+
+    public long getDurationA() {
+        return durationA;
+    }
+
+    public long getDurationB() {
+        return durationB;
+    }
+
+    public long getDelta() {
+        return durationB - durationA;
+    }
+
+    /**
+     * @return how different the two gyro-z signals are after alignment, 0 for identical laps
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    public List<Segment> getSegments() {
+        return segments;
+    }
+
+    public static final String LEFT = "left";
+    public static final String RIGHT = "right";
+    public static final String STRAIGHT = "straight";
+
+    public static class Segment {
+        private final int number;
+        private final String kind;
+        private final double position;
+        private final long timeA;
+        private final long timeB;
+        private final long cumulativeDelta;
+
+        Segment(int number, String kind, double position, long timeA, long timeB, long cumulativeDelta) {
+            this.number = number;
+            this.kind = kind;
+            this.position = position;
+            this.timeA = timeA;
+            this.timeB = timeB;
+            this.cumulativeDelta = cumulativeDelta;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        /**
+         * @return "left", "right" or "straight"
+         */
+        public String getKind() {
+            return kind;
+        }
+
+        /**
+         * @return where the segment starts, as a fraction of the lap
+         */
+        public double getPosition() {
+            return position;
+        }
+
+        public long getTimeA() {
+            return timeA;
+        }
+
+        public long getTimeB() {
+            return timeB;
+        }
+
+        public long getDelta() {
+            return timeB - timeA;
+        }
+
+        public long getCumulativeDelta() {
+            return cumulativeDelta;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cuts a race into laps.
+ *
+ * Where round times were recorded, each round message ends a lap that started its duration before. Otherwise, the
+ * lap length is the period of the gyro-z signal, found by autocorrelation, and every lap boundary is then placed
+ * where the start of the previous lap matches best, which follows the car as it gets faster or slower.
+ *
+ * Both work on the gyro-z signal resampled to an even grid of GRID_MILLIS.
+ */
+public class LapCutter {
+
+    public static final int GRID_MILLIS = 20;
+
+    static final long MIN_LAP_MILLIS = 2000;
+    static final long MAX_LAP_MILLIS = 60000;
+
+    private static final double MIN_PERIODICITY = 0.5; // autocorrelation the lap period must at least reach
+    private static final double SEARCH = 0.25; // fraction of a lap searched around each expected boundary
+    private static final double TEMPLATE = 0.25; // fraction of a lap matched at each boundary
+    private static final double PEAK = 0.7; // fraction of the best autocorrelation a shorter period must reach
+
+    /**
+     * @param sensor time and g2 of the race's sensor events
+     * @param rounds time and duration of its round messages, null or empty if there are none
+     * @return the complete laps of the race, in order
+     */
+    public List<Lap> cut(String tag, RaceSelection sensor, RaceSelection rounds) {
+        Grid grid = Grid.of(sensor.getTime(), sensor.getColumns().get("g2"));
+        if (grid == null) {
+            return new ArrayList<>();
+        }
+        if (rounds != null && rounds.getRows() > 0) {
+            return cutAtRounds(tag, grid, rounds.getTime(), rounds.getColumns().get("duration"));
+        }
+        return cutByPattern(tag, grid);
+    }
+
+    private List<Lap> cutAtRounds(String tag, Grid grid, long[] time, double[] duration) {
+        List<Lap> laps = new ArrayList<>();
+        for (int round = 0; round < time.length; round++) {
+            int from = grid.indexOf(time[round] - (long) duration[round]);
+            int to = grid.indexOf(time[round]);
+            if (from >= 0 && to > from) {
+                laps.add(grid.lap(tag, laps.size() + 1, true, from, to));
+            }
+        }
+        return laps;
+    }
+
+    private List<Lap> cutByPattern(String tag, Grid grid) {
+        List<Lap> laps = new ArrayList<>();
+        double[] signal = grid.values;
+        int period = period(signal);
+        if (period == 0) {
+            return laps;
+        }
+        int search = Math.max(1, (int) (SEARCH * period));
+        int template = Math.max(1, (int) (TEMPLATE * period));
+
+        int start = 0;
+        while (true) {
+            int expected = start + period;
+            int best = -1;
+            double bestMatch = Double.NEGATIVE_INFINITY;
+            for (int candidate = expected - search; candidate <= expected + search; candidate++) {
+                if (candidate + template > signal.length) {
+                    break;
+                }
+                double match = correlation(signal, start, signal, candidate, template);
+                if (match > bestMatch) {
+                    bestMatch = match;
+                    best = candidate;
+                }
+            }
+            if (best < 0) {
+                return laps;
+            }
+            laps.add(grid.lap(tag, laps.size() + 1, false, start, best));
+            start = best;
+        }
+    }
+
+    /**
+     * @return the lag in grid points with the highest autocorrelation within the possible lap lengths,
+     * 0 if the signal is not periodic enough
+     */
+    static int period(double[] signal) {
+        int minLag = (int) (MIN_LAP_MILLIS / GRID_MILLIS);
+        int maxLag = (int) Math.min(MAX_LAP_MILLIS / GRID_MILLIS, signal.length / 2);
+        if (maxLag <= minLag) {
+            return 0;
+        }
+        double[] correlations = new double[maxLag + 1];
+        double best = Double.NEGATIVE_INFINITY;
+        for (int lag = minLag; lag <= maxLag; lag++) {
+            correlations[lag] = correlation(signal, 0, signal, lag, signal.length - lag);
+            best = Math.max(best, correlations[lag]);
+        }
+        if (best < MIN_PERIODICITY) {
+            return 0;
+        }
+        // multiples of the period correlate nearly as well, take the first peak close to the best one
+        for (int lag = minLag + 1; lag < maxLag; lag++) {
+            if (correlations[lag] >= PEAK * best
+                    && correlations[lag] >= correlations[lag - 1] && correlations[lag] >= correlations[lag + 1]) {
+                return lag;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Pearson correlation of a[aFrom..aFrom+length) and b[bFrom..bFrom+length)
+     */
+    static double correlation(double[] a, int aFrom, double[] b, int bFrom, int length) {
+        double sumA = 0, sumB = 0;
+        for (int i = 0; i < length; i++) {
+            sumA += a[aFrom + i];
+            sumB += b[bFrom + i];
+        }
+        double meanA = sumA / length;
+        double meanB = sumB / length;
+        double ab = 0, aa = 0, bb = 0;
+        for (int i = 0; i < length; i++) {
+            double da = a[aFrom + i] - meanA;
+            double db = b[bFrom + i] - meanB;
+            ab += da * db;
+            aa += da * da;
+            bb += db * db;
+        }
+        return aa == 0 || bb == 0 ? 0 : ab / Math.sqrt(aa * bb);
+    }
+
+    /**
+     * a signal averaged into GRID_MILLIS buckets, empty buckets take the previous value
+     */
+    private static class Grid {
+        final long start;
+        final double[] values;
+
+        private Grid(long start, double[] values) {
+            this.start = start;
+            this.values = values;
+        }
+
+        static Grid of(long[] time, double[] values) {
+            if (time.length < 2) {
+                return null;
+            }
+            long start = time[0];
+            int points = (int) ((time[time.length - 1] - start) / GRID_MILLIS) + 1;
+            double[] sums = new double[points];
+            int[] counts = new int[points];
+            for (int row = 0; row < time.length; row++) {
+                int point = (int) ((time[row] - start) / GRID_MILLIS);
+                sums[point] += values[row];
+                counts[point]++;
+            }
+            double[] grid = new double[points];
+            for (int point = 0; point < points; point++) {
+                grid[point] = counts[point] == 0 ? grid[Math.max(0, point - 1)] : sums[point] / counts[point];
+            }
+            return new Grid(start, grid);
+        }
+
+        /**
+         * @return the grid point of the given time, -1 if it is outside
+         */
+        int indexOf(long time) {
+            long point = (time - start) / GRID_MILLIS;
+            return time < start || point >= values.length ? -1 : (int) point;
+        }
+
+        Lap lap(String tag, int number, boolean timed, int from, int to) {
+            long[] time = new long[to - from + 1];
+            for (int i = 0; i < time.length; i++) {
+                time[i] = start + (long) (from + i) * GRID_MILLIS;
+            }
+            return new Lap(tag, number, timed, time, Arrays.copyOfRange(values, from, to + 1));
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Selects rows of one series across the stored races: optionally only on one track or in some races, within a time
+ * range and with column values within ranges. All conditions must hold. Built fluently in code, or read from json.
+ */
+public class RaceQuery {
+
+    private Series series = Series.sensor;
+    private String trackId;
+    private List<String> races;
+    private Long from;
+    private Long to;
+    private List<Range> filters = new ArrayList<>();
+
+    public static RaceQuery of(Series series) {
+        RaceQuery query = new RaceQuery();
+        query.setSeries(series);
+        return query;
+    }
+
+    public RaceQuery onTrack(String trackId) {
+        this.trackId = trackId;
+        return this;
+    }
+
+    public RaceQuery inRaces(List<String> races) {
+        this.races = races;
+        return this;
+    }
+
+    /**
+     * @param from first time stamp to include, null for no limit
+     * @param to last time stamp to include, null for no limit
+     */
+    public RaceQuery between(Long from, Long to) {
+        this.from = from;
+        this.to = to;
+        return this;
+    }
+
+    /**
+     * @param column one of the series' columns
+     * @param min smallest value to include, null for no limit
+     * @param max largest value to include, null for no limit
+     */
+    public RaceQuery where(String column, Double min, Double max) {
+        filters.add(new Range(column, min, max));
+        return this;
+    }
+
+    boolean includes(StoredRace race) {
+        return (trackId == null || trackId.equals(race.getTrackId()))
+                && (races == null || races.contains(race.getTag()));
+    }
+
+    public Series getSeries() {
+        return series;
+    }
+
+    public void setSeries(Series series) {
+        this.series = series;
+    }
+
+    public String getTrackId() {
+        return trackId;
+    }
+
+    public void setTrackId(String trackId) {
+        this.trackId = trackId;
+    }
+
+    public List<String> getRaces() {
+        return races;
+    }
+
+    public void setRaces(List<String> races) {
+        this.races = races;
+    }
+
+    public Long getFrom() {
+        return from;
+    }
+
+    public void setFrom(Long from) {
+        this.from = from;
+    }
+
+    public Long getTo() {
+        return to;
+    }
+
+    public void setTo(Long to) {
+        this.to = to;
+    }
+
+    public List<Range> getFilters() {
+        return filters;
+    }
+
+    public void setFilters(List<Range> filters) {
+        this.filters = filters;
+    }
+
+    public static class Range {
+        private String column;
+        private Double min;
+        private Double max;
+
+        public Range() {
+        }
+
+        public Range(String column, Double min, Double max) {
+            this.column = column;
+            this.min = min;
+            this.max = max;
+        }
+
+        public String getColumn() {
+            return column;
+        }
+
+        public void setColumn(String column) {
+            this.column = column;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public void setMin(Double min) {
+            this.min = min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public void setMax(Double max) {
+            this.max = max;
+        }
+    }
+}
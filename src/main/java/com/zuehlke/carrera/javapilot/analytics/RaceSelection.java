@@ -0,0 +1,55 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The rows of one race that matched a query, with the requested columns, in time order.
+ */
+public class RaceSelection {
+
+    private final String tag;
+    private final String trackId;
+    private final long startTime;
+    private final long[] time;
+    private final Map<String, double[]> columns = new LinkedHashMap<>();
+
+    RaceSelection(StoredRace race, long[] time) {
+        this(race.getTag(), race.getTrackId(), race.getStartTime(), time);
+    }
+
+    RaceSelection(String tag, String trackId, long startTime, long[] time) {
+        this.tag = tag;
+        this.trackId = trackId;
+        this.startTime = startTime;
+        this.time = time;
+    }
+
+    void put(String column, double[] values) {
+        columns.put(column, values);
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getTrackId() {
+        return trackId;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long[] getTime() {
+        return time;
+    }
+
+    public Map<String, double[]> getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return time.length;
+    }
+}
@@ -0,0 +1,43 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The kinds of recorded data in the columnar store, each with its value columns. All of them also have a time column.
+ */
+public enum Series {
+    sensor(true, "a0", "a1", "a2", "g0", "g1", "g2", "m0", "m1", "m2"),
+    velocity(false, "velocity"),
+    power(true, "power"),
+    penalty(false, "actualSpeed", "speedLimit"),
+    round(true, "duration");
+
+    private final boolean integral;
+    private final List<String> columns;
+
+    Series(boolean integral, String... columns) {
+        this.integral = integral;
+        this.columns = Collections.unmodifiableList(Arrays.asList(columns));
+    }
+
+    /**
+     * @return true, if the values are stored as int columns, false for double columns
+     */
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public int columnIndex(String column) {
+        int index = columns.indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException(name() + " has no column '" + column + "', only " + columns);
+        }
+        return index;
+    }
+}
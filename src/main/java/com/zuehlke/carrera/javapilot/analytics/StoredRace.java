@@ -0,0 +1,166 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import com.zuehlke.carrera.javapilot.io.EndOfStreamException;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.javapilot.io.TimedPenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.RoundTimeMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * One recorded race in columnar form: per series a list of blocks.
+ */
+public class StoredRace {
+
+    private final String tag;
+    private final String trackId;
+    private final String teamId;
+    private final long startTime;
+    private final Map<Series, List<Block>> blocks;
+
+    private StoredRace(String tag, RaceStartMessage start, Map<Series, List<Block>> blocks) {
+        this.tag = tag;
+        this.trackId = start == null ? null : start.getTrackId();
+        this.teamId = start == null ? null : start.getTeamId();
+        this.startTime = start == null ? 0 : start.getTimestamp();
+        this.blocks = blocks;
+    }
+
+    /**
+     * reads a recorded race into columns
+     */
+    public static StoredRace load(RaceRecorderPlayer player, String tag) throws IOException {
+        Map<Series, SeriesBuilder> builders = new EnumMap<>(Series.class);
+        for (Series series : Series.values()) {
+            builders.put(series, new SeriesBuilder(series));
+        }
+        RaceStartMessage start = null;
+        Supplier<Object> supplier = player.getTimedSupplier(tag);
+        try {
+            while (true) {
+                Object message = supplier.get();
+                if (message instanceof SensorEvent) {
+                    SensorEvent event = (SensorEvent) message;
+                    int[] a = event.getA();
+                    int[] g = event.getG();
+                    int[] m = event.getM();
+                    builders.get(Series.sensor).add(event.getTimeStamp(),
+                            a[0], a[1], a[2], g[0], g[1], g[2], m[0], m[1], m[2]);
+                } else if (message instanceof VelocityMessage) {
+                    VelocityMessage velocity = (VelocityMessage) message;
+                    builders.get(Series.velocity).add(velocity.getTimeStamp(), velocity.getVelocity());
+                } else if (message instanceof PowerControl) {
+                    PowerControl power = (PowerControl) message;
+                    builders.get(Series.power).add(power.getTimeStamp(), power.getP());
+                } else if (message instanceof TimedPenaltyMessage) {
+                    TimedPenaltyMessage penalty = (TimedPenaltyMessage) message;
+                    builders.get(Series.penalty).add(penalty.getTimestamp(),
+                            penalty.getOriginal().getActualSpeed(), penalty.getOriginal().getSpeedLimit());
+                } else if (message instanceof RoundTimeMessage) {
+                    RoundTimeMessage round = (RoundTimeMessage) message;
+                    builders.get(Series.round).add(round.getTimestamp(), round.getRoundDuration());
+                } else if (message instanceof RaceStartMessage) {
+                    start = (RaceStartMessage) message;
+                }
+            }
+        } catch (EndOfStreamException e) {
+            // the whole race is read
+        }
+        Map<Series, List<Block>> blocks = new EnumMap<>(Series.class);
+        builders.forEach((series, builder) -> blocks.put(series, builder.build()));
+        return new StoredRace(tag, start, blocks);
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public String getTrackId() {
+        return trackId;
+    }
+
+    public String getTeamId() {
+        return teamId;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public int getRows(Series series) {
+        return blocks.get(series).stream().mapToInt((block) -> block.size).sum();
+    }
+
+    List<Block> getBlocks(Series series) {
+        return blocks.get(series);
+    }
+
+    /**
+     * collects the rows of one series and seals them into blocks of Block.SIZE rows
+     */
+    private static class SeriesBuilder {
+        private final Series series;
+        private final List<Block> blocks = new ArrayList<>();
+
+        private long[] time;
+        private int[][] ints;
+        private double[][] doubles;
+        private int size;
+
+        SeriesBuilder(Series series) {
+            this.series = series;
+            startBlock();
+        }
+
+        void add(long timestamp, double... values) {
+            time[size] = timestamp;
+            for (int column = 0; column < values.length; column++) {
+                if (series.isIntegral()) {
+                    ints[column][size] = (int) values[column];
+                } else {
+                    doubles[column][size] = values[column];
+                }
+            }
+            if (++size == Block.SIZE) {
+                seal();
+                startBlock();
+            }
+        }
+
+        List<Block> build() {
+            if (size > 0) {
+                seal();
+            }
+            return Collections.unmodifiableList(blocks);
+        }
+
+        private void startBlock() {
+            int columns = series.getColumns().size();
+            time = new long[Block.SIZE];
+            if (series.isIntegral()) {
+                ints = new int[columns][Block.SIZE];
+            } else {
+                doubles = new double[columns][Block.SIZE];
+            }
+            size = 0;
+        }
+
+        private void seal() {
+            Column[] columns = new Column[series.getColumns().size()];
+            for (int column = 0; column < columns.length; column++) {
+                columns[column] = series.isIntegral() ? Column.of(ints[column]) : Column.of(doubles[column]);
+            }
+            blocks.add(new Block(size, time, columns));
+        }
+    }
+}
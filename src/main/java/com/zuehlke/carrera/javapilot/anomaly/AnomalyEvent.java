@@ -0,0 +1,44 @@
+package com.zuehlke.carrera.javapilot.anomaly;
+
+/**
+ * Something unusual in the sensor events, found by the SensorAnomalyDetector.
+ */
+public abstract class AnomalyEvent {
+
+    private final long timeStamp;
+    private final double value;
+    private final double score;
+
+    /**
+     * @param timeStamp of the sensor event the anomaly was found in
+     * @param value the value that was found unusual
+     * @param score how unusual it was, as the detector measures it
+     */
+    protected AnomalyEvent(long timeStamp, double value, double score) {
+        this.timeStamp = timeStamp;
+        this.value = value;
+        this.score = score;
+    }
+
+    public long getTimeStamp() {
+        return timeStamp;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * @return what kind of anomaly, like "gripLoss"
+     */
+    public abstract String getType();
+
+    @Override
+    public String toString() {
+        return String.format("%s at %d: %.0f (score %.1f)", getType(), timeStamp, value, score);
+    }
+}
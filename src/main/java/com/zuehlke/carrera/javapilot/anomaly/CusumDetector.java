@@ -0,0 +1,85 @@
+package com.zuehlke.carrera.javapilot.anomaly;
+
+/**
+ * Two-sided CUSUM: sums up how far the samples are above, and below, their usual level, in standard deviations and
+ * less an allowed drift, and flags the sample at which one of the sums exceeds the threshold. A single far outlier
+ * trips it as well as a small shift that lasts.
+ *
+ * The usual level and spread are exponentially weighted, so the detector follows slow changes and needs no window.
+ * It starts flagging after warm-up samples. After an alarm, both sums start again from zero. Constant work and no
+ * allocation per sample.
+ */
+public class CusumDetector {
+
+    private final double alpha;
+    private final double drift;
+    private final double threshold;
+    private final double minDeviation;
+    private final int warmUp;
+
+    private long count;
+    private double mean;
+    private double variance;
+    private double high;
+    private double low;
+    private double score;
+
+    /**
+     * @param alpha weight of a new sample for the level and spread, between 0 and 1
+     * @param drift standard deviations per sample that don't count
+     * @param threshold the sum from which on there is an anomaly
+     * @param minDeviation the smallest standard deviation assumed, so a very quiet signal doesn't trip it
+     */
+    public CusumDetector(double alpha, double drift, double threshold, double minDeviation) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in (0, 1], not " + alpha);
+        }
+        this.alpha = alpha;
+        this.drift = drift;
+        this.threshold = threshold;
+        this.minDeviation = minDeviation;
+        this.warmUp = (int) Math.ceil(1 / alpha);
+    }
+
+    /**
+     * @return true, if the sums exceed the threshold with this value
+     */
+    public boolean add(double value) {
+        boolean anomaly = false;
+        score = 0;
+        if (count == 0) {
+            mean = value;
+        } else if (count >= warmUp) {
+            double deviation = (value - mean) / Math.max(minDeviation, Math.sqrt(variance));
+            high = Math.max(0, high + deviation - drift);
+            low = Math.max(0, low - deviation - drift);
+            score = Math.max(high, low);
+            if (score > threshold) {
+                anomaly = true;
+                high = 0;
+                low = 0;
+            }
+        }
+        double difference = value - mean;
+        mean += alpha * difference;
+        variance = (1 - alpha) * (variance + alpha * difference * difference);
+        count++;
+        return anomaly;
+    }
+
+    /**
+     * @return the larger of the two sums with the last sample, before any reset after an alarm
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public void reset() {
+        count = 0;
+        mean = 0;
+        variance = 0;
+        high = 0;
+        low = 0;
+        score = 0;
+    }
+}
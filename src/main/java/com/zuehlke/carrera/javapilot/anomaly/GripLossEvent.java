@@ -0,0 +1,17 @@
+package com.zuehlke.carrera.javapilot.anomaly;
+
+/**
+ * The car lost grip: a tick in gyro-z, the car turning abruptly. The value is the tick, how far gyro-z left its
+ * smoothed course.
+ */
+public class GripLossEvent extends AnomalyEvent {
+
+    public GripLossEvent(long timeStamp, double value, double score) {
+        super(timeStamp, value, score);
+    }
+
+    @Override
+    public String getType() {
+        return "gripLoss";
+    }
+}
@@ -0,0 +1,17 @@
+package com.zuehlke.carrera.javapilot.anomaly;
+
+/**
+ * The car hit something, or something hit the car: a jolt in the acceleration. The value is the jolt, the change
+ * of the acceleration from one sensor event to the next, summed over the axes.
+ */
+public class ImpactEvent extends AnomalyEvent {
+
+    public ImpactEvent(long timeStamp, double value, double score) {
+        super(timeStamp, value, score);
+    }
+
+    @Override
+    public String getType() {
+        return "impact";
+    }
+}
@@ -0,0 +1,99 @@
+package com.zuehlke.carrera.javapilot.anomaly;
+
+import com.zuehlke.carrera.javapilot.signal.MovingAverage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+/**
+ * Looks for grip loss and impacts in every sensor event, as it arrives.
+ *
+ * Grip loss shows as a tick in gyro-z: a z-score detector watches how far gyro-z is off its smoothed course, which
+ * ignores the slower change of gyro-z when the car enters or leaves a curve. Impacts show as a jolt in the
+ * acceleration: a CUSUM detector watches the change of the acceleration from one event to the next, so it catches
+ * a single hard jolt as well as a few lighter ones in a row.
+ *
+ * Fixed memory, constant work and no allocation per event, unless it finds something. After an anomaly, the same
+ * kind is not reported again for HOLD_OFF_MILLIS, so one incident makes one event. An impact goes before a grip
+ * loss in the same event, which it likely caused: add() returns the impact, next() the grip loss. Not thread safe.
+ */
+public class SensorAnomalyDetector {
+
+    public static final long HOLD_OFF_MILLIS = 250;
+
+    private static final int GYRO_SMOOTHING = 5;
+    private static final int GYRO_WINDOW = 50;
+    private static final double GYRO_THRESHOLD = 6;
+    private static final double GYRO_MIN_TICK = 1200;
+
+    private static final double JOLT_ALPHA = 0.02;
+    private static final double JOLT_DRIFT = 1;
+    private static final double JOLT_THRESHOLD = 15;
+    private static final double JOLT_MIN_DEVIATION = 50;
+
+    private final MovingAverage gyroCourse = new MovingAverage(GYRO_SMOOTHING);
+    private final ZScoreDetector gyroTicks = new ZScoreDetector(GYRO_WINDOW, GYRO_THRESHOLD, GYRO_MIN_TICK);
+    private final CusumDetector jolts = new CusumDetector(JOLT_ALPHA, JOLT_DRIFT, JOLT_THRESHOLD, JOLT_MIN_DEVIATION);
+
+    private boolean started;
+    private double course;
+    private final int[] lastAcceleration = new int[3];
+    private long lastGripLoss;
+    private long lastImpact;
+    private AnomalyEvent pending; // the second anomaly of the last event
+
+    /**
+     * @return the anomaly found in this event, null if there is none. Ask next() for another one
+     */
+    public AnomalyEvent add(SensorEvent event) {
+        pending = null;
+        long timestamp = event.getTimeStamp();
+        int gyroZ = event.getG()[2];
+        int[] acceleration = event.getA();
+
+        if (!started) {
+            started = true;
+            course = gyroCourse.apply(timestamp, gyroZ);
+            System.arraycopy(acceleration, 0, lastAcceleration, 0, 3);
+            lastGripLoss = timestamp - HOLD_OFF_MILLIS;
+            lastImpact = timestamp - HOLD_OFF_MILLIS;
+            return null;
+        }
+
+        double tick = gyroZ - course;
+        boolean gripLoss = gyroTicks.add(timestamp, tick);
+        course = gyroCourse.apply(timestamp, gyroZ);
+
+        double jolt = Math.abs(acceleration[0] - lastAcceleration[0]) + Math.abs(acceleration[1] - lastAcceleration[1])
+                + Math.abs(acceleration[2] - lastAcceleration[2]);
+        System.arraycopy(acceleration, 0, lastAcceleration, 0, 3);
+        boolean impact = jolts.add(jolt);
+
+        AnomalyEvent found = null;
+        if (gripLoss && timestamp - lastGripLoss >= HOLD_OFF_MILLIS) {
+            lastGripLoss = timestamp;
+            found = new GripLossEvent(timestamp, tick, gyroTicks.getScore());
+        }
+        if (impact && timestamp - lastImpact >= HOLD_OFF_MILLIS) {
+            lastImpact = timestamp;
+            pending = found;
+            found = new ImpactEvent(timestamp, jolt, jolts.getScore());
+        }
+        return found;
+    }
+
+    /**
+     * @return the other anomaly found in the last event, once, null if there is none
+     */
+    public AnomalyEvent next() {
+        AnomalyEvent next = pending;
+        pending = null;
+        return next;
+    }
+
+    public void reset() {
+        started = false;
+        pending = null;
+        gyroCourse.reset();
+        gyroTicks.reset();
+        jolts.reset();
+    }
+}
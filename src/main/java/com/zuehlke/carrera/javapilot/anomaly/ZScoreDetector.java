@@ -0,0 +1,60 @@
+package com.zuehlke.carrera.javapilot.anomaly;
+
+import com.zuehlke.carrera.javapilot.signal.WindowedStatistics;
+
+/**
+ * Flags samples that are far from the mean of the samples before them, measured in standard deviations.
+ *
+ * Looks at a fixed window of the last samples and needs it full before it flags anything. A sample must also be
+ * at least minDeviation away from the mean, so a very quiet signal doesn't make small wiggles anomalies. Constant
+ * work and no allocation per sample.
+ */
+public class ZScoreDetector {
+
+    private final int size;
+    private final double threshold;
+    private final double minDeviation;
+    private final WindowedStatistics window;
+
+    private double score;
+
+    /**
+     * @param size the number of samples to compare with
+     * @param threshold the score from which on a sample is an anomaly
+     * @param minDeviation the distance from the mean from which on a sample can be an anomaly
+     */
+    public ZScoreDetector(int size, double threshold, double minDeviation) {
+        this.size = size;
+        this.threshold = threshold;
+        this.minDeviation = minDeviation;
+        this.window = new WindowedStatistics(size);
+    }
+
+    /**
+     * @return true, if the value is an anomaly. It goes into the window anyway
+     */
+    public boolean add(long timestamp, double value) {
+        boolean anomaly = false;
+        score = 0;
+        if (window.getCount() == size) {
+            double deviation = value - window.getMean();
+            double standardDeviation = Math.sqrt(window.getVariance());
+            score = standardDeviation == 0 ? 0 : deviation / standardDeviation;
+            anomaly = Math.abs(deviation) >= minDeviation && Math.abs(score) >= threshold;
+        }
+        window.apply(timestamp, value);
+        return anomaly;
+    }
+
+    /**
+     * @return the score of the last sample, its distance from the mean in standard deviations
+     */
+    public double getScore() {
+        return score;
+    }
+
+    public void reset() {
+        window.reset();
+        score = 0;
+    }
+}
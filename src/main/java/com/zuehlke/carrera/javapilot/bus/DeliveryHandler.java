@@ -0,0 +1,12 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * receives the messages subscribed to on a MessageBus
+ */
+public interface DeliveryHandler {
+
+    void handle(String contentType, Map<String, Object> headers, byte[] body) throws IOException;
+}
@@ -0,0 +1,66 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * MessageBus on the LoopbackBroker within this JVM, addressed as "embedded".
+ * Handlers are called from the broker's delivery thread. Closing unbinds them, so a reconnect subscribes afresh.
+ */
+public class EmbeddedMessageBus implements MessageBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedMessageBus.class);
+
+    private final LoopbackBroker broker;
+    private final List<LoopbackBroker.Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private boolean connected = false;
+
+    public EmbeddedMessageBus(LoopbackBroker broker) {
+        this.broker = broker;
+    }
+
+    @Override
+    public void connect() {
+        connected = true;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void publish(String exchange, String routingKey, String contentType,
+                        Map<String, Object> headers, byte[] body) {
+        broker.publish(exchange, routingKey, contentType, headers, body);
+    }
+
+    @Override
+    public void subscribe(String exchange, String routingKey, boolean noAck, DeliveryHandler handler) {
+        LoopbackBroker.Subscriber subscriber = (e, k, contentType, headers, body) -> {
+            try {
+                handler.handle(contentType, headers, body);
+            } catch (IOException ioe) {
+                LOGGER.error("Failed to handle message on {}: {}", routingKey, ioe.getMessage());
+            } catch (RuntimeException re) {
+                LOGGER.error("Dropping message on {} that failed: {}", routingKey, re.toString());
+            }
+        };
+        subscribers.add(subscriber);
+        broker.bind(exchange, routingKey, subscriber);
+    }
+
+    @Override
+    public void close() {
+        connected = false;
+        for (LoopbackBroker.Subscriber subscriber : subscribers) {
+            broker.unbind(subscriber);
+        }
+        subscribers.clear();
+    }
+}
@@ -0,0 +1,103 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * In-JVM stand-in for the rabbitmq broker, supporting what the MessageBus needs: direct exchanges with routing keys
+ * and the default exchange. Unlike rabbitmq, every subscriber to a named queue receives a copy of each message.
+ *
+ * Every delivery can be delayed by a fixed latency plus a uniformly distributed random jitter, to see how the pilot
+ * copes with a slow network. Deliveries to one subscriber never overtake each other, like with a real queue.
+ */
+public class LoopbackBroker {
+
+    public interface Subscriber {
+        void deliver(String exchange, String routingKey, String contentType, Map<String, Object> headers, byte[] body);
+    }
+
+    private static class Subscription {
+        final Subscriber subscriber;
+        final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+        long lastDue = 0;
+
+        Subscription(Subscriber subscriber) {
+            this.subscriber = subscriber;
+        }
+    }
+
+    private static LoopbackBroker embedded;
+
+    private final Map<String, List<Subscription>> routes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService deliveries = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "loopback-broker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Random random = new Random();
+
+    private volatile long latencyMicros = 0;
+    private volatile long jitterMicros = 0;
+
+    /**
+     * @return the broker shared by all buses with the url "embedded" in this JVM
+     */
+    public static synchronized LoopbackBroker embedded() {
+        if (embedded == null) {
+            embedded = new LoopbackBroker();
+        }
+        return embedded;
+    }
+
+    /**
+     * @param latency fixed delay of every delivery in ms
+     * @param jitter maximum additional random delay in ms
+     */
+    public void setLatency(double latency, double jitter) {
+        this.latencyMicros = (long) (latency * 1000);
+        this.jitterMicros = (long) (jitter * 1000);
+    }
+
+    public void bind(String exchange, String routingKey, Subscriber subscriber) {
+        routes.computeIfAbsent(key(exchange, routingKey), k -> new CopyOnWriteArrayList<>())
+                .add(new Subscription(subscriber));
+    }
+
+    public void unbind(Subscriber subscriber) {
+        for (List<Subscription> subscriptions : routes.values()) {
+            subscriptions.removeIf(s -> s.subscriber == subscriber);
+        }
+    }
+
+    /**
+     * route the message to all subscribers bound to the exchange with the routing key.
+     * Like with rabbitmq, messages nobody is bound for are dropped.
+     */
+    public synchronized void publish(String exchange, String routingKey, String contentType,
+                                     Map<String, Object> headers, byte[] body) {
+        List<Subscription> subscriptions = routes.get(key(exchange, routingKey));
+        if (subscriptions == null) {
+            return;
+        }
+        long now = System.nanoTime() / 1000;
+        for (Subscription subscription : subscriptions) {
+            long jitter = jitterMicros > 0 ? (long) (random.nextDouble() * jitterMicros) : 0;
+            long due = Math.max(now + latencyMicros + jitter, subscription.lastDue);
+            subscription.lastDue = due;
+            // each scheduled task delivers the oldest pending message, so equal due times can't reorder them
+            subscription.pending.add(() -> subscription.subscriber.deliver(exchange, routingKey, contentType, headers, body));
+            deliveries.schedule(() -> subscription.pending.poll().run(), due - now, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    public void shutdown() {
+        deliveries.shutdownNow();
+    }
+
+    private static String key(String exchange, String routingKey) {
+        return exchange + '\u0000' + routingKey;
+    }
+}
@@ -0,0 +1,107 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Makes a LoopbackBroker available to other processes on this machine, so that a simulator and a pilot running
+ * in separate processes can talk to each other without a rabbitmq server. Clients use LoopbackMessageBus.
+ *
+ * Usage: LoopbackBrokerServer [port] [latency ms] [jitter ms]
+ */
+public class LoopbackBrokerServer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoopbackBrokerServer.class);
+
+    public static final int DEFAULT_PORT = 5673;
+
+    private final LoopbackBroker broker;
+    private final int port;
+    private ServerSocket serverSocket;
+
+    public LoopbackBrokerServer(LoopbackBroker broker, int port) {
+        this.broker = broker;
+        this.port = port;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        LoopbackBroker broker = new LoopbackBroker();
+        if (args.length > 1) {
+            broker.setLatency(Double.parseDouble(args[1]), args.length > 2 ? Double.parseDouble(args[2]) : 0);
+        }
+        new LoopbackBrokerServer(broker, port).start();
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptClients, "loopback-server");
+        acceptor.start();
+        LOGGER.info("Loopback broker listening on port {}", port);
+    }
+
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close the server socket: {}", e.getMessage());
+        }
+    }
+
+    private void acceptClients() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread reader = new Thread(() -> serve(socket), "loopback-client-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOGGER.error("Failed to accept client: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        DataOutputStream out;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } catch (IOException e) {
+            LOGGER.error("Failed to open client connection: {}", e.getMessage());
+            return;
+        }
+        LoopbackBroker.Subscriber subscriber = (exchange, routingKey, contentType, headers, body) -> {
+            synchronized (out) {
+                try {
+                    LoopbackProtocol.writeMessage(out, LoopbackProtocol.DELIVER, exchange, routingKey,
+                            contentType, headers, body);
+                } catch (IOException e) {
+                    LOGGER.debug("Failed to deliver to client on port {}: {}", socket.getPort(), e.getMessage());
+                }
+            }
+        };
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                LoopbackProtocol.Frame frame = LoopbackProtocol.read(in);
+                if (frame.op == LoopbackProtocol.SUBSCRIBE) {
+                    broker.bind(frame.exchange, frame.routingKey, subscriber);
+                } else if (frame.op == LoopbackProtocol.PUBLISH) {
+                    broker.publish(frame.exchange, frame.routingKey, frame.contentType, frame.headers, frame.body);
+                }
+            }
+        } catch (EOFException e) {
+            LOGGER.info("Client on port {} disconnected", socket.getPort());
+        } catch (IOException e) {
+            LOGGER.warn("Lost client on port {}: {}", socket.getPort(), e.getMessage());
+        } finally {
+            broker.unbind(subscriber);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MessageBus talking to a LoopbackBrokerServer on this machine, addressed as loopback://host:port
+ */
+public class LoopbackMessageBus implements MessageBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoopbackMessageBus.class);
+
+    private final String host;
+    private final int port;
+    private final String consumerThreadName;
+    private final Map<String, DeliveryHandler> handlers = new ConcurrentHashMap<>();
+
+    private Socket socket;
+    private DataOutputStream out;
+
+    public LoopbackMessageBus(String url, String consumerThreadName) {
+        URI uri = URI.create(url);
+        this.host = uri.getHost() == null ? "localhost" : uri.getHost();
+        this.port = MessageBuses.loopbackPort(url);
+        this.consumerThreadName = consumerThreadName;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        Thread consumer = new Thread(() -> consume(in), consumerThreadName);
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket != null && !socket.isClosed();
+    }
+
+    @Override
+    public synchronized void publish(String exchange, String routingKey, String contentType,
+                                     Map<String, Object> headers, byte[] body) throws IOException {
+        LoopbackProtocol.writeMessage(out, LoopbackProtocol.PUBLISH, exchange, routingKey, contentType, headers, body);
+    }
+
+    @Override
+    public synchronized void subscribe(String exchange, String routingKey, boolean noAck, DeliveryHandler handler)
+            throws IOException {
+        handlers.put(key(exchange, routingKey), handler);
+        LoopbackProtocol.writeSubscribe(out, exchange, routingKey);
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to close the connection: {}", e.getMessage());
+        }
+    }
+
+    private void consume(DataInputStream in) {
+        try {
+            while (true) {
+                LoopbackProtocol.Frame frame = LoopbackProtocol.read(in);
+                DeliveryHandler handler = handlers.get(key(frame.exchange, frame.routingKey));
+                if (handler != null) {
+                    deliver(handler, frame);
+                }
+            }
+        } catch (IOException e) {
+            if (!socket.isClosed()) {
+                LOGGER.warn("Lost connection to loopback broker: {}", e.getMessage());
+                close();
+            }
+        }
+    }
+
+    // a message that fails must not take the consumer thread down with it, the connection would look alive but deaf
+    private void deliver(DeliveryHandler handler, LoopbackProtocol.Frame frame) throws IOException {
+        try {
+            handler.handle(frame.contentType, frame.headers, frame.body);
+        } catch (RuntimeException e) {
+            LOGGER.error("Dropping message on {} that failed: {}", frame.routingKey, e.toString());
+        }
+    }
+
+    private static String key(String exchange, String routingKey) {
+        return exchange + '\u0000' + routingKey;
+    }
+}
@@ -0,0 +1,76 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The frames between LoopbackMessageBus and LoopbackBrokerServer.
+ *
+ * SUBSCRIBE: exchange, routing key
+ * PUBLISH, DELIVER: exchange, routing key, content type, headers, body
+ */
+class LoopbackProtocol {
+
+    static final byte SUBSCRIBE = 1;
+    static final byte PUBLISH = 2;
+    static final byte DELIVER = 3;
+
+    static class Frame {
+        byte op;
+        String exchange;
+        String routingKey;
+        String contentType;
+        Map<String, Object> headers;
+        byte[] body;
+    }
+
+    static void writeSubscribe(DataOutputStream out, String exchange, String routingKey) throws IOException {
+        out.writeByte(SUBSCRIBE);
+        out.writeUTF(exchange);
+        out.writeUTF(routingKey);
+        out.flush();
+    }
+
+    static void writeMessage(DataOutputStream out, byte op, String exchange, String routingKey, String contentType,
+                             Map<String, Object> headers, byte[] body) throws IOException {
+        out.writeByte(op);
+        out.writeUTF(exchange);
+        out.writeUTF(routingKey);
+        out.writeUTF(contentType == null ? "" : contentType);
+        if (headers == null) {
+            out.writeInt(0);
+        } else {
+            out.writeInt(headers.size());
+            for (Map.Entry<String, Object> header : headers.entrySet()) {
+                out.writeUTF(header.getKey());
+                out.writeUTF(String.valueOf(header.getValue()));
+            }
+        }
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+    }
+
+    static Frame read(DataInputStream in) throws IOException {
+        Frame frame = new Frame();
+        frame.op = in.readByte();
+        frame.exchange = in.readUTF();
+        frame.routingKey = in.readUTF();
+        if (frame.op == SUBSCRIBE) {
+            return frame;
+        }
+        String contentType = in.readUTF();
+        frame.contentType = contentType.isEmpty() ? null : contentType;
+        int numberOfHeaders = in.readInt();
+        frame.headers = new HashMap<>();
+        for (int i = 0; i < numberOfHeaders; i++) {
+            frame.headers.put(in.readUTF(), in.readUTF());
+        }
+        frame.body = new byte[in.readInt()];
+        in.readFully(frame.body);
+        return frame;
+    }
+}
@@ -0,0 +1,33 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The subset of rabbitmq used between simulator and pilot: direct exchanges with routing keys, and named queues,
+ * which are addressed with the default exchange "" and the queue name as the routing key.
+ */
+public interface MessageBus {
+
+    /**
+     * the default exchange, routing keys on it are queue names
+     */
+    String DEFAULT_EXCHANGE = "";
+
+    void connect() throws IOException;
+
+    boolean isConnected();
+
+    void publish(String exchange, String routingKey, String contentType, Map<String, Object> headers, byte[] body)
+            throws IOException;
+
+    /**
+     * @param exchange the exchange to bind to, or DEFAULT_EXCHANGE to consume the queue named like the routing key
+     * @param routingKey the routing key
+     * @param noAck true, if deliveries need not be acknowledged
+     * @param handler called for every delivery, always from the same thread
+     */
+    void subscribe(String exchange, String routingKey, boolean noAck, DeliveryHandler handler) throws IOException;
+
+    void close();
+}
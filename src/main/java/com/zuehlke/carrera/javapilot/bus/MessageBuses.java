@@ -0,0 +1,39 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+/**
+ * creates the message bus matching a url
+ */
+public class MessageBuses {
+
+    public static final String EMBEDDED = "embedded";
+    public static final String LOOPBACK_SCHEME = "loopback://";
+
+    /**
+     * @param url "embedded" for the in-JVM loopback broker, loopback://host:port for a LoopbackBrokerServer,
+     *            otherwise the host name or amqp:// uri of a rabbitmq server
+     * @param consumerThreadName the name of the thread that calls the delivery handlers
+     * @return a new, yet unconnected bus
+     */
+    public static MessageBus create(String url, String consumerThreadName) {
+        if (EMBEDDED.equals(url)) {
+            return new EmbeddedMessageBus(LoopbackBroker.embedded());
+        } else if (url.startsWith(LOOPBACK_SCHEME)) {
+            return new LoopbackMessageBus(url, consumerThreadName);
+        } else {
+            return new RabbitMessageBus(url, consumerThreadName);
+        }
+    }
+
+    /**
+     * @param url a loopback url like loopback://localhost:5673
+     * @return the port in the url, or the default port of LoopbackBrokerServer
+     */
+    public static int loopbackPort(String url) {
+        int port = java.net.URI.create(url).getPort();
+        return port < 0 ? LoopbackBrokerServer.DEFAULT_PORT : port;
+    }
+
+    public static boolean isLoopback(String url) {
+        return EMBEDDED.equals(url) || url.startsWith(LOOPBACK_SCHEME);
+    }
+}
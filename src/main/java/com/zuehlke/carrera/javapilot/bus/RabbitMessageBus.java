@@ -0,0 +1,140 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import com.rabbitmq.client.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * MessageBus on a real rabbitmq broker. See DemoLowLevelAPI for the basics.
+ *
+ * Uses one single connection with one channel for all incoming and one for all outgoing messages. All deliveries are
+ * dispatched on one dedicated consumer thread.
+ */
+public class RabbitMessageBus implements MessageBus {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RabbitMessageBus.class);
+
+    private final String rabbitUrl;
+    private final String consumerThreadName;
+    private final Set<String> declaredExchanges = new HashSet<>();
+
+    private ExecutorService consumerThread;
+    private Connection connection;
+    private Channel inChannel;
+    private Channel outChannel;
+
+    /**
+     * @param rabbitUrl either a plain host name or an amqp:// uri
+     * @param consumerThreadName the name of the thread that calls the delivery handlers
+     */
+    public RabbitMessageBus(String rabbitUrl, String consumerThreadName) {
+        this.rabbitUrl = rabbitUrl;
+        this.consumerThreadName = consumerThreadName;
+    }
+
+    @Override
+    public void connect() throws IOException {
+        ConnectionFactory connectionFactory = new ConnectionFactory();
+        try {
+            if (rabbitUrl.startsWith("amqp")) {
+                connectionFactory.setUri(rabbitUrl);
+            } else {
+                connectionFactory.setHost(rabbitUrl);
+            }
+        } catch (Exception e) {
+            throw new IOException("Invalid rabbit url " + rabbitUrl, e);
+        }
+        connectionFactory.setRequestedHeartbeat(5);
+
+        // a reconnect replaces the consumer thread of the lost connection
+        if (consumerThread != null) {
+            consumerThread.shutdown();
+        }
+        consumerThread = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, consumerThreadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        connection = connectionFactory.newConnection(consumerThread);
+        connection.addShutdownListener(cause -> LOGGER.info("Connection was shut down. Reason: {}",
+                cause.getReason() == null ? cause.getMessage() : cause.getReason().protocolMethodName()));
+
+        declaredExchanges.clear();
+        outChannel = connection.createChannel();
+        inChannel = connection.createChannel();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connection != null && connection.isOpen();
+    }
+
+    // publishing may happen from several threads, but channels must not be shared for that
+    @Override
+    public synchronized void publish(String exchange, String routingKey, String contentType,
+                                     Map<String, Object> headers, byte[] body) throws IOException {
+        declareExchange(outChannel, exchange);
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .expiration("0")
+                .contentType(contentType)
+                .headers(headers)
+                .build();
+        outChannel.basicPublish(exchange, routingKey, properties, body);
+    }
+
+    @Override
+    public synchronized void subscribe(String exchange, String routingKey, boolean noAck, DeliveryHandler handler)
+            throws IOException {
+        String queueName;
+        if (DEFAULT_EXCHANGE.equals(exchange)) {
+            queueName = routingKey;
+            inChannel.queueDeclare(queueName, true, false, false, null);
+        } else {
+            declareExchange(inChannel, exchange);
+            queueName = inChannel.queueDeclare().getQueue();
+            inChannel.queueBind(queueName, exchange, routingKey);
+        }
+        inChannel.basicConsume(queueName, noAck, new DefaultConsumer(inChannel) {
+
+            @Override
+            public void handleDelivery(String consumerTag, Envelope envelope,
+                                       AMQP.BasicProperties properties, byte[] body) throws IOException {
+                try {
+                    handler.handle(properties.getContentType(), properties.getHeaders(), body);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Dropping message on {} that failed: {}", envelope.getRoutingKey(), e.toString());
+                }
+                if (!noAck) {
+                    getChannel().basicAck(envelope.getDeliveryTag(), false);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (connection != null) {
+                connection.close();
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to close the connection: {}", e.getMessage());
+        }
+        if (consumerThread != null) {
+            consumerThread.shutdown();
+        }
+    }
+
+    private void declareExchange(Channel channel, String exchange) throws IOException {
+        if (!DEFAULT_EXCHANGE.equals(exchange) && declaredExchanges.add(exchange)) {
+            channel.exchangeDeclare(exchange, "direct");
+        }
+    }
+}
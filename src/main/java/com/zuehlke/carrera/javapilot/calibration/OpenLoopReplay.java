@@ -0,0 +1,130 @@
+package com.zuehlke.carrera.javapilot.calibration;
+
+import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.RaceStopMessage;
+import com.zuehlke.carrera.relayapi.messages.RoundTimeMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
+import com.zuehlke.carrera.simulator.config.SimulatorProperties;
+import com.zuehlke.carrera.simulator.model.PilotInterface;
+import com.zuehlke.carrera.simulator.model.RaceTrackSimulatorSystem;
+import com.zuehlke.carrera.simulator.model.akka.communication.StompNewsInterface;
+import org.apache.commons.math3.distribution.NormalDistribution;
+import org.apache.commons.math3.random.Well19937c;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drives a fresh RaceTrackSimulatorSystem with the power controls of a recorded race, open loop: each power control
+ * goes to the simulator when as much time has passed on the simulator's sensor events as had passed in the race,
+ * whatever the simulated car does. The simulated gyro-z comes back as a Trace, to compare with the recorded one.
+ *
+ * Every run has its own simulator, so runs with different settings can go in parallel. As the power controls follow
+ * the simulator's time rather than the wall clock, the replay runs as fast as the simulator does. The simulator is
+ * noisy, so a single run tells little about the settings: score several runs, with different seeds of the jitter of
+ * its ticks, and compare the means.
+ */
+public class OpenLoopReplay {
+
+    private static final AtomicInteger runs = new AtomicInteger();
+
+    private final RecordedRace race;
+
+    public OpenLoopReplay(RecordedRace race) {
+        this.race = race;
+    }
+
+    /**
+     * @param seed of the jitter of the simulator's ticks, runs with the same seed get the same ticks
+     * @param timeoutMillis wall clock time to give the simulator at most
+     * @return the simulated gyro-z, shorter than the recorded one if the simulator ran out of time
+     */
+    public Trace run(SimulatorProperties settings, long seed, long timeoutMillis) throws InterruptedException {
+        PowerFeed feed = new PowerFeed();
+        RaceTrackSimulatorSystem simulator = new RaceTrackSimulatorSystem("openloop-" + runs.incrementAndGet(), feed,
+                new StompNewsInterface(new SimpMessagingTemplate(new DiscardingChannel())),
+                new NormalDistribution(new Well19937c(seed), settings.getTickPeriod(), settings.getSigma()), settings);
+        feed.simulator = simulator;
+        try {
+            RaceStartMessage start = race.getStart() != null ? race.getStart() : new RaceStartMessage(
+                    race.getTag(), "calibration", "openloop", System.currentTimeMillis(), race.getTag(), false);
+            simulator.startRace(start);
+            simulator.startClock();
+            feed.powerUntil(0);
+            feed.done.await(timeoutMillis, TimeUnit.MILLISECONDS);
+            simulator.stopRace(new RaceStopMessage());
+            simulator.stopClock();
+        } finally {
+            simulator.shutdown();
+        }
+        synchronized (feed) {
+            return feed.trace.build().until(race.getDuration());
+        }
+    }
+
+    /**
+     * collects the simulated sensor events, and sends the power controls that are due by their time
+     */
+    private class PowerFeed implements PilotInterface {
+
+        private final Trace.Builder trace = new Trace.Builder();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile RaceTrackSimulatorSystem simulator;
+        private int next; // power control
+
+        @Override
+        public synchronized void send(SensorEvent message) {
+            trace.add(message.getTimeStamp(), message.getG()[2]);
+            powerUntil(trace.last());
+            if (trace.last() >= race.getDuration()) {
+                done.countDown();
+            }
+        }
+
+        synchronized void powerUntil(long offset) {
+            while (next < race.getPowerControls() && race.getPowerOffset(next) <= offset) {
+                simulator.setPower(new PowerControl(race.getPower(next), "openloop", "", System.currentTimeMillis()));
+                next++;
+            }
+        }
+
+        @Override
+        public void send(VelocityMessage message) {
+        }
+
+        @Override
+        public void send(PenaltyMessage message) {
+        }
+
+        @Override
+        public void send(RoundTimeMessage message) {
+        }
+
+        @Override
+        public void ensureConnection(String url) {
+        }
+    }
+
+    /**
+     * the simulator's news are for the web ui, which a replay has none of
+     */
+    private static class DiscardingChannel implements MessageChannel {
+
+        @Override
+        public boolean send(Message<?> message) {
+            return true;
+        }
+
+        @Override
+        public boolean send(Message<?> message, long timeout) {
+            return true;
+        }
+    }
+}
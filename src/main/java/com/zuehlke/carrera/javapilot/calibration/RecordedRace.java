@@ -0,0 +1,121 @@
+package com.zuehlke.carrera.javapilot.calibration;
+
+import com.zuehlke.carrera.javapilot.io.EndOfStreamException;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The power controls a pilot sent in a recorded race, and the gyro-z the track answered with.
+ *
+ * The power controls have the pilot's clock and the sensor events the track's, so both are taken relative to their
+ * first message, which both sides sent right after the race start.
+ */
+public final class RecordedRace {
+
+    private final String tag;
+    private final RaceStartMessage start;
+    private final long[] powerOffsets;
+    private final int[] power;
+    private final Trace trace;
+
+    private RecordedRace(String tag, RaceStartMessage start, long[] powerOffsets, int[] power, Trace trace) {
+        this.tag = tag;
+        this.start = start;
+        this.powerOffsets = powerOffsets;
+        this.power = power;
+        this.trace = trace;
+    }
+
+    /**
+     * @param maxMillis how much of the race to load at most
+     */
+    public static RecordedRace load(String dataDirectory, String tag, long maxMillis) throws IOException {
+        Supplier<Object> supplier = new RaceRecorderPlayer(dataDirectory).getSupplier(tag);
+        RaceStartMessage start = null;
+        List<PowerControl> powerControls = new ArrayList<>();
+        Trace.Builder trace = new Trace.Builder();
+        try {
+            while (true) {
+                Object message = supplier.get();
+                if (message instanceof RaceStartMessage) {
+                    start = (RaceStartMessage) message;
+                } else if (message instanceof PowerControl) {
+                    powerControls.add((PowerControl) message);
+                } else if (message instanceof SensorEvent) {
+                    SensorEvent event = (SensorEvent) message;
+                    trace.add(event.getTimeStamp(), event.getG()[2]);
+                }
+            }
+        } catch (EndOfStreamException e) {
+            // all of the race read
+        } finally {
+            if (supplier instanceof Closeable) {
+                ((Closeable) supplier).close();
+            }
+        }
+        if (powerControls.isEmpty() || trace.last() == 0) {
+            throw new IllegalArgumentException("Race " + tag + " has no power controls or sensor events");
+        }
+
+        long first = powerControls.get(0).getTimeStamp();
+        int n = 0;
+        while (n < powerControls.size() && powerControls.get(n).getTimeStamp() - first <= maxMillis) {
+            n++;
+        }
+        long[] powerOffsets = new long[n];
+        int[] power = new int[n];
+        for (int i = 0; i < n; i++) {
+            powerOffsets[i] = powerControls.get(i).getTimeStamp() - first;
+            power[i] = powerControls.get(i).getP();
+        }
+        return new RecordedRace(tag, start, powerOffsets, power, trace.build().until(maxMillis));
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    /**
+     * @return the race start as recorded, null if the recording has none
+     */
+    public RaceStartMessage getStart() {
+        return start;
+    }
+
+    public int getPowerControls() {
+        return power.length;
+    }
+
+    /**
+     * @return ms since the first power control
+     */
+    public long getPowerOffset(int i) {
+        return powerOffsets[i];
+    }
+
+    public int getPower(int i) {
+        return power[i];
+    }
+
+    /**
+     * @return the gyro-z recorded
+     */
+    public Trace getTrace() {
+        return trace;
+    }
+
+    /**
+     * @return ms of the race loaded, the sensor events' or the power controls', whichever are longer
+     */
+    public long getDuration() {
+        return Math.max(trace.getDuration(), power.length == 0 ? 0 : powerOffsets[power.length - 1]);
+    }
+}
@@ -0,0 +1,299 @@
+package com.zuehlke.carrera.javapilot.calibration;
+
+import com.zuehlke.carrera.javapilot.akka.RaceRecorderActor;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Fits the simulator's settings to recorded races, so that the simulator drives like the real track.
+ *
+ * A candidate set of settings is scored by replaying the races' power controls open loop through a simulator with
+ * these settings and comparing the simulated gyro-z with the recorded one, averaged over a few runs with different
+ * seeds, the same ones for every candidate, so that the noise of the simulator does not pick the winner. The search
+ * is random: the first round tries the current settings and candidates from the whole range of each parameter, every
+ * further round tries candidates around the best one so far, within half the range of the round before. The
+ * candidates of a round are scored in parallel, each with a simulator of its own.
+ *
+ * Usage: SimulatorCalibration [-d data directory] [-t tag,tag] [-l seconds of each race] [-m calibrate|replay]
+ *                             [-r rounds] [-n candidates per round] [-p parallel simulators] [-s seeds]
+ *
+ * 'replay' just scores the current settings of application.yml, 'calibrate' searches and prints the best settings
+ * found, to paste into application.yml.
+ */
+public class SimulatorCalibration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SimulatorCalibration.class);
+
+    /** the settings searched, with their ranges */
+    public static final List<Parameter> PARAMETERS = Arrays.asList(
+            new Parameter("tickPeriod", 5, 40, true),
+            new Parameter("sigma", 0, 10, false),
+            new Parameter("razor.gyroz.offset", -50, 50, false),
+            new Parameter("razor.gyroz.sigma0", 30, 300, false),
+            new Parameter("razor.gyroz.amplitudeFactorIntoCurve", 200, 1200, false),
+            new Parameter("razor.gyroz.amplitudeFactorWithinCurve", 150, 800, false),
+            new Parameter("razor.gyroz.floatingAverageSize", 1, 15, true));
+
+    private final List<Parameter> parameters;
+    private final ToDoubleFunction<Map<String, Number>> evaluation;
+    private final ExecutorService pool;
+
+    /**
+     * @param evaluation scores a candidate, lower is better. Called from several threads at once
+     * @param parallelism the number of candidates scored at the same time
+     */
+    public SimulatorCalibration(List<Parameter> parameters, ToDoubleFunction<Map<String, Number>> evaluation,
+                                int parallelism) {
+        this.parameters = parameters;
+        this.evaluation = evaluation;
+        this.pool = Executors.newFixedThreadPool(parallelism);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        Options options = new Options();
+        options.addOption("d", true, "the data directory, defaults to " + RaceRecorderActor.DATA_DIRECTORY);
+        options.addOption("t", true, "the races to fit to, defaults to the most recent one");
+        options.addOption("l", true, "seconds of each race to use, defaults to 60");
+        options.addOption("m", true, "'calibrate' (default) or 'replay' to score the current settings only");
+        options.addOption("r", true, "rounds of the search, defaults to 4");
+        options.addOption("n", true, "candidates per round, defaults to twice the parallel simulators");
+        options.addOption("p", true, "parallel simulators, defaults to the number of processors");
+        options.addOption("s", true, "runs per race to average a score over, each with its own seed, defaults to 3");
+        CommandLine cmd = new PosixParser().parse(options, args);
+
+        String dataDirectory = cmd.getOptionValue("d", RaceRecorderActor.DATA_DIRECTORY);
+        long maxMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(cmd.getOptionValue("l", "60")));
+        List<RecordedRace> races = new ArrayList<>();
+        for (String tag : tags(dataDirectory, cmd.getOptionValue("t"))) {
+            races.add(RecordedRace.load(dataDirectory, tag, maxMillis));
+        }
+        Map<String, Object> base = SimulatorSettings.fromApplicationYml();
+        int seeds = Integer.parseInt(cmd.getOptionValue("s", "3"));
+
+        if ("replay".equals(cmd.getOptionValue("m", "calibrate"))) {
+            for (RecordedRace race : races) {
+                for (int seed = 0; seed < seeds; seed++) {
+                    Trace simulated = new OpenLoopReplay(race).run(
+                            SimulatorSettings.bind(base, new LinkedHashMap<>()), seed, timeout(race));
+                    System.out.printf("%s, seed %d: %d power controls, %d ms, %s%n", race.getTag(), seed,
+                            race.getPowerControls(), race.getDuration(),
+                            TraceComparison.compare(race.getTrace(), simulated));
+                }
+            }
+            System.exit(0);
+        }
+
+        int parallelism = Integer.parseInt(cmd.getOptionValue("p", "" + processors));
+        SimulatorCalibration calibration = new SimulatorCalibration(PARAMETERS,
+                (candidate) -> score(races, seeds, base, candidate), parallelism);
+        Candidate best = calibration.search(current(base), Integer.parseInt(cmd.getOptionValue("r", "4")),
+                Integer.parseInt(cmd.getOptionValue("n", "" + 2 * parallelism)), System.currentTimeMillis());
+        calibration.shutdown();
+        System.out.println("Best settings, score " + String.format("%.3f", best.getScore()) + ":");
+        System.out.println(best.toYaml());
+        System.exit(0);
+    }
+
+    /**
+     * @return the given tags, or the tag of the most recent race
+     */
+    private static List<String> tags(String dataDirectory, String option) {
+        if (option != null) {
+            return Arrays.asList(option.split(","));
+        }
+        File[] races = new File(dataDirectory).listFiles(RaceRecorderPlayer::isRaceDirectory);
+        if (races == null || races.length == 0) {
+            throw new IllegalArgumentException("No recorded races in " + dataDirectory);
+        }
+        Arrays.sort(races, Comparator.comparingLong(File::lastModified).reversed());
+        return Arrays.asList(races[0].getName());
+    }
+
+    private static long timeout(RecordedRace race) {
+        return 2 * race.getDuration() + TimeUnit.SECONDS.toMillis(10);
+    }
+
+    /**
+     * @param seeds the number of runs per race, with the seeds 0 to seeds - 1
+     * @return the mean score over the races and runs, infinite if a simulation failed
+     */
+    private static double score(List<RecordedRace> races, int seeds, Map<String, Object> base,
+                                Map<String, Number> candidate) {
+        double sum = 0;
+        for (RecordedRace race : races) {
+            for (int seed = 0; seed < seeds; seed++) {
+                try {
+                    Trace simulated = new OpenLoopReplay(race).run(SimulatorSettings.bind(base, candidate), seed,
+                            timeout(race));
+                    sum += TraceComparison.compare(race.getTrace(), simulated).getScore();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Double.POSITIVE_INFINITY;
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Simulation of {} with {} failed: {}", race.getTag(), candidate, e.getMessage());
+                    return Double.POSITIVE_INFINITY;
+                }
+            }
+        }
+        return sum / (races.size() * seeds);
+    }
+
+    /**
+     * @return the values of the parameters in the base settings, the middle of the range where there is none
+     */
+    private static Map<String, Number> current(Map<String, Object> base) {
+        Map<String, Number> values = new LinkedHashMap<>();
+        for (Parameter parameter : PARAMETERS) {
+            Object value = base.get(parameter.getName());
+            double number = value == null ? (parameter.min + parameter.max) / 2 : Double.parseDouble(value.toString());
+            values.put(parameter.getName(), parameter.value(number));
+        }
+        return values;
+    }
+
+    /**
+     * @param start the candidate to begin with, usually the current settings
+     * @param seed of the random candidates
+     * @return the best candidate of all rounds
+     */
+    public Candidate search(Map<String, Number> start, int rounds, int candidates, long seed)
+            throws InterruptedException, ExecutionException {
+        Random random = new Random(seed);
+        Candidate best = null;
+        double spread = 1;
+        for (int round = 0; round < rounds; round++) {
+            List<Map<String, Number>> tries = new ArrayList<>();
+            tries.add(best == null ? start : best.getValues());
+            while (tries.size() < candidates) {
+                Map<String, Number> values = new LinkedHashMap<>();
+                for (Parameter parameter : parameters) {
+                    double center = best == null ? (parameter.min + parameter.max) / 2
+                            : best.getValues().get(parameter.getName()).doubleValue();
+                    double halfWidth = spread * (parameter.max - parameter.min) / 2;
+                    values.put(parameter.getName(),
+                            parameter.value(center + (2 * random.nextDouble() - 1) * halfWidth));
+                }
+                tries.add(values);
+            }
+
+            List<Future<Double>> scores = new ArrayList<>();
+            for (Map<String, Number> values : tries) {
+                Callable<Double> score = () -> evaluation.applyAsDouble(values);
+                scores.add(pool.submit(score));
+            }
+            for (int i = 0; i < tries.size(); i++) {
+                double score = scores.get(i).get();
+                if (best == null || score < best.getScore()) {
+                    best = new Candidate(tries.get(i), score);
+                }
+            }
+            LOGGER.info("Round {} of {}: best score {} with {}", round + 1, rounds,
+                    String.format("%.3f", best.getScore()), best.getValues());
+            spread /= 2;
+        }
+        return best;
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * a setting of the simulator and the range to search it in
+     */
+    public static final class Parameter {
+        private final String name;
+        private final double min;
+        private final double max;
+        private final boolean integer;
+
+        public Parameter(String name, double min, double max, boolean integer) {
+            this.name = name;
+            this.min = min;
+            this.max = max;
+            this.integer = integer;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the value within the range, rounded for an integer parameter
+         */
+        Number value(double value) {
+            double clamped = Math.max(min, Math.min(max, value));
+            return integer ? (Number) (int) Math.round(clamped) : (Number) clamped;
+        }
+    }
+
+    public static final class Candidate {
+        private final Map<String, Number> values;
+        private final double score;
+
+        Candidate(Map<String, Number> values, double score) {
+            this.values = values;
+            this.score = score;
+        }
+
+        public Map<String, Number> getValues() {
+            return values;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        /**
+         * @return the values as the simulator section of application.yml, in the order of the parameters
+         */
+        public String toYaml() {
+            StringBuilder yaml = new StringBuilder("simulator:\n");
+            String[] section = new String[0];
+            for (Map.Entry<String, Number> entry : values.entrySet()) {
+                String[] path = entry.getKey().split("\\.");
+                int common = 0;
+                while (common < Math.min(section.length, path.length - 1) && section[common].equals(path[common])) {
+                    common++;
+                }
+                for (int level = common; level < path.length - 1; level++) {
+                    yaml.append(indent(level + 1)).append(path[level]).append(":\n");
+                }
+                Number value = entry.getValue();
+                yaml.append(indent(path.length)).append(path[path.length - 1]).append(": ")
+                        .append(value instanceof Double
+                                ? String.format(Locale.ROOT, "%.3f", value.doubleValue()) : value)
+                        .append('\n');
+                section = Arrays.copyOf(path, path.length - 1);
+            }
+            return yaml.toString();
+        }
+
+        private static String indent(int level) {
+            return new String(new char[2 * level]).replace('\0', ' ');
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.zuehlke.carrera.javapilot.calibration;
+
+import com.zuehlke.carrera.simulator.config.SimulatorProperties;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.factory.config.YamlPropertiesFactoryBean;
+import org.springframework.boot.bind.RelaxedDataBinder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.validation.BindingResult;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The simulator's settings as flat names without the "simulator." prefix, like "tickPeriod" or
+ * "razor.gyroz.sigma0", bound to SimulatorProperties the way Spring Boot binds application.yml. A value that does
+ * not fit its property, like a fraction for an integer, fails the binding instead of leaving the default in place.
+ */
+public final class SimulatorSettings {
+
+    public static final String PREFIX = "simulator.";
+
+    private SimulatorSettings() {
+    }
+
+    /**
+     * @return the simulator section of application.yml on the classpath
+     */
+    public static Map<String, Object> fromApplicationYml() {
+        YamlPropertiesFactoryBean yaml = new YamlPropertiesFactoryBean();
+        yaml.setResources(new ClassPathResource("application.yml"));
+        Properties properties = yaml.getObject();
+        Map<String, Object> settings = new TreeMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PREFIX)) {
+                settings.put(name.substring(PREFIX.length()), properties.getProperty(name));
+            }
+        }
+        return settings;
+    }
+
+    /**
+     * @param overrides replace the base settings of the same name
+     * @throws IllegalArgumentException if a setting could not be bound
+     */
+    public static SimulatorProperties bind(Map<String, Object> base, Map<String, ?> overrides) {
+        Map<String, Object> settings = new TreeMap<>(base);
+        settings.putAll(overrides);
+        SimulatorProperties properties = new SimulatorProperties();
+        RelaxedDataBinder binder = new RelaxedDataBinder(properties);
+        binder.bind(new MutablePropertyValues(settings));
+        BindingResult result = binder.getBindingResult();
+        if (result.hasErrors()) {
+            throw new IllegalArgumentException("Invalid simulator settings: " + result.getAllErrors());
+        }
+        return properties;
+    }
+}
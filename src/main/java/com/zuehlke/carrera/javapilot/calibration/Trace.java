@@ -0,0 +1,84 @@
+package com.zuehlke.carrera.javapilot.calibration;
+
+import java.util.Arrays;
+
+/**
+ * Gyro-z over time, from a recording or a simulation: ms since the first sample, and the value.
+ */
+public final class Trace {
+
+    private final long[] offsets;
+    private final int[] gyroZ;
+
+    public Trace(long[] offsets, int[] gyroZ) {
+        if (offsets.length != gyroZ.length) {
+            throw new IllegalArgumentException(offsets.length + " offsets, but " + gyroZ.length + " values");
+        }
+        this.offsets = offsets;
+        this.gyroZ = gyroZ;
+    }
+
+    public int size() {
+        return offsets.length;
+    }
+
+    public long getOffset(int i) {
+        return offsets[i];
+    }
+
+    public int getGyroZ(int i) {
+        return gyroZ[i];
+    }
+
+    /**
+     * @return ms from the first to the last sample
+     */
+    public long getDuration() {
+        return offsets.length == 0 ? 0 : offsets[offsets.length - 1];
+    }
+
+    /**
+     * @return the samples up to the given offset
+     */
+    public Trace until(long millis) {
+        int n = 0;
+        while (n < offsets.length && offsets[n] <= millis) {
+            n++;
+        }
+        return new Trace(Arrays.copyOf(offsets, n), Arrays.copyOf(gyroZ, n));
+    }
+
+    /**
+     * Collects samples, offsets relative to the first timestamp added.
+     */
+    static class Builder {
+        private long[] offsets = new long[1024];
+        private int[] gyroZ = new int[1024];
+        private int size;
+        private long first;
+
+        void add(long timestamp, int value) {
+            if (size == 0) {
+                first = timestamp;
+            }
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * size);
+                gyroZ = Arrays.copyOf(gyroZ, 2 * size);
+            }
+            offsets[size] = timestamp - first;
+            gyroZ[size] = value;
+            size++;
+        }
+
+        /**
+         * @return ms since the first sample, 0 before any
+         */
+        long last() {
+            return size == 0 ? 0 : offsets[size - 1];
+        }
+
+        Trace build() {
+            return new Trace(Arrays.copyOf(offsets, size), Arrays.copyOf(gyroZ, size));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.zuehlke.carrera.javapilot.calibration;
+
+import com.zuehlke.carrera.javapilot.analytics.DynamicTimeWarping;
+
+/**
+ * How far a simulated gyro-z trace is from a recorded one, as a score, lower being closer.
+ *
+ * Both traces are averaged over bins of BIN_MILLIS and aligned with dynamic time warping, so a simulated car that
+ * drifts a little ahead or behind is not punished for it. Three parts add up to the score:
+ * - shape: the mean distance of the aligned bins, relative to the largest recorded one
+ * - noise: how much the sample to sample noise differs, as the absolute log of the ratio
+ * - missing: the fraction of the recorded time the simulation did not get to
+ */
+public final class TraceComparison {
+
+    public static final long BIN_MILLIS = 50;
+    private static final double WINDOW = 0.1;
+
+    private final double shape;
+    private final double noise;
+    private final double missing;
+
+    private TraceComparison(double shape, double noise, double missing) {
+        this.shape = shape;
+        this.noise = noise;
+        this.missing = missing;
+    }
+
+    public static TraceComparison compare(Trace recorded, Trace simulated) {
+        long duration = recorded.getDuration();
+        if (duration == 0) {
+            throw new IllegalArgumentException("The recorded trace is empty");
+        }
+        double missing = Math.max(0, 1 - (double) simulated.getDuration() / duration);
+        if (simulated.size() < 2) {
+            return new TraceComparison(1, 1, missing);
+        }
+
+        long common = Math.min(duration, simulated.getDuration());
+        double[] a = bins(recorded, common);
+        double[] b = bins(simulated, common);
+        double largest = 0;
+        for (double value : a) {
+            largest = Math.max(largest, Math.abs(value));
+        }
+        double shape = new DynamicTimeWarping(WINDOW).align(a, b).getDistance() / Math.max(1, largest);
+
+        double noise = Math.abs(Math.log(Math.max(1, noise(simulated)) / Math.max(1, noise(recorded))));
+        return new TraceComparison(shape, noise, missing);
+    }
+
+    /**
+     * @return the mean per bin up to the given offset, empty bins take the value of the one before
+     */
+    static double[] bins(Trace trace, long until) {
+        int count = (int) (until / BIN_MILLIS) + 1;
+        double[] sums = new double[count];
+        int[] samples = new int[count];
+        for (int i = 0; i < trace.size() && trace.getOffset(i) <= until; i++) {
+            int bin = (int) (trace.getOffset(i) / BIN_MILLIS);
+            sums[bin] += trace.getGyroZ(i);
+            samples[bin]++;
+        }
+        double[] means = new double[count];
+        for (int bin = 0; bin < count; bin++) {
+            means[bin] = samples[bin] > 0 ? sums[bin] / samples[bin] : bin > 0 ? means[bin - 1] : 0;
+        }
+        return means;
+    }
+
+    /**
+     * @return the root mean square of the differences from one sample to the next
+     */
+    static double noise(Trace trace) {
+        double sum = 0;
+        for (int i = 1; i < trace.size(); i++) {
+            double difference = trace.getGyroZ(i) - trace.getGyroZ(i - 1);
+            sum += difference * difference;
+        }
+        return trace.size() < 2 ? 0 : Math.sqrt(sum / (trace.size() - 1));
+    }
+
+    public double getScore() {
+        return shape + noise + missing;
+    }
+
+    public double getShape() {
+        return shape;
+    }
+
+    public double getNoise() {
+        return noise;
+    }
+
+    public double getMissing() {
+        return missing;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("score %.3f (shape %.3f, noise %.3f, missing %.3f)", getScore(), shape, noise, missing);
+    }
+}
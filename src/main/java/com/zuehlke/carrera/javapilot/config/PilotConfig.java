@@ -7,4 +7,8 @@ import org.springframework.context.annotation.Configuration;
 @EnableConfigurationProperties({PilotProperties.class})  // loaded from /resources/application.yml
 public class PilotConfig {
 
+    /**
+     * active with '-f pilot': the simulator, its web socket endpoints and the web ui are left out
+     */
+    public static final String PILOT_ONLY = "pilot-only";
 }
@@ -1,7 +1,11 @@
 package com.zuehlke.carrera.javapilot.config;
 
+import com.zuehlke.carrera.javapilot.io.WireFormat;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Pilot Properties loaded from /resources/application.yml
  */
@@ -11,6 +15,17 @@ public class PilotProperties {
     private String name;
     private String accessCode;
     private String rabbitUrl;
+    private WireFormat wireFormat = WireFormat.json;
+    private String simulatorUrl;
+    private double loopbackLatency = 0;
+    private double loopbackJitter = 0;
+    private boolean recording = true;
+    private boolean reporting = true;
+    private int blackBoxSeconds = 10;
+    private int warmUpRaces = 0;
+    private String strategy = "PowerUpUntilPenalty";
+    private String dataDirectory = "data";
+    private List<PilotProperties> pilots = new ArrayList<>();
 
     public String getRelayUrl() {
         return relayUrl;
@@ -40,4 +55,106 @@ public class PilotProperties {
     public void setRabbitUrl(String rabbitUrl) {
         this.rabbitUrl = rabbitUrl;
     }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    public void setWireFormat(WireFormat wireFormat) {
+        this.wireFormat = wireFormat;
+    }
+
+    public String getSimulatorUrl() {
+        return simulatorUrl;
+    }
+
+    public void setSimulatorUrl(String simulatorUrl) {
+        this.simulatorUrl = simulatorUrl;
+    }
+
+    public double getLoopbackLatency() {
+        return loopbackLatency;
+    }
+
+    public void setLoopbackLatency(double loopbackLatency) {
+        this.loopbackLatency = loopbackLatency;
+    }
+
+    public double getLoopbackJitter() {
+        return loopbackJitter;
+    }
+
+    public void setLoopbackJitter(double loopbackJitter) {
+        this.loopbackJitter = loopbackJitter;
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    /**
+     * @return whether the pilot counts into the metrics and the startup report, and keeps its strategy's snapshots on
+     * disk. Off for throw-away copies like the warm-up pilot, so that they don't pass for the live one
+     */
+    public boolean isReporting() {
+        return reporting;
+    }
+
+    public void setReporting(boolean reporting) {
+        this.reporting = reporting;
+    }
+
+    public int getBlackBoxSeconds() {
+        return blackBoxSeconds;
+    }
+
+    public void setBlackBoxSeconds(int blackBoxSeconds) {
+        this.blackBoxSeconds = blackBoxSeconds;
+    }
+
+    public int getWarmUpRaces() {
+        return warmUpRaces;
+    }
+
+    public void setWarmUpRaces(int warmUpRaces) {
+        this.warmUpRaces = warmUpRaces;
+    }
+
+    /**
+     * @return the strategy actor's class, in the akka package if not fully qualified
+     */
+    public String getStrategy() {
+        return strategy;
+    }
+
+    public void setStrategy(String strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return where the races of this pilot are recorded
+     */
+    public String getDataDirectory() {
+        return dataDirectory;
+    }
+
+    public void setDataDirectory(String dataDirectory) {
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * @return more pilots to host in the same actor system, each with its own name, access code, strategy and
+     * data directory, and its own connections
+     */
+    public List<PilotProperties> getPilots() {
+        return pilots;
+    }
+
+    public void setPilots(List<PilotProperties> pilots) {
+        this.pilots = pilots;
+    }
 }
@@ -0,0 +1,28 @@
+package com.zuehlke.carrera.javapilot.config;
+
+import com.zuehlke.carrera.javapilot.services.PilotWebSocketHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * Registers the plain websocket endpoint that pilots in other processes connect to with '-p ws'
+ */
+@Configuration
+@Profile("!" + PilotConfig.PILOT_ONLY)
+@EnableWebSocket
+public class PilotWebSocketConfig implements WebSocketConfigurer {
+
+    public static final String PILOT_ENDPOINT = "/pilot-ws";
+
+    @Autowired
+    private PilotWebSocketHandler pilotWebSocketHandler;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(pilotWebSocketHandler, PILOT_ENDPOINT);
+    }
+}
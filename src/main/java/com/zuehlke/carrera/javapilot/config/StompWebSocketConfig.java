@@ -1,12 +1,14 @@
 package com.zuehlke.carrera.javapilot.config;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.AbstractWebSocketMessageBrokerConfigurer;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 
 @Configuration
+@Profile("!" + PilotConfig.PILOT_ONLY)
 @EnableWebSocketMessageBroker
 public class StompWebSocketConfig extends AbstractWebSocketMessageBrokerConfigurer {
 
@@ -0,0 +1,146 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact binary encoding for the high-frequency messages between simulator and pilot.
+ *
+ * Every message starts with a version byte and a type byte, followed by the fields in fixed order.
+ * Strings are written as length-prefixed UTF-8, with a length of -1 for null. Truncated messages are rejected with
+ * an IllegalArgumentException, like any other undecodable message.
+ */
+public class BinaryMessageCodec {
+
+    public static final byte VERSION = 1;
+
+    static final byte SENSOR_EVENT = 1;
+    static final byte POWER_CONTROL = 2;
+
+    private static final int HEADER_SIZE = 2;
+
+    public boolean supports(Object message) {
+        return message instanceof SensorEvent || message instanceof PowerControl;
+    }
+
+    public byte[] encode(Object message) {
+        if (message instanceof SensorEvent) {
+            return encode((SensorEvent) message);
+        } else if (message instanceof PowerControl) {
+            return encode((PowerControl) message);
+        }
+        throw new IllegalArgumentException("No binary encoding for " + message.getClass().getName());
+    }
+
+    public Object decode(byte[] bytes) {
+        try {
+            return decode(ByteBuffer.wrap(bytes));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated binary message of " + bytes.length + " bytes");
+        }
+    }
+
+    private Object decode(ByteBuffer buffer) {
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary version " + version + ", expected " + VERSION);
+        }
+        byte type = buffer.get();
+        switch (type) {
+            case SENSOR_EVENT:
+                return decodeSensorEvent(buffer);
+            case POWER_CONTROL:
+                return decodePowerControl(buffer);
+            default:
+                throw new IllegalArgumentException("Unknown binary message type " + type);
+        }
+    }
+
+    private byte[] encode(SensorEvent event) {
+        byte[] trackId = utf8(event.getRaceTrackId());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 8 + 8 + 9 * 4 + sizeOf(trackId));
+        buffer.put(VERSION).put(SENSOR_EVENT);
+        buffer.putLong(event.getTimeStamp());
+        buffer.putLong(event.getT());
+        putTriple(buffer, event.getA());
+        putTriple(buffer, event.getG());
+        putTriple(buffer, event.getM());
+        putString(buffer, trackId);
+        return buffer.array();
+    }
+
+    private SensorEvent decodeSensorEvent(ByteBuffer buffer) {
+        long timeStamp = buffer.getLong();
+        long t = buffer.getLong();
+        int[] a = getTriple(buffer);
+        int[] g = getTriple(buffer);
+        int[] m = getTriple(buffer);
+        String trackId = getString(buffer);
+        SensorEvent event = new SensorEvent(trackId, a, g, m, timeStamp);
+        event.setT(t);
+        return event;
+    }
+
+    private byte[] encode(PowerControl powerControl) {
+        byte[] pilotId = utf8(powerControl.getPilotId());
+        byte[] accessCode = utf8(powerControl.getAccessCode());
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 4 + 8 + sizeOf(pilotId) + sizeOf(accessCode));
+        buffer.put(VERSION).put(POWER_CONTROL);
+        buffer.putInt(powerControl.getP());
+        buffer.putLong(powerControl.getTimeStamp());
+        putString(buffer, pilotId);
+        putString(buffer, accessCode);
+        return buffer.array();
+    }
+
+    private PowerControl decodePowerControl(ByteBuffer buffer) {
+        int power = buffer.getInt();
+        long timeStamp = buffer.getLong();
+        String pilotId = getString(buffer);
+        String accessCode = getString(buffer);
+        return new PowerControl(power, pilotId, accessCode, timeStamp);
+    }
+
+    private static void putTriple(ByteBuffer buffer, int[] values) {
+        for (int i = 0; i < 3; i++) {
+            buffer.putInt(values == null ? 0 : values[i]);
+        }
+    }
+
+    private static int[] getTriple(ByteBuffer buffer) {
+        return new int[]{buffer.getInt(), buffer.getInt(), buffer.getInt()};
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int sizeOf(byte[] string) {
+        return 4 + (string == null ? 0 : string.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] string) {
+        if (string == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(string.length).put(string);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
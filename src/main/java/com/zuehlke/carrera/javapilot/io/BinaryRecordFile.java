@@ -0,0 +1,88 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The binary form of the high-frequency files of a recorded race, the sensor events and the power controls.
+ *
+ * A file starts with a magic number, followed by one record per message: its length and its BinaryMessageCodec
+ * encoding. It is read and written as a stream, without holding more than one record in memory.
+ */
+class BinaryRecordFile {
+
+    static final String SUFFIX = ".bin";
+
+    private static final int MAGIC = 0x52414345; // "RACE"
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    static Writer writer(File file) throws IOException {
+        return new Writer(file);
+    }
+
+    static RecordReader reader(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+        try {
+            int magic = in.readInt();
+            if (magic != MAGIC) {
+                throw new IOException(file + " is no binary race recording");
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new RecordReader() {
+            @Override
+            public Object next() throws IOException {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return null;
+                }
+                byte[] record = new byte[length];
+                in.readFully(record);
+                return codec.decode(record);
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    static class Writer implements Closeable {
+
+        private final DataOutputStream out;
+
+        private Writer(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+            out.writeInt(MAGIC);
+        }
+
+        /**
+         * @param message a SensorEvent or a PowerControl
+         */
+        void write(Object message) throws IOException {
+            byte[] record = codec.encode(message);
+            out.writeInt(record.length);
+            out.write(record);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Always-on flight recorder of the last seconds of sensor, velocity, power and penalty events.
+ *
+ * All events go into one ring of preallocated primitive columns, so recording an event is a handful of array
+ * stores, without any allocation. Not thread safe: record and dump from the pilot actor only. A dump copies the
+ * columns and writes the copy as csv to the blackbox directory on a background thread. The file names start with
+ * the pilot's name, so that pilots sharing a directory keep their dumps apart. A black box of zero seconds records
+ * nothing and writes no dumps.
+ */
+public class BlackBox {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BlackBox.class);
+
+    /** the subdirectory of the pilot's data directory to write the dumps to */
+    public static final String DIRECTORY = "blackbox";
+
+    /** the ring holds this many events per second of history. Beyond that rate, the history gets shorter */
+    public static final int EVENTS_PER_SECOND = 500;
+
+    public static final byte SENSOR = 1;
+    public static final byte VELOCITY = 2;
+    public static final byte POWER = 3;
+    public static final byte PENALTY = 4;
+
+    private static final String[] KIND_NAMES = {"", "sensor", "velocity", "power", "penalty"};
+    private static final int AXES = 9; // a, g and m, three axes each
+
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor((runnable) -> {
+        Thread thread = new Thread(runnable, "black-box-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File directory;
+    private final String pilot;
+    private final long windowMillis;
+    private final Columns columns;
+
+    private long written; // total number of events ever recorded
+
+    /**
+     * @param directory where to write the dumps to
+     * @param pilot the name of the pilot, the file names start with it
+     * @param seconds the history to keep
+     */
+    public BlackBox(File directory, String pilot, int seconds) {
+        this.directory = directory;
+        this.pilot = pilot;
+        this.windowMillis = seconds * 1000L;
+        this.columns = new Columns(seconds * EVENTS_PER_SECOND);
+    }
+
+    public void record(SensorEvent event) {
+        if (columns.capacity == 0) {
+            return;
+        }
+        int i = next(SENSOR, event.getTimeStamp(), 0);
+        int base = i * AXES;
+        int[] axes = columns.axes;
+        axes[base] = event.getA()[0];
+        axes[base + 1] = event.getA()[1];
+        axes[base + 2] = event.getA()[2];
+        axes[base + 3] = event.getG()[0];
+        axes[base + 4] = event.getG()[1];
+        axes[base + 5] = event.getG()[2];
+        axes[base + 6] = event.getM()[0];
+        axes[base + 7] = event.getM()[1];
+        axes[base + 8] = event.getM()[2];
+    }
+
+    public void record(VelocityMessage message) {
+        next(VELOCITY, message.getTimeStamp(), message.getVelocity());
+    }
+
+    public void record(PowerControl powerControl) {
+        next(POWER, powerControl.getTimeStamp(), powerControl.getP());
+    }
+
+    public void record(PenaltyMessage penalty) {
+        next(PENALTY, 0, penalty.getActualSpeed());
+    }
+
+    /**
+     * writes the events of the last seconds to a new file in the background
+     * @param reason ends up in the file name, like "penalty"
+     * @return the file the dump is written to
+     */
+    public File dump(String reason) {
+        if (columns.capacity == 0) {
+            return null;
+        }
+        int count = (int) Math.min(written, columns.capacity);
+        int first = (int) ((written - count) % columns.capacity);
+        Columns copy = columns.copyInOrder(first, count);
+        File file = new File(directory,
+                pilot + "-" + new DateTime().toString("ddHHmmss-SSS") + "-" + reason + ".csv");
+        writer.execute(() -> write(copy, count, file));
+        return file;
+    }
+
+    private int next(byte kind, long timestamp, double value) {
+        if (columns.capacity == 0) {
+            return 0;
+        }
+        int i = (int) (written++ % columns.capacity);
+        columns.arrival[i] = System.currentTimeMillis();
+        columns.timestamp[i] = timestamp;
+        columns.kind[i] = kind;
+        columns.value[i] = value;
+        return i;
+    }
+
+    private void write(Columns events, int count, File file) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            LOGGER.error("Could not create {}", directory.getAbsolutePath());
+            return;
+        }
+        long newest = count == 0 ? 0 : events.arrival[count - 1];
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(file))) {
+            out.write("arrival,timestamp,kind,a0,a1,a2,g0,g1,g2,m0,m1,m2,value");
+            out.newLine();
+            for (int i = 0; i < count; i++) {
+                if (events.arrival[i] < newest - windowMillis) {
+                    continue;
+                }
+                StringBuilder line = new StringBuilder(96);
+                line.append(events.arrival[i]).append(',').append(events.timestamp[i]).append(',')
+                        .append(KIND_NAMES[events.kind[i]]);
+                for (int axis = 0; axis < AXES; axis++) {
+                    line.append(',');
+                    if (events.kind[i] == SENSOR) {
+                        line.append(events.axes[i * AXES + axis]);
+                    }
+                }
+                line.append(',');
+                if (events.kind[i] != SENSOR) {
+                    line.append(events.value[i]);
+                }
+                out.write(line.toString());
+                out.newLine();
+            }
+            LOGGER.info("Black box written to {}", file.getPath());
+        } catch (IOException e) {
+            LOGGER.error("Could not write the black box to {}: {}", file.getPath(), e.getMessage());
+        }
+    }
+
+    private static class Columns {
+        final int capacity;
+        final long[] arrival;
+        final long[] timestamp;
+        final byte[] kind;
+        final int[] axes;
+        final double[] value;
+
+        Columns(int capacity) {
+            this.capacity = capacity;
+            this.arrival = new long[capacity];
+            this.timestamp = new long[capacity];
+            this.kind = new byte[capacity];
+            this.axes = new int[capacity * AXES];
+            this.value = new double[capacity];
+        }
+
+        /**
+         * @return a copy of count events starting at first, unwrapped so that the oldest one comes first
+         */
+        Columns copyInOrder(int first, int count) {
+            Columns copy = new Columns(count);
+            int tail = Math.min(count, capacity - first);
+            copyRange(first, copy, 0, tail);
+            copyRange(0, copy, tail, count - tail);
+            return copy;
+        }
+
+        private void copyRange(int from, Columns to, int at, int length) {
+            System.arraycopy(arrival, from, to.arrival, at, length);
+            System.arraycopy(timestamp, from, to.timestamp, at, length);
+            System.arraycopy(kind, from, to.kind, at, length);
+            System.arraycopy(axes, from * AXES, to.axes, at * AXES, length * AXES);
+            System.arraycopy(value, from, to.value, at, length);
+        }
+    }
+}
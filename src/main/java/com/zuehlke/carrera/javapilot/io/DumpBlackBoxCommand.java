@@ -0,0 +1,14 @@
+package com.zuehlke.carrera.javapilot.io;
+
+public class DumpBlackBoxCommand {
+
+    private final String reason;
+
+    public DumpBlackBoxCommand(String reason) {
+        this.reason = reason;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
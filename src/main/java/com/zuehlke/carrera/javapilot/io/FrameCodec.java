@@ -0,0 +1,65 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Encodes the messages between simulator and pilot into self-describing binary frames for the websocket transport.
+ *
+ * The first byte of a frame tells what follows: 0 for a message in the binary format, otherwise the json encoded
+ * message of the type found at that position in the list of json types.
+ */
+public class FrameCodec {
+
+    private static final byte BINARY = 0;
+
+    private final List<Class<?>> jsonTypes = Arrays.asList(
+            VelocityMessage.class,
+            PenaltyMessage.class,
+            RaceStartMessage.class,
+            RaceStopMessage.class,
+            RoundTimeMessage.class,
+            PilotLifeSign.class);
+
+    private final MessageCodec codec = new MessageCodec();
+
+    public byte[] encode(Object message) throws IOException {
+        WireFormat format = codec.formatFor(message, WireFormat.binary);
+        byte kind;
+        if (format == WireFormat.binary) {
+            kind = BINARY;
+        } else {
+            int index = jsonTypes.indexOf(message.getClass());
+            if (index < 0) {
+                throw new IllegalArgumentException("Can't frame " + message.getClass().getName());
+            }
+            kind = (byte) (index + 1);
+        }
+        byte[] payload = codec.encode(message, format);
+        byte[] frame = new byte[payload.length + 1];
+        frame[0] = kind;
+        System.arraycopy(payload, 0, frame, 1, payload.length);
+        return frame;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the frame is empty or of an unknown kind
+     */
+    public Object decode(byte[] frame) throws IOException {
+        if (frame.length == 0) {
+            throw new IllegalArgumentException("Empty frame");
+        }
+        byte kind = frame[0];
+        byte[] payload = Arrays.copyOfRange(frame, 1, frame.length);
+        if (kind == BINARY) {
+            return codec.decode(payload, WireFormat.binary.getContentType(), Object.class);
+        }
+        if (kind < 0 || kind > jsonTypes.size()) {
+            throw new IllegalArgumentException("Unknown frame kind " + kind);
+        }
+        return codec.decode(payload, WireFormat.json.getContentType(), jsonTypes.get(kind - 1));
+    }
+}
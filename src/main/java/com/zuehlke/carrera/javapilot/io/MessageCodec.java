@@ -0,0 +1,49 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Encodes and decodes the messages between simulator and pilot in either of the wire formats.
+ * Messages without a binary encoding always travel as json.
+ */
+public class MessageCodec {
+
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final BinaryMessageCodec binaryCodec = new BinaryMessageCodec();
+
+    /**
+     * @param message the message to be sent
+     * @param requested the format negotiated with the peer
+     * @return the format the message will actually be encoded in
+     */
+    public WireFormat formatFor(Object message, WireFormat requested) {
+        if (requested == WireFormat.binary && binaryCodec.supports(message)) {
+            return WireFormat.binary;
+        }
+        return WireFormat.json;
+    }
+
+    public byte[] encode(Object message, WireFormat format) throws IOException {
+        if (format == WireFormat.binary) {
+            return binaryCodec.encode(message);
+        }
+        return mapper.writeValueAsBytes(message);
+    }
+
+    /**
+     * @param body the received bytes
+     * @param contentType the content type of the received message, may be null for json
+     * @param type the type expected for json content
+     * @return the decoded message
+     */
+    public Object decode(byte[] body, String contentType, Class<?> type) throws IOException {
+        if (WireFormat.fromContentType(contentType) == WireFormat.binary) {
+            return binaryCodec.decode(body);
+        }
+        return mapper.readValue(body, type);
+    }
+}
@@ -1,13 +1,15 @@
 package com.zuehlke.carrera.javapilot.io;
 
 import com.rabbitmq.tools.json.JSONWriter;
-import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+import com.zuehlke.carrera.javapilot.anomaly.AnomalyEvent;
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
 import com.zuehlke.carrera.relayapi.messages.*;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
@@ -18,27 +20,41 @@ public class RaceRecorderPlayer {
 
     private static final Logger logger = LoggerFactory.getLogger(RaceRecorderPlayer.class);
 
-    private static final String START="start";
-    private static final String EVENTS="events";
-    private static final String VELOCITIES="velocities";
-    private static final String PENALTIES="penalties";
-    private static final String POWER="power";
+    static final String START="start";
+    static final String EVENTS="events";
+    static final String VELOCITIES="velocities";
+    static final String PENALTIES="penalties";
+    static final String POWER="power";
+    static final String ROUNDS="rounds";
+    static final String ANOMALIES="anomalies";
 
     private boolean recording = false;
 
     private final File dataDirectory;
-    private final Map<String, FileWriter> writers = new HashMap<>();
-    private final List<String> fileNames = Arrays.asList(START, EVENTS, VELOCITIES, PENALTIES, POWER);
+    private final PilotMetrics.Pilot metrics;
+    private final Map<String, OutputStream> writers = new HashMap<>();
+    private final List<String> fileNames = Arrays.asList(START, EVENTS, VELOCITIES, PENALTIES, POWER, ROUNDS, ANOMALIES);
 
     /**
      * create a recorder to write a single race to the given directory. Create it if it doesn't exist yet.
      * @param dataDirectory the directory to create the race directory in. The race directory is named
      *                      like the current time in the format "ddHHmmss" and contains all data types in
-     *                      files named "velocities", "events", "penalties", "power", "metadata"
+     *                      files named "velocities", "events", "penalties", "power", "rounds", "metadata".
+     *                      Races converted by the RecordingConverter have "events.bin" and "power.bin" instead
+     *                      of "events" and "power", and are replayed just the same. The anomalies the pilot found
+     *                      go to "anomalies", for the analysis only: a replay finds them again.
      */
     public RaceRecorderPlayer(String dataDirectory) {
+        this(dataDirectory, null);
+    }
+
+    /**
+     * @param metrics of the pilot that records, to count the bytes and write latency, null to count nothing
+     */
+    public RaceRecorderPlayer(String dataDirectory, PilotMetrics.Pilot metrics) {
 
         this.dataDirectory = new File (dataDirectory);
+        this.metrics = metrics;
 
         if ( this.dataDirectory.exists() &&! this.dataDirectory.isDirectory()) {
             throw new RuntimeException(dataDirectory + " exists, but is no directory." );
@@ -70,6 +86,14 @@ public class RaceRecorderPlayer {
         tryWrite( event, writers.get(VELOCITIES));
     }
 
+    public void record(RoundTimeMessage event) {
+        tryWrite( event, writers.get(ROUNDS));
+    }
+
+    public void record(AnomalyEvent event) {
+        tryWrite( event, writers.get(ANOMALIES));
+    }
+
     public void record(PenaltyMessage event) {
         record (event, System.currentTimeMillis());
     }
@@ -80,6 +104,13 @@ public class RaceRecorderPlayer {
     }
 
 
+    /**
+     * @return true, if the directory holds a recorded race
+     */
+    public static boolean isRaceDirectory(File directory) {
+        return new File(directory, START).isFile();
+    }
+
     private String createAllFiles() {
         String now = new DateTime().toString("ddHHmmss");
 
@@ -91,7 +122,7 @@ public class RaceRecorderPlayer {
 
         for (String fileName : fileNames) {
             try {
-                FileWriter writer = new FileWriter(new File(raceDirectory, fileName));
+                OutputStream writer = new BufferedOutputStream(new FileOutputStream(new File(raceDirectory, fileName)));
                 writers.put(fileName, writer);
             } catch (IOException e) {
                 throw new RuntimeException(e);
@@ -100,11 +131,16 @@ public class RaceRecorderPlayer {
         return now;
     }
 
-    private void tryWrite ( Object object, FileWriter writer) {
+    // encoded once, in UTF-8 like the readers expect, so the metrics get the bytes actually written
+    private void tryWrite ( Object object, OutputStream writer) {
         if ( ! recording ) return;
         try {
-            String json = new JSONWriter().write(object);
-            writer.write(json+System.lineSeparator());
+            long start = System.nanoTime();
+            byte[] line = (new JSONWriter().write(object) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            writer.write(line);
+            if (metrics != null) {
+                metrics.recorded(line.length, System.nanoTime() - start);
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -113,7 +149,7 @@ public class RaceRecorderPlayer {
     public void close() {
 
         recording = false;
-        for ( FileWriter writer : writers.values() ) {
+        for ( OutputStream writer : writers.values() ) {
             try {
                 writer.close();
             } catch (IOException e) {
@@ -130,36 +166,56 @@ public class RaceRecorderPlayer {
     public Stream<Object> replay(String tag) {
 
         try {
-            Map<Class<?>, BufferedReader> readers = constructReaderMap(tag);
-            return Stream.generate(mergingDataSupplier(readers));
+            Map<Class<?>, RecordReader> readers = constructReaderMap(tag);
+            return Stream.generate(mergingSupplier(readers, true));
 
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private Map<Class<?>, BufferedReader> constructReaderMap(String timestamp) throws IOException {
-        Map<Class<?>, BufferedReader> readers = new HashMap<>();
-
-        Path start = dataDirectory.toPath().resolve(timestamp).resolve(START);
-        readers.put ( RaceStartMessage.class, Files.newBufferedReader(start));
+    private Map<Class<?>, RecordReader> constructReaderMap(String timestamp) throws IOException {
+        Map<Class<?>, RecordReader> readers = new HashMap<>();
+        Path race = dataDirectory.toPath().resolve(timestamp);
 
-        Path events = dataDirectory.toPath().resolve(timestamp).resolve(EVENTS);
-        readers.put ( SensorEvent.class, Files.newBufferedReader(events));
+        readers.put ( RaceStartMessage.class, jsonReader(race.resolve(START), RaceStartMessage.class));
+        readers.put ( SensorEvent.class, binaryOrJsonReader(race.resolve(EVENTS), SensorEvent.class));
+        readers.put ( PowerControl.class, binaryOrJsonReader(race.resolve(POWER), PowerControl.class));
+        readers.put ( VelocityMessage.class, jsonReader(race.resolve(VELOCITIES), VelocityMessage.class));
+        readers.put ( TimedPenaltyMessage.class, jsonReader(race.resolve(PENALTIES), TimedPenaltyMessage.class));
 
-        Path power = dataDirectory.toPath().resolve(timestamp).resolve(POWER);
-        readers.put ( PowerControl.class, Files.newBufferedReader(power));
+        // recorded since round times are kept, older races have none
+        Path rounds = race.resolve(ROUNDS);
+        if ( rounds.toFile().isFile() ) {
+            readers.put ( RoundTimeMessage.class, jsonReader(rounds, RoundTimeMessage.class));
+        }
+        return readers;
+    }
 
-        Path velocities = dataDirectory.toPath().resolve(timestamp).resolve(VELOCITIES);
-        readers.put ( VelocityMessage.class, Files.newBufferedReader(velocities));
+    private static RecordReader jsonReader(Path file, Class<?> type) throws IOException {
+        return RecordReader.json(Files.newBufferedReader(file), type);
+    }
 
-        Path penalties = dataDirectory.toPath().resolve(timestamp).resolve(PENALTIES);
-        readers.put ( TimedPenaltyMessage.class, Files.newBufferedReader(penalties));
-        return readers;
+    /**
+     * the converted binary file if there is one, the json file otherwise
+     */
+    private static RecordReader binaryOrJsonReader(Path file, Class<?> type) throws IOException {
+        File binary = new File(file.toString() + BinaryRecordFile.SUFFIX);
+        if ( binary.isFile() ) {
+            return BinaryRecordFile.reader(binary);
+        }
+        return jsonReader(file, type);
     }
 
     public Supplier<Object> getSupplier ( String tag ) throws IOException {
-        return mergingDataSupplier( constructReaderMap(tag));
+        return mergingSupplier( constructReaderMap(tag), true);
+    }
+
+    /**
+     * like getSupplier, but penalties come as TimedPenaltyMessage, with the time they arrived at the pilot
+     */
+    public Supplier<Object> getTimedSupplier ( String tag ) throws IOException {
+        return mergingSupplier( constructReaderMap(tag), false);
     }
 
     /**
@@ -168,10 +224,28 @@ public class RaceRecorderPlayer {
      * @return a supplier to create an infinite stream from
      */
     public Supplier<Object> mergingDataSupplier(final Map<Class<?>, BufferedReader> readers ) {
-        return new Supplier<Object>() {
+        Map<Class<?>, RecordReader> recordReaders = new HashMap<>();
+        readers.forEach((type, reader) -> recordReaders.put(type, RecordReader.json(reader, type)));
+        return mergingSupplier(recordReaders, true);
+    }
+
+    /**
+     * the suppliers of replays are Closeable, too, to release the files of a replay that is stopped before its end
+     */
+    private interface ClosingSupplier extends Supplier<Object>, Closeable {
+    }
+
+    private Supplier<Object> mergingSupplier(final Map<Class<?>, RecordReader> readers, boolean unwrapPenalties ) {
+        return new ClosingSupplier() {
 
             private Map<Class<?>, Object> nextObjects = null;
-            private JacksonSerializer serializer = new JacksonSerializer();
+
+            @Override
+            public void close() throws IOException {
+                for (RecordReader r : readers.values()) {
+                    r.close();
+                }
+            }
 
             @Override
             public Object get() {
@@ -184,10 +258,10 @@ public class RaceRecorderPlayer {
                 return findAndReplaceNext ( nextObjects, readers );
             }
 
-            private Object findAndReplaceNext(Map<Class<?>, Object> nextObjects, Map<Class<?>, BufferedReader> readers) throws EndOfStreamException {
+            private Object findAndReplaceNext(Map<Class<?>, Object> nextObjects, Map<Class<?>, RecordReader> readers) throws EndOfStreamException {
                 Object nextObject = findNextObject(nextObjects);
                 if (nextObject == null) {
-                    for (Reader r : readers.values()) {
+                    for (RecordReader r : readers.values()) {
                         try {
                             r.close();
                         } catch (IOException e) {
@@ -197,15 +271,9 @@ public class RaceRecorderPlayer {
                     throw new EndOfStreamException();
                 }
                 try {
-                    String encoded = readers.get(nextObject.getClass()).readLine();
-                    if ( encoded == null ) {
-                        nextObjects.put(nextObject.getClass(), null );
-                    } else {
-                        Object nextInRow = serializer.deserialize(encoded, nextObject.getClass());
-                        nextObjects.put(nextObject.getClass(), nextInRow);
-                    }
+                    nextObjects.put(nextObject.getClass(), readers.get(nextObject.getClass()).next());
                     // special case penalty message
-                    if ( nextObject instanceof TimedPenaltyMessage) {
+                    if ( unwrapPenalties && nextObject instanceof TimedPenaltyMessage) {
                         return ((TimedPenaltyMessage)nextObject).getOriginal();
                     }
                     return nextObject;
@@ -218,12 +286,7 @@ public class RaceRecorderPlayer {
                 nextObjects = new HashMap<>();
                 readers.entrySet().stream().forEach((e)->{
                     try {
-                        String nextLine = e.getValue().readLine();
-                        if ( nextLine == null ) {
-                            nextObjects.put(e.getKey(), null );
-                        } else {
-                            nextObjects.put(e.getKey(), serializer.deserialize(nextLine, e.getKey()));
-                        }
+                        nextObjects.put(e.getKey(), e.getValue().next());
                     } catch (IOException e1) {
                         throw new RuntimeException(e1);
                     }
@@ -248,6 +311,8 @@ public class RaceRecorderPlayer {
                 allObjectsWithTimestamps.add(new PenaltyWT(entry.getValue()));
             } else if ( entry.getKey() == RaceStartMessage.class ) {
                 allObjectsWithTimestamps.add(new StartWT(entry.getValue()));
+            } else if ( entry.getKey() == RoundTimeMessage.class ) {
+                allObjectsWithTimestamps.add(new RoundWT(entry.getValue()));
             }
         }
         allObjectsWithTimestamps.sort((l,r)->(int)(l.timestamp()-r.timestamp()));
@@ -311,6 +376,18 @@ public class RaceRecorderPlayer {
 
     }
 
+    private static class RoundWT extends ObjectWithTimestamp<RoundTimeMessage> {
+        @Override
+        Long timestamp() {
+            return object.getTimestamp();
+        }
+
+        public RoundWT(Object object) {
+            super(object);
+        }
+
+    }
+
     private static class PenaltyWT extends ObjectWithTimestamp<TimedPenaltyMessage> {
         @Override
         Long timestamp() {
@@ -0,0 +1,37 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the records of one file of a recorded race, one after the other.
+ */
+interface RecordReader extends Closeable {
+
+    /**
+     * @return the next record, null at the end of the file
+     */
+    Object next() throws IOException;
+
+    /**
+     * @return a reader for a file with one json encoded record of the given type per line
+     */
+    static RecordReader json(BufferedReader reader, Class<?> type) {
+        JacksonSerializer serializer = new JacksonSerializer();
+        return new RecordReader() {
+            @Override
+            public Object next() throws IOException {
+                String line = reader.readLine();
+                return line == null ? null : serializer.deserialize(line, type);
+            }
+
+            @Override
+            public void close() throws IOException {
+                reader.close();
+            }
+        };
+    }
+}
@@ -0,0 +1,198 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+import com.zuehlke.carrera.javapilot.akka.RaceRecorderActor;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts recorded races from json lines to the binary format, which replays several times faster.
+ *
+ * Only the sensor events and power controls are converted, they make up nearly all of a recording. The other files
+ * stay as they are. Races are converted in parallel, each file as a stream. Every converted file is read back and
+ * compared with its source, message by message, before it replaces the source. Races already converted, and races
+ * still being recorded, are skipped, so the converter can simply be run again over the whole data directory.
+ *
+ * Usage: RecordingConverter [-d data directory] [-p parallel races] [-k]
+ */
+public class RecordingConverter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecordingConverter.class);
+
+    private static final String TEMPORARY = ".tmp";
+    private static final long QUIET_MILLIS = TimeUnit.MINUTES.toMillis(1); // younger races may still be recorded
+
+    private final File dataDirectory;
+    private final int parallelism;
+    private final boolean keepJson;
+    private final long quietMillis;
+
+    /**
+     * @param keepJson true to keep the json files next to the binary ones
+     */
+    public RecordingConverter(String dataDirectory, int parallelism, boolean keepJson) {
+        this(dataDirectory, parallelism, keepJson, QUIET_MILLIS);
+    }
+
+    RecordingConverter(String dataDirectory, int parallelism, boolean keepJson, long quietMillis) {
+        this.dataDirectory = new File(dataDirectory);
+        this.parallelism = parallelism;
+        this.keepJson = keepJson;
+        this.quietMillis = quietMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption("d", true, "the data directory, defaults to " + RaceRecorderActor.DATA_DIRECTORY);
+        options.addOption("p", true, "races to convert in parallel, defaults to the number of processors");
+        options.addOption("k", false, "keep the json files");
+        CommandLine cmd = new PosixParser().parse(options, args);
+
+        RecordingConverter converter = new RecordingConverter(
+                cmd.getOptionValue("d", RaceRecorderActor.DATA_DIRECTORY),
+                Integer.parseInt(cmd.getOptionValue("p", "" + Runtime.getRuntime().availableProcessors())),
+                cmd.hasOption("k"));
+        int failed = converter.convertAll().getFailed();
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    public Result convertAll() throws InterruptedException {
+        File[] races = dataDirectory.listFiles(RaceRecorderPlayer::isRaceDirectory);
+        Result result = new Result();
+        if (races == null) {
+            return result;
+        }
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try {
+            List<Future<Boolean>> conversions = new ArrayList<>();
+            for (File race : races) {
+                conversions.add(executor.submit(() -> convert(race)));
+            }
+            for (int i = 0; i < races.length; i++) {
+                try {
+                    if (conversions.get(i).get()) {
+                        result.converted++;
+                    } else {
+                        result.skipped++;
+                    }
+                } catch (ExecutionException e) {
+                    result.failed++;
+                    LOGGER.error("Could not convert {}: {}", races[i].getName(), e.getCause().getMessage());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        LOGGER.info("{} races converted, {} skipped, {} failed in {} ms.", result.converted, result.skipped,
+                result.failed, System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * @return true, if the race was converted, false if there was nothing to do
+     */
+    boolean convert(File race) throws IOException {
+        List<String> toConvert = new ArrayList<>();
+        for (String name : Arrays.asList(RaceRecorderPlayer.EVENTS, RaceRecorderPlayer.POWER)) {
+            File json = new File(race, name);
+            if (new File(race, name + BinaryRecordFile.SUFFIX).isFile()) {
+                continue;
+            }
+            if (System.currentTimeMillis() - json.lastModified() < quietMillis) {
+                LOGGER.info("Skipping {}, it may still be recorded.", race.getName());
+                return false;
+            }
+            toConvert.add(name);
+        }
+        for (String name : toConvert) {
+            Class<?> type = RaceRecorderPlayer.EVENTS.equals(name) ? SensorEvent.class : PowerControl.class;
+            convert(new File(race, name), type);
+        }
+        return !toConvert.isEmpty();
+    }
+
+    private void convert(File json, Class<?> type) throws IOException {
+        File binary = new File(json.getPath() + BinaryRecordFile.SUFFIX);
+        File temporary = new File(binary.getPath() + TEMPORARY);
+        try {
+            long messages = 0;
+            try (RecordReader in = RecordReader.json(Files.newBufferedReader(json.toPath()), type);
+                 BinaryRecordFile.Writer out = BinaryRecordFile.writer(temporary)) {
+                for (Object message = in.next(); message != null; message = in.next()) {
+                    out.write(message);
+                    messages++;
+                }
+            }
+            verify(json, temporary, type, messages);
+            Files.move(temporary.toPath(), binary.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary.toPath());
+        }
+        if (!keepJson) {
+            Files.delete(json.toPath());
+        }
+    }
+
+    /**
+     * reads both files side by side and compares every message
+     */
+    private void verify(File json, File binary, Class<?> type, long messages) throws IOException {
+        JacksonSerializer serializer = new JacksonSerializer();
+        long compared = 0;
+        try (RecordReader expected = RecordReader.json(Files.newBufferedReader(json.toPath()), type);
+             RecordReader actual = BinaryRecordFile.reader(binary)) {
+            while (true) {
+                Object original = expected.next();
+                Object converted = actual.next();
+                if (original == null && converted == null) {
+                    break;
+                }
+                if (original == null || converted == null
+                        || !serializer.serialize(original).equals(serializer.serialize(converted))) {
+                    throw new IOException("Message " + compared + " of " + json + " differs after conversion");
+                }
+                compared++;
+            }
+        }
+        if (compared != messages) {
+            throw new IOException(json + " changed during the conversion");
+        }
+    }
+
+    public static class Result {
+        private int converted;
+        private int skipped;
+        private int failed;
+
+        public int getConverted() {
+            return converted;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+    }
+}
@@ -1,11 +1,27 @@
 package com.zuehlke.carrera.javapilot.io;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Replays the race of the given tag, in a new replay session.
+ */
 public class StartReplayCommand {
 
+    private static final AtomicInteger sessions = new AtomicInteger();
+
     private final String tag;
+    private final String sessionId;
 
     public StartReplayCommand(String tag) {
         this.tag = tag;
+        this.sessionId = tag + "-" + sessions.incrementAndGet();
+    }
+
+    /**
+     * @return the id of the session that replays the race, unique in this process
+     */
+    public String getSessionId() {
+        return sessionId;
     }
 
     public String getTag() {
@@ -1,4 +1,30 @@
 package com.zuehlke.carrera.javapilot.io;
 
+/**
+ * Stops the replay sessions of the given id or race tag, all of them without one or with ALL.
+ */
 public class StopReplayCommand {
+
+    public static final String ALL = "all";
+
+    private final String session;
+
+    public StopReplayCommand() {
+        this(null);
+    }
+
+    /**
+     * @param session the id of a session, or the tag of the race it replays
+     */
+    public StopReplayCommand(String session) {
+        this.session = session;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    public boolean matches(String sessionId, String tag) {
+        return session == null || ALL.equals(session) || session.equals(sessionId) || session.equals(tag);
+    }
 }
@@ -0,0 +1,32 @@
+package com.zuehlke.carrera.javapilot.io;
+
+/**
+ * The encodings a message may travel in between the simulator and the pilot.
+ * The content type is put into the message properties so that the receiver can decode either of them.
+ */
+public enum WireFormat {
+
+    json("application/json"),
+    binary("application/x-fnf-binary");
+
+    private final String contentType;
+
+    WireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @param contentType the content type of a received message, may be null
+     * @return the matching format. Peers that don't provide a content type only speak json.
+     */
+    public static WireFormat fromContentType(String contentType) {
+        if (binary.contentType.equals(contentType)) {
+            return binary;
+        }
+        return json;
+    }
+}
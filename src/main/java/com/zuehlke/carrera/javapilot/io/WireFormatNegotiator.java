@@ -0,0 +1,45 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import java.util.Map;
+
+/**
+ * Decides which format to use for outgoing messages.
+ *
+ * A side that prefers the binary format says so in the ACCEPT header of every message it sends. Binary messages are
+ * only sent while the last message of the peer said it accepts them, so a peer that only speaks json, even one that
+ * replaces a binary speaking one, receives json.
+ */
+public class WireFormatNegotiator {
+
+    public static final String ACCEPT = "x-fnf-accept";
+
+    private final WireFormat preferred;
+    private volatile boolean peerAcceptsBinary = false;
+
+    public WireFormatNegotiator(WireFormat preferred) {
+        this.preferred = preferred;
+    }
+
+    /**
+     * learn about the peer from the headers of a received message
+     * @param headers the message headers, may be null
+     */
+    public void observe(Map<String, ?> headers) {
+        Object accept = headers == null ? null : headers.get(ACCEPT);
+        peerAcceptsBinary = accept != null && accept.toString().contains(WireFormat.binary.name());
+    }
+
+    /**
+     * @return the format for the next outgoing message
+     */
+    public WireFormat outgoing() {
+        return preferred == WireFormat.binary && peerAcceptsBinary ? WireFormat.binary : WireFormat.json;
+    }
+
+    /**
+     * @return the value for the ACCEPT header of outgoing messages
+     */
+    public String accepted() {
+        return preferred == WireFormat.binary ? WireFormat.binary.name() + "," + WireFormat.json.name() : WireFormat.json.name();
+    }
+}
@@ -0,0 +1,47 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mean and maximum duration of an operation, per interval between two ticks.
+ */
+public class LatencyMeter {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    private long lastCount;
+    private long lastTotalNanos;
+    private volatile double meanMicros;
+    private volatile double maxMicros;
+
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    synchronized void tick() {
+        long currentCount = count.sum();
+        long currentTotal = totalNanos.sum();
+        long n = currentCount - lastCount;
+        meanMicros = n == 0 ? 0 : (currentTotal - lastTotalNanos) / 1000.0 / n;
+        maxMicros = maxNanos.getThenReset() / 1000.0;
+        lastCount = currentCount;
+        lastTotalNanos = currentTotal;
+    }
+}
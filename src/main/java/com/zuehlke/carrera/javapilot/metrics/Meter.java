@@ -0,0 +1,45 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts events on a striped counter, so that concurrent writers never contend.
+ * The rate per second is updated by tick(), called once per second by whoever exports the metrics.
+ */
+public class Meter {
+
+    private final LongAdder count = new LongAdder();
+
+    private long lastCount;
+    private long lastTick = System.nanoTime();
+    private volatile double rate;
+
+    public void mark() {
+        count.increment();
+    }
+
+    public void mark(long n) {
+        count.add(n);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return the events per second between the two most recent ticks
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    synchronized void tick(long now) {
+        long current = count.sum();
+        long elapsed = now - lastTick;
+        if (elapsed > 0) {
+            rate = (current - lastCount) * 1e9 / elapsed;
+        }
+        lastCount = current;
+        lastTick = now;
+    }
+}
@@ -0,0 +1,98 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMessageQueueSemantics;
+import com.typesafe.config.Config;
+import scala.Option;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Unbounded mailbox that publishes its approximate depth to the PilotMetrics. Configured in application.conf,
+ * the actor system's name and the "metric-name" of the mailbox configuration name the depth gauge. Actors of
+ * additional pilots, which are top level actors named after the pilot, have the pilot's name in between. The most
+ * recently created mailbox of a name wins, so a strategy actor replaced at race start takes over the gauge of
+ * its predecessor.
+ */
+public class MeteredMailbox implements MailboxType, ProducesMessageQueue<MeteredMailbox.MeteredMessageQueue> {
+
+    private final String metricName;
+
+    public MeteredMailbox(ActorSystem.Settings settings, Config config) {
+        this.metricName = config.getString("metric-name");
+    }
+
+    @Override
+    public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+        MeteredMessageQueue queue = new MeteredMessageQueue();
+        String pilot = owner.isDefined() ? pilotName(owner.get()) : null;
+        String name = pilot == null ? metricName : pilot + "." + metricName;
+        name = system.isDefined() ? system.get().name() + "." + name : name;
+        PilotMetrics.get().registerMailbox(name, queue::depth);
+        return queue;
+    }
+
+    /**
+     * @return the name of the top level actor the owner belongs to, if it was given one, like an additional pilot
+     */
+    private static String pilotName(ActorRef owner) {
+        String[] path = owner.path().toStringWithoutAddress().split("/");
+        if (path.length < 3 || !"user".equals(path[1]) || path[2].startsWith("$")) {
+            return null;
+        }
+        return path[2];
+    }
+
+    public static class MeteredMessageQueue implements MessageQueue, UnboundedMessageQueueSemantics {
+
+        private final Queue<Envelope> queue = new ConcurrentLinkedQueue<>();
+        private final LongAdder enqueued = new LongAdder();
+        private final LongAdder dequeued = new LongAdder();
+
+        @Override
+        public void enqueue(ActorRef receiver, Envelope handle) {
+            queue.offer(handle);
+            enqueued.increment();
+        }
+
+        @Override
+        public Envelope dequeue() {
+            Envelope envelope = queue.poll();
+            if (envelope != null) {
+                dequeued.increment();
+            }
+            return envelope;
+        }
+
+        @Override
+        public int numberOfMessages() {
+            return queue.size();
+        }
+
+        @Override
+        public boolean hasMessages() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+            for (Envelope envelope : queue) {
+                deadLetters.enqueue(owner, envelope);
+            }
+        }
+
+        /**
+         * @return the number of waiting messages, without the cost of walking the queue
+         */
+        public long depth() {
+            return Math.max(0, enqueued.sum() - dequeued.sum());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Runtime metrics of the pilots: messages per type, mailbox depths, recorder, replay, relay and strategy recovery.
+ *
+ * The actors are not spring beans, so this is one process wide instance that the actors and the recorder
+ * update directly. Updates are cheap striped counter increments. PilotPublicMetrics ticks the rates once per
+ * second and exports the snapshot. Names ending in ".total" are counters, all others are gauges.
+ *
+ * Pilots hosted in the same process count apart: each one updates the counters it got by its name from pilot(),
+ * and they show up with the pilot's name in them, like "pilot.kobayashi.relay.sends.total".
+ */
+public class PilotMetrics {
+
+    public static final String TOTAL = ".total";
+
+    private static final PilotMetrics INSTANCE = new PilotMetrics();
+
+    private final Map<String, Pilot> pilots = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> mailboxes = new ConcurrentHashMap<>();
+
+    public static PilotMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param name of the pilot
+     * @return the counters of the pilot, created on first use
+     */
+    public Pilot pilot(String name) {
+        return pilots.computeIfAbsent(name, (pilot) -> new Pilot());
+    }
+
+    public void registerMailbox(String name, LongSupplier depth) {
+        mailboxes.put(name, depth);
+    }
+
+    /**
+     * @param prefix like the name of an actor system that is shut down
+     */
+    public void unregisterMailboxes(String prefix) {
+        mailboxes.keySet().removeIf((name) -> name.startsWith(prefix));
+    }
+
+    public void tick() {
+        long now = System.nanoTime();
+        pilots.values().forEach((pilot) -> pilot.tick(now));
+    }
+
+    public SortedMap<String, Number> snapshot() {
+        SortedMap<String, Number> snapshot = new TreeMap<>();
+        pilots.forEach((name, pilot) -> pilot.snapshot(snapshot, "pilot." + name + "."));
+        mailboxes.forEach((name, depth) -> snapshot.put("pilot.mailbox." + name + ".depth", depth.getAsLong()));
+        return snapshot;
+    }
+
+    private static String nameOf(Class<?> type) {
+        // anonymous classes, like a connection implemented in place, go by the name of what they extend
+        return type.isAnonymousClass() ? nameOf(type.getSuperclass()) : type.getSimpleName();
+    }
+
+    private static void put(Map<String, Number> snapshot, String name, Meter meter) {
+        snapshot.put(name + TOTAL, meter.getCount());
+        snapshot.put(name + ".rate", meter.getRate());
+    }
+
+    /**
+     * The counters of one pilot.
+     */
+    public static class Pilot {
+
+        private final Map<Class<?>, Meter> messages = new ConcurrentHashMap<>();
+        private final Meter recorderBytes = new Meter();
+        private final LatencyMeter recorderWrites = new LatencyMeter();
+        private final Meter replayEvents = new Meter();
+        private final Meter relaySends = new Meter();
+        private final LatencyMeter relayLatency = new LatencyMeter();
+        private final Meter relaySuperseded = new Meter();
+        private final Meter relayFailures = new Meter();
+        private volatile long replayLagMillis;
+        private final LatencyMeter strategyRecoveries = new LatencyMeter();
+        private volatile double lastRecoveryMicros;
+
+        private Pilot() {
+        }
+
+        public void messageReceived(Object message) {
+            messages.computeIfAbsent(message.getClass(), (type) -> new Meter()).mark();
+        }
+
+        public void recorded(int bytes, long nanos) {
+            recorderBytes.mark(bytes);
+            recorderWrites.record(nanos);
+        }
+
+        /**
+         * @param lagMillis how far the replay is behind the race as it was recorded
+         */
+        public void replayed(long lagMillis) {
+            replayEvents.mark();
+            replayLagMillis = lagMillis;
+        }
+
+        /**
+         * @param nanos the connection took to publish the power control
+         */
+        public void relaySent(long nanos) {
+            relaySends.mark();
+            relayLatency.record(nanos);
+        }
+
+        /**
+         * a power control replaced by a newer one before it was published
+         */
+        public void relaySuperseded() {
+            relaySuperseded.mark();
+        }
+
+        public void relayFailed() {
+            relayFailures.mark();
+        }
+
+        /**
+         * @param nanos from the failure of a strategy until its restarted instance restored the state
+         */
+        public void strategyRecovered(long nanos) {
+            strategyRecoveries.record(nanos);
+            lastRecoveryMicros = nanos / 1000.0;
+        }
+
+        private void tick(long now) {
+            messages.values().forEach((meter) -> meter.tick(now));
+            recorderBytes.tick(now);
+            recorderWrites.tick();
+            replayEvents.tick(now);
+            relaySends.tick(now);
+            relayLatency.tick();
+            relaySuperseded.tick(now);
+            relayFailures.tick(now);
+            strategyRecoveries.tick();
+        }
+
+        private void snapshot(Map<String, Number> snapshot, String prefix) {
+            messages.forEach((type, meter) -> put(snapshot, prefix + "messages." + nameOf(type), meter));
+            put(snapshot, prefix + "recorder.bytes", recorderBytes);
+            snapshot.put(prefix + "recorder.writes.mean_us", recorderWrites.getMeanMicros());
+            snapshot.put(prefix + "recorder.writes.max_us", recorderWrites.getMaxMicros());
+            put(snapshot, prefix + "replay.events", replayEvents);
+            snapshot.put(prefix + "replay.lag_ms", replayLagMillis);
+            put(snapshot, prefix + "relay.sends", relaySends);
+            snapshot.put(prefix + "relay.latency.mean_us", relayLatency.getMeanMicros());
+            snapshot.put(prefix + "relay.latency.max_us", relayLatency.getMaxMicros());
+            put(snapshot, prefix + "relay.superseded", relaySuperseded);
+            put(snapshot, prefix + "relay.failures", relayFailures);
+            snapshot.put(prefix + "strategy.recoveries" + TOTAL, strategyRecoveries.getCount());
+            snapshot.put(prefix + "strategy.recovery.max_us", strategyRecoveries.getMaxMicros());
+            snapshot.put(prefix + "strategy.recovery.last_us", lastRecoveryMicros);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Adds the PilotMetrics to the actuator's /metrics endpoint and updates their rates once per second.
+ */
+@Component
+public class PilotPublicMetrics implements PublicMetrics {
+
+    @Scheduled(fixedRate = 1000)
+    public void tick() {
+        PilotMetrics.get().tick();
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        List<Metric<?>> metrics = new ArrayList<>();
+        PilotMetrics.get().snapshot().forEach((name, value) -> metrics.add(new Metric<>(name, value)));
+        return metrics;
+    }
+}
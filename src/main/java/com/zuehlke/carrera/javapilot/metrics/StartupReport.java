@@ -0,0 +1,58 @@
+package com.zuehlke.carrera.javapilot.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Logs how long it took from the start of the JVM until the application was up, and until the pilot sent its first
+ * power control, together with the resident memory at those points. Compares pilot-only with full startup.
+ */
+public class StartupReport {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StartupReport.class);
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+
+    private static final AtomicBoolean firstPowerControlSeen = new AtomicBoolean(false);
+
+    public static void started() {
+        LOGGER.info("Started after {} ms, resident memory {}", uptime(), residentMemory());
+    }
+
+    public static void firstPowerControl() {
+        if (!firstPowerControlSeen.get() && firstPowerControlSeen.compareAndSet(false, true)) {
+            LOGGER.info("First power control after {} ms, resident memory {}", uptime(), residentMemory());
+        }
+    }
+
+    private static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
+    /**
+     * @return the resident set size where the os tells it (linux), otherwise the heap and non-heap memory in use
+     */
+    static String residentMemory() {
+        if (Files.isReadable(PROC_STATUS)) {
+            try {
+                for (String line : Files.readAllLines(PROC_STATUS)) {
+                    if (line.startsWith("VmRSS:")) {
+                        return line.substring("VmRSS:".length()).trim();
+                    }
+                }
+            } catch (IOException e) {
+                // fall back to what the jvm knows
+            }
+        }
+        long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed()
+                + ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage().getUsed();
+        return (used / 1024) + " kB in use by the jvm";
+    }
+}
@@ -0,0 +1,75 @@
+package com.zuehlke.carrera.javapilot.rest;
+
+import com.zuehlke.carrera.javapilot.analytics.ColumnStats;
+import com.zuehlke.carrera.javapilot.analytics.Lap;
+import com.zuehlke.carrera.javapilot.analytics.LapComparison;
+import com.zuehlke.carrera.javapilot.analytics.RaceQuery;
+import com.zuehlke.carrera.javapilot.analytics.RaceSelection;
+import com.zuehlke.carrera.javapilot.analytics.StoredRace;
+import com.zuehlke.carrera.javapilot.services.AnalyticsService;
+import com.zuehlke.carrera.javapilot.services.LapPair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Queries across all recorded races, like the gyro-z profile of every race on a track
+ * or all penalties above some speed, and lap by lap comparisons.
+ */
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsResource {
+
+    @Autowired
+    private AnalyticsService analyticsService;
+
+    @RequestMapping(value = "/races", method = RequestMethod.GET, produces = "application/json")
+    public List<StoredRace> getRaces() {
+        return analyticsService.getRaces();
+    }
+
+    @RequestMapping(value = "/aggregate", method = RequestMethod.POST, produces = "application/json")
+    public Map<String, ColumnStats> aggregate(@RequestBody RaceQuery query, @RequestParam String column) {
+        return analyticsService.aggregate(query, column);
+    }
+
+    @RequestMapping(value = "/select", method = RequestMethod.POST, produces = "application/json")
+    public List<RaceSelection> select(@RequestBody RaceQuery query,
+                                      @RequestParam(required = false) String[] columns) {
+        return analyticsService.select(query, columns == null ? new String[0] : columns);
+    }
+
+    @RequestMapping(value = "/laps/{tag}", method = RequestMethod.GET, produces = "application/json")
+    public List<Lap> getLaps(@PathVariable String tag) {
+        return analyticsService.getLaps(tag);
+    }
+
+    @RequestMapping(value = "/laps/compare", method = RequestMethod.GET, produces = "application/json")
+    public LapComparison compare(@RequestParam String tagA, @RequestParam int lapA,
+                                 @RequestParam String tagB, @RequestParam int lapB) {
+        return analyticsService.compare(new LapPair(new LapPair.LapReference(tagA, lapA),
+                new LapPair.LapReference(tagB, lapB)));
+    }
+
+    @RequestMapping(value = "/laps/compare", method = RequestMethod.POST, produces = "application/json")
+    public List<LapComparison> compareAll(@RequestBody List<LapPair> pairs) {
+        return analyticsService.compareAll(pairs);
+    }
+
+    @RequestMapping(value = "/laps/fastest", method = RequestMethod.GET, produces = "application/json")
+    public List<LapComparison> compareWithFastest(@RequestParam String trackId) {
+        return analyticsService.compareWithFastest(trackId);
+    }
+
+    @RequestMapping(value = "/reload", method = RequestMethod.POST, produces = "application/json")
+    public int reload() {
+        return analyticsService.reload();
+    }
+}
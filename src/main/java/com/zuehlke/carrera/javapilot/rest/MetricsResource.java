@@ -0,0 +1,27 @@
+package com.zuehlke.carrera.javapilot.rest;
+
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * The pilot's metrics in the Prometheus text format, for scraping.
+ * The same metrics are part of the actuator's /metrics endpoint.
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsResource {
+
+    @RequestMapping(value="/prometheus", method = RequestMethod.GET, produces = "text/plain; version=0.0.4")
+    public String prometheus() {
+        StringBuilder text = new StringBuilder();
+        PilotMetrics.get().snapshot().forEach((name, value) -> {
+            String metric = name.replaceAll("[^a-zA-Z0-9_]", "_");
+            String type = name.endsWith(PilotMetrics.TOTAL) ? "counter" : "gauge";
+            text.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+            text.append(metric).append(' ').append(value).append('\n');
+        });
+        return text.toString();
+    }
+}
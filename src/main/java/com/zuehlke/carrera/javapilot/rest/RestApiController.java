@@ -1,6 +1,7 @@
 package com.zuehlke.carrera.javapilot.rest;
 
 import java.util.List;
+import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -9,6 +10,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.zuehlke.carrera.javapilot.akka.ReplaySession;
 import com.zuehlke.carrera.javapilot.services.Comment;
 import com.zuehlke.carrera.javapilot.services.PilotService;
 import com.zuehlke.carrera.javapilot.services.Replay;
@@ -25,22 +27,45 @@ public class RestApiController {
 	@Autowired
 	public ReplayService replayService;
 
+	@RequestMapping(value = "/pilots", method = RequestMethod.GET, produces = "application/json")
+	public Set<String> getPilots() {
+		return pilotService.getPilots().keySet();
+	}
+
 	@RequestMapping(value = "/replay", method = RequestMethod.GET, produces = "application/json")
 	public List<Replay> getReplays() {
 		return replayService.getReplays();
 	}
 
+	/**
+	 * @return the id of the new replay session
+	 */
 	@RequestMapping(value = "/replay/{tag}", method = RequestMethod.GET, produces = "application/json")
 	public String replay(@PathVariable String tag) {
-		pilotService.replay(tag);
-		return "ok";
+		return pilotService.replay(tag);
 	}
 
-	// Replay stop works in general, just mapped it to a specific replay for
-	// consistency
+	// stops the session of this id, all sessions replaying the race of this
+	// tag, or all sessions for "all"
 	@RequestMapping(value = "/replay/{tag}/stop", method = RequestMethod.GET, produces = "application/json")
-	public void stopReplay() {
-		pilotService.stopReplay();
+	public void stopReplay(@PathVariable String tag) {
+		pilotService.stopReplay(tag);
+	}
+
+	@RequestMapping(value = "/replay-sessions", method = RequestMethod.GET, produces = "application/json")
+	public List<ReplaySession> getReplaySessions() {
+		return pilotService.getReplaySessions().list();
+	}
+
+	@RequestMapping(value = "/replay-sessions/{id}", method = RequestMethod.GET, produces = "application/json")
+	public ReplaySession getReplaySession(@PathVariable String id) {
+		return pilotService.getReplaySessions().get(id);
+	}
+
+	@RequestMapping(value = "/blackbox/dump", method = RequestMethod.POST, produces = "application/json")
+	public String dumpBlackBox() {
+		pilotService.dumpBlackBox();
+		return "ok";
 	}
 
 	@RequestMapping(value = "/replay/{tag}/comment", method = RequestMethod.POST, produces = "application/json")
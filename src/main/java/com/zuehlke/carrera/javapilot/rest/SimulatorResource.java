@@ -3,12 +3,15 @@ package com.zuehlke.carrera.javapilot.rest;
 import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
 import com.zuehlke.carrera.relayapi.messages.RaceStopMessage;
 import com.zuehlke.carrera.simulator.model.racetrack.TrackInfo;
+import com.zuehlke.carrera.javapilot.config.PilotConfig;
 import com.zuehlke.carrera.javapilot.services.SimulatorService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.web.bind.annotation.*;
 
 
 @RestController
+@Profile("!" + PilotConfig.PILOT_ONLY)
 @RequestMapping("/api/simulator")
 public class SimulatorResource {
 
@@ -0,0 +1,142 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.javapilot.analytics.ColumnStats;
+import com.zuehlke.carrera.javapilot.analytics.ColumnarRaceStore;
+import com.zuehlke.carrera.javapilot.analytics.Lap;
+import com.zuehlke.carrera.javapilot.analytics.LapComparator;
+import com.zuehlke.carrera.javapilot.analytics.LapComparison;
+import com.zuehlke.carrera.javapilot.analytics.LapCutter;
+import com.zuehlke.carrera.javapilot.analytics.RaceQuery;
+import com.zuehlke.carrera.javapilot.analytics.RaceSelection;
+import com.zuehlke.carrera.javapilot.analytics.Series;
+import com.zuehlke.carrera.javapilot.analytics.StoredRace;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Queries across all recorded races. The races are loaded into the columnar store on first use,
+ * races recorded later on reload. Races are cut into laps when their laps are first asked for.
+ */
+@Service
+public class AnalyticsService {
+
+    private final ColumnarRaceStore store;
+    private final LapCutter lapCutter = new LapCutter();
+    private final LapComparator lapComparator = new LapComparator(Runtime.getRuntime().availableProcessors());
+    private final Map<String, List<Lap>> laps = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+
+    /**
+     * @param settings of the pilot, whose data directory holds the recorded races
+     */
+    @Autowired
+    public AnalyticsService(PilotProperties settings) {
+        store = new ColumnarRaceStore(settings.getDataDirectory());
+    }
+
+    public List<StoredRace> getRaces() {
+        ensureLoaded();
+        return store.getRaces();
+    }
+
+    public Map<String, ColumnStats> aggregate(RaceQuery query, String column) {
+        ensureLoaded();
+        return store.aggregate(query, column);
+    }
+
+    public List<RaceSelection> select(RaceQuery query, String... columns) {
+        ensureLoaded();
+        return store.select(query, columns);
+    }
+
+    public List<Lap> getLaps(String tag) {
+        ensureLoaded();
+        return laps.computeIfAbsent(tag, (race) -> {
+            List<String> races = Collections.singletonList(race);
+            List<RaceSelection> sensor = store.select(RaceQuery.of(Series.sensor).inRaces(races), "g2");
+            if (sensor.isEmpty()) {
+                throw new RuntimeException("No sensor events recorded for race " + race);
+            }
+            List<RaceSelection> rounds = store.select(RaceQuery.of(Series.round).inRaces(races));
+            return Collections.unmodifiableList(
+                    lapCutter.cut(race, sensor.get(0), rounds.isEmpty() ? null : rounds.get(0)));
+        });
+    }
+
+    public LapComparison compare(LapPair pair) {
+        return lapComparator.compare(getLap(pair.getA()), getLap(pair.getB()));
+    }
+
+    /**
+     * compares many pairs of laps in parallel
+     */
+    public List<LapComparison> compareAll(List<LapPair> pairs) {
+        List<Lap[]> laps = new ArrayList<>(pairs.size());
+        for (LapPair pair : pairs) {
+            laps.add(new Lap[]{getLap(pair.getA()), getLap(pair.getB())});
+        }
+        return lapComparator.compareAll(laps);
+    }
+
+    /**
+     * @return every lap on the track compared with the fastest one
+     */
+    public List<LapComparison> compareWithFastest(String trackId) {
+        List<Lap> all = new ArrayList<>();
+        for (StoredRace race : getRaces()) {
+            if (trackId.equals(race.getTrackId())) {
+                all.addAll(getLaps(race.getTag()));
+            }
+        }
+        if (all.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Lap fastest = Collections.min(all, Comparator.comparingLong(Lap::getDuration));
+        List<Lap[]> pairs = new ArrayList<>(all.size());
+        for (Lap lap : all) {
+            pairs.add(new Lap[]{fastest, lap});
+        }
+        return lapComparator.compareAll(pairs);
+    }
+
+    private Lap getLap(LapPair.LapReference reference) {
+        List<Lap> raceLaps = getLaps(reference.getTag());
+        if (reference.getLap() < 1 || reference.getLap() > raceLaps.size()) {
+            throw new RuntimeException("Race " + reference.getTag() + " has no lap " + reference.getLap()
+                    + ", only " + raceLaps.size());
+        }
+        return raceLaps.get(reference.getLap() - 1);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lapComparator.shutdown();
+    }
+
+    /**
+     * @return the number of races added since the last load
+     */
+    public synchronized int reload() {
+        loaded = true;
+        return store.load();
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+}
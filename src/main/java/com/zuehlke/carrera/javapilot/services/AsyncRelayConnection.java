@@ -0,0 +1,185 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Takes all network I/O off the pilot actor's thread: power controls, announcements and connection checks are
+ * handed over to a dedicated sender thread that talks to the actual connection.
+ *
+ * Power controls go through a single slot where the latest value wins: if the sender is still busy publishing when
+ * a new power control arrives, the older one waiting in the slot is dropped, because only the latest one matters.
+ * What is published, superseded or fails counts into the pilot's metrics, if there are any.
+ */
+public class AsyncRelayConnection implements PilotToRelayConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncRelayConnection.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final PilotToRelayConnection delegate;
+    private final PilotMetrics.Pilot metrics; // null for none
+
+    private final AtomicReference<PowerControl> latestPower = new AtomicReference<>();
+    private final AtomicReference<String> pendingAnnouncement = new AtomicReference<>();
+    private final AtomicBoolean connectionCheckRequested = new AtomicBoolean(false);
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder superseded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicLong totalPublishNanos = new AtomicLong();
+    private final AtomicLong maxPublishNanos = new AtomicLong();
+
+    private final Thread sender;
+    private volatile boolean running = true;
+
+    public AsyncRelayConnection(PilotToRelayConnection delegate) {
+        this(delegate, null);
+    }
+
+    /**
+     * @param metrics of the pilot, null to count nothing
+     */
+    public AsyncRelayConnection(PilotToRelayConnection delegate, PilotMetrics.Pilot metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.sender = new Thread(this::sendLoop, "relay-sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
+    }
+
+    @Override
+    public void send(PowerControl powerControl) {
+        if (latestPower.getAndSet(powerControl) != null) {
+            superseded.increment();
+            if (metrics != null) {
+                metrics.relaySuperseded();
+            }
+        }
+        LockSupport.unpark(sender);
+    }
+
+    @Override
+    public void announce(String optionalUrl) {
+        pendingAnnouncement.set(optionalUrl);
+        LockSupport.unpark(sender);
+    }
+
+    @Override
+    public void ensureConnection() {
+        connectionCheckRequested.set(true);
+        LockSupport.unpark(sender);
+    }
+
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(sender);
+    }
+
+    public PilotToRelayConnection getDelegate() {
+        return delegate;
+    }
+
+    public long getPublished() {
+        return published.sum();
+    }
+
+    public long getSuperseded() {
+        return superseded.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * @return the mean time in µs the actual connection took to publish a power control
+     */
+    public double getMeanPublishMicros() {
+        long count = published.sum();
+        return count == 0 ? 0 : totalPublishNanos.get() / 1000.0 / count;
+    }
+
+    public double getMaxPublishMicros() {
+        return maxPublishNanos.get() / 1000.0;
+    }
+
+    private void sendLoop() {
+        long nextReport = System.nanoTime() + REPORT_INTERVAL_NANOS;
+        while (running) {
+            boolean worked = false;
+
+            if (connectionCheckRequested.getAndSet(false)) {
+                worked = true;
+                try {
+                    delegate.ensureConnection();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Connection check failed: {}", e.getMessage());
+                }
+            }
+
+            PowerControl powerControl = latestPower.getAndSet(null);
+            if (powerControl != null) {
+                worked = true;
+                publish(powerControl);
+            }
+
+            String url = pendingAnnouncement.getAndSet(null);
+            if (url != null) {
+                worked = true;
+                try {
+                    delegate.announce(url);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Announcement failed: {}", e.getMessage());
+                }
+            }
+
+            if (System.nanoTime() > nextReport) {
+                nextReport = System.nanoTime() + REPORT_INTERVAL_NANOS;
+                report();
+            }
+
+            if (!worked) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    private void publish(PowerControl powerControl) {
+        long start = System.nanoTime();
+        try {
+            delegate.send(powerControl);
+            long duration = System.nanoTime() - start;
+            published.increment();
+            totalPublishNanos.addAndGet(duration);
+            maxPublishNanos.accumulateAndGet(duration, Math::max);
+            if (metrics != null) {
+                metrics.relaySent(duration);
+            }
+        } catch (RuntimeException e) {
+            failed.increment();
+            if (metrics != null) {
+                metrics.relayFailed();
+            }
+            LOGGER.error("Failed to publish power control: {}", e.getMessage());
+        }
+    }
+
+    private void report() {
+        if (published.sum() == 0 && failed.sum() == 0) {
+            return;
+        }
+        LOGGER.info(String.format("Power controls published: %d, superseded: %d, failed: %d, publish latency mean %.1f µs, max %.1f µs",
+                getPublished(), getSuperseded(), getFailed(), getMeanPublishMicros(), getMaxPublishMicros()));
+    }
+}
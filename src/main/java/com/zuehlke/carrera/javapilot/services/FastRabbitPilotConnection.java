@@ -0,0 +1,144 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.api.channel.PilotToRelayChannelNames;
+import com.zuehlke.carrera.api.channel.RoutingKeyNames;
+import com.zuehlke.carrera.api.client.PublishException;
+import com.zuehlke.carrera.javapilot.bus.MessageBus;
+import com.zuehlke.carrera.javapilot.bus.MessageBuses;
+import com.zuehlke.carrera.javapilot.io.MessageCodec;
+import com.zuehlke.carrera.javapilot.io.WireFormat;
+import com.zuehlke.carrera.javapilot.io.WireFormatNegotiator;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Low-level connection for the pilot, bypassing the client library. See DemoLowLevelAPI for the basics.
+ *
+ * With rabbitmq, it uses one single connection with one channel for all incoming and one for all outgoing messages.
+ * Sensor data is consumed without acknowledgements, and all deliveries are dispatched on one dedicated consumer
+ * thread that deserializes directly from the message body and hands the result to the pilot.
+ * With a loopback url, the same happens on the stand-in broker, see MessageBuses.
+ *
+ * Incoming messages are decoded according to their content type. Outgoing power controls are sent in the binary
+ * format only if that is preferred here and the simulator side has announced that it accepts it.
+ */
+public class FastRabbitPilotConnection implements PilotToRelayConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastRabbitPilotConnection.class);
+
+    private final String rabbitUrl;
+    private final String pilotName;
+    private final String accessCode;
+    private final Consumer<Object> pilot;
+
+    private final PilotToRelayChannelNames channelNames;
+    private final RoutingKeyNames routingKeyNames;
+    private final MessageCodec codec = new MessageCodec();
+    private final WireFormatNegotiator negotiator;
+    private final MessageBus bus;
+
+    /**
+     * @param rabbitUrl either a plain host name, an amqp:// uri or a loopback url
+     * @param pilotName the name of the pilot, also the name of the exchange
+     * @param accessCode the access code provided by race management
+     * @param pilot receives all incoming messages, called from the consumer thread
+     */
+    public FastRabbitPilotConnection(String rabbitUrl, String pilotName, String accessCode, Consumer<Object> pilot) {
+        this(rabbitUrl, pilotName, accessCode, pilot, WireFormat.json);
+    }
+
+    /**
+     * @param rabbitUrl either a plain host name, an amqp:// uri or a loopback url
+     * @param pilotName the name of the pilot, also the name of the exchange
+     * @param accessCode the access code provided by race management
+     * @param pilot receives all incoming messages, called from the consumer thread
+     * @param preferredFormat the format to use for power controls if the simulator side accepts it
+     */
+    public FastRabbitPilotConnection(String rabbitUrl, String pilotName, String accessCode, Consumer<Object> pilot,
+                                     WireFormat preferredFormat) {
+        this.negotiator = new WireFormatNegotiator(preferredFormat);
+        this.rabbitUrl = rabbitUrl;
+        this.pilotName = pilotName;
+        this.accessCode = accessCode;
+        this.pilot = pilot;
+        this.channelNames = new PilotToRelayChannelNames(pilotName);
+        this.routingKeyNames = new RoutingKeyNames(pilotName);
+        this.bus = MessageBuses.create(rabbitUrl, "rabbit-fast-consumer");
+    }
+
+    @Override
+    public void ensureConnection() {
+        if (bus.isConnected()) {
+            return;
+        }
+        try {
+            connect();
+        } catch (IOException e) {
+            LOGGER.error("Couldn't connect to {}: {}", rabbitUrl, e.getMessage());
+        }
+    }
+
+    @Override
+    public void announce(String optionalUrl) {
+        publish(MessageBus.DEFAULT_EXCHANGE, channelNames.announce(),
+                new PilotLifeSign(pilotName, accessCode, optionalUrl, System.currentTimeMillis()));
+    }
+
+    @Override
+    public void send(PowerControl powerControl) {
+        publish(pilotName, routingKeyNames.powerControl(), powerControl);
+    }
+
+    public void disconnect() {
+        bus.close();
+    }
+
+    private void connect() throws IOException {
+        bus.connect();
+
+        subscribe(routingKeyNames.sensor(), SensorEvent.class, true);
+        subscribe(routingKeyNames.velocity(), VelocityMessage.class, false);
+        subscribe(routingKeyNames.penalty(), PenaltyMessage.class, false);
+        subscribe(routingKeyNames.raceStart(), RaceStartMessage.class, false);
+        subscribe(routingKeyNames.raceStop(), RaceStopMessage.class, false);
+        subscribe(routingKeyNames.roundPassed(), RoundTimeMessage.class, false);
+
+        LOGGER.info("Connected to {} with exchange {}", rabbitUrl, pilotName);
+    }
+
+    private void subscribe(String routingKey, Class<?> type, boolean noAck) throws IOException {
+        bus.subscribe(pilotName, routingKey, noAck, (contentType, headers, body) -> {
+            negotiator.observe(headers);
+            try {
+                pilot.accept(codec.decode(body, contentType, type));
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.error("Dropping undecodable {} on {}: {}", type.getSimpleName(), routingKey, e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.error("Dropping {} on {} that failed: {}", type.getSimpleName(), routingKey, e.toString());
+            }
+        });
+    }
+
+    private void publish(String exchange, String routingKey, Object message) {
+        if (!bus.isConnected()) {
+            LOGGER.warn("Not connected. Dropping {}", message.getClass().getSimpleName());
+            return;
+        }
+        try {
+            WireFormat format = codec.formatFor(message, negotiator.outgoing());
+            bus.publish(exchange, routingKey, format.getContentType(), headers(), codec.encode(message, format));
+        } catch (IOException e) {
+            throw new PublishException("Could not publish message", e);
+        }
+    }
+
+    private Map<String, Object> headers() {
+        return Collections.<String, Object>singletonMap(WireFormatNegotiator.ACCEPT, negotiator.accepted());
+    }
+}
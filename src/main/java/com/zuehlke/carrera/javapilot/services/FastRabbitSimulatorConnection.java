@@ -0,0 +1,135 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.api.channel.PilotToRelayChannelNames;
+import com.zuehlke.carrera.api.channel.RoutingKeyNames;
+import com.zuehlke.carrera.api.client.PublishException;
+import com.zuehlke.carrera.javapilot.bus.MessageBus;
+import com.zuehlke.carrera.javapilot.bus.MessageBuses;
+import com.zuehlke.carrera.javapilot.io.MessageCodec;
+import com.zuehlke.carrera.javapilot.io.WireFormat;
+import com.zuehlke.carrera.javapilot.io.WireFormatNegotiator;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.Consumer;
+
+/**
+ * Low-level connection for the simulator side, the counterpart of FastRabbitPilotConnection.
+ *
+ * Publishes the racetrack's messages to the pilot's exchange and hands incoming power controls to the simulator.
+ * Sensor events are sent in the binary format only if that is preferred here and the pilot has announced that it
+ * accepts it. Pilots using the client library never do, so they keep receiving json.
+ */
+public class FastRabbitSimulatorConnection implements RemotePilotConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastRabbitSimulatorConnection.class);
+
+    private final String rabbitUrl;
+    private final String pilotName;
+    private final Consumer<PowerControl> simulator;
+
+    private final PilotToRelayChannelNames channelNames;
+    private final RoutingKeyNames routingKeyNames;
+    private final MessageCodec codec = new MessageCodec();
+    private final WireFormatNegotiator negotiator;
+    private final MessageBus bus;
+
+    /**
+     * @param rabbitUrl either a plain host name, an amqp:// uri or a loopback url
+     * @param pilotName the name of the pilot, also the name of the exchange
+     * @param simulator receives the power controls from the pilot
+     * @param preferredFormat the format to use for sensor events if the pilot accepts it
+     */
+    public FastRabbitSimulatorConnection(String rabbitUrl, String pilotName, Consumer<PowerControl> simulator,
+                                         WireFormat preferredFormat) {
+        this.rabbitUrl = rabbitUrl;
+        this.pilotName = pilotName;
+        this.simulator = simulator;
+        this.negotiator = new WireFormatNegotiator(preferredFormat);
+        this.channelNames = new PilotToRelayChannelNames(pilotName);
+        this.routingKeyNames = new RoutingKeyNames(pilotName);
+        this.bus = MessageBuses.create(rabbitUrl, "rabbit-fast-simulator");
+    }
+
+    @Override
+    public void ensureConnection(String url) {
+        if (bus.isConnected()) {
+            return;
+        }
+        try {
+            connect();
+        } catch (IOException e) {
+            LOGGER.error("Couldn't connect to {}: {}", rabbitUrl, e.getMessage());
+        }
+    }
+
+    @Override
+    public void send(SensorEvent message) {
+        publish(routingKeyNames.sensor(), message);
+    }
+
+    @Override
+    public void send(VelocityMessage message) {
+        publish(routingKeyNames.velocity(), message);
+    }
+
+    @Override
+    public void send(PenaltyMessage message) {
+        publish(routingKeyNames.penalty(), message);
+    }
+
+    @Override
+    public void send(RoundTimeMessage message) {
+        publish(routingKeyNames.roundPassed(), message);
+    }
+
+    @Override
+    public void send(RaceStartMessage message) {
+        publish(routingKeyNames.raceStart(), message);
+    }
+
+    @Override
+    public void send(RaceStopMessage message) {
+        publish(routingKeyNames.raceStop(), message);
+    }
+
+    private void connect() throws IOException {
+        bus.connect();
+
+        bus.subscribe(pilotName, routingKeyNames.powerControl(), true, (contentType, headers, body) -> {
+            negotiator.observe(headers);
+            try {
+                simulator.accept((PowerControl) codec.decode(body, contentType, PowerControl.class));
+            } catch (IOException | IllegalArgumentException e) {
+                LOGGER.error("Dropping undecodable power control: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                LOGGER.error("Dropping power control that failed: {}", e.toString());
+            }
+        });
+
+        // the pilot's life signs also tell us which formats it accepts
+        bus.subscribe(MessageBus.DEFAULT_EXCHANGE, channelNames.announce(), true, (contentType, headers, body) -> {
+            negotiator.observe(headers);
+            System.out.print(".");
+        });
+
+        LOGGER.info("Connected to {} with exchange {}", rabbitUrl, pilotName);
+    }
+
+    private void publish(String routingKey, Object message) {
+        if (!bus.isConnected()) {
+            return;
+        }
+        try {
+            WireFormat format = codec.formatFor(message, negotiator.outgoing());
+            bus.publish(pilotName, routingKey, format.getContentType(),
+                    Collections.<String, Object>singletonMap(WireFormatNegotiator.ACCEPT, negotiator.accepted()),
+                    codec.encode(message, format));
+        } catch (IOException e) {
+            throw new PublishException("Could not publish message", e);
+        }
+    }
+}
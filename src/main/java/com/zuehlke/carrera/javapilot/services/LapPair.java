@@ -0,0 +1,63 @@
+package com.zuehlke.carrera.javapilot.services;
+
+/**
+ * Two laps to compare, each given by its race's tag and its number within the race, starting at 1.
+ */
+public class LapPair {
+
+    private LapReference a;
+    private LapReference b;
+
+    public LapPair() {
+    }
+
+    public LapPair(LapReference a, LapReference b) {
+        this.a = a;
+        this.b = b;
+    }
+
+    public LapReference getA() {
+        return a;
+    }
+
+    public void setA(LapReference a) {
+        this.a = a;
+    }
+
+    public LapReference getB() {
+        return b;
+    }
+
+    public void setB(LapReference b) {
+        this.b = b;
+    }
+
+    public static class LapReference {
+        private String tag;
+        private int lap;
+
+        public LapReference() {
+        }
+
+        public LapReference(String tag, int lap) {
+            this.tag = tag;
+            this.lap = lap;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public void setTag(String tag) {
+            this.tag = tag;
+        }
+
+        public int getLap() {
+            return lap;
+        }
+
+        public void setLap(int lap) {
+            this.lap = lap;
+        }
+    }
+}
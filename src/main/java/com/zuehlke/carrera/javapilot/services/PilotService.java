@@ -1,5 +1,10 @@
 package com.zuehlke.carrera.javapilot.services;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
 import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
@@ -10,7 +15,11 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import com.zuehlke.carrera.javapilot.akka.JavaPilotActor;
+import com.zuehlke.carrera.javapilot.akka.PilotConsole;
+import com.zuehlke.carrera.javapilot.akka.PilotWarmUp;
+import com.zuehlke.carrera.javapilot.akka.ReplaySessions;
 import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.io.DumpBlackBoxCommand;
 import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
 import com.zuehlke.carrera.javapilot.io.StopReplayCommand;
 
@@ -18,7 +27,9 @@ import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 
 /**
- * Manages the carrera pilot instance.
+ * Manages the carrera pilot instances: the pilot configured with javapilot.name, and any additional ones from
+ * javapilot.pilots. All of them share one actor system and its thread pools, the additional ones being top level
+ * actors named after the pilot. Each gets its own connections from the PilotApplication.
  */
 @Service
 @EnableScheduling
@@ -28,19 +39,71 @@ public class PilotService {
 
 	private final ActorSystem system;
 	private final ActorRef pilotActor;
+	private final Map<String, ActorRef> pilots = new LinkedHashMap<>();
+	private final ReplaySessions replaySessions = new ReplaySessions();
 	private final String endPointUrl;
+	private volatile boolean warmedUp;
 
+	/**
+	 * @param simulatorService
+	 *            absent in pilot-only mode, where the pilot gets its
+	 *            connection from the command line runner
+	 */
 	@Autowired
-	public PilotService(PilotProperties settings, EndpointService endpointService, SimulatorService simulatorService) {
+	public PilotService(PilotProperties settings, EndpointService endpointService, Optional<SimulatorService> simulatorService) {
 		this.endPointUrl = endpointService.getHttpEndpoint();
+		PilotConsole.install();
 		system = ActorSystem.create(normalize(settings.getName()));
-		pilotActor = system.actorOf(JavaPilotActor.props(settings));
-
-		// Simulator learns about the pilot
-		simulatorService.registerPilot(pilotActor);
+		pilotActor = system.actorOf(JavaPilotActor.props(settings, replaySessions));
+		pilots.put(settings.getName(), pilotActor);
+		for (PilotProperties additional : settings.getPilots()) {
+			if (pilots.containsKey(additional.getName())) {
+				throw new IllegalArgumentException("There is more than one pilot named " + additional.getName());
+			}
+			pilots.put(additional.getName(), system.actorOf(JavaPilotActor.props(additional), normalize(additional.getName())));
+		}
+		if (pilots.size() > 1) {
+			LOGGER.info("Hosting {} pilots: {}", pilots.size(), pilots.keySet());
+		}
+
+		simulatorService.ifPresent((simulator) -> {
+			// Simulator learns about the pilot
+			simulator.registerPilot(pilotActor);
+
+			// Pilot learns about the simulator
+			pilotActor.tell(new PilotToRaceTrackConnector(simulator.getSystem()), ActorRef.noSender());
+		});
+
+		warmUp(settings);
+	}
 
-		// Pilot learns about the simulator
-		pilotActor.tell(new PilotToRaceTrackConnector(simulatorService.getSystem()), ActorRef.noSender());
+	/**
+	 * Lets a copy of the pilot drive the most recent recorded races in the
+	 * background, so that the first real laps already run compiled code. The
+	 * pilot doesn't announce itself before. The copy drives with the pilot's
+	 * strategy, on the races in the pilot's data directory.
+	 * 
+	 * @param settings
+	 *            of the pilot, with the number of races to use, 0 for no
+	 *            warm-up at all
+	 */
+	private void warmUp(PilotProperties settings) {
+		int races = settings.getWarmUpRaces();
+		if (races <= 0) {
+			warmedUp = true;
+			return;
+		}
+		Thread warmUp = new Thread(() -> {
+			try {
+				new PilotWarmUp(settings.getDataDirectory(), settings.getStrategy(), races).run();
+			} catch (Exception e) {
+				LOGGER.error("Warm-up failed: " + e.getMessage());
+			} finally {
+				warmedUp = true;
+			}
+		}, "pilot-warm-up");
+		warmUp.setDaemon(true);
+		warmUp.start();
 	}
 
 	public static String normalize(String name) {
@@ -50,7 +113,12 @@ public class PilotService {
 
 	@Scheduled(fixedRate = 1000)
 	public void announce() {
-		pilotActor.tell(new EndpointAnnouncement(endPointUrl), ActorRef.noSender());
+		if (!warmedUp) {
+			return;
+		}
+		for (ActorRef pilot : pilots.values()) {
+			pilot.tell(new EndpointAnnouncement(endPointUrl), ActorRef.noSender());
+		}
 	}
 
 	@PreDestroy
@@ -64,11 +132,48 @@ public class PilotService {
 		return pilotActor;
 	}
 
-	public void replay(String tag) {
-		pilotActor.tell(new StartReplayCommand(tag), ActorRef.noSender());
+	/**
+	 * @return the pilot of the given name, the main one or an additional one, null if there is none
+	 */
+	public ActorRef getPilotActor(String name) {
+		return pilots.get(name);
+	}
+
+	/**
+	 * @return all pilots by name, the main one first
+	 */
+	public Map<String, ActorRef> getPilots() {
+		return Collections.unmodifiableMap(pilots);
+	}
+
+	/**
+	 * replays the race in a new session of the main pilot, next to the live race and other replays
+	 * 
+	 * @return the id of the session
+	 */
+	public String replay(String tag) {
+		StartReplayCommand command = new StartReplayCommand(tag);
+		pilotActor.tell(command, ActorRef.noSender());
+		return command.getSessionId();
+	}
+
+	/**
+	 * @param session
+	 *            the id of a session, the tag of a race to stop all its
+	 *            sessions, or "all"
+	 */
+	public void stopReplay(String session) {
+		pilotActor.tell(new StopReplayCommand(session), ActorRef.noSender());
+	}
+
+	/**
+	 * @return the running and recently finished replays of the main pilot
+	 */
+	public ReplaySessions getReplaySessions() {
+		return replaySessions;
 	}
 
-	public void stopReplay() {
-		pilotActor.tell(new StopReplayCommand(), ActorRef.noSender());
+	public void dumpBlackBox() {
+		pilotActor.tell(new DumpBlackBoxCommand("request"), ActorRef.noSender());
 	}
 }
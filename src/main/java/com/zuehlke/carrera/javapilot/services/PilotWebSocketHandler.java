@@ -0,0 +1,128 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.javapilot.config.PilotConfig;
+import com.zuehlke.carrera.javapilot.io.FrameCodec;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import java.io.IOException;
+
+/**
+ *  Simulator side of the 'ws' protocol: accepts the websocket connection of a pilot running in another process,
+ *  sends it all racetrack messages and hands its power controls to the simulator. There is one pilot at a time:
+ *  further connections are closed while it is connected.
+ */
+@Component
+@Profile("!" + PilotConfig.PILOT_ONLY)
+public class PilotWebSocketHandler extends BinaryWebSocketHandler implements RemotePilotConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PilotWebSocketHandler.class);
+
+    private final SimulatorService simulatorService;
+    private final FrameCodec codec = new FrameCodec();
+
+    private volatile WebSocketSession session;
+
+    @Autowired
+    public PilotWebSocketHandler(SimulatorService simulatorService) {
+        this.simulatorService = simulatorService;
+    }
+
+    @Override
+    public synchronized void afterConnectionEstablished(WebSocketSession session) throws IOException {
+        WebSocketSession current = this.session;
+        if (current != null && current.isOpen()) {
+            LOGGER.warn("Refusing pilot from {}, the pilot from {} is still connected", session.getRemoteAddress(),
+                    current.getRemoteAddress());
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("another pilot is connected"));
+            return;
+        }
+        LOGGER.info("Pilot connected from {}", session.getRemoteAddress());
+        this.session = session;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        LOGGER.info("Pilot disconnected: {}", status);
+        if (this.session == session) {
+            this.session = null;
+        }
+    }
+
+    @Override
+    protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+        if (session != this.session) {
+            return; // a refused pilot, about to be closed
+        }
+        byte[] frame = new byte[message.getPayloadLength()];
+        message.getPayload().get(frame);
+        Object decoded;
+        try {
+            decoded = codec.decode(frame);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Dropping a frame of {} bytes from the pilot: {}", frame.length, e.getMessage());
+            return;
+        }
+        if (decoded instanceof PowerControl) {
+            simulatorService.getSystem().setPower((PowerControl) decoded);
+        } else if (decoded instanceof PilotLifeSign) {
+            System.out.print(".");
+        }
+    }
+
+    @Override
+    public void send(SensorEvent message) {
+        sendFrame(message);
+    }
+
+    @Override
+    public void send(VelocityMessage message) {
+        sendFrame(message);
+    }
+
+    @Override
+    public void send(PenaltyMessage message) {
+        sendFrame(message);
+    }
+
+    @Override
+    public void send(RoundTimeMessage message) {
+        sendFrame(message);
+    }
+
+    @Override
+    public void send(RaceStartMessage message) {
+        sendFrame(message);
+    }
+
+    @Override
+    public void send(RaceStopMessage message) {
+        sendFrame(message);
+    }
+
+    @Override
+    public void ensureConnection(String url) {
+        // the pilot connects to us
+    }
+
+    // the simulator sends from several threads, but a websocket session must not be written to concurrently
+    private synchronized void sendFrame(Object message) {
+        WebSocketSession current = session;
+        if (current == null || !current.isOpen()) {
+            return; // no pilot connected yet, just like the local connector
+        }
+        try {
+            current.sendMessage(new BinaryMessage(codec.encode(message)));
+        } catch (IOException e) {
+            LOGGER.error("Failed to send {} to the pilot: {}", message.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+}
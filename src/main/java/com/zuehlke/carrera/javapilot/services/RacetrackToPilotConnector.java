@@ -10,44 +10,80 @@ import com.zuehlke.carrera.simulator.model.PilotInterface;
 public class RacetrackToPilotConnector implements PilotInterface, PilotCommandInterface {
 
     ActorRef pilotEntryPoint;
+    RemotePilotConnection remotePilot;
 
     public void registerPilot ( ActorRef pilotEntryPoint ) {
         this.pilotEntryPoint = pilotEntryPoint;
     }
 
+    /**
+     * from now on, send everything to a pilot in another process instead of the local one
+     * @param remotePilot the connection to the remote pilot
+     */
+    public void registerRemotePilot ( RemotePilotConnection remotePilot ) {
+        this.remotePilot = remotePilot;
+    }
+
     @Override
     public void send(SensorEvent message) {
-        sendMessage(message);
+        if ( remotePilot != null ) {
+            remotePilot.send(message);
+        } else {
+            sendMessage(message);
+        }
     }
 
     @Override
     public void send(VelocityMessage message) {
-        sendMessage(message);
+        if ( remotePilot != null ) {
+            remotePilot.send(message);
+        } else {
+            sendMessage(message);
+        }
     }
 
     @Override
     public void send(PenaltyMessage message) {
-        sendMessage(message);
+        if ( remotePilot != null ) {
+            remotePilot.send(message);
+        } else {
+            sendMessage(message);
+        }
     }
 
     @Override
     public void send(RoundTimeMessage message) {
-        sendMessage(message);
+        if ( remotePilot != null ) {
+            remotePilot.send(message);
+        } else {
+            sendMessage(message);
+        }
     }
 
     @Override
     public void ensureConnection(String url) {
         // don't need this in local mode
+        if ( remotePilot != null ) {
+            remotePilot.ensureConnection(url);
+        }
     }
 
     @Override
     public void send(RaceStartMessage message) {
-        sendMessage ( message );
+        if ( remotePilot != null ) {
+            remotePilot.send(message);
+        } else {
+            sendMessage(message);
+        }
     }
 
     @Override
     public void send(RaceStopMessage message) {
-        sendMessage ( message );
+        if ( remotePilot != null ) {
+            remotePilot.send(message);
+        } else {
+            sendMessage(message);
+        }
     }
 
     private void sendMessage (Object message) {
@@ -0,0 +1,9 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.simulator.model.PilotInterface;
+
+/**
+ *  a connection from the simulator to a pilot running in a separate process
+ */
+public interface RemotePilotConnection extends PilotInterface, PilotCommandInterface {
+}
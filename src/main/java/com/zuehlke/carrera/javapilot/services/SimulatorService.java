@@ -14,7 +14,9 @@ import com.zuehlke.carrera.simulator.model.racetrack.TrackSection;
 import org.apache.commons.math3.distribution.NormalDistribution;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import com.zuehlke.carrera.javapilot.config.PilotConfig;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -28,6 +30,7 @@ import java.util.List;
  * Manages the racetrack simulator instance.
  */
 @Service
+@Profile("!" + PilotConfig.PILOT_ONLY)
 @EnableScheduling
 public class SimulatorService {
 
@@ -68,6 +71,10 @@ public class SimulatorService {
         pilotInterface.registerPilot(pilot);
     }
 
+    public void registerRemotePilot(RemotePilotConnection remotePilot ) {
+        pilotInterface.registerRemotePilot(remotePilot);
+    }
+
     @PreDestroy
     public void shutDownActorSystem () {
         raceTrackSimulatorSystem.shutdown();
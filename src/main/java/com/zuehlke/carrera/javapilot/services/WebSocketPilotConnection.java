@@ -0,0 +1,158 @@
+package com.zuehlke.carrera.javapilot.services;
+
+import com.zuehlke.carrera.javapilot.io.FrameCodec;
+import com.zuehlke.carrera.relayapi.messages.PilotLifeSign;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.BinaryWebSocketHandler;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Pilot side of the 'ws' protocol: one persistent websocket connection to a simulator running in another process,
+ * no broker in between. All messages travel as binary frames, see FrameCodec.
+ *
+ * Whenever the connection is lost or can't be established, a new attempt is made after RECONNECT_DELAY.
+ */
+public class WebSocketPilotConnection implements PilotToRelayConnection {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WebSocketPilotConnection.class);
+
+    private static final long RECONNECT_DELAY = 1000; // ms
+
+    private final String simulatorUrl;
+    private final String pilotName;
+    private final String accessCode;
+    private final Consumer<Object> pilot;
+
+    private final FrameCodec codec = new FrameCodec();
+    private final StandardWebSocketClient client = new StandardWebSocketClient();
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "ws-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile WebSocketSession session;
+    private volatile boolean connecting = false;
+
+    /**
+     * @param simulatorUrl the websocket url of the simulator, like ws://localhost:8088/pilot-ws
+     * @param pilotName the name of the pilot
+     * @param accessCode the access code provided by race management
+     * @param pilot receives all incoming messages
+     */
+    public WebSocketPilotConnection(String simulatorUrl, String pilotName, String accessCode, Consumer<Object> pilot) {
+        this.simulatorUrl = simulatorUrl;
+        this.pilotName = pilotName;
+        this.accessCode = accessCode;
+        this.pilot = pilot;
+    }
+
+    @Override
+    public void ensureConnection() {
+        WebSocketSession current = session;
+        if ((current != null && current.isOpen()) || connecting) {
+            return;
+        }
+        connect();
+    }
+
+    @Override
+    public void announce(String optionalUrl) {
+        sendFrame(new PilotLifeSign(pilotName, accessCode, optionalUrl, System.currentTimeMillis()));
+    }
+
+    @Override
+    public void send(PowerControl powerControl) {
+        sendFrame(powerControl);
+    }
+
+    public void disconnect() {
+        reconnector.shutdownNow();
+        WebSocketSession current = session;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException e) {
+                LOGGER.error("Failed to close the connection: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void connect() {
+        connecting = true;
+        client.doHandshake(new FrameHandler(), simulatorUrl).addCallback(
+                (newSession) -> {
+                    connecting = false;
+                    LOGGER.info("Connected to simulator at {}", simulatorUrl);
+                },
+                (failure) -> {
+                    connecting = false;
+                    LOGGER.warn("Couldn't connect to {}: {}", simulatorUrl, failure.getMessage());
+                    scheduleReconnect();
+                });
+    }
+
+    private void scheduleReconnect() {
+        if (!reconnector.isShutdown()) {
+            reconnector.schedule(this::ensureConnection, RECONNECT_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // called from the actor and from the scheduler, but a websocket session must not be written to concurrently
+    private synchronized void sendFrame(Object message) {
+        WebSocketSession current = session;
+        if (current == null || !current.isOpen()) {
+            return;
+        }
+        try {
+            current.sendMessage(new BinaryMessage(codec.encode(message)));
+        } catch (IOException e) {
+            LOGGER.error("Failed to send {}: {}", message.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+
+    private class FrameHandler extends BinaryWebSocketHandler {
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession newSession) {
+            session = newSession;
+        }
+
+        @Override
+        protected void handleBinaryMessage(WebSocketSession session, BinaryMessage message) throws IOException {
+            byte[] frame = new byte[message.getPayloadLength()];
+            message.getPayload().get(frame);
+            Object decoded;
+            try {
+                decoded = codec.decode(frame);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Dropping a frame of {} bytes from the simulator: {}", frame.length, e.getMessage());
+                return;
+            }
+            pilot.accept(decoded);
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession closedSession, CloseStatus status) {
+            LOGGER.warn("Connection to simulator closed: {}", status);
+            session = null;
+            scheduleReconnect();
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) {
+            LOGGER.warn("Transport error: {}", exception.getMessage());
+        }
+    }
+}
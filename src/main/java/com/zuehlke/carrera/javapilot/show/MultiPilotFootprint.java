@@ -0,0 +1,173 @@
+package com.zuehlke.carrera.javapilot.show;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import com.zuehlke.carrera.javapilot.akka.JavaPilotActor;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.services.PilotService;
+import com.zuehlke.carrera.javapilot.services.PilotToRaceTrackConnector;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures what every additional pilot costs when several pilots share one actor system, the way the PilotService
+ * hosts them.
+ *
+ * Adds the pilots one by one. After each one, it drives all of them with synthetic sensor events at the given rate
+ * per pilot for a while, and reports the heap in use after a garbage collection, the CPU time of the process per
+ * second, and the number of threads. The differences to the step before are the cost of the pilot just added. The
+ * pilots neither record nor keep a black box, and their console output is discarded.
+ *
+ * Usage: MultiPilotFootprint [-n pilots] [-r events per second and pilot] [-d seconds per step]
+ */
+public class MultiPilotFootprint {
+
+    private static final String SYSTEM_NAME = "footprint";
+    private static final int EVENTS = 4000;
+
+    private final int maxPilots;
+    private final int rate;
+    private final int stepSeconds;
+    private final PrintStream report = System.out;
+
+    private final SensorEvent[] events = new SensorEvent[EVENTS];
+    private final List<ActorRef> pilots = new ArrayList<>();
+    private final AtomicLong answered = new AtomicLong();
+    private long sent;
+    private double handledRate; // power controls per second in the last step
+
+    public MultiPilotFootprint(int maxPilots, int rate, int stepSeconds) {
+        this.maxPilots = maxPilots;
+        this.rate = rate;
+        this.stepSeconds = stepSeconds;
+        for (int i = 0; i < EVENTS; i++) {
+            int gyroZ = (int) (3000 * Math.sin(2 * Math.PI * i / 400));
+            events[i] = new SensorEvent("footprint", new int[]{-120, 45, 9810}, new int[]{12, -7, gyroZ},
+                    new int[]{301, -12, 88}, i * 10L);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Options options = new Options();
+        options.addOption("n", true, "the number of pilots to go up to, defaults to 8");
+        options.addOption("r", true, "sensor events per second and pilot, defaults to 100");
+        options.addOption("d", true, "seconds per step, defaults to 5");
+        CommandLine cmd = new PosixParser().parse(options, args);
+
+        new MultiPilotFootprint(Integer.parseInt(cmd.getOptionValue("n", "8")),
+                Integer.parseInt(cmd.getOptionValue("r", "100")),
+                Integer.parseInt(cmd.getOptionValue("d", "5"))).run();
+        System.exit(0);
+    }
+
+    public void run() {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+        ActorSystem system = ActorSystem.create(SYSTEM_NAME);
+        try {
+            report.printf("%d events per second and pilot, %d s per step%n", rate, stepSeconds);
+            report.printf("%6s %10s %12s %8s %10s %8s %10s%n", "pilots", "heap MB", "+heap KB", "cpu %",
+                    "+cpu %", "threads", "handled/s");
+            addPilot(system, 1);
+            drive(); // warms up, so that the first pilot doesn't pay for the compilation
+            double heapBefore = 0;
+            double cpuBefore = 0;
+            for (int n = 1; n <= maxPilots; n++) {
+                if (n > 1) {
+                    addPilot(system, n);
+                }
+                double cpu = drive();
+                double heap = heapInUse();
+                String heapAdded = n == 1 ? "-" : String.format("%.0f", (heap - heapBefore) / 1024);
+                String cpuAdded = n == 1 ? "-" : String.format("%.1f", cpu - cpuBefore);
+                report.printf("%6d %10.1f %12s %8.1f %10s %8d %10.0f%n", n, heap / 1024 / 1024, heapAdded, cpu,
+                        cpuAdded, ManagementFactory.getThreadMXBean().getThreadCount(), handledRate);
+                heapBefore = heap;
+                cpuBefore = cpu;
+            }
+        } finally {
+            system.shutdown();
+            system.awaitTermination();
+        }
+    }
+
+    private void addPilot(ActorSystem system, int number) {
+        PilotProperties properties = new PilotProperties();
+        properties.setName("pilot-" + number);
+        properties.setAccessCode("");
+        properties.setRecording(false);
+        properties.setBlackBoxSeconds(0);
+
+        ActorRef pilot = system.actorOf(JavaPilotActor.props(properties), PilotService.normalize(properties.getName()));
+        pilot.tell(new PilotToRaceTrackConnector(null) {
+            @Override
+            public void send(PowerControl powerControl) {
+                answered.incrementAndGet();
+            }
+        }, ActorRef.noSender());
+        pilot.tell(new RaceStartMessage(), ActorRef.noSender());
+        pilots.add(pilot);
+    }
+
+    /**
+     * sends every pilot rate events per second for a step
+     * @return the CPU time of the process during the step, in percent of one core
+     */
+    private double drive() {
+        long period = TimeUnit.SECONDS.toNanos(1) / rate;
+        long answeredBefore = answered.get();
+        long cpuBefore = processCpuTime();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(stepSeconds);
+        for (long due = start; due < end; due += period) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            SensorEvent event = events[(int) (sent++ % EVENTS)];
+            for (ActorRef pilot : pilots) {
+                pilot.tell(event, ActorRef.noSender());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        handledRate = (answered.get() - answeredBefore) * 1e9 / elapsed;
+        return 100.0 * (processCpuTime() - cpuBefore) / elapsed;
+    }
+
+    private static long processCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0;
+    }
+
+    private static double heapInUse() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
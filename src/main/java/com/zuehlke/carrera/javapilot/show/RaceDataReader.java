@@ -0,0 +1,211 @@
+package com.zuehlke.carrera.javapilot.show;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Reads a RaceData file as a stream, for files too large to read into a RaceData object.
+ *
+ * Each array is read by a parser of its own, one element at a time, so the arrays can be merged or copied in any
+ * order while only a few messages are in memory at once. The scalar fields are read when the reader is created,
+ * skipping over the arrays.
+ */
+public class RaceDataReader {
+
+    public static final String SENSOR_EVENTS = "sensorEvents";
+    public static final String VELOCITY_MESSAGES = "velocityMessages";
+    public static final String POWER_CONTROLS = "powerControls";
+
+    private final File file;
+    private final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final RaceData header = new RaceData();
+
+    public RaceDataReader(File file) throws IOException {
+        this.file = file;
+        try (JsonParser parser = mapper.getFactory().createParser(file)) {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                switch (field) {
+                    case "id":
+                        header.setId(parser.getValueAsString());
+                        break;
+                    case "startTime":
+                        header.setStartTime(parser.getValueAsLong());
+                        break;
+                    case "teamId":
+                        header.setTeamId(parser.getValueAsString());
+                        break;
+                    case "trackId":
+                        header.setTrackId(parser.getValueAsString());
+                        break;
+                    case "raceType":
+                        header.setRaceType(parser.getValueAsString());
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    public String getId() {
+        return header.getId();
+    }
+
+    public long getStartTime() {
+        return header.getStartTime();
+    }
+
+    public String getTeamId() {
+        return header.getTeamId();
+    }
+
+    public String getTrackId() {
+        return header.getTrackId();
+    }
+
+    public String getRaceType() {
+        return header.getRaceType();
+    }
+
+    /**
+     * @param field the name of one of the arrays
+     * @return the elements of that array, one after the other
+     */
+    public <T> Elements<T> elements(String field, Class<T> type) throws IOException {
+        JsonParser parser = mapper.getFactory().createParser(file);
+        try {
+            expect(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean found = field.equals(parser.getCurrentName());
+                JsonToken value = parser.nextToken();
+                if (found && value == JsonToken.START_ARRAY) {
+                    return new Elements<>(parser, type);
+                }
+                parser.skipChildren();
+            }
+            // no such array: no elements
+            parser.close();
+            return new Elements<>(null, type);
+        } catch (IOException | RuntimeException e) {
+            parser.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the sensor events and velocity messages merged in the order of their t
+     */
+    public Elements<Object> messages() throws IOException {
+        Elements<SensorEvent> events = elements(SENSOR_EVENTS, SensorEvent.class);
+        Elements<VelocityMessage> velocities = elements(VELOCITY_MESSAGES, VelocityMessage.class);
+        return new Elements<Object>(null, Object.class) {
+            private SensorEvent event = events.next();
+            private VelocityMessage velocity = velocities.next();
+
+            @Override
+            public Object next() throws IOException {
+                Object next;
+                if (event != null && (velocity == null || velocity.getT() > event.getT())) {
+                    next = event;
+                    event = events.next();
+                } else {
+                    next = velocity;
+                    if (velocity != null) {
+                        velocity = velocities.next();
+                    }
+                }
+                return next;
+            }
+
+            @Override
+            public void close() throws IOException {
+                events.close();
+                velocities.close();
+            }
+        };
+    }
+
+    /**
+     * copies the race into a new race directory of the recorder, array by array
+     * @return the tag of the new race
+     */
+    public String importInto(RaceRecorderPlayer recorder) throws IOException {
+        String tag = recorder.record(new RaceStartMessage(getTrackId(), getRaceType(), getTeamId(), getStartTime(),
+                "imported from " + file.getName(), false));
+        try {
+            copy(elements(SENSOR_EVENTS, SensorEvent.class), recorder::record);
+            copy(elements(VELOCITY_MESSAGES, VelocityMessage.class), recorder::record);
+            copy(elements(POWER_CONTROLS, PowerControl.class), recorder::record);
+        } finally {
+            recorder.close();
+        }
+        return tag;
+    }
+
+    private static <T> void copy(Elements<T> elements, Consumer<T> consumer) throws IOException {
+        try (Elements<T> source = elements) {
+            for (T element = source.next(); element != null; element = source.next()) {
+                consumer.accept(element);
+            }
+        }
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) throws IOException {
+        if (parser.nextToken() != token) {
+            throw new IOException("Expected " + token + " at " + parser.getCurrentLocation());
+        }
+    }
+
+    /**
+     * the elements of one array, read as they are asked for
+     */
+    public class Elements<T> implements Closeable {
+
+        private final JsonParser parser;
+        private final Class<T> type;
+        private boolean done;
+
+        private Elements(JsonParser parser, Class<T> type) {
+            this.parser = parser;
+            this.type = type;
+        }
+
+        /**
+         * @return the next element, null after the last one
+         */
+        public T next() throws IOException {
+            if (parser == null || done) {
+                return null;
+            }
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                done = true;
+                return null;
+            }
+            return mapper.readValue(parser, type);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+    }
+}
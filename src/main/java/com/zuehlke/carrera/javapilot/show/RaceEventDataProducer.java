@@ -8,10 +8,15 @@ import com.zuehlke.carrera.api.seralize.JacksonSerializer;
 import com.zuehlke.carrera.api.seralize.Serializer;
 import com.zuehlke.carrera.connection.SimulatorTowardsPilotApiImpl;
 import com.zuehlke.carrera.connection.TowardsPilotApi;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
 import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
 import com.zuehlke.carrera.relayapi.messages.RaceStopMessage;
 import com.zuehlke.carrera.relayapi.messages.SensorEvent;
 import com.zuehlke.carrera.relayapi.messages.VelocityMessage;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -19,6 +24,10 @@ import java.io.IOException;
 
 /**
  * reads the data from the file at a given frequency and publishes it to the respective exchange/routing
+ *
+ * Usage: RaceEventDataProducer [-s] [-i data directory] file
+ *   -s reads the file as a stream instead of all at once, for large files
+ *   -i imports the file into a new race directory of the recorder instead of publishing it, also as a stream
  */
 public class RaceEventDataProducer {
 
@@ -27,12 +36,68 @@ public class RaceEventDataProducer {
     private TowardsPilotApi towardsPilotApi;
     Client client;
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws ParseException {
 
-        if ( args.length != 1) {
+        Options options = new Options();
+        options.addOption("s", false, "stream the file instead of reading it at once");
+        options.addOption("i", true, "import the file into this data directory instead of publishing it");
+        CommandLine cmd = new PosixParser().parse(options, args);
+
+        if ( cmd.getArgs().length != 1) {
             exit ("Must provide file name");
         }
-        new RaceEventDataProducer().produce ( args [0]);
+        String filename = cmd.getArgs()[0];
+        if ( cmd.hasOption("i")) {
+            importRace(filename, cmd.getOptionValue("i"));
+        } else if ( cmd.hasOption("s")) {
+            new RaceEventDataProducer().stream(filename);
+        } else {
+            new RaceEventDataProducer().produce(filename);
+        }
+    }
+
+    private static void importRace(String filename, String dataDirectory) {
+        try {
+            String tag = new RaceDataReader(new File(filename)).importInto(new RaceRecorderPlayer(dataDirectory));
+            System.out.println("Imported " + filename + " as " + dataDirectory + "/" + tag);
+        } catch (FileNotFoundException e) {
+            exit ( "No such file " + filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+            exit ( "Failed to import " + filename);
+        }
+    }
+
+    /**
+     * like produce, but reads the messages from the file only as they are published
+     */
+    private void stream(String filename) {
+
+        try {
+            RaceDataReader reader = new RaceDataReader(new File(filename));
+            System.out.println("Replaying from track " + reader.getTrackId() + " for team " + reader.getTeamId());
+
+            connectSimulatorWithRabbit(reader.getTeamId());
+
+            createStartMessage(reader.getTrackId(), reader.getTeamId());
+            try (RaceDataReader.Elements<Object> messages = reader.messages()) {
+                for (Object message = messages.next(); message != null; message = messages.next()) {
+                    sleep ( 1000 / FREQUENCY );
+                    if ( message instanceof SensorEvent ) {
+                        towardsPilotApi.sensor((SensorEvent) message);
+                    } else {
+                        towardsPilotApi.velocity((VelocityMessage) message);
+                    }
+                }
+            }
+            createStopMessage(reader.getTrackId(), reader.getTeamId());
+        } catch (FileNotFoundException e) {
+            exit ( "No such file " + filename);
+        } catch (IOException e) {
+            e.printStackTrace();
+            exit ( "Failed to read from " + filename);
+        }
+        client.disconnect();
     }
 
     private void produce(String filename) {
@@ -57,7 +122,7 @@ public class RaceEventDataProducer {
 
     private void produce(RaceData data) {
 
-        createStartMessage ( data );
+        createStartMessage ( data.getTrackId(), data.getTeamId() );
 
         int vs = data.getVelocityMessages().size();
         int ss = data.getSensorEvents().size();
@@ -94,19 +159,15 @@ public class RaceEventDataProducer {
             }
         }
 
-        createStopMessage(data);
+        createStopMessage(data.getTrackId(), data.getTeamId());
     }
 
-    private void createStartMessage(RaceData data) {
-        String track = data.getTrackId();
-        String team = data.getTeamId();
+    private void createStartMessage(String track, String team) {
         long now = System.currentTimeMillis();
         towardsPilotApi.raceStart(new RaceStartMessage(track, "replay", team, now, "replayed from file", false));
     }
 
-    private void createStopMessage(RaceData data) {
-        String track = data.getTrackId();
-        String team = data.getTeamId();
+    private void createStopMessage(String track, String team) {
         long now = System.currentTimeMillis();
         towardsPilotApi.raceStop(new RaceStopMessage(track, team, now, "replay"));
     }
@@ -0,0 +1,309 @@
+package com.zuehlke.carrera.javapilot.show;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import com.zuehlke.carrera.api.channel.RoutingKeyNames;
+import com.zuehlke.carrera.javapilot.akka.JavaPilotActor;
+import com.zuehlke.carrera.javapilot.bus.LoopbackBroker;
+import com.zuehlke.carrera.javapilot.bus.LoopbackBrokerServer;
+import com.zuehlke.carrera.javapilot.bus.MessageBus;
+import com.zuehlke.carrera.javapilot.bus.MessageBuses;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.io.EndOfStreamException;
+import com.zuehlke.carrera.javapilot.io.MessageCodec;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.javapilot.io.WireFormat;
+import com.zuehlke.carrera.javapilot.services.FastRabbitPilotConnection;
+import com.zuehlke.carrera.javapilot.services.PilotToRaceTrackConnector;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.PosixParser;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Finds the sensor event rate at which the pilot starts to fall behind.
+ *
+ * Drives a JavaPilotActor with sensor events at increasing rates, either directly in-process ('memory') or through
+ * the 'rabbit-fast' transport to any url MessageBuses understands. The pilot answers every sensor event with exactly
+ * one power control, in order, so the n-th power control belongs to the n-th event. Power controls are taken from the
+ * pilot synchronously, like the in-memory simulator does, so only the way in goes over the transport.
+ *
+ * Each rate step reports the rate the pilot actually handled and the latency percentiles from sending an event to
+ * its power control. The ramp stops at the first step the pilot cannot sustain. An unreported step at the first rate
+ * warms up the JIT compiler before. The strategy's console output is discarded, the report goes to the console.
+ *
+ * Usage: SensorLoadGenerator [-t memory|embedded|loopback://host:port|rabbit host] [-w json|binary]
+ *                            [-r 1000,5000,20000 | -r from:to:steps] [-d seconds per step]
+ *                            [-s synthetic|data/tag|racedata.json]
+ */
+public class SensorLoadGenerator {
+
+    private static final String PILOT_NAME = "loadpilot";
+    private static final String ACCESS_CODE = "SECRET";
+    private static final String MEMORY = "memory";
+
+    private static final double SUSTAINABLE = 0.95; // fraction of the target rate that must be handled
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final String transport;
+    private final WireFormat wireFormat;
+    private final int stepSeconds;
+    private final List<SensorEvent> events;
+    private final PrintStream report;
+
+    private final MessageCodec codec = new MessageCodec();
+    private final AtomicLong answered = new AtomicLong();
+    private long sent;
+    private volatile Step step;
+
+    private ActorSystem system;
+    private ActorRef pilot;
+    private FastRabbitPilotConnection pilotConnection;
+    private MessageBus publisher;
+    private LoopbackBrokerServer brokerServer;
+    private String routingKey;
+
+    public SensorLoadGenerator(String transport, WireFormat wireFormat, int stepSeconds, List<SensorEvent> events) {
+        this.transport = transport;
+        this.wireFormat = wireFormat;
+        this.stepSeconds = stepSeconds;
+        this.events = events;
+        this.report = System.out;
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        Options options = new Options();
+        options.addOption("t", true, "'memory' (default), 'embedded', a loopback:// url or a rabbitmq host");
+        options.addOption("w", true, "wire format for transports: 'json' (default) or 'binary'");
+        options.addOption("r", true, "rates per second, like 1000,5000,20000 or a linear ramp from:to:steps");
+        options.addOption("d", true, "seconds per rate step, defaults to 5");
+        options.addOption("s", true, "'synthetic' (default), a recorded race like data/08141530 or a RaceData file");
+        CommandLine cmd = new PosixParser().parse(options, args);
+
+        List<SensorEvent> events = loadEvents(cmd.getOptionValue("s", "synthetic"));
+        int[] rates = parseRates(cmd.getOptionValue("r", "1000:50000:10"));
+        SensorLoadGenerator generator = new SensorLoadGenerator(cmd.getOptionValue("t", MEMORY),
+                WireFormat.valueOf(cmd.getOptionValue("w", "json")),
+                Integer.parseInt(cmd.getOptionValue("d", "5")), events);
+
+        generator.run(rates);
+        System.exit(0);
+    }
+
+    static int[] parseRates(String option) {
+        if (option.contains(":")) {
+            String[] ramp = option.split(":");
+            int from = Integer.parseInt(ramp[0]);
+            int to = Integer.parseInt(ramp[1]);
+            int steps = Integer.parseInt(ramp[2]);
+            int[] rates = new int[steps];
+            for (int i = 0; i < steps; i++) {
+                rates[i] = steps == 1 ? from : from + (int) ((long) (to - from) * i / (steps - 1));
+            }
+            return rates;
+        }
+        return Arrays.stream(option.split(",")).mapToInt((rate) -> Integer.parseInt(rate.trim())).toArray();
+    }
+
+    private static List<SensorEvent> loadEvents(String source) throws IOException {
+        List<SensorEvent> events = new ArrayList<>();
+        if ("synthetic".equals(source)) {
+            // curves to the left and right every 200 events, as the gyro would see them
+            for (int i = 0; i < 4000; i++) {
+                int gyroZ = (int) (3000 * Math.sin(2 * Math.PI * i / 400));
+                events.add(new SensorEvent(PILOT_NAME, new int[]{-120, 45, 9810}, new int[]{12, -7, gyroZ},
+                        new int[]{301, -12, 88}, i * 12L));
+            }
+        } else if (source.endsWith(".json")) {
+            try (RaceDataReader.Elements<SensorEvent> sensorEvents = new RaceDataReader(new File(source))
+                    .elements(RaceDataReader.SENSOR_EVENTS, SensorEvent.class)) {
+                for (SensorEvent event = sensorEvents.next(); event != null; event = sensorEvents.next()) {
+                    events.add(event);
+                }
+            }
+        } else {
+            File race = new File(source);
+            Supplier<Object> supplier = new RaceRecorderPlayer(race.getParent()).getSupplier(race.getName());
+            try {
+                while (true) {
+                    Object next = supplier.get();
+                    if (next instanceof SensorEvent) {
+                        events.add((SensorEvent) next);
+                    }
+                }
+            } catch (EndOfStreamException e) {
+                // all events read
+            }
+        }
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("No sensor events in " + source);
+        }
+        return events;
+    }
+
+    public void run(int[] rates) throws IOException {
+        start();
+        report.printf("%s, %d events, %d s per step%n", transport, events.size(), stepSeconds);
+        runStep(rates[0], false);
+        report.printf("%9s %9s %9s %9s %9s %9s %9s%n", "target/s", "sent/s", "handled/s",
+                "p50 us", "p90 us", "p99 us", "max us");
+        for (int rate : rates) {
+            boolean sustained = runStep(rate, true);
+            if (!sustained) {
+                report.println("The pilot falls behind at " + rate + " events per second.");
+                break;
+            }
+        }
+        stop();
+    }
+
+    private void start() throws IOException {
+        System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+
+        PilotProperties properties = new PilotProperties();
+        properties.setName(PILOT_NAME);
+        properties.setAccessCode(ACCESS_CODE);
+        system = ActorSystem.create("loadgenerator");
+        pilot = system.actorOf(JavaPilotActor.props(properties));
+        pilot.tell(new PilotToRaceTrackConnector(null) {
+            @Override
+            public void send(PowerControl powerControl) {
+                onPowerControl();
+            }
+        }, ActorRef.noSender());
+
+        if (!MEMORY.equals(transport)) {
+            if (transport.startsWith(MessageBuses.LOOPBACK_SCHEME)) {
+                brokerServer = new LoopbackBrokerServer(new LoopbackBroker(), MessageBuses.loopbackPort(transport));
+                brokerServer.start();
+            }
+            pilotConnection = new FastRabbitPilotConnection(transport, PILOT_NAME, ACCESS_CODE,
+                    (message) -> pilot.tell(message, ActorRef.noSender()), wireFormat);
+            pilotConnection.ensureConnection();
+            publisher = MessageBuses.create(transport, "load-publisher");
+            publisher.connect();
+            routingKey = new RoutingKeyNames(PILOT_NAME).sensor();
+        }
+    }
+
+    private void stop() {
+        if (pilotConnection != null) {
+            pilotConnection.disconnect();
+            publisher.close();
+        }
+        if (brokerServer != null) {
+            brokerServer.stop();
+        }
+        system.shutdown();
+    }
+
+    /**
+     * called on the pilot actor's thread for every power control
+     */
+    private void onPowerControl() {
+        long now = System.nanoTime();
+        Step current = step;
+        long index = answered.getAndIncrement() - current.firstEvent;
+        if (index >= 0 && index < current.latencies.length) {
+            current.latencies[(int) index] = now - current.sendTimes.get((int) index);
+            current.handled++;
+            current.lastAnswer = now;
+        }
+    }
+
+    private boolean runStep(int rate, boolean reported) throws IOException {
+        int count = rate * stepSeconds;
+        Step current = new Step(sent, count);
+        step = current;
+
+        long start = System.nanoTime();
+        int i = 0;
+        while (i < count) {
+            long due = Math.min(count, (System.nanoTime() - start) * rate / TimeUnit.SECONDS.toNanos(1) + 1);
+            if (i >= due) {
+                Thread.yield();
+                continue;
+            }
+            while (i < due) {
+                current.sendTimes.set(i, System.nanoTime());
+                send(events.get((int) (sent % events.size())));
+                sent++;
+                i++;
+            }
+        }
+        long sendEnd = System.nanoTime();
+
+        while (answered.get() < sent && System.nanoTime() - sendEnd < DRAIN_TIMEOUT_NANOS) {
+            Thread.yield();
+        }
+
+        if (!reported) {
+            return true;
+        }
+        double sentRate = count * 1e9 / (sendEnd - start);
+        double handledRate = current.handled == 0 ? 0 : current.handled * 1e9 / (current.lastAnswer - start);
+        long[] sorted = Arrays.copyOf(current.latencies, current.handled);
+        Arrays.sort(sorted);
+        report.printf("%9d %9.0f %9.0f %9d %9d %9d %9d%n", rate, sentRate, handledRate,
+                percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000);
+
+        return current.handled == count && handledRate >= SUSTAINABLE * rate;
+    }
+
+    private void send(SensorEvent event) throws IOException {
+        if (publisher == null) {
+            pilot.tell(event, ActorRef.noSender());
+        } else {
+            publisher.publish(PILOT_NAME, routingKey, wireFormat.getContentType(), Collections.emptyMap(),
+                    codec.encode(event, wireFormat));
+        }
+    }
+
+    private long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))] / 1000;
+    }
+
+    /**
+     * the events of one rate step, numbered from firstEvent on
+     */
+    private static class Step {
+        final long firstEvent;
+        final AtomicLongArray sendTimes;
+        final long[] latencies;
+        volatile int handled;
+        volatile long lastAnswer;
+
+        Step(long firstEvent, int count) {
+            this.firstEvent = firstEvent;
+            this.sendTimes = new AtomicLongArray(count);
+            this.latencies = new long[count];
+        }
+    }
+}
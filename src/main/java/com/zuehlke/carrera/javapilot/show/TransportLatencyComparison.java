@@ -0,0 +1,164 @@
+package com.zuehlke.carrera.javapilot.show;
+
+import com.rabbitmq.client.*;
+import com.zuehlke.carrera.api.DirectExchangePilotApiImpl;
+import com.zuehlke.carrera.api.PilotApi;
+import com.zuehlke.carrera.api.channel.PilotToRelayChannelNames;
+import com.zuehlke.carrera.api.channel.RoutingKeyNames;
+import com.zuehlke.carrera.api.client.Client;
+import com.zuehlke.carrera.api.client.rabbit.RabbitClient;
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
+import com.zuehlke.carrera.connection.ConnectionFactoryFromPilots;
+import com.zuehlke.carrera.connection.RabbitConnectionFactoryFromPilots;
+import com.zuehlke.carrera.javapilot.services.FastRabbitPilotConnection;
+import com.zuehlke.carrera.javapilot.services.PilotToRelayConnection;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the delivery latency of sensor events for the client library transport ('-p rabbit')
+ * and the low-level transport ('-p rabbit-fast').
+ *
+ * Publishes sensor events carrying System.nanoTime() as their time stamp to the pilot's exchange and measures
+ * the time until each of them arrives at the pilot's consumer. Needs a rabbitmq-server on localhost.
+ *
+ * Usage: TransportLatencyComparison [numberOfMessages] [messagesPerSecond]
+ */
+public class TransportLatencyComparison {
+
+    private static final String rabbitHost = "localhost";
+    private static final String PILOT_NAME = "latencypilot";
+    private static final String ACCESS_CODE = "SECRET";
+
+    private final int numberOfMessages;
+    private final int messagesPerSecond;
+
+    public TransportLatencyComparison(int numberOfMessages, int messagesPerSecond) {
+        this.numberOfMessages = numberOfMessages;
+        this.messagesPerSecond = messagesPerSecond;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numberOfMessages = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int messagesPerSecond = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        new TransportLatencyComparison(numberOfMessages, messagesPerSecond).compare();
+        System.exit(0);
+    }
+
+    private void compare() throws Exception {
+
+        Connection publisherConnection = connectPublisher();
+        Channel publisher = publisherConnection.createChannel();
+        publisher.exchangeDeclare(PILOT_NAME, "direct");
+
+        // each transport delivers into a run of its own, so late deliveries never count for the other one
+        Run libraryRun = new Run();
+        Client library = connectWithClientLibrary(libraryRun);
+        measure(publisher, libraryRun);
+        library.disconnect();
+        libraryRun.report("rabbit (client library)");
+
+        Run fastRun = new Run();
+        FastRabbitPilotConnection fast = new FastRabbitPilotConnection(rabbitHost, PILOT_NAME, ACCESS_CODE,
+                fastRun::onMessage);
+        fast.ensureConnection();
+        measure(publisher, fastRun);
+        fast.disconnect();
+        fastRun.report("rabbit-fast (low level)");
+
+        publisherConnection.close();
+    }
+
+    /**
+     * @return the client, to disconnect the pilot when the run is over
+     */
+    private Client connectWithClientLibrary(Run run) {
+        Client client = new RabbitClient();
+        client.connect(rabbitHost);
+        PilotApi pilotApi = new DirectExchangePilotApiImpl(client, new PilotToRelayChannelNames(PILOT_NAME),
+                new RoutingKeyNames(PILOT_NAME), new JacksonSerializer());
+
+        ConnectionFactoryFromPilots factory = new RabbitConnectionFactoryFromPilots(pilotApi,
+                PILOT_NAME, ACCESS_CODE, rabbitHost);
+
+        PilotToRelayConnection connection = factory.create(
+                (start) -> {},
+                (stop) -> {},
+                run::onMessage,
+                (velo) -> {},
+                (penalty) -> {},
+                (roundPassed) -> {}
+        );
+        connection.ensureConnection();
+        return client;
+    }
+
+    private Connection connectPublisher() throws Exception {
+        ConnectionFactory connectionFactory = new ConnectionFactory();
+        connectionFactory.setHost(rabbitHost);
+        return connectionFactory.newConnection();
+    }
+
+    private void measure(Channel publisher, Run run) throws Exception {
+        String routingKey = new RoutingKeyNames(PILOT_NAME).sensor();
+        JacksonSerializer serializer = new JacksonSerializer();
+        long period = TimeUnit.SECONDS.toNanos(1) / messagesPerSecond;
+        long next = System.nanoTime();
+        for (int i = 0; i < numberOfMessages; i++) {
+            while (System.nanoTime() < next) {
+                Thread.yield();
+            }
+            next += period;
+            SensorEvent event = new SensorEvent(PILOT_NAME, new int[]{1, 2, 3}, new int[]{4, 5, i},
+                    new int[]{7, 8, 9}, System.nanoTime());
+            publisher.basicPublish(PILOT_NAME, routingKey, null, serializer.serialize(event).getBytes());
+        }
+        if (!run.done.await(10, TimeUnit.SECONDS)) {
+            System.out.println("Timed out, only " + run.received.get() + " of " + numberOfMessages + " arrived.");
+        }
+    }
+
+    private long percentile(long[] sorted, double p) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))] / 1000;
+    }
+
+    /**
+     * the latencies of the sensor events delivered by one transport
+     */
+    private class Run {
+        final long[] latencies = new long[numberOfMessages];
+        final AtomicInteger received = new AtomicInteger(0);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        void onMessage(Object message) {
+            if (!(message instanceof SensorEvent)) {
+                return;
+            }
+            long latency = System.nanoTime() - ((SensorEvent) message).getTimeStamp();
+            int index = received.getAndIncrement();
+            if (index < latencies.length) {
+                latencies[index] = latency;
+            }
+            if (index == latencies.length - 1) {
+                done.countDown();
+            }
+        }
+
+        void report(String transport) {
+            int count = Math.min(received.get(), latencies.length);
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            if (count == 0) {
+                System.out.printf("%-26s no messages received%n", transport);
+                return;
+            }
+            System.out.printf("%-26s n=%d  p50=%6dus  p90=%6dus  p99=%6dus  max=%6dus%n", transport, count,
+                    percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99),
+                    sorted[count - 1] / 1000);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+/**
+ * The change of the signal per second, between the last two samples. 0 for the first sample. Samples with the same
+ * timestamp as the one before repeat the last result.
+ */
+public class Derivative implements Stage {
+
+    private long lastTimestamp;
+    private double lastValue;
+    private double derivative;
+    private boolean started;
+
+    @Override
+    public double apply(long timestamp, double value) {
+        if (!started) {
+            derivative = 0;
+            started = true;
+        } else if (timestamp > lastTimestamp) {
+            derivative = (value - lastValue) * 1000 / (timestamp - lastTimestamp);
+        } else {
+            return derivative;
+        }
+        lastTimestamp = timestamp;
+        lastValue = value;
+        return derivative;
+    }
+
+    @Override
+    public void reset() {
+        started = false;
+    }
+}
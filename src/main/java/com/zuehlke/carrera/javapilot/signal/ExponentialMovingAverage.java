@@ -0,0 +1,37 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+/**
+ * Exponential smoothing: every sample moves the result by alpha of its distance to it. Starts at the first sample.
+ */
+public class ExponentialMovingAverage implements Stage {
+
+    private final double alpha;
+    private double average;
+    private boolean started;
+
+    /**
+     * @param alpha between 0 and 1, larger values follow the signal more quickly
+     */
+    public ExponentialMovingAverage(double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha must be in (0, 1], not " + alpha);
+        }
+        this.alpha = alpha;
+    }
+
+    @Override
+    public double apply(long timestamp, double value) {
+        if (started) {
+            average += alpha * (value - average);
+        } else {
+            average = value;
+            started = true;
+        }
+        return average;
+    }
+
+    @Override
+    public void reset() {
+        started = false;
+    }
+}
@@ -0,0 +1,72 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+import java.util.Arrays;
+
+/**
+ * A finite impulse response filter: the weighted sum of the last samples, one coefficient per sample, the newest
+ * first. The work per sample grows with the number of coefficients, which is fixed at construction. Before there
+ * are enough samples, the first one stands in for the missing ones.
+ */
+public class FirFilter implements Stage {
+
+    private final double[] coefficients;
+    private final double[] samples;
+    private int next;
+    private boolean started;
+
+    public FirFilter(double... coefficients) {
+        if (coefficients.length == 0) {
+            throw new IllegalArgumentException("a filter needs at least one coefficient");
+        }
+        this.coefficients = coefficients.clone();
+        this.samples = new double[coefficients.length];
+    }
+
+    /**
+     * a windowed-sinc low pass filter with a Hamming window
+     * @param taps the number of coefficients, odd numbers keep the filter symmetric
+     * @param cutoff the cutoff frequency as a fraction of the sample rate, below 0.5
+     */
+    public static FirFilter lowPass(int taps, double cutoff) {
+        if (cutoff <= 0 || cutoff >= 0.5) {
+            throw new IllegalArgumentException("cutoff must be in (0, 0.5), not " + cutoff);
+        }
+        double[] coefficients = new double[taps];
+        double sum = 0;
+        double middle = (taps - 1) / 2.0;
+        for (int i = 0; i < taps; i++) {
+            double x = i - middle;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double window = taps == 1 ? 1 : 0.54 - 0.46 * Math.cos(2 * Math.PI * i / (taps - 1));
+            coefficients[i] = sinc * window;
+            sum += coefficients[i];
+        }
+        for (int i = 0; i < taps; i++) {
+            coefficients[i] /= sum; // no gain for a constant signal
+        }
+        return new FirFilter(coefficients);
+    }
+
+    @Override
+    public double apply(long timestamp, double value) {
+        if (!started) {
+            Arrays.fill(samples, value);
+            started = true;
+        }
+        samples[next] = value;
+        double result = 0;
+        int sample = next;
+        for (double coefficient : coefficients) {
+            result += coefficient * samples[sample];
+            sample = sample == 0 ? samples.length - 1 : sample - 1;
+        }
+        next = (next + 1) % samples.length;
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        started = false;
+        next = 0;
+    }
+}
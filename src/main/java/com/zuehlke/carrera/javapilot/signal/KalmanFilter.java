@@ -0,0 +1,45 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+/**
+ * A one-dimensional Kalman filter for a value that drifts randomly between samples and is measured with noise.
+ * The ratio of the two variances decides how much it smoothes: the noisier the measurement compared to the drift,
+ * the smoother the result.
+ */
+public class KalmanFilter implements Stage {
+
+    private final double processVariance;
+    private final double measurementVariance;
+
+    private double estimate;
+    private double variance;
+    private boolean started;
+
+    /**
+     * @param processVariance how much the true value may change from one sample to the next, squared
+     * @param measurementVariance how much a measurement may be off, squared
+     */
+    public KalmanFilter(double processVariance, double measurementVariance) {
+        this.processVariance = processVariance;
+        this.measurementVariance = measurementVariance;
+    }
+
+    @Override
+    public double apply(long timestamp, double value) {
+        if (!started) {
+            estimate = value;
+            variance = measurementVariance;
+            started = true;
+            return estimate;
+        }
+        variance += processVariance;
+        double gain = variance / (variance + measurementVariance);
+        estimate += gain * (value - estimate);
+        variance *= 1 - gain;
+        return estimate;
+    }
+
+    @Override
+    public void reset() {
+        started = false;
+    }
+}
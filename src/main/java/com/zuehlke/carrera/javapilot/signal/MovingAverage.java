@@ -0,0 +1,46 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+/**
+ * The mean of the last samples. Until the window is full, the mean of all samples so far.
+ */
+public class MovingAverage implements Stage {
+
+    private final double[] window;
+    private double sum;
+    private int count;
+    private int next;
+
+    public MovingAverage(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("window size must be at least 1, not " + size);
+        }
+        this.window = new double[size];
+    }
+
+    @Override
+    public double apply(long timestamp, double value) {
+        if (count == window.length) {
+            sum -= window[next];
+        } else {
+            count++;
+        }
+        window[next] = value;
+        sum += value;
+        next = (next + 1) % window.length;
+        if (next == 0) {
+            // once per window, so that rounding errors of the running sum can't add up
+            sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += window[i];
+            }
+        }
+        return sum / count;
+    }
+
+    @Override
+    public void reset() {
+        sum = 0;
+        count = 0;
+        next = 0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+/**
+ * Stages chained one after the other: each one processes what the one before returned.
+ */
+public class Pipeline implements Stage {
+
+    private final Stage[] stages;
+
+    public Pipeline(Stage... stages) {
+        this.stages = stages.clone();
+    }
+
+    @Override
+    public double apply(long timestamp, double value) {
+        double result = value;
+        for (Stage stage : stages) {
+            result = stage.apply(timestamp, result);
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (Stage stage : stages) {
+            stage.reset();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+/**
+ * One step of processing a stream of sensor values, like smoothing or differentiating them.
+ *
+ * Stages keep their state in primitive fields and arrays allocated at construction, and do a constant amount of
+ * work per sample, so they can run on every sensor event without producing garbage. They are not thread safe:
+ * one instance per signal, used by one actor.
+ */
+public interface Stage {
+
+    /**
+     * @param timestamp of the sample in ms
+     * @param value the sample
+     * @return the processed value
+     */
+    double apply(long timestamp, double value);
+
+    /**
+     * forgets all samples seen so far, like at the start of a race
+     */
+    void reset();
+}
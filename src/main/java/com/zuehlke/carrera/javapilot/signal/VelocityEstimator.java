@@ -0,0 +1,105 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+/**
+ * Estimates the speed of the car between the light barriers, and the distance it went since the last one.
+ *
+ * Integrates the longitudinal acceleration of every sensor event, and takes over the measured speed at every
+ * barrier. The difference between the estimate and the measurement at a barrier is what an offset of the
+ * accelerometer added up to since the barrier before, so each barrier also corrects the offset by part of that.
+ * The correction applies when the velocity message arrives: the time it took to get here is not made up for.
+ *
+ * Speeds are in the unit of the velocity messages, accelerations in sensor units, one of which is
+ * accelerationScale speed units per second. Constant work per event, no allocation. Not thread safe.
+ */
+public class VelocityEstimator {
+
+    public static final int LONGITUDINAL_AXIS = 0;
+    public static final double DEFAULT_ACCELERATION_SCALE = 0.001; // sensor units are mm/s^2, speeds m/s
+
+    private static final double OFFSET_GAIN = 0.5;
+    private static final long MAX_STEP_MILLIS = 100; // longer gaps between events are not integrated over
+
+    private final double accelerationScale;
+
+    private double velocity;
+    private double distance;
+    private double offset;
+    private long lastEvent = -1;
+    private long lastBarrier = -1;
+    private int barriers;
+
+    public VelocityEstimator() {
+        this(DEFAULT_ACCELERATION_SCALE);
+    }
+
+    public VelocityEstimator(double accelerationScale) {
+        this.accelerationScale = accelerationScale;
+    }
+
+    /**
+     * @param acceleration the accelerometer axes of a sensor event
+     * @return the new speed estimate
+     */
+    public double addAcceleration(long timestamp, int[] acceleration) {
+        if (lastEvent >= 0 && timestamp > lastEvent && timestamp - lastEvent <= MAX_STEP_MILLIS) {
+            double seconds = (timestamp - lastEvent) / 1000.0;
+            double a = acceleration[LONGITUDINAL_AXIS] * accelerationScale - offset;
+            double before = velocity;
+            velocity = Math.max(0, velocity + a * seconds);
+            distance += (before + velocity) / 2 * seconds;
+        }
+        lastEvent = timestamp;
+        return velocity;
+    }
+
+    /**
+     * @param velocity the speed measured at a light barrier
+     */
+    public void addMeasurement(long timestamp, double velocity) {
+        if (lastBarrier >= 0 && timestamp > lastBarrier) {
+            double seconds = (timestamp - lastBarrier) / 1000.0;
+            offset -= OFFSET_GAIN * (velocity - this.velocity) / seconds;
+        }
+        this.velocity = velocity;
+        distance = 0;
+        lastBarrier = timestamp;
+        barriers++;
+    }
+
+    /**
+     * @return the estimated speed, 0 before the first event
+     */
+    public double getVelocity() {
+        return velocity;
+    }
+
+    /**
+     * @return the estimated distance since the last light barrier, in speed units times seconds
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return the estimated accelerometer offset, in speed units per second
+     */
+    public double getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return true, once the estimate was corrected at a light barrier
+     */
+    public boolean isCalibrated() {
+        return barriers > 0;
+    }
+
+    public void reset() {
+        velocity = 0;
+        distance = 0;
+        offset = 0;
+        lastEvent = -1;
+        lastBarrier = -1;
+        barriers = 0;
+    }
+}
@@ -0,0 +1,147 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+/**
+ * Minimum, maximum, mean and variance of the last samples. Passes the samples on unchanged, the statistics are
+ * read from it after each sample.
+ *
+ * Minimum and maximum come from two monotonic queues of the samples that can still become the minimum or maximum,
+ * so a sample costs constant time on average. Mean and variance come from running sums, recomputed once per window.
+ */
+public class WindowedStatistics implements Stage {
+
+    private final double[] window;
+    private int count;
+    private int next;
+    private long samples; // all samples ever, the number of the next one
+
+    private double sum;
+    private double sumOfSquares;
+
+    private final MonotonicQueue minima;
+    private final MonotonicQueue maxima;
+
+    public WindowedStatistics(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("window size must be at least 1, not " + size);
+        }
+        this.window = new double[size];
+        this.minima = new MonotonicQueue(size, true);
+        this.maxima = new MonotonicQueue(size, false);
+    }
+
+    @Override
+    public double apply(long timestamp, double value) {
+        if (count == window.length) {
+            double oldest = window[next];
+            sum -= oldest;
+            sumOfSquares -= oldest * oldest;
+        } else {
+            count++;
+        }
+        window[next] = value;
+        sum += value;
+        sumOfSquares += value * value;
+        next = (next + 1) % window.length;
+        if (next == 0) {
+            sum = 0;
+            sumOfSquares = 0;
+            for (int i = 0; i < count; i++) {
+                sum += window[i];
+                sumOfSquares += window[i] * window[i];
+            }
+        }
+        minima.add(samples, value);
+        maxima.add(samples, value);
+        samples++;
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+        next = 0;
+        samples = 0;
+        sum = 0;
+        sumOfSquares = 0;
+        minima.clear();
+        maxima.clear();
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the smallest of the last samples, NaN without any
+     */
+    public double getMin() {
+        return minima.first();
+    }
+
+    /**
+     * @return the largest of the last samples, NaN without any
+     */
+    public double getMax() {
+        return maxima.first();
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return the population variance of the last samples
+     */
+    public double getVariance() {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        double mean = sum / count;
+        return Math.max(0, sumOfSquares / count - mean * mean);
+    }
+
+    /**
+     * samples in order of arrival whose values only grow (for the minimum) or shrink (for the maximum), the first
+     * one being the minimum or maximum of the window
+     */
+    private final class MonotonicQueue {
+        private final long[] numbers;
+        private final double[] values;
+        private final boolean minimum;
+        private int head;
+        private int size;
+
+        MonotonicQueue(int capacity, boolean minimum) {
+            this.numbers = new long[capacity];
+            this.values = new double[capacity];
+            this.minimum = minimum;
+        }
+
+        void add(long number, double value) {
+            while (size > 0 && numbers[head] <= number - window.length) {
+                head = (head + 1) % numbers.length;
+                size--;
+            }
+            while (size > 0) {
+                double last = values[(head + size - 1) % values.length];
+                if (minimum ? last < value : last > value) {
+                    break;
+                }
+                size--;
+            }
+            int tail = (head + size) % numbers.length;
+            numbers[tail] = number;
+            values[tail] = value;
+            size++;
+        }
+
+        double first() {
+            return size == 0 ? Double.NaN : values[head];
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+    }
+}
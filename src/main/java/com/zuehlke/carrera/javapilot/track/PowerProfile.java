@@ -0,0 +1,64 @@
+package com.zuehlke.carrera.javapilot.track;
+
+/**
+ * Immutable table of the power to drive with, by position on the track: the segment of the TrackModel it was
+ * computed for, and the time since the car entered it, in buckets of BUCKET_MILLIS. Beyond the last bucket of a
+ * segment, the last one applies.
+ *
+ * Looking up the power is two array accesses, however elaborate the computation of the table was. The table only fits
+ * models of the generation it was computed for, other ones may number the segments differently.
+ */
+public final class PowerProfile {
+
+    public static final int BUCKET_MILLIS = 50;
+
+    /** no table yet */
+    public static final PowerProfile EMPTY = new PowerProfile(new int[0][], 0, 0);
+
+    private final int[][] power;
+    private final int laps;
+    private final int generation;
+
+    /**
+     * @param power the power per segment and bucket, not copied: don't change it afterwards
+     * @param laps the number of laps of the track model the table is computed from
+     * @param generation of that track model
+     */
+    PowerProfile(int[][] power, int laps, int generation) {
+        this.power = power;
+        this.laps = laps;
+        this.generation = generation;
+    }
+
+    public boolean isEmpty() {
+        return power.length == 0;
+    }
+
+    /**
+     * @return true, if the table fits the track model, so its segment numbers can be used here
+     */
+    public boolean fits(TrackModel model) {
+        return power.length > 0 && generation == model.getGeneration() && power.length == model.getSegmentCount();
+    }
+
+    public int getSegmentCount() {
+        return power.length;
+    }
+
+    /**
+     * @param segment the segment of the track model the table was computed for
+     * @param offsetMillis the time since the car entered the segment
+     */
+    public int power(int segment, long offsetMillis) {
+        int[] buckets = power[segment];
+        long bucket = offsetMillis / BUCKET_MILLIS;
+        if (bucket >= buckets.length) {
+            return buckets[buckets.length - 1];
+        }
+        return buckets[bucket < 0 ? 0 : (int) bucket];
+    }
+
+    public int getLaps() {
+        return laps;
+    }
+}
@@ -0,0 +1,69 @@
+package com.zuehlke.carrera.javapilot.track;
+
+/**
+ * Computes the PowerProfile for a track model, starting from the highest power the car keeps on the track with
+ * everywhere, the base power.
+ *
+ * Curves get less than the base power, the more the sharper they are. Straights get more, until the car has to slow
+ * down for the next curve: the last part of a straight gets the power of that curve, or less for sharp curves. Every
+ * penalty in a segment takes power from it, and so from the braking part of the straight before.
+ *
+ * Meant to run in the background, the strategy only looks up the result.
+ */
+public class PowerProfiler {
+
+    public static final int MAX_POWER = 255;
+
+    private static final int STRAIGHT_BOOST = 30;
+    private static final double CURVE_REDUCTION = 0.25; // of the base power, for the sharpest curve
+    private static final double BRAKING = 0.35;         // last part of a straight in which to slow down
+    private static final int BRAKE_REDUCTION = 20;      // below the curve power, for the sharpest curve
+    private static final int PENALTY_REDUCTION = 8;
+
+    /**
+     * @param model the track model, must be known
+     * @param basePower the power the car stays on the track with everywhere
+     * @param penalties the number of penalties per segment of the model
+     */
+    public PowerProfile compute(TrackModel model, int basePower, int[] penalties) {
+        int segments = model.getSegmentCount();
+        double sharpest = 0;
+        for (int segment = 0; segment < segments; segment++) {
+            sharpest = Math.max(sharpest, Math.abs(model.getGyro(segment)));
+        }
+
+        int[] curvePower = new int[segments];
+        for (int segment = 0; segment < segments; segment++) {
+            double sharpness = sharpest == 0 ? 0 : Math.abs(model.getGyro(segment)) / sharpest;
+            curvePower[segment] = basePower - (int) (CURVE_REDUCTION * basePower * sharpness)
+                    - PENALTY_REDUCTION * penalty(penalties, segment);
+        }
+
+        int[][] power = new int[segments][];
+        for (int segment = 0; segment < segments; segment++) {
+            // a bit beyond the longest time seen, the last bucket holds for anything later anyway
+            int buckets = (int) (model.getMaxDuration(segment) / PowerProfile.BUCKET_MILLIS) + 1;
+            power[segment] = new int[buckets];
+            int next = model.next(segment);
+            boolean straight = model.getKind(segment) == SegmentKind.STRAIGHT;
+            double nextSharpness = sharpest == 0 ? 0 : Math.abs(model.getGyro(next)) / sharpest;
+            long brakeFrom = (long) ((1 - BRAKING) * model.getDuration(segment));
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                int value;
+                if (!straight) {
+                    value = curvePower[segment];
+                } else if (bucket * PowerProfile.BUCKET_MILLIS < brakeFrom) {
+                    value = basePower + STRAIGHT_BOOST - PENALTY_REDUCTION * penalty(penalties, segment);
+                } else {
+                    value = curvePower[next] - (int) (BRAKE_REDUCTION * nextSharpness);
+                }
+                power[segment][bucket] = Math.max(0, Math.min(MAX_POWER, value));
+            }
+        }
+        return new PowerProfile(power, model.getLaps(), model.getGeneration());
+    }
+
+    private int penalty(int[] penalties, int segment) {
+        return segment < penalties.length ? penalties[segment] : 0;
+    }
+}
@@ -0,0 +1,8 @@
+package com.zuehlke.carrera.javapilot.track;
+
+/**
+ * What the car does in a segment of the track, as the gyro-z sensor sees it.
+ */
+public enum SegmentKind {
+    STRAIGHT, LEFT, RIGHT
+}
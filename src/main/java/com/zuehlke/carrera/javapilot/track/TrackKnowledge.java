@@ -0,0 +1,174 @@
+package com.zuehlke.carrera.javapilot.track;
+
+import java.util.Arrays;
+
+/**
+ * What a strategy learned about one track, to start the next race on it where the last one ended: the base power
+ * it found, and the lap of segments with their durations, curvature, penalties and the speed limits penalties told
+ * of. The power profile is not kept, the PowerProfiler computes it again from these in no time.
+ *
+ * Segment numbers are those of the TrackModel the knowledge was taken from. The builder of a new race numbers its
+ * segments from wherever it found the lap, so align() tells how to map them.
+ */
+public final class TrackKnowledge {
+
+    private final String trackId;
+    private final double basePower;
+    private final int laps;
+    private final SegmentKind[] kinds;
+    private final int[] durations;
+    private final float[] gyro;
+    private final int[] penalties;
+    private final float[] speedLimits;
+    private final long savedAt;
+
+    /**
+     * @param penalties per segment of the model, may be shorter than the lap if there were none in later segments
+     * @param speedLimits per segment of the model, 0 where none is known, may be shorter like the penalties
+     */
+    public TrackKnowledge(String trackId, double basePower, TrackModel model, int[] penalties, double[] speedLimits) {
+        this.trackId = trackId;
+        this.basePower = basePower;
+        this.laps = model.getLaps();
+        int segments = model.getSegmentCount();
+        this.kinds = new SegmentKind[segments];
+        this.durations = new int[segments];
+        this.gyro = new float[segments];
+        for (int i = 0; i < segments; i++) {
+            kinds[i] = model.getKind(i);
+            durations[i] = (int) Math.round(model.getDuration(i));
+            gyro[i] = (float) model.getGyro(i);
+        }
+        this.penalties = Arrays.copyOf(penalties, segments);
+        this.speedLimits = new float[segments];
+        for (int i = 0; i < Math.min(segments, speedLimits.length); i++) {
+            this.speedLimits[i] = (float) speedLimits[i];
+        }
+        this.savedAt = System.currentTimeMillis();
+    }
+
+    TrackKnowledge(String trackId, double basePower, int laps, SegmentKind[] kinds, int[] durations, float[] gyro,
+                   int[] penalties, float[] speedLimits, long savedAt) {
+        this.trackId = trackId;
+        this.basePower = basePower;
+        this.laps = laps;
+        this.kinds = kinds;
+        this.durations = durations;
+        this.gyro = gyro;
+        this.penalties = penalties;
+        this.speedLimits = speedLimits;
+        this.savedAt = savedAt;
+    }
+
+    public String getTrackId() {
+        return trackId;
+    }
+
+    public double getBasePower() {
+        return basePower;
+    }
+
+    /**
+     * @return the laps the track model had seen
+     */
+    public int getLaps() {
+        return laps;
+    }
+
+    public int getSegmentCount() {
+        return kinds.length;
+    }
+
+    public SegmentKind getKind(int segment) {
+        return kinds[segment];
+    }
+
+    /**
+     * @return the mean time in ms the car needed for the segment
+     */
+    public int getDuration(int segment) {
+        return durations[segment];
+    }
+
+    public float getGyro(int segment) {
+        return gyro[segment];
+    }
+
+    public int getPenalties(int segment) {
+        return penalties[segment];
+    }
+
+    /**
+     * @return the lowest speed limit penalties in the segment told of, 0 if there were none
+     */
+    public float getSpeedLimit(int segment) {
+        return speedLimits[segment];
+    }
+
+    public long getSavedAt() {
+        return savedAt;
+    }
+
+    /**
+     * Finds the rotation of the lap that matches the model: segment i of the model is segment
+     * (i + offset) % getSegmentCount() here. Of several rotations with the same kinds, the one with the closest
+     * durations wins.
+     * @return the offset, -1 if the model is a different lap
+     */
+    public int align(TrackModel model) {
+        int segments = kinds.length;
+        if (model.getSegmentCount() != segments || segments == 0) {
+            return -1;
+        }
+        int best = -1;
+        double bestDifference = Double.MAX_VALUE;
+        for (int offset = 0; offset < segments; offset++) {
+            double difference = 0;
+            for (int i = 0; i < segments && difference < bestDifference; i++) {
+                int j = (i + offset) % segments;
+                if (model.getKind(i) != kinds[j]) {
+                    difference = Double.MAX_VALUE;
+                } else {
+                    difference += Math.abs(model.getDuration(i) - durations[j]) / Math.max(1, durations[j]);
+                }
+            }
+            if (difference < bestDifference) {
+                bestDifference = difference;
+                best = offset;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the penalties per segment of the model, as aligned by the offset
+     */
+    public int[] penaltiesFor(int offset) {
+        int[] aligned = new int[penalties.length];
+        for (int i = 0; i < aligned.length; i++) {
+            aligned[i] = penalties[(i + offset) % penalties.length];
+        }
+        return aligned;
+    }
+
+    /**
+     * @return the speed limits per segment of the model, as aligned by the offset
+     */
+    public double[] speedLimitsFor(int offset) {
+        double[] aligned = new double[speedLimits.length];
+        for (int i = 0; i < aligned.length; i++) {
+            aligned[i] = speedLimits[(i + offset) % speedLimits.length];
+        }
+        return aligned;
+    }
+
+    @Override
+    public String toString() {
+        int limited = 0;
+        for (float speedLimit : speedLimits) {
+            limited += speedLimit > 0 ? 1 : 0;
+        }
+        return String.format("%s: power %.0f, %d segments, %d penalties, %d speed limits", trackId, basePower,
+                kinds.length, Arrays.stream(penalties).sum(), limited);
+    }
+}
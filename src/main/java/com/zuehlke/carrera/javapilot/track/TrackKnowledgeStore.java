@@ -0,0 +1,204 @@
+package com.zuehlke.carrera.javapilot.track;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The TrackKnowledge of up to MAX_TRACKS tracks, by track id, in one memory mapped file.
+ *
+ * The file is a header and a fixed size slot per track, so a track is saved by writing its slot in place and loaded
+ * by decoding it, without any system call: both take a few microseconds. What is written goes to disk whenever the
+ * operating system likes, even if the pilot dies right after. An index of the slots is built when the file is
+ * opened, on the first load or save. When all slots are in use, the track saved longest ago makes room.
+ *
+ * One store per file: two pilots or processes must not share it. A store without a file keeps the slots on the heap,
+ * for as long as it lives.
+ */
+public class TrackKnowledgeStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TrackKnowledgeStore.class);
+
+    public static final int MAX_TRACKS = 64;
+    public static final int MAX_SEGMENTS = 64;
+    public static final int MAX_ID_BYTES = 32;
+
+    private static final int MAGIC = 0x54524B32; // "TRK2", files of an older layout are started over
+    private static final int HEADER_BYTES = 16; // magic, slot size, slots in use
+    // id length and id, saved at, base power, laps, segments, then kind, duration, gyro, penalties and speed limit
+    // per segment: 1018 bytes at most
+    private static final int SLOT_BYTES = 1024;
+    private static final int FILE_BYTES = HEADER_BYTES + MAX_TRACKS * SLOT_BYTES;
+
+    private static final SegmentKind[] KINDS = SegmentKind.values();
+
+    private final File file;
+    private final Map<String, Integer> slots = new HashMap<>();
+    private ByteBuffer buffer;
+
+    public TrackKnowledgeStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * a store in memory only
+     */
+    public TrackKnowledgeStore() {
+        this(null);
+    }
+
+    /**
+     * @return what is known about the track, null if nothing
+     */
+    public synchronized TrackKnowledge load(String trackId) {
+        open();
+        Integer slot = slots.get(trackId);
+        return slot == null ? null : decode(slot);
+    }
+
+    /**
+     * @return false, if the track id or the lap are too long to keep
+     */
+    public synchronized boolean save(TrackKnowledge knowledge) {
+        byte[] id = knowledge.getTrackId().getBytes(StandardCharsets.UTF_8);
+        if (id.length > MAX_ID_BYTES || knowledge.getSegmentCount() > MAX_SEGMENTS) {
+            LOGGER.warn("Cannot keep the knowledge of track {} with {} segments", knowledge.getTrackId(),
+                    knowledge.getSegmentCount());
+            return false;
+        }
+        open();
+        Integer slot = slots.get(knowledge.getTrackId());
+        if (slot == null) {
+            slot = slots.size() < MAX_TRACKS ? slots.size() : oldestSlot();
+            slots.values().remove(slot);
+            slots.put(knowledge.getTrackId(), slot);
+        }
+        encode(slot, id, knowledge);
+        buffer.putInt(8, slots.size());
+        return true;
+    }
+
+    /**
+     * @return the number of tracks known
+     */
+    public synchronized int size() {
+        open();
+        return slots.size();
+    }
+
+    private void open() {
+        if (buffer != null) {
+            return;
+        }
+        if (file == null) {
+            buffer = ByteBuffer.allocate(FILE_BYTES);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, SLOT_BYTES);
+            return;
+        }
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new RuntimeException("Could not create " + directory.getPath());
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            boolean fresh = raf.length() != FILE_BYTES;
+            if (fresh) {
+                raf.setLength(FILE_BYTES);
+            }
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_BYTES);
+            if (!fresh && (buffer.getInt(0) != MAGIC || buffer.getInt(4) != SLOT_BYTES)) {
+                LOGGER.warn("{} holds no track knowledge, starting over", file.getPath());
+                fresh = true;
+            }
+            if (fresh) {
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, SLOT_BYTES);
+                buffer.putInt(8, 0);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        int used = Math.min(buffer.getInt(8), MAX_TRACKS);
+        for (int slot = 0; slot < used; slot++) {
+            slots.put(readId(slot), slot);
+        }
+    }
+
+    private int oldestSlot() {
+        int oldest = 0;
+        for (int slot = 1; slot < MAX_TRACKS; slot++) {
+            if (buffer.getLong(offset(slot) + 2 + MAX_ID_BYTES) < buffer.getLong(offset(oldest) + 2 + MAX_ID_BYTES)) {
+                oldest = slot;
+            }
+        }
+        return oldest;
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private String readId(int slot) {
+        ByteBuffer in = slice(slot);
+        byte[] id = new byte[in.getShort()];
+        in.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+
+    private ByteBuffer slice(int slot) {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset(slot));
+        return in;
+    }
+
+    private void encode(int slot, byte[] id, TrackKnowledge knowledge) {
+        ByteBuffer out = slice(slot);
+        out.putShort((short) id.length);
+        out.put(id);
+        out.position(offset(slot) + 2 + MAX_ID_BYTES);
+        out.putLong(knowledge.getSavedAt());
+        out.putDouble(knowledge.getBasePower());
+        out.putInt(knowledge.getLaps());
+        out.putInt(knowledge.getSegmentCount());
+        for (int i = 0; i < knowledge.getSegmentCount(); i++) {
+            out.put((byte) knowledge.getKind(i).ordinal());
+            out.putInt(knowledge.getDuration(i));
+            out.putFloat(knowledge.getGyro(i));
+            out.putShort((short) Math.min(Short.MAX_VALUE, knowledge.getPenalties(i)));
+            out.putFloat(knowledge.getSpeedLimit(i));
+        }
+    }
+
+    private TrackKnowledge decode(int slot) {
+        ByteBuffer in = slice(slot);
+        byte[] id = new byte[in.getShort()];
+        in.get(id);
+        in.position(offset(slot) + 2 + MAX_ID_BYTES);
+        long savedAt = in.getLong();
+        double basePower = in.getDouble();
+        int laps = in.getInt();
+        int segments = in.getInt();
+        SegmentKind[] kinds = new SegmentKind[segments];
+        int[] durations = new int[segments];
+        float[] gyro = new float[segments];
+        int[] penalties = new int[segments];
+        float[] speedLimits = new float[segments];
+        for (int i = 0; i < segments; i++) {
+            kinds[i] = KINDS[in.get()];
+            durations[i] = in.getInt();
+            gyro[i] = in.getFloat();
+            penalties[i] = in.getShort();
+            speedLimits[i] = in.getFloat();
+        }
+        return new TrackKnowledge(new String(id, StandardCharsets.UTF_8), basePower, laps, kinds, durations, gyro,
+                penalties, speedLimits, savedAt);
+    }
+}
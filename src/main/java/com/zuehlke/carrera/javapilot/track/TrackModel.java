@@ -0,0 +1,150 @@
+package com.zuehlke.carrera.javapilot.track;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of what is known about the track: the segments of one lap in driving order, with their kind,
+ * how long the car needed for them so far and how hard it turned, plus where the car was at the time of the snapshot.
+ *
+ * Built by the TrackModelBuilder after each segment the car completes and handed to the strategy as a whole, so a
+ * reader never sees a half updated model and needs no lock. Segments are numbered from 0, the first one of the lap
+ * found when the model was built, which is not necessarily the one after the start line. If the builder has to find
+ * the lap anew, segment 0 may be another one: the generation tells, segment numbers only mean the same within one.
+ */
+public final class TrackModel {
+
+    /** nothing known yet, not even the number of segments */
+    public static final TrackModel UNKNOWN = new TrackModel(new SegmentKind[0], new double[0], new long[0],
+            new long[0], new double[0], new int[0], 0, -1, 0, 0);
+
+    private final SegmentKind[] kinds;
+    private final double[] meanDuration;
+    private final long[] minDuration;
+    private final long[] maxDuration;
+    private final double[] meanGyro;
+    private final int[] observations;
+    private final int laps;
+    private final int currentSegment;
+    private final long currentSegmentStart;
+    private final int generation;
+
+    /**
+     * copies the arrays, so the builder can go on changing its own
+     */
+    TrackModel(SegmentKind[] kinds, double[] meanDuration, long[] minDuration, long[] maxDuration,
+               double[] meanGyro, int[] observations, int laps, int currentSegment, long currentSegmentStart,
+               int generation) {
+        int segments = kinds.length;
+        this.kinds = Arrays.copyOf(kinds, segments);
+        this.meanDuration = Arrays.copyOf(meanDuration, segments);
+        this.minDuration = Arrays.copyOf(minDuration, segments);
+        this.maxDuration = Arrays.copyOf(maxDuration, segments);
+        this.meanGyro = Arrays.copyOf(meanGyro, segments);
+        this.observations = Arrays.copyOf(observations, segments);
+        this.laps = laps;
+        this.currentSegment = currentSegment;
+        this.currentSegmentStart = currentSegmentStart;
+        this.generation = generation;
+    }
+
+    public boolean isKnown() {
+        return kinds.length > 0;
+    }
+
+    public int getSegmentCount() {
+        return kinds.length;
+    }
+
+    public SegmentKind getKind(int segment) {
+        return kinds[segment];
+    }
+
+    /**
+     * @return the mean time in ms the car needed for the segment
+     */
+    public double getDuration(int segment) {
+        return meanDuration[segment];
+    }
+
+    public long getMinDuration(int segment) {
+        return minDuration[segment];
+    }
+
+    public long getMaxDuration(int segment) {
+        return maxDuration[segment];
+    }
+
+    /**
+     * @return the mean smoothed gyro-z in the segment, positive to the left
+     */
+    public double getGyro(int segment) {
+        return meanGyro[segment];
+    }
+
+    /**
+     * @return how many times the car went through the segment
+     */
+    public int getObservations(int segment) {
+        return observations[segment];
+    }
+
+    /**
+     * @return the number of laps the model is built from
+     */
+    public int getLaps() {
+        return laps;
+    }
+
+    /**
+     * @return the mean lap time in ms, the sum of the mean segment durations
+     */
+    public double getLapDuration() {
+        double sum = 0;
+        for (double duration : meanDuration) {
+            sum += duration;
+        }
+        return sum;
+    }
+
+    /**
+     * @return the segment the car was in when the snapshot was taken, -1 if unknown
+     */
+    public int getCurrentSegment() {
+        return currentSegment;
+    }
+
+    /**
+     * @return the sensor timestamp at which the car entered the current segment
+     */
+    public long getCurrentSegmentStart() {
+        return currentSegmentStart;
+    }
+
+    /**
+     * @return which lap the builder found, counting from 1. 0 for the unknown track
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return the segment following the given one
+     */
+    public int next(int segment) {
+        return segment + 1 == kinds.length ? 0 : segment + 1;
+    }
+
+    @Override
+    public String toString() {
+        if (!isKnown()) {
+            return "unknown track";
+        }
+        StringBuilder result = new StringBuilder();
+        result.append(kinds.length).append(" segments, ").append(laps).append(" laps, ")
+                .append(Math.round(getLapDuration())).append(" ms:");
+        for (int i = 0; i < kinds.length; i++) {
+            result.append(' ').append(kinds[i].name().charAt(0)).append(Math.round(meanDuration[i]));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,285 @@
+package com.zuehlke.carrera.javapilot.track;
+
+import com.zuehlke.carrera.relayapi.messages.RoundTimeMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Learns the track from the sensor events as they arrive.
+ *
+ * The TrackSegmenter cuts gyro-z into straights and curves. Completed segments go into a short history, in which
+ * the builder looks for the lap: the shortest sequence of segments that the car just went through twice, with
+ * similar durations both times. Round times, if the race track sends them, have to match the duration of such a
+ * lap, which tells a lap from half a lap on symmetric tracks. Once the lap is known, each completed segment refines
+ * the statistics of its place in the lap. A segment of the wrong kind means the model lost track of where the car is.
+ * The model is kept, and the next segments are matched against it to find the car's place again: as soon as the last
+ * few segments fit at exactly one place in the lap, the model goes on from there, with all it learned so far. Only
+ * if they don't fit anywhere for more than a lap, the lap is looked for again from scratch. While lost, the published
+ * model is TrackModel.UNKNOWN.
+ *
+ * Per sensor event, the work is the segmenter's, which is constant. Only completed segments cost more, the search
+ * for the lap being bounded by the history size. After every completed segment, a new TrackModel is published to
+ * the given reference, for any number of readers. Not thread safe otherwise: feed it from one actor only.
+ */
+public class TrackModelBuilder {
+
+    /** completed segments kept to find the lap in, the lap must have at most half as many segments */
+    public static final int HISTORY = 128;
+
+    private static final int MIN_SEGMENTS = 2;
+    private static final double DURATION_TOLERANCE = 0.2;
+    private static final long DURATION_SLACK_MILLIS = 60;
+    private static final double ROUND_TOLERANCE = 0.15;
+    private static final int RESYNC_SEGMENTS = 3; // at least that many segments in a row must fit the model
+
+    private static final SegmentKind[] KINDS = SegmentKind.values();
+
+    private final AtomicReference<TrackModel> published;
+    private final TrackSegmenter segmenter;
+
+    // ring of the last completed segments
+    private final byte[] historyKind = new byte[HISTORY];
+    private final long[] historyDuration = new long[HISTORY];
+    private final double[] historyGyro = new double[HISTORY];
+    private long completed;
+
+    private long roundDuration;
+
+    // the lap, once found
+    private int segments;
+    private SegmentKind[] kinds;
+    private double[] meanDuration;
+    private long[] minDuration;
+    private long[] maxDuration;
+    private double[] meanGyro;
+    private int[] observations;
+    private int laps;
+    private int lastSegment;
+    private int generation; // counts every lap found, across races, so that a new one never passes for an older one
+    private boolean lost; // the model is still good, but where the car is in it isn't known
+    private long lostAt; // completed segments when the model lost track
+
+    public TrackModelBuilder(AtomicReference<TrackModel> published) {
+        this(published, new TrackSegmenter());
+    }
+
+    public TrackModelBuilder(AtomicReference<TrackModel> published, TrackSegmenter segmenter) {
+        this.published = published;
+        this.segmenter = segmenter;
+        published.set(TrackModel.UNKNOWN);
+    }
+
+    public void add(SensorEvent event) {
+        add(event.getTimeStamp(), event.getG()[2]);
+    }
+
+    public void add(long timestamp, int gyroZ) {
+        if (segmenter.add(timestamp, gyroZ)) {
+            segmentCompleted();
+        }
+    }
+
+    /**
+     * the next lap found must take about as long as this round
+     */
+    public void add(RoundTimeMessage message) {
+        roundDuration = message.getRoundDuration();
+    }
+
+    /**
+     * forgets everything, for a new race
+     */
+    public void reset() {
+        segmenter.reset();
+        completed = 0;
+        roundDuration = 0;
+        segments = 0;
+        lost = false;
+        published.set(TrackModel.UNKNOWN);
+    }
+
+    public TrackModel getModel() {
+        return published.get();
+    }
+
+    private void segmentCompleted() {
+        SegmentKind kind = segmenter.getLastKind();
+        long duration = segmenter.getLastDuration();
+        int slot = (int) (completed++ % HISTORY);
+        historyKind[slot] = (byte) kind.ordinal();
+        historyDuration[slot] = duration;
+        historyGyro[slot] = segmenter.getLastMeanGyro();
+
+        if (segments > 0 && !lost) {
+            int segment = lastSegment + 1 == segments ? 0 : lastSegment + 1;
+            if (kinds[segment] == kind) {
+                completedIn(segment, duration);
+                publish();
+                return;
+            }
+            lost = true;
+            lostAt = completed - 1;
+        }
+
+        if (lost) {
+            int segment = resynchronize();
+            if (segment >= 0) {
+                lost = false;
+                completedIn(segment, duration);
+                publish();
+                return;
+            }
+            if (completed - lostAt <= segments + RESYNC_SEGMENTS) {
+                publish();
+                return;
+            }
+            segments = 0; // the model doesn't fit anymore
+            lost = false;
+        }
+
+        int period = findLap();
+        if (period > 0) {
+            startModel(period);
+        }
+        publish();
+    }
+
+    private void completedIn(int segment, long duration) {
+        refine(segment, duration, segmenter.getLastMeanGyro());
+        lastSegment = segment;
+        if (segment == segments - 1) {
+            laps++;
+        }
+    }
+
+    /**
+     * looks for the place in the model the last completed segments fit, with as few of them as it takes to tell
+     * @return the segment of the model the last completed segment was, -1 if there is no or no single such place
+     */
+    private int resynchronize() {
+        int available = (int) Math.min(completed, HISTORY);
+        for (int window = Math.min(RESYNC_SEGMENTS, segments); window <= Math.min(segments, available); window++) {
+            int found = -1;
+            int matches = 0;
+            for (int segment = 0; segment < segments; segment++) {
+                if (fits(segment, window)) {
+                    found = segment;
+                    matches++;
+                }
+            }
+            if (matches <= 1) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the last completed segments, that many of them, are the model's up to the given segment
+     */
+    private boolean fits(int segment, int window) {
+        for (int back = 0; back < window; back++) {
+            int modelled = ((segment - back) % segments + segments) % segments;
+            int recent = slot(back);
+            if (historyKind[recent] != kinds[modelled].ordinal()) {
+                return false;
+            }
+            double a = historyDuration[recent];
+            double b = meanDuration[modelled];
+            if (Math.abs(a - b) > DURATION_TOLERANCE * Math.max(a, b) + DURATION_SLACK_MILLIS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of segments of the lap the car just did twice, 0 if there is none
+     */
+    private int findLap() {
+        int available = (int) Math.min(completed, HISTORY);
+        for (int period = MIN_SEGMENTS; period <= available / 2; period++) {
+            if (repeats(period) && matchesRound(period)) {
+                return period;
+            }
+        }
+        return 0;
+    }
+
+    private boolean repeats(int period) {
+        for (int back = 0; back < period; back++) {
+            int recent = slot(back);
+            int before = slot(back + period);
+            if (historyKind[recent] != historyKind[before]) {
+                return false;
+            }
+            long a = historyDuration[recent];
+            long b = historyDuration[before];
+            if (Math.abs(a - b) > DURATION_TOLERANCE * Math.max(a, b) + DURATION_SLACK_MILLIS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesRound(int period) {
+        if (roundDuration <= 0) {
+            return true;
+        }
+        long lap = 0;
+        for (int back = 0; back < period; back++) {
+            lap += historyDuration[slot(back)];
+        }
+        return Math.abs(lap - roundDuration) <= ROUND_TOLERANCE * roundDuration;
+    }
+
+    /**
+     * @return the history slot of the segment completed that many segments before the last one
+     */
+    private int slot(int back) {
+        return (int) ((completed - 1 - back) % HISTORY);
+    }
+
+    /**
+     * builds the model from the last two laps in the history, the last completed segment ending the lap
+     */
+    private void startModel(int period) {
+        generation++;
+        segments = period;
+        kinds = new SegmentKind[period];
+        meanDuration = new double[period];
+        minDuration = new long[period];
+        maxDuration = new long[period];
+        meanGyro = new double[period];
+        observations = new int[period];
+        for (int segment = 0; segment < period; segment++) {
+            int back = period - 1 - segment;
+            kinds[segment] = KINDS[historyKind[slot(back)]];
+            minDuration[segment] = Long.MAX_VALUE;
+            maxDuration[segment] = Long.MIN_VALUE;
+            refine(segment, historyDuration[slot(back + period)], historyGyro[slot(back + period)]);
+            refine(segment, historyDuration[slot(back)], historyGyro[slot(back)]);
+        }
+        laps = 2;
+        lastSegment = period - 1;
+    }
+
+    private void refine(int segment, long duration, double gyro) {
+        int n = ++observations[segment];
+        meanDuration[segment] += (duration - meanDuration[segment]) / n;
+        meanGyro[segment] += (gyro - meanGyro[segment]) / n;
+        minDuration[segment] = Math.min(minDuration[segment], duration);
+        maxDuration[segment] = Math.max(maxDuration[segment], duration);
+    }
+
+    private void publish() {
+        if (segments == 0 || lost) {
+            published.set(TrackModel.UNKNOWN);
+            return;
+        }
+        int current = lastSegment + 1 == segments ? 0 : lastSegment + 1;
+        published.set(new TrackModel(kinds, meanDuration, minDuration, maxDuration, meanGyro, observations, laps,
+                current, segmenter.getStart(), generation));
+    }
+}
@@ -0,0 +1,169 @@
+package com.zuehlke.carrera.javapilot.track;
+
+import com.zuehlke.carrera.javapilot.signal.MovingAverage;
+
+/**
+ * Cuts the gyro-z signal into straights and left and right curves as it arrives.
+ *
+ * The signal is smoothed first. A curve starts when the smoothed value exceeds the enter threshold and ends when it
+ * falls below the lower exit threshold, so noise around a threshold doesn't produce extra segments. A new kind of
+ * segment only counts once it lasted the minimum duration; the segment boundary is then put where it began.
+ *
+ * Constant work per event, no allocation. Not thread safe.
+ */
+public class TrackSegmenter {
+
+    public static final int DEFAULT_ENTER = 1200;
+    public static final int DEFAULT_EXIT = 700;
+    public static final long DEFAULT_MIN_MILLIS = 120;
+
+    private static final int SMOOTHING = 8;
+
+    private final double enter;
+    private final double exit;
+    private final long minMillis;
+    private final MovingAverage smoothing = new MovingAverage(SMOOTHING);
+
+    private boolean started;
+    private SegmentKind kind;
+    private long start;
+    private double gyroSum;
+    private int samples;
+
+    private SegmentKind candidate; // a different kind seen since candidateStart, not confirmed yet
+    private long candidateStart;
+    private double candidateGyroSum;
+    private int candidateSamples;
+
+    private SegmentKind lastKind;
+    private long lastStart;
+    private long lastEnd;
+    private double lastMeanGyro;
+
+    public TrackSegmenter() {
+        this(DEFAULT_ENTER, DEFAULT_EXIT, DEFAULT_MIN_MILLIS);
+    }
+
+    /**
+     * @param enter smoothed gyro-z beyond which a curve starts
+     * @param exit smoothed gyro-z below which a curve ends, at most enter
+     * @param minMillis how long a segment must last at least
+     */
+    public TrackSegmenter(double enter, double exit, long minMillis) {
+        this.enter = enter;
+        this.exit = exit;
+        this.minMillis = minMillis;
+    }
+
+    /**
+     * @return true, if a segment ended with this sample. It is then available as the last segment
+     */
+    public boolean add(long timestamp, int gyroZ) {
+        double smoothed = smoothing.apply(timestamp, gyroZ);
+        if (!started) {
+            started = true;
+            kind = classify(SegmentKind.STRAIGHT, smoothed);
+            start = timestamp;
+        }
+        SegmentKind seen = classify(candidate == null ? kind : candidate, smoothed);
+
+        if (seen == kind) {
+            // back to the current kind: whatever was seen in between belongs to the current segment
+            if (candidate != null) {
+                gyroSum += candidateGyroSum;
+                samples += candidateSamples;
+                candidate = null;
+            }
+            gyroSum += smoothed;
+            samples++;
+            return false;
+        }
+        if (seen != candidate) {
+            if (candidate != null) {
+                gyroSum += candidateGyroSum;
+                samples += candidateSamples;
+            }
+            candidate = seen;
+            candidateStart = timestamp;
+            candidateGyroSum = 0;
+            candidateSamples = 0;
+        }
+        candidateGyroSum += smoothed;
+        candidateSamples++;
+        if (timestamp - candidateStart < minMillis) {
+            return false;
+        }
+
+        lastKind = kind;
+        lastStart = start;
+        lastEnd = candidateStart;
+        lastMeanGyro = samples == 0 ? 0 : gyroSum / samples;
+
+        kind = candidate;
+        start = candidateStart;
+        gyroSum = candidateGyroSum;
+        samples = candidateSamples;
+        candidate = null;
+        return true;
+    }
+
+    /**
+     * @param current the kind to stay with while the value is between the thresholds
+     */
+    private SegmentKind classify(SegmentKind current, double gyroZ) {
+        double magnitude = Math.abs(gyroZ);
+        if (magnitude >= enter) {
+            return gyroZ > 0 ? SegmentKind.LEFT : SegmentKind.RIGHT;
+        }
+        if (magnitude < exit) {
+            return SegmentKind.STRAIGHT;
+        }
+        if (current != SegmentKind.STRAIGHT && (gyroZ > 0) == (current == SegmentKind.LEFT)) {
+            return current;
+        }
+        return SegmentKind.STRAIGHT;
+    }
+
+    public void reset() {
+        smoothing.reset();
+        started = false;
+        candidate = null;
+        gyroSum = 0;
+        samples = 0;
+        lastKind = null;
+    }
+
+    /**
+     * @return the kind of the segment the car is in, null before the first sample
+     */
+    public SegmentKind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return when the segment the car is in started
+     */
+    public long getStart() {
+        return start;
+    }
+
+    public SegmentKind getLastKind() {
+        return lastKind;
+    }
+
+    public long getLastStart() {
+        return lastStart;
+    }
+
+    public long getLastEnd() {
+        return lastEnd;
+    }
+
+    public long getLastDuration() {
+        return lastEnd - lastStart;
+    }
+
+    public double getLastMeanGyro() {
+        return lastMeanGyro;
+    }
+}
@@ -8,7 +8,7 @@ angular.module('replay')
             Replay.get({ tag:replay.tag });
         }
         
-        // At the moment it's not possible to stop a specific replay
+        // stops all running replays, a single one can be stopped by its session id
         $scope.stopRunningReplay = function() {
             Replay.stop({ tag: 'all' });
         }
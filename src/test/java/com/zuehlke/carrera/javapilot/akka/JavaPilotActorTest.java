@@ -0,0 +1,188 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import com.zuehlke.carrera.javapilot.config.PilotProperties;
+import com.zuehlke.carrera.javapilot.services.PilotToRaceTrackConnector;
+import com.zuehlke.carrera.javapilot.track.PowerProfile;
+import com.zuehlke.carrera.javapilot.track.PowerProfiler;
+import com.zuehlke.carrera.javapilot.track.SegmentKind;
+import com.zuehlke.carrera.javapilot.track.TrackModel;
+import com.zuehlke.carrera.relayapi.messages.PenaltyMessage;
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class JavaPilotActorTest {
+
+    private static final String DIRECTORY = "testdata";
+    private static final int GRID_MILLIS = 10;
+
+    // straight, left, straight, right, straight, left: gyro-z level and duration in ms
+    private static final int[] LEVELS = {0, 3000, 0, -3000, 0, 3000};
+    private static final int[] DURATIONS = {800, 600, 500, 700, 400, 900};
+    private static final int LAP = Arrays.stream(DURATIONS).sum();
+    private static final int RAMP = 150; // gyro-z change per event into a curve, too slow to look like a grip loss
+
+    private final BlockingQueue<Integer> powers = new LinkedBlockingQueue<>();
+    private final Random random = new Random(7);
+    private ActorSystem system;
+    private ActorRef pilot;
+    private long time = 0;
+    private int gyro = 0;
+
+    /**
+     * drives like its parent, but fails on the next sensor event once told to
+     */
+    public static class FailingStrategy extends PowerUpUntilPenalty {
+
+        static final AtomicBoolean failNext = new AtomicBoolean();
+        static volatile AtomicReference<TrackModel> trackModel;
+        static volatile StrategySnapshots snapshots;
+
+        public FailingStrategy(ActorRef pilotActor, AtomicReference<TrackModel> trackModel,
+                               StrategySnapshots snapshots) {
+            super(pilotActor, trackModel, snapshots);
+            FailingStrategy.trackModel = trackModel;
+            FailingStrategy.snapshots = snapshots;
+        }
+
+        @Override
+        public void onReceive(Object message) throws Exception {
+            if (message instanceof SensorEvent && failNext.compareAndSet(true, false)) {
+                throw new IllegalStateException("failing on purpose");
+            }
+            super.onReceive(message);
+        }
+    }
+
+    @Before
+    public void startPilot() {
+        PilotProperties properties = new PilotProperties();
+        properties.setName("kobayashi");
+        properties.setAccessCode("");
+        properties.setRecording(false);
+        properties.setBlackBoxSeconds(0);
+        properties.setReporting(false);
+        properties.setDataDirectory(DIRECTORY);
+        properties.setStrategy(FailingStrategy.class.getName());
+
+        system = ActorSystem.create("pilot");
+        pilot = system.actorOf(JavaPilotActor.props(properties));
+        pilot.tell(new PilotToRaceTrackConnector(null) {
+            @Override
+            public void send(PowerControl powerControl) {
+                powers.add(powerControl.getP());
+            }
+        }, ActorRef.noSender());
+    }
+
+    @After
+    public void stopPilot() throws IOException {
+        system.shutdown();
+        system.awaitTermination();
+        FileUtils.forceDelete(new File(DIRECTORY));
+    }
+
+    @Test
+    public void testRestartedStrategyDrivesOnWithWhatItLearned() throws Exception {
+        // a track without id, which leaves the snapshots as the only place the penalties are kept
+        pilot.tell(new RaceStartMessage(null, "training", "kobayashi", 0, "description", true), ActorRef.noSender());
+        drive(4 * LAP);
+        for (int i = 0; i < 100 && !FailingStrategy.trackModel.get().isKnown(); i++) {
+            Thread.sleep(20);
+        }
+        Assert.assertTrue(FailingStrategy.trackModel.get().isKnown());
+
+        // the first penalty ends the probing, the second one, in the middle of the long straight, stays there
+        pilot.tell(new PenaltyMessage("sim02", "barrier", 3.0, 2.5, 1000), ActorRef.noSender());
+        Assert.assertNotNull(powers.poll(5, TimeUnit.SECONDS));
+        drive(2 * LAP + DURATIONS[0] / 2);
+        pilot.tell(new PenaltyMessage("sim02", "barrier", 3.0, 2.5, 1000), ActorRef.noSender());
+        for (int i = 0; i < 100 && Arrays.stream(FailingStrategy.snapshots.latest().getPenalties()).sum() == 0; i++) {
+            Thread.sleep(20);
+        }
+        StrategyState learned = FailingStrategy.snapshots.latest();
+        Assert.assertFalse(learned.isProbing());
+        Assert.assertEquals(1, Arrays.stream(learned.getPenalties()).sum());
+
+        TrackModel model = FailingStrategy.trackModel.get();
+        int longStraight = find(model, DURATIONS[0]);
+        int otherStraight = find(model, DURATIONS[2]);
+        Assert.assertEquals(1, learned.getPenalties()[longStraight]);
+        PowerProfile expected = new PowerProfiler().compute(model, (int) learned.getPower(), learned.getPenalties());
+        int penalized = expected.power(longStraight, 0);
+        int unpenalized = expected.power(otherStraight, 0);
+        Assert.assertTrue(penalized < unpenalized);
+        drive(LAP - DURATIONS[0] / 2);
+
+        FailingStrategy.failNext.set(true);
+        pilot.tell(nextEvent(), ActorRef.noSender());
+        time += GRID_MILLIS;
+
+        // the restarted strategy drives by the profile of the power and penalties of the failed one
+        List<Integer> lap = new ArrayList<>();
+        for (int i = 0; i < 5 && !(lap.contains(penalized) && lap.contains(unpenalized)); i++) {
+            lap = drive(LAP);
+        }
+        Assert.assertTrue(lap.contains(penalized));
+        Assert.assertTrue(lap.contains(unpenalized));
+        StrategyState restored = FailingStrategy.snapshots.latest();
+        Assert.assertFalse(restored.isProbing());
+        Assert.assertEquals(learned.getPower(), restored.getPower(), 0);
+        Assert.assertArrayEquals(learned.getPenalties(), restored.getPenalties());
+    }
+
+    /**
+     * feeds the sensor events of the next millis, waiting for the answer to each one
+     * @return the power values of the answers
+     */
+    private List<Integer> drive(int millis) throws InterruptedException {
+        List<Integer> answers = new ArrayList<>();
+        for (long end = time + millis; time < end; time += GRID_MILLIS) {
+            pilot.tell(nextEvent(), ActorRef.noSender());
+            Integer power = powers.poll(5, TimeUnit.SECONDS);
+            Assert.assertNotNull("No answer to the sensor event at " + time, power);
+            answers.add(power);
+        }
+        return answers;
+    }
+
+    private SensorEvent nextEvent() {
+        long position = time % LAP;
+        int segment = 0;
+        long end = DURATIONS[0];
+        while (end <= position) {
+            end += DURATIONS[++segment];
+        }
+        gyro += Math.max(-RAMP, Math.min(RAMP, LEVELS[segment] - gyro));
+        int gyroZ = gyro + (int) (random.nextGaussian() * 100);
+        return new SensorEvent("sim02", new int[]{0, 0, 9810}, new int[]{0, 0, gyroZ}, new int[]{0, 0, 0}, time);
+    }
+
+    private int find(TrackModel model, int duration) {
+        for (int i = 0; i < model.getSegmentCount(); i++) {
+            if (model.getKind(i) == SegmentKind.STRAIGHT && Math.abs(model.getDuration(i) - duration) < 80) {
+                return i;
+            }
+        }
+        throw new AssertionError("no straight of " + duration + " ms in " + model);
+    }
+}
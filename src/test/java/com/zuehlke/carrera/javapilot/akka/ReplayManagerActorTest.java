@@ -0,0 +1,95 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.javapilot.io.StartReplayCommand;
+import com.zuehlke.carrera.javapilot.io.StopReplayCommand;
+import com.zuehlke.carrera.javapilot.metrics.PilotMetrics;
+import com.zuehlke.carrera.relayapi.messages.RaceStartMessage;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+
+public class ReplayManagerActorTest {
+
+    private static final String DIRECTORY = "testdata";
+    private static final int EVENTS = 200;
+
+    private ActorSystem system;
+    private String tag;
+    private PrintStream console;
+    private final ByteArrayOutputStream printed = new ByteArrayOutputStream();
+
+    @Before
+    public void recordRace() {
+        RaceRecorderPlayer recorder = new RaceRecorderPlayer(DIRECTORY);
+        tag = recorder.record(new RaceStartMessage("sim02", "training", "kobayashi", 0, "description", true));
+        for (int i = 0; i < EVENTS; i++) {
+            recorder.record(new SensorEvent("sim02", new int[]{0, 0, 9810}, new int[]{0, 0, (i / 50) % 2 * 3000},
+                    new int[]{0, 0, 0}, 10 + 10 * i));
+        }
+        recorder.close();
+        console = System.out;
+        System.setOut(new PrintStream(printed, true));
+        PilotConsole.install();
+        system = ActorSystem.create("replays");
+    }
+
+    @After
+    public void removeTestDataDirectory() throws IOException {
+        System.setOut(console);
+        system.shutdown();
+        system.awaitTermination();
+        FileUtils.forceDelete(new File(DIRECTORY));
+    }
+
+    @Test
+    public void testSessionsRunInParallel() throws Exception {
+        ReplaySessions sessions = new ReplaySessions();
+        ActorRef manager = system.actorOf(ReplayManagerActor.props(DIRECTORY, PowerUpUntilPenalty.class, sessions,
+                PilotMetrics.get().pilot("replays")));
+
+        for (int i = 0; i < 3; i++) {
+            manager.tell(new StartReplayCommand(tag), ActorRef.noSender());
+        }
+        StartReplayCommand stopped = new StartReplayCommand(tag);
+        manager.tell(stopped, ActorRef.noSender());
+        manager.tell(new StopReplayCommand(stopped.getSessionId()), ActorRef.noSender());
+        manager.tell(new StartReplayCommand("unknown"), ActorRef.noSender());
+
+        for (int i = 0; i < 100 && (sessions.list().size() < 5 || sessions.running() > 0); i++) {
+            Thread.sleep(50);
+        }
+        Assert.assertEquals(5, sessions.list().size());
+        Assert.assertEquals(0, sessions.running());
+        for (ReplaySession session : sessions.list()) {
+            if (session.getId().equals(stopped.getSessionId())) {
+                Assert.assertEquals(ReplaySession.State.STOPPED, session.getState());
+            } else if (session.getTag().equals("unknown")) {
+                Assert.assertEquals(ReplaySession.State.FAILED, session.getState());
+            } else {
+                Assert.assertEquals(ReplaySession.State.FINISHED, session.getState());
+                Assert.assertEquals(EVENTS, session.getSensorEvents());
+                Assert.assertEquals(EVENTS, session.getPowerControls());
+            }
+        }
+
+        // the players counted into the pilot's metrics, at least the events of the finished sessions
+        Number replayed = PilotMetrics.get().snapshot().get("pilot.replays.replay.events" + PilotMetrics.TOTAL);
+        Assert.assertTrue(replayed.longValue() >= 3 * EVENTS);
+
+        // the replayed strategies printed nothing, the live pilot still does
+        System.out.println("live");
+        Assert.assertFalse(printed.toString().contains("Strategy actor stopped."));
+        Assert.assertTrue(printed.toString().contains("live"));
+    }
+}
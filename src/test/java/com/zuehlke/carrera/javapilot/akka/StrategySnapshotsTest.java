@@ -0,0 +1,64 @@
+package com.zuehlke.carrera.javapilot.akka;
+
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class StrategySnapshotsTest {
+
+    private static final String DIRECTORY = "testdata";
+
+    @Before
+    public void createTestDataDirectory() throws Exception {
+        File testDataDirectory = new File(DIRECTORY);
+        if (!testDataDirectory.mkdir()) {
+            throw new RuntimeException("Could not create " + testDataDirectory.getAbsolutePath());
+        }
+    }
+
+    @After
+    public void removeTestDataDirectory() throws IOException {
+        FileUtils.forceDelete(new File(DIRECTORY));
+    }
+
+    @Test
+    public void testLatestStateSurvivesOnDisk() throws Exception {
+        StrategySnapshots snapshots = new StrategySnapshots(DIRECTORY, "kobayashi");
+        Assert.assertNull(snapshots.latest());
+
+        snapshots.save(new StrategyState("sim02", 120, true, new int[0], new double[0], 0));
+        snapshots.save(new StrategyState("sim02", 130, false, new int[]{0, 2, 1}, new double[]{0, 3.5, 0}, 4));
+        Assert.assertEquals(130, snapshots.latest().getPower(), 0);
+
+        // the first state went to disk right away, the flush writes the latest one after it
+        snapshots.flush();
+        StrategyState restored = new StrategySnapshots(DIRECTORY, "kobayashi").latest();
+        for (int i = 0; i < 100 && (restored == null || restored.getPower() != 130); i++) {
+            Thread.sleep(20);
+            restored = new StrategySnapshots(DIRECTORY, "kobayashi").latest();
+        }
+        Assert.assertEquals("sim02", restored.getTrackId());
+        Assert.assertEquals(130, restored.getPower(), 0);
+        Assert.assertFalse(restored.isProbing());
+        Assert.assertArrayEquals(new int[]{0, 2, 1}, restored.getPenalties());
+        Assert.assertArrayEquals(new double[]{0, 3.5, 0}, restored.getSpeedLimits(), 0);
+        Assert.assertEquals(4, restored.getGeneration());
+
+        Assert.assertNull(new StrategySnapshots(DIRECTORY, "other").latest());
+    }
+
+    @Test
+    public void testRecoveryIsMeasuredFromTheFailure() {
+        StrategySnapshots snapshots = new StrategySnapshots(DIRECTORY, "kobayashi");
+        Assert.assertEquals(-1, snapshots.recovered());
+
+        snapshots.failed();
+        Assert.assertTrue(snapshots.recovered() >= 0);
+        Assert.assertEquals(-1, snapshots.recovered());
+    }
+}
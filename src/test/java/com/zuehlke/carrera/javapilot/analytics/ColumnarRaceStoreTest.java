@@ -0,0 +1,74 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+public class ColumnarRaceStoreTest {
+
+    private static final int EVENTS = 10000; // more than two blocks
+
+    private String tag;
+
+    @Before
+    public void recordRace() throws Exception {
+        File testDataDirectory = new File("testdata");
+        if (!testDataDirectory.mkdir()) {
+            throw new RuntimeException("Could not create " + testDataDirectory.getAbsolutePath());
+        }
+        RaceRecorderPlayer recorder = new RaceRecorderPlayer("testdata");
+        tag = recorder.record(new RaceStartMessage("sim02", "training", "kobayashi", 0, "description", true));
+        for (int i = 0; i < EVENTS; i++) {
+            recorder.record(new SensorEvent("sim02", new int[]{1, 2, 4}, new int[]{0, 0, i % 1000},
+                    new int[]{6, 7, 8}, i + 1));
+        }
+        recorder.record(new VelocityMessage("sim02", 500, 210, "1FDB"));
+        recorder.record(new PenaltyMessage("sim02", "1FDB", 260, 250, 2000), 501L);
+        recorder.record(new PenaltyMessage("sim02", "1FDB", 240, 200, 2000), 502L);
+        recorder.close();
+    }
+
+    @After
+    public void removeTestDataDirectory() throws IOException {
+        FileUtils.forceDelete(new File("testdata"));
+    }
+
+    @Test
+    public void testAggregateAndSelect() {
+        ColumnarRaceStore store = new ColumnarRaceStore("testdata");
+        Assert.assertEquals(1, store.load());
+        Assert.assertEquals(0, store.load());
+        Assert.assertEquals(EVENTS, store.getRaces().get(0).getRows(Series.sensor));
+
+        Map<String, ColumnStats> all = store.aggregate(RaceQuery.of(Series.sensor).onTrack("sim02"), "g2");
+        Assert.assertEquals(EVENTS, all.get(tag).getCount());
+        Assert.assertEquals(999, all.get(tag).getMax(), 0);
+
+        ColumnStats curves = store.aggregate(RaceQuery.of(Series.sensor).where("g2", 900.0, null)
+                .between(1001L, null), "g2").get(tag);
+        Assert.assertEquals(900, curves.getCount());
+        Assert.assertEquals(900, curves.getMin(), 0);
+
+        Assert.assertTrue(store.aggregate(RaceQuery.of(Series.sensor).onTrack("other"), "g2").isEmpty());
+
+        List<RaceSelection> penalties = store.select(RaceQuery.of(Series.penalty).where("actualSpeed", 250.0, null));
+        Assert.assertEquals(1, penalties.size());
+        Assert.assertArrayEquals(new long[]{501}, penalties.get(0).getTime());
+        Assert.assertArrayEquals(new double[]{250}, penalties.get(0).getColumns().get("speedLimit"), 0);
+
+        RaceSelection gyro = store.select(RaceQuery.of(Series.sensor).between(4000L, 4200L), "g2").get(0);
+        Assert.assertEquals(201, gyro.getRows());
+        for (int row = 1; row < gyro.getRows(); row++) {
+            Assert.assertEquals(gyro.getTime()[row - 1] + 1, gyro.getTime()[row]);
+        }
+    }
+}
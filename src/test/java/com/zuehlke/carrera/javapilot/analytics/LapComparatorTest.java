@@ -0,0 +1,72 @@
+package com.zuehlke.carrera.javapilot.analytics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class LapComparatorTest {
+
+    private static final long LAP_MILLIS = 8000;
+    private static final int SAMPLE_MILLIS = 5;
+
+    @Test
+    public void testCutByPatternAndCompare() {
+        // five laps, in the third one the car is slow from 55% to 70%, within the first right curve of the track
+        List<Long> times = new ArrayList<>();
+        List<Double> gyro = new ArrayList<>();
+        double position = 0;
+        for (long t = 0; position < 5; t += SAMPLE_MILLIS) {
+            times.add(t);
+            gyro.add(curves(position % 1));
+            double lapPosition = position % 1;
+            boolean slow = position >= 2 && position < 3 && lapPosition >= 0.55 && lapPosition < 0.7;
+            position += (double) SAMPLE_MILLIS / LAP_MILLIS * (slow ? 0.5 : 1);
+        }
+        RaceSelection sensor = new RaceSelection("race", "track", 0,
+                times.stream().mapToLong(Long::longValue).toArray());
+        sensor.put("g2", gyro.stream().mapToDouble(Double::doubleValue).toArray());
+
+        List<Lap> laps = new LapCutter().cut("race", sensor, null);
+        Assert.assertTrue(laps.size() >= 4);
+        Assert.assertEquals(LAP_MILLIS, laps.get(0).getDuration(), 100);
+        Assert.assertEquals(LAP_MILLIS + 0.15 * LAP_MILLIS, laps.get(2).getDuration(), 100);
+
+        LapComparator comparator = new LapComparator(2);
+        try {
+            List<LapComparison> comparisons = comparator.compareAll(Arrays.asList(
+                    new Lap[]{laps.get(0), laps.get(1)}, new Lap[]{laps.get(0), laps.get(2)}));
+            LapComparison same = comparisons.get(0);
+            LapComparison slower = comparisons.get(1);
+            Assert.assertEquals(0, same.getDelta(), 100);
+            Assert.assertEquals(0.15 * LAP_MILLIS, slower.getDelta(), 100);
+            // nearly all of the time is lost in the first right curve
+            long elsewhere = 0;
+            for (LapComparison.Segment segment : slower.getSegments()) {
+                if (segment.getNumber() == 2) {
+                    Assert.assertEquals(LapComparison.RIGHT, segment.getKind());
+                    Assert.assertTrue(segment.getDelta() > 0.8 * slower.getDelta());
+                } else {
+                    elsewhere += Math.abs(segment.getDelta());
+                }
+            }
+            Assert.assertTrue(elsewhere < 0.2 * slower.getDelta());
+        } finally {
+            comparator.shutdown();
+        }
+    }
+
+    /**
+     * a left curve, a straight, and two right curves
+     */
+    private static double curves(double position) {
+        if (position < 0.25) {
+            return 3000 * Math.sin(Math.PI * position / 0.25);
+        } else if (position < 0.5) {
+            return 0;
+        }
+        return -2000 * Math.abs(Math.sin(2 * Math.PI * (position - 0.5) / 0.5));
+    }
+}
@@ -0,0 +1,94 @@
+package com.zuehlke.carrera.javapilot.anomaly;
+
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class AnomalyDetectorsTest {
+
+    private final Random random = new Random(3);
+
+    @Test
+    public void testZScore() {
+        ZScoreDetector detector = new ZScoreDetector(20, 4, 10);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(detector.add(i, 100 + random.nextGaussian()));
+        }
+        Assert.assertFalse(detector.add(100, 105)); // far off in deviations, but too close to the mean
+        Assert.assertTrue(detector.add(101, 150));
+        Assert.assertTrue(detector.getScore() > 4);
+    }
+
+    @Test
+    public void testCusumFindsOutliersAndShifts() {
+        CusumDetector detector = new CusumDetector(0.05, 0.5, 8, 0.1);
+        for (int i = 0; i < 200; i++) {
+            Assert.assertFalse(detector.add(random.nextGaussian()));
+        }
+        Assert.assertTrue(detector.add(20));
+        for (int i = 0; i < 200; i++) {
+            detector.add(random.nextGaussian()); // until the spread is back to normal
+        }
+
+        // a shift by two deviations, too small to trip it at once
+        int samples = 0;
+        while (!detector.add(2 + random.nextGaussian())) {
+            samples++;
+            Assert.assertTrue(samples < 20);
+        }
+        Assert.assertTrue(samples > 0);
+    }
+
+    @Test
+    public void testGripLossAndImpact() {
+        SensorAnomalyDetector detector = new SensorAnomalyDetector();
+        List<AnomalyEvent> found = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            long time = i * 10L;
+            // straights and curves, entered within 150 ms
+            double curve = Math.max(-1, Math.min(1, 3 * Math.sin(2 * Math.PI * i / 300)));
+            int gyroZ = (int) (3000 * curve + random.nextGaussian() * 150);
+            int[] a = {(int) (random.nextGaussian() * 40), (int) (random.nextGaussian() * 40),
+                    9810 + (int) (random.nextGaussian() * 40)};
+            if (i == 400) {
+                gyroZ += 2500; // the tick
+            }
+            if (i >= 700 && i < 703) {
+                a[0] += 3000; // the bump
+            }
+            AnomalyEvent anomaly = detector.add(event(time, a, gyroZ));
+            if (anomaly != null) {
+                found.add(anomaly);
+            }
+        }
+        Assert.assertEquals(found.toString(), 2, found.size());
+        Assert.assertTrue(found.get(0) instanceof GripLossEvent);
+        Assert.assertEquals(4000, found.get(0).getTimeStamp());
+        Assert.assertTrue(found.get(1) instanceof ImpactEvent);
+        Assert.assertEquals(7000, found.get(1).getTimeStamp());
+    }
+
+    @Test
+    public void testGripLossAndImpactAtOnce() {
+        SensorAnomalyDetector detector = new SensorAnomalyDetector();
+        int[] a = {0, 0, 9810};
+        for (int i = 0; i < 100; i++) {
+            int gyroZ = (int) (random.nextGaussian() * 150);
+            Assert.assertNull(detector.add(event(i * 10L, a, gyroZ)));
+        }
+
+        AnomalyEvent first = detector.add(event(1000, new int[]{3000, 0, 9810}, 2500));
+        AnomalyEvent second = detector.next();
+        Assert.assertTrue(first instanceof ImpactEvent);
+        Assert.assertTrue(second instanceof GripLossEvent);
+        Assert.assertNull(detector.next());
+    }
+
+    private SensorEvent event(long time, int[] a, int gyroZ) {
+        return new SensorEvent("test", a, new int[]{0, 0, gyroZ}, new int[]{0, 0, 0}, time);
+    }
+}
@@ -0,0 +1,98 @@
+package com.zuehlke.carrera.javapilot.bus;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class LoopbackBrokerTest {
+
+    private LoopbackBroker broker;
+
+    @Before
+    public void createBroker() {
+        broker = new LoopbackBroker();
+    }
+
+    @After
+    public void shutdownBroker() {
+        broker.shutdown();
+    }
+
+    @Test
+    public void testRoutesByExchangeAndKey() throws Exception {
+        EmbeddedMessageBus bus = new EmbeddedMessageBus(broker);
+        bus.connect();
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        bus.subscribe("pilot", "sensor", true, (contentType, headers, body) -> {
+            received.add("sensor:" + new String(body));
+            latch.countDown();
+        });
+        bus.subscribe(MessageBus.DEFAULT_EXCHANGE, "announce", true, (contentType, headers, body) -> {
+            received.add("announce:" + new String(body));
+            latch.countDown();
+        });
+
+        bus.publish("pilot", "sensor", null, null, "1".getBytes());
+        bus.publish("pilot", "velocity", null, null, "dropped".getBytes());
+        bus.publish("other", "sensor", null, null, "dropped".getBytes());
+        bus.publish(MessageBus.DEFAULT_EXCHANGE, "announce", null, null, "2".getBytes());
+
+        Assert.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Assert.assertTrue(received.contains("sensor:1"));
+        Assert.assertTrue(received.contains("announce:2"));
+        Assert.assertEquals(2, received.size());
+    }
+
+    @Test
+    public void testReconnectSubscribesOnce() throws Exception {
+        EmbeddedMessageBus bus = new EmbeddedMessageBus(broker);
+        List<String> received = Collections.synchronizedList(new ArrayList<>());
+        for (int connection = 0; connection < 2; connection++) {
+            bus.close();
+            bus.connect();
+            bus.subscribe("pilot", "sensor", true, (contentType, headers, body) -> received.add(new String(body)));
+        }
+
+        bus.publish("pilot", "sensor", null, null, "1".getBytes());
+        bus.publish("pilot", "sensor", null, null, "2".getBytes());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (received.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(20); // a second subscription would deliver right after the first
+        Assert.assertEquals(Arrays.asList("1", "2"), received);
+    }
+
+    @Test
+    public void testLatencyAndJitterKeepOrder() throws Exception {
+        broker.setLatency(5, 5);
+        int messages = 200;
+        List<Integer> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(messages);
+        broker.bind("pilot", "sensor", (exchange, routingKey, contentType, headers, body) -> {
+            received.add(Integer.parseInt(new String(body)));
+            latch.countDown();
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            broker.publish("pilot", "sensor", null, null, String.valueOf(i).getBytes());
+        }
+
+        Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(5));
+        for (int i = 0; i < messages; i++) {
+            Assert.assertEquals(i, (int) received.get(i));
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.zuehlke.carrera.javapilot.calibration;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class SimulatorCalibrationTest {
+
+    @Test
+    public void testSearchFindsMinimum() throws Exception {
+        SimulatorCalibration calibration = new SimulatorCalibration(Arrays.asList(
+                new SimulatorCalibration.Parameter("sigma", 0, 10, false),
+                new SimulatorCalibration.Parameter("razor.gyroz.floatingAverageSize", 1, 15, true)),
+                (values) -> Math.pow(values.get("sigma").doubleValue() - 3, 2)
+                        + Math.pow(values.get("razor.gyroz.floatingAverageSize").doubleValue() - 7, 2), 4);
+        Map<String, Number> start = new LinkedHashMap<>();
+        start.put("sigma", 9.0);
+        start.put("razor.gyroz.floatingAverageSize", 1);
+
+        SimulatorCalibration.Candidate best = calibration.search(start, 6, 30, 42);
+        calibration.shutdown();
+
+        Assert.assertEquals(3, best.getValues().get("sigma").doubleValue(), 0.3);
+        Assert.assertEquals(7, best.getValues().get("razor.gyroz.floatingAverageSize"));
+        Assert.assertTrue(best.toYaml(), best.toYaml().contains("  razor:\n    gyroz:\n      floatingAverageSize: 7\n"));
+    }
+
+    @Test
+    public void testComparison() {
+        Trace recorded = sine(10000, 1.0);
+        Assert.assertEquals(0, TraceComparison.compare(recorded, sine(10000, 1.0)).getScore(), 1e-9);
+
+        double scaled = TraceComparison.compare(recorded, sine(10000, 0.5)).getScore();
+        TraceComparison shortened = TraceComparison.compare(recorded, sine(5000, 1.0));
+        Assert.assertTrue(scaled > 0.1);
+        Assert.assertEquals(0.5, shortened.getMissing(), 0.05);
+    }
+
+    /**
+     * @return a curve every second, one sensor event every 10 ms
+     */
+    private static Trace sine(long millis, double amplitude) {
+        Trace.Builder trace = new Trace.Builder();
+        for (long t = 0; t <= millis; t += 10) {
+            trace.add(t, (int) (amplitude * 3000 * Math.sin(2 * Math.PI * t / 1000)));
+        }
+        return trace.build();
+    }
+}
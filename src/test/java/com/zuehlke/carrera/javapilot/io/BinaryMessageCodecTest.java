@@ -0,0 +1,82 @@
+package com.zuehlke.carrera.javapilot.io;
+
+import com.zuehlke.carrera.relayapi.messages.PowerControl;
+import com.zuehlke.carrera.relayapi.messages.SensorEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class BinaryMessageCodecTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    public void testSensorEventRoundTrip() {
+        SensorEvent event = new SensorEvent("sim02", new int[]{1, -2, 3}, new int[]{4, 5, -3059}, new int[]{7, 8, 9}, 1234L);
+        event.setT(-48);
+
+        SensorEvent decoded = (SensorEvent) codec.decode(codec.encode(event));
+
+        Assert.assertEquals("sim02", decoded.getRaceTrackId());
+        Assert.assertEquals(1234L, decoded.getTimeStamp());
+        Assert.assertEquals(-48, decoded.getT());
+        Assert.assertArrayEquals(event.getA(), decoded.getA());
+        Assert.assertArrayEquals(event.getG(), decoded.getG());
+        Assert.assertArrayEquals(event.getM(), decoded.getM());
+    }
+
+    @Test
+    public void testPowerControlRoundTrip() {
+        PowerControl powerControl = new PowerControl(150, "kobayashi", null, 4711L);
+
+        PowerControl decoded = (PowerControl) codec.decode(codec.encode(powerControl));
+
+        Assert.assertEquals(150, decoded.getP());
+        Assert.assertEquals("kobayashi", decoded.getPilotId());
+        Assert.assertNull(decoded.getAccessCode());
+        Assert.assertEquals(4711L, decoded.getTimeStamp());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownVersion() {
+        byte[] bytes = codec.encode(new PowerControl(150, "kobayashi", "pwd", 4711L));
+        bytes[0] = BinaryMessageCodec.VERSION + 1;
+        codec.decode(bytes);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTruncatedMessage() {
+        byte[] bytes = codec.encode(new SensorEvent("sim02", new int[3], new int[3], new int[3], 1234L));
+        codec.decode(Arrays.copyOf(bytes, bytes.length - 3));
+    }
+
+    @Test
+    public void testNegotiation() {
+        WireFormatNegotiator binaryPreferred = new WireFormatNegotiator(WireFormat.binary);
+        WireFormatNegotiator jsonOnly = new WireFormatNegotiator(WireFormat.json);
+
+        // a peer that doesn't say anything only speaks json
+        binaryPreferred.observe(null);
+        Assert.assertEquals(WireFormat.json, binaryPreferred.outgoing());
+
+        binaryPreferred.observe(Collections.singletonMap(WireFormatNegotiator.ACCEPT, jsonOnly.accepted()));
+        Assert.assertEquals(WireFormat.json, binaryPreferred.outgoing());
+
+        binaryPreferred.observe(Collections.singletonMap(WireFormatNegotiator.ACCEPT, binaryPreferred.accepted()));
+        Assert.assertEquals(WireFormat.binary, binaryPreferred.outgoing());
+
+        jsonOnly.observe(Collections.singletonMap(WireFormatNegotiator.ACCEPT, binaryPreferred.accepted()));
+        Assert.assertEquals(WireFormat.json, jsonOnly.outgoing());
+
+        // a json only peer taking over from a binary one
+        binaryPreferred.observe(Collections.singletonMap(WireFormatNegotiator.ACCEPT, jsonOnly.accepted()));
+        Assert.assertEquals(WireFormat.json, binaryPreferred.outgoing());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyFrameIsRejected() throws Exception {
+        new FrameCodec().decode(new byte[0]);
+    }
+}
@@ -1,5 +1,6 @@
 package com.zuehlke.carrera.javapilot.io;
 
+import com.zuehlke.carrera.api.seralize.JacksonSerializer;
 import com.zuehlke.carrera.relayapi.messages.*;
 import org.apache.tomcat.util.http.fileupload.FileUtils;
 import org.junit.After;
@@ -100,6 +101,37 @@ public class RaceRecorderTest {
         Assert.assertEquals(objectList.get(8).getClass(), PenaltyMessage.class);
     }
 
+    @Test
+    public void testConvertToBinary() throws Exception {
+        RaceRecorderPlayer recorder = new RaceRecorderPlayer("testdata");
+        String tag = recorder.record(new RaceStartMessage("sim02", "training", "kobayashi", System.currentTimeMillis(), "description", true));
+        for (int i = 0; i < 100; i++) {
+            recorder.record(createEvent(i, 10 * i));
+            recorder.record(new PowerControl(100 + i, "koba", "pwd", 10 * i + 5));
+        }
+        recorder.record(new VelocityMessage("sim02", 21, 21, "1FDB"));
+        recorder.record(new PenaltyMessage("sim02", "1FDB", 23, 20, 2000), 23L);
+        recorder.close();
+        List<String> json = replayAsJson(recorder, tag);
+
+        RecordingConverter converter = new RecordingConverter("testdata", 2, false, 0);
+        Assert.assertEquals(1, converter.convertAll().getConverted());
+        Assert.assertFalse(new File("testdata/" + tag + "/events").exists());
+        Assert.assertTrue(new File("testdata/" + tag + "/events.bin").isFile());
+        Assert.assertEquals(json, replayAsJson(new RaceRecorderPlayer("testdata"), tag));
+
+        Assert.assertEquals(1, converter.convertAll().getSkipped());
+    }
+
+    private List<String> replayAsJson(RaceRecorderPlayer player, String tag) {
+        List<String> messages = new ArrayList<>();
+        try {
+            player.replay(tag).forEach(o -> messages.add(o.getClass().getSimpleName() + new JacksonSerializer().serialize(o)));
+        } catch (EndOfStreamException eose) {
+            // ignore: We use this to end the otherwise infinite stream;
+        }
+        return messages;
+    }
 
     private SensorEvent createEvent(int g2, long t) {
         return new SensorEvent("track", new int[]{1, 2, 4}, new int[]{0, 0, g2}, new int[]{6, 7, 8}, t);
@@ -0,0 +1,88 @@
+package com.zuehlke.carrera.javapilot.show;
+
+import com.zuehlke.carrera.javapilot.io.EndOfStreamException;
+import com.zuehlke.carrera.javapilot.io.RaceRecorderPlayer;
+import com.zuehlke.carrera.relayapi.messages.*;
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+public class RaceDataReaderTest {
+
+    private File file;
+
+    @Before
+    public void writeRaceData() throws IOException {
+        File testDataDirectory = new File("testdata");
+        if (!testDataDirectory.mkdir()) {
+            throw new RuntimeException("Could not create " + testDataDirectory.getAbsolutePath());
+        }
+        // the arrays in a different order than they are merged, the scalar fields around them
+        String json = "{\"id\":\"42\",\"velocityMessages\":["
+                + velocity(15) + "," + velocity(35) + "],"
+                + "\"powerControls\":[{\"p\":120,\"timeStamp\":12}],"
+                + "\"sensorEvents\":[" + event(10) + "," + event(20) + "," + event(30) + "],"
+                + "\"teamId\":\"kobayashi\",\"trackId\":\"sim02\",\"startTime\":5,\"raceType\":\"training\"}";
+        file = new File(testDataDirectory, "race.json");
+        Files.write(file.toPath(), json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void removeTestDataDirectory() throws IOException {
+        FileUtils.forceDelete(new File("testdata"));
+    }
+
+    @Test
+    public void testMergeWhileStreaming() throws IOException {
+        RaceDataReader reader = new RaceDataReader(file);
+        Assert.assertEquals("sim02", reader.getTrackId());
+        Assert.assertEquals("kobayashi", reader.getTeamId());
+
+        List<Long> order = new ArrayList<>();
+        try (RaceDataReader.Elements<Object> messages = reader.messages()) {
+            for (Object message = messages.next(); message != null; message = messages.next()) {
+                order.add(message instanceof SensorEvent
+                        ? ((SensorEvent) message).getT() : ((VelocityMessage) message).getT());
+            }
+        }
+        Assert.assertEquals(Arrays.asList(10L, 15L, 20L, 30L, 35L), order);
+    }
+
+    @Test
+    public void testImport() throws IOException {
+        String tag = new RaceDataReader(file).importInto(new RaceRecorderPlayer("testdata"));
+
+        Supplier<Object> replay = new RaceRecorderPlayer("testdata").getSupplier(tag);
+        List<Class<?>> types = new ArrayList<>();
+        try {
+            while (true) {
+                types.add(replay.get().getClass());
+            }
+        } catch (EndOfStreamException e) {
+            // all replayed
+        }
+        Assert.assertEquals(RaceStartMessage.class, types.get(0));
+        Assert.assertEquals(3, types.stream().filter(SensorEvent.class::equals).count());
+        Assert.assertEquals(2, types.stream().filter(VelocityMessage.class::equals).count());
+        Assert.assertEquals(1, types.stream().filter(PowerControl.class::equals).count());
+    }
+
+    private static String event(long t) {
+        return "{\"raceTrackId\":\"sim02\",\"a\":[1,2,3],\"g\":[4,5,6],\"m\":[7,8,9],\"timeStamp\":" + t + ",\"t\":" + t + "}";
+    }
+
+    private static String velocity(long t) {
+        return "{\"raceTrackId\":\"sim02\",\"timeStamp\":" + t + ",\"velocity\":200.0,\"t\":" + t + "}";
+    }
+}
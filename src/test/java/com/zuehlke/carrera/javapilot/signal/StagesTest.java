@@ -0,0 +1,103 @@
+package com.zuehlke.carrera.javapilot.signal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class StagesTest {
+
+    @Test
+    public void testMovingAverage() {
+        MovingAverage average = new MovingAverage(3);
+        Assert.assertEquals(3, average.apply(0, 3), 0);
+        Assert.assertEquals(4, average.apply(1, 5), 0);
+        Assert.assertEquals(5, average.apply(2, 7), 0);
+        Assert.assertEquals(7, average.apply(3, 9), 0);
+        average.reset();
+        Assert.assertEquals(1, average.apply(4, 1), 0);
+    }
+
+    @Test
+    public void testFiltersKeepAConstant() {
+        for (Stage stage : new Stage[]{new ExponentialMovingAverage(0.3), FirFilter.lowPass(9, 0.1),
+                new KalmanFilter(1, 100)}) {
+            for (int i = 0; i < 20; i++) {
+                Assert.assertEquals(stage.getClass().getSimpleName(), 42, stage.apply(i, 42), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void testDerivative() {
+        Derivative derivative = new Derivative();
+        Assert.assertEquals(0, derivative.apply(1000, 5), 0);
+        Assert.assertEquals(10, derivative.apply(1500, 10), 1e-9);
+        Assert.assertEquals(10, derivative.apply(1500, 99), 1e-9); // same time stamp
+        Assert.assertEquals(-20, derivative.apply(2000, 0), 1e-9);
+    }
+
+    @Test
+    public void testWindowedStatisticsMatchBruteForce() {
+        int size = 7;
+        WindowedStatistics statistics = new WindowedStatistics(size);
+        Random random = new Random(17);
+        double[] values = new double[500];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(100) - 50;
+            Assert.assertEquals(values[i], statistics.apply(i, values[i]), 0);
+
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE, sum = 0, squares = 0;
+            int from = Math.max(0, i - size + 1);
+            for (int j = from; j <= i; j++) {
+                min = Math.min(min, values[j]);
+                max = Math.max(max, values[j]);
+                sum += values[j];
+                squares += values[j] * values[j];
+            }
+            int count = i - from + 1;
+            Assert.assertEquals(min, statistics.getMin(), 0);
+            Assert.assertEquals(max, statistics.getMax(), 0);
+            Assert.assertEquals(sum / count, statistics.getMean(), 1e-9);
+            Assert.assertEquals(squares / count - (sum / count) * (sum / count), statistics.getVariance(), 1e-6);
+        }
+    }
+
+    @Test
+    public void testPipelineSmoothesNoise() {
+        Pipeline pipeline = new Pipeline(new KalmanFilter(1, 400), new MovingAverage(8));
+        Random random = new Random(3);
+        double error = 0;
+        for (int i = 0; i < 1000; i++) {
+            double smoothed = pipeline.apply(i, 100 + 20 * random.nextGaussian());
+            if (i >= 100) {
+                error = Math.max(error, Math.abs(smoothed - 100));
+            }
+        }
+        Assert.assertTrue("max error " + error, error < 10);
+    }
+
+    @Test
+    public void testVelocityEstimatorLearnsTheOffset() {
+        // speed 2 + sin(t) m/s, the accelerometer 0.3 m/s^2 off, a light barrier every 1.5 s
+        VelocityEstimator estimator = new VelocityEstimator();
+        Random random = new Random(5);
+        double error = 0;
+        for (int i = 0; i <= 3000; i++) {
+            long millis = i * 10L;
+            double t = millis / 1000.0;
+            int acceleration = (int) (1000 * (Math.cos(t) + 0.3) + 50 * random.nextGaussian());
+            estimator.addAcceleration(millis, new int[]{acceleration, 0, 9810});
+            if (millis % 1500 == 0) {
+                estimator.addMeasurement(millis, 2 + Math.sin(t));
+            }
+            if (t > 20) {
+                error = Math.max(error, Math.abs(estimator.getVelocity() - (2 + Math.sin(t))));
+            }
+        }
+        Assert.assertTrue(estimator.isCalibrated());
+        Assert.assertEquals(0.3, estimator.getOffset(), 0.05);
+        Assert.assertTrue("max error " + error, error < 0.1);
+        Assert.assertEquals(0, estimator.getDistance(), 1e-9); // just passed a barrier
+    }
+}
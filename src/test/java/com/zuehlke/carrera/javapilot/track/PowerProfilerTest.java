@@ -0,0 +1,52 @@
+package com.zuehlke.carrera.javapilot.track;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PowerProfilerTest {
+
+    // a straight of 1 s, a gentle left curve of 0.5 s and a sharp right curve of 0.5 s
+    private final TrackModel model = new TrackModel(
+            new SegmentKind[]{SegmentKind.STRAIGHT, SegmentKind.LEFT, SegmentKind.RIGHT},
+            new double[]{1000, 500, 500}, new long[]{950, 480, 490}, new long[]{1100, 520, 510},
+            new double[]{0, 1500, -3000}, new int[]{3, 3, 3}, 3, 0, 0, 1);
+
+    @Test
+    public void testProfile() {
+        PowerProfile profile = new PowerProfiler().compute(model, 150, new int[3]);
+        Assert.assertTrue(profile.fits(model));
+        Assert.assertEquals(3, profile.getLaps());
+
+        // the same lap found anew may start elsewhere, the table doesn't fit it
+        TrackModel foundAnew = new TrackModel(
+                new SegmentKind[]{SegmentKind.LEFT, SegmentKind.RIGHT, SegmentKind.STRAIGHT},
+                new double[]{500, 500, 1000}, new long[]{480, 490, 950}, new long[]{520, 510, 1100},
+                new double[]{1500, -3000, 0}, new int[]{3, 3, 3}, 3, 0, 0, 2);
+        Assert.assertFalse(profile.fits(foundAnew));
+
+        int boost = profile.power(0, 0);
+        int braking = profile.power(0, 900);
+        int gentle = profile.power(1, 100);
+        int sharp = profile.power(2, 100);
+        Assert.assertTrue(boost > 150);
+        Assert.assertTrue(braking < gentle);
+        Assert.assertTrue(sharp < gentle && gentle < 150);
+
+        // same power throughout a curve, and beyond the longest time seen in a segment
+        Assert.assertEquals(gentle, profile.power(1, 0));
+        Assert.assertEquals(gentle, profile.power(1, 5000));
+        Assert.assertEquals(braking, profile.power(0, 5000));
+    }
+
+    @Test
+    public void testPenaltiesReducePower() {
+        PowerProfiler profiler = new PowerProfiler();
+        PowerProfile clean = profiler.compute(model, 150, new int[3]);
+        PowerProfile penalized = profiler.compute(model, 150, new int[]{0, 2, 0});
+
+        Assert.assertTrue(penalized.power(1, 100) < clean.power(1, 100));
+        Assert.assertTrue(penalized.power(0, 900) < clean.power(0, 900)); // braking into the curve
+        Assert.assertEquals(clean.power(0, 0), penalized.power(0, 0));
+        Assert.assertEquals(clean.power(2, 100), penalized.power(2, 100));
+    }
+}
@@ -0,0 +1,85 @@
+package com.zuehlke.carrera.javapilot.track;
+
+import org.apache.tomcat.util.http.fileupload.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class TrackKnowledgeStoreTest {
+
+    private static final File FILE = new File("testdata", "tracks.bin");
+
+    // a straight, a gentle left curve, another straight and a sharp right curve
+    private final TrackModel model = model(new SegmentKind[]{SegmentKind.STRAIGHT, SegmentKind.LEFT,
+            SegmentKind.STRAIGHT, SegmentKind.RIGHT}, new double[]{1000, 500, 700, 400});
+
+    @After
+    public void removeTestDataDirectory() throws IOException {
+        if (FILE.getParentFile().exists()) {
+            FileUtils.forceDelete(FILE.getParentFile());
+        }
+    }
+
+    @Test
+    public void testKnowledgeSurvivesReopening() {
+        TrackKnowledgeStore store = new TrackKnowledgeStore(FILE);
+        Assert.assertNull(store.load("sim02"));
+        Assert.assertTrue(store.save(new TrackKnowledge("sim02", 140, model, new int[]{0, 2}, new double[0])));
+        Assert.assertTrue(store.save(new TrackKnowledge("hollywood", 120, model, new int[4], new double[]{3.5})));
+        Assert.assertTrue(store.save(new TrackKnowledge("sim02", 150, model, new int[]{0, 3, 0, 1},
+                new double[]{0, 3.2})));
+
+        store = new TrackKnowledgeStore(FILE);
+        Assert.assertEquals(2, store.size());
+        TrackKnowledge known = store.load("sim02");
+        Assert.assertEquals(150, known.getBasePower(), 0);
+        Assert.assertEquals(3.2, known.getSpeedLimit(1), 1e-6);
+        Assert.assertEquals(0, known.getSpeedLimit(3), 0);
+        Assert.assertEquals(3, known.getLaps());
+        Assert.assertEquals(4, known.getSegmentCount());
+        Assert.assertEquals(SegmentKind.RIGHT, known.getKind(3));
+        Assert.assertEquals(700, known.getDuration(2));
+        Assert.assertEquals(3, known.getPenalties(1));
+        Assert.assertEquals(120, store.load("hollywood").getBasePower(), 0);
+        Assert.assertNull(store.load("unknown"));
+    }
+
+    @Test
+    public void testOldestTrackMakesRoom() {
+        TrackKnowledgeStore store = new TrackKnowledgeStore(FILE);
+        for (int i = 0; i <= TrackKnowledgeStore.MAX_TRACKS; i++) {
+            store.save(new TrackKnowledge("track" + i, 100 + i, model, new int[0], new double[0]));
+        }
+        Assert.assertEquals(TrackKnowledgeStore.MAX_TRACKS, store.size());
+        Assert.assertNotNull(store.load("track" + TrackKnowledgeStore.MAX_TRACKS));
+        Assert.assertFalse(store.save(new TrackKnowledge("a track id too long to be kept in the store", 100,
+                model, new int[0], new double[0])));
+    }
+
+    @Test
+    public void testAlignment() {
+        TrackKnowledge known = new TrackKnowledge("sim02", 150, model, new int[]{0, 3, 0, 1},
+                new double[]{0, 0, 0, 2.5});
+
+        // the same lap, found from the second straight on
+        TrackModel rotated = model(new SegmentKind[]{SegmentKind.STRAIGHT, SegmentKind.RIGHT,
+                SegmentKind.STRAIGHT, SegmentKind.LEFT}, new double[]{690, 410, 1010, 490});
+        int offset = known.align(rotated);
+        Assert.assertEquals(2, offset);
+        Assert.assertArrayEquals(new int[]{0, 1, 0, 3}, known.penaltiesFor(offset));
+        Assert.assertArrayEquals(new double[]{0, 2.5, 0, 0}, known.speedLimitsFor(offset), 0);
+
+        TrackModel other = model(new SegmentKind[]{SegmentKind.STRAIGHT, SegmentKind.LEFT,
+                SegmentKind.LEFT, SegmentKind.RIGHT}, new double[]{1000, 500, 700, 400});
+        Assert.assertEquals(-1, known.align(other));
+        Assert.assertEquals(-1, known.align(TrackModel.UNKNOWN));
+    }
+
+    private static TrackModel model(SegmentKind[] kinds, double[] durations) {
+        int n = kinds.length;
+        return new TrackModel(kinds, durations, new long[n], new long[n], new double[n], new int[n], 3, 0, 0, 1);
+    }
+}
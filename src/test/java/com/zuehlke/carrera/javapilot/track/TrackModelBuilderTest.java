@@ -0,0 +1,119 @@
+package com.zuehlke.carrera.javapilot.track;
+
+import com.zuehlke.carrera.relayapi.messages.RoundTimeMessage;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TrackModelBuilderTest {
+
+    private static final int GRID_MILLIS = 10;
+
+    // straight, left, straight, right, straight, left, with their durations in ms
+    private static final SegmentKind[] KINDS = {SegmentKind.STRAIGHT, SegmentKind.LEFT, SegmentKind.STRAIGHT,
+            SegmentKind.RIGHT, SegmentKind.STRAIGHT, SegmentKind.LEFT};
+    private static final int[] DURATIONS = {800, 600, 500, 700, 400, 900};
+
+    private final Random random = new Random(7);
+    private long time = 0;
+
+    @Test
+    public void testLearnsTheLap() {
+        AtomicReference<TrackModel> published = new AtomicReference<>();
+        TrackModelBuilder builder = new TrackModelBuilder(published);
+        Assert.assertFalse(published.get().isKnown());
+
+        drive(builder, KINDS, DURATIONS, 1.0, 6);
+
+        TrackModel model = published.get();
+        Assert.assertTrue(model.isKnown());
+        Assert.assertEquals(KINDS.length, model.getSegmentCount());
+        Assert.assertEquals(3900, model.getLapDuration(), 100);
+        Assert.assertTrue(model.getLaps() >= 4);
+
+        // same order as driven, starting anywhere in the lap
+        int first = find(model, 800);
+        for (int i = 0; i < KINDS.length; i++) {
+            int segment = (first + i) % KINDS.length;
+            int driven = i;
+            Assert.assertEquals(KINDS[driven], model.getKind(segment));
+            Assert.assertEquals(DURATIONS[driven], model.getDuration(segment), 40);
+        }
+        Assert.assertTrue(model.getGyro(find(model, 900)) > 0);
+        Assert.assertTrue(model.getGyro(find(model, 700)) < 0);
+
+        // a slow lap refines the model instead of losing it
+        int laps = model.getLaps();
+        drive(builder, KINDS, DURATIONS, 1.2, 1);
+        drive(builder, KINDS, DURATIONS, 1.0, 1);
+        model = published.get();
+        Assert.assertEquals(laps + 2, model.getLaps());
+        Assert.assertEquals(960, model.getMaxDuration(find(model, 800)), 40);
+
+        builder.reset();
+        Assert.assertSame(TrackModel.UNKNOWN, published.get());
+    }
+
+    @Test
+    public void testKeepsTheModelAcrossAGlitch() {
+        AtomicReference<TrackModel> published = new AtomicReference<>();
+        TrackModelBuilder builder = new TrackModelBuilder(published);
+        drive(builder, KINDS, DURATIONS, 1.0, 6);
+        TrackModel before = published.get();
+        int first = find(before, 800);
+
+        // a short wiggle in the middle of the third segment, a straight
+        SegmentKind[] wiggle = {SegmentKind.STRAIGHT, SegmentKind.LEFT, SegmentKind.STRAIGHT, SegmentKind.LEFT,
+                SegmentKind.STRAIGHT, SegmentKind.RIGHT, SegmentKind.STRAIGHT, SegmentKind.LEFT};
+        drive(builder, wiggle, new int[]{800, 600, 150, 200, 150, 700, 400, 900}, 1.0, 1);
+        drive(builder, KINDS, DURATIONS, 1.0, 2);
+
+        TrackModel after = published.get();
+        Assert.assertTrue(after.isKnown());
+        Assert.assertTrue(after.getLaps() >= before.getLaps() + 2);
+        Assert.assertEquals(first, find(after, 800));
+        Assert.assertTrue(after.getObservations(first) > before.getObservations(first));
+    }
+
+    @Test
+    public void testRoundTimeTellsLapFromHalfLap() {
+        SegmentKind[] oval = {SegmentKind.STRAIGHT, SegmentKind.LEFT, SegmentKind.STRAIGHT, SegmentKind.LEFT};
+        int[] durations = {500, 800, 500, 800};
+
+        AtomicReference<TrackModel> published = new AtomicReference<>();
+        TrackModelBuilder builder = new TrackModelBuilder(published);
+        drive(builder, oval, durations, 1.0, 4);
+        Assert.assertEquals(2, published.get().getSegmentCount());
+
+        builder.reset();
+        builder.add(new RoundTimeMessage("", "", time, 2600));
+        drive(builder, oval, durations, 1.0, 4);
+        Assert.assertEquals(4, published.get().getSegmentCount());
+    }
+
+    /**
+     * feeds noisy gyro-z of the given laps. The last segment completes only with the start of the next lap
+     */
+    private void drive(TrackModelBuilder builder, SegmentKind[] kinds, int[] durations, double slowdown, int laps) {
+        for (int lap = 0; lap < laps; lap++) {
+            for (int segment = 0; segment < kinds.length; segment++) {
+                int level = kinds[segment] == SegmentKind.LEFT ? 3000 : kinds[segment] == SegmentKind.RIGHT ? -3000 : 0;
+                long end = time + (long) (durations[segment] * slowdown);
+                for (; time < end; time += GRID_MILLIS) {
+                    builder.add(time, level + (int) (random.nextGaussian() * 200));
+                }
+            }
+        }
+    }
+
+    private int find(TrackModel model, int duration) {
+        for (int i = 0; i < model.getSegmentCount(); i++) {
+            if (Math.abs(model.getDuration(i) - duration) < 50) {
+                return i;
+            }
+        }
+        throw new AssertionError("no segment of " + duration + " ms in " + model);
+    }
+}